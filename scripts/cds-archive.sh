@@ -0,0 +1,31 @@
+#!/bin/bash
+# Build an AppCDS archive (JDK 11+) for faster startup: unpacks the boot jar into plain jars (CDS cannot archive
+# classes from nested jars or directories), does one training start that exits after the startup warm-up to
+# record the loaded classes, then dumps the archive. Writes target/cds/run.sh, which starts the app with it.
+#
+# Usage: scripts/cds-archive.sh [spring args for the training run, e.g. --spring.profiles.active=test]
+# The training run needs the same DB as a normal start. Rebuild the archive after every new jar.
+set -e
+cd "$(dirname "$0")/.."
+JAR=target/analytics-api-framework-1.0-SNAPSHOT.jar
+[ -f "$JAR" ] || mvn -q -B package -DskipTests
+OUT=target/cds
+rm -rf "$OUT"; mkdir -p "$OUT/boot"
+(cd "$OUT/boot" && jar -xf "../../../$JAR")
+jar -cf "$OUT/app.jar" -C "$OUT/boot/BOOT-INF/classes" .
+CP="$OUT/app.jar"
+for lib in "$OUT"/boot/BOOT-INF/lib/*.jar; do CP="$CP:$lib"; done
+MAIN=$(sed -n 's/^Start-Class: *//p' "$OUT/boot/META-INF/MANIFEST.MF" | tr -d '\r')
+
+java -Xshare:off -XX:DumpLoadedClassList="$OUT/classes.lst" -cp "$CP" "$MAIN" \
+  --orchestrator.warmup.exit-after=true "$@"
+java -Xshare:dump -XX:SharedClassListFile="$OUT/classes.lst" -XX:SharedArchiveFile="$OUT/app.jsa" -cp "$CP"
+
+cat > "$OUT/run.sh" <<RUN
+#!/bin/bash
+# Generated by scripts/cds-archive.sh - pass spring args as usual. The class path must match the dump exactly.
+cd "$PWD"
+exec java -XX:SharedArchiveFile="$OUT/app.jsa" -Xshare:auto -cp "$CP" "$MAIN" "\$@"
+RUN
+chmod +x "$OUT/run.sh"
+echo "CDS archive: $OUT/app.jsa ($(wc -l < "$OUT/classes.lst") classes) - start with $OUT/run.sh"
@@ -0,0 +1,19 @@
+#!/bin/bash
+# Start N local worker JVMs against the docker-compose MySQL (analytics_test). The API instance
+# (mvn spring-boot:run -Dspring-boot.run.profiles=test) accepts suites; workers only claim suite_task rows.
+#
+# Usage: scripts/run-workers.sh [N]   (default 3)  - logs in ./logs/worker-<i>.log, Ctrl+C stops all
+set -e
+N=${1:-3}
+cd "$(dirname "$0")/.."
+JAR=target/analytics-api-framework-1.0-SNAPSHOT.jar
+[ -f "$JAR" ] || mvn -q -B package -DskipTests
+mkdir -p logs
+PIDS=()
+for i in $(seq 1 "$N"); do
+  java -jar "$JAR" --spring.profiles.active=test,worker > "logs/worker-$i.log" 2>&1 &
+  PIDS+=($!)
+  echo "worker $i pid $!"
+done
+trap 'kill "${PIDS[@]}" 2>/dev/null' INT TERM EXIT
+wait
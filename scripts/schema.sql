@@ -20,7 +20,8 @@ CREATE TABLE IF NOT EXISTS user_input_detail (
     start_date   VARCHAR(32),
     end_date     VARCHAR(32),
     suite_status VARCHAR(32),
-    apis         VARCHAR(512)
+    apis         VARCHAR(512),
+    INDEX idx_user_input_detail_status (suite_status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- ============================================
@@ -40,9 +41,13 @@ CREATE TABLE IF NOT EXISTS test_report_detail (
     diff_count       INT,
     row_count_status VARCHAR(32),
     message          VARCHAR(512),
+    created_at       DATETIME(6),
+    breakdown_json   LONGTEXT,
+    UNIQUE KEY uk_test_report_detail_suite_api (suite_id, api_id),
     INDEX idx_suite_id (suite_id),
     INDEX idx_api_id (api_id),
-    INDEX idx_test_id (test_id)
+    INDEX idx_test_id (test_id),
+    INDEX idx_test_report_detail_created (created_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- ============================================
@@ -56,7 +61,8 @@ CREATE TABLE IF NOT EXISTS comparison_suite (
     end_date     VARCHAR(32),
     api_group    VARCHAR(64),
     suite_status VARCHAR(32),
-    apis         VARCHAR(1024)
+    apis         VARCHAR(1024),
+    INDEX idx_comparison_suite_status (suite_status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- ============================================
@@ -79,6 +85,105 @@ CREATE TABLE IF NOT EXISTS comparison_result (
     test_response_json   LONGTEXT,
     prod_response_json   LONGTEXT,
     request_payload      LONGTEXT,
+    mismatch_patterns_json LONGTEXT,
+    error                VARCHAR(1024),
+    test_response_hash   VARCHAR(64),
+    prod_response_hash   VARCHAR(64),
+    reused_from_result_id BIGINT,
+    duration_ms          BIGINT,
+    created_at           DATETIME(6),
+    archived_at          DATETIME(6),
+    breakdown_json       LONGTEXT,
+    test_merkle_json     LONGTEXT,
+    prod_merkle_json     LONGTEXT,
+    stopped_early        TINYINT(1),
+    sampling_json        LONGTEXT,
+    profile_fingerprint  VARCHAR(64),
+    UNIQUE KEY uk_comparison_result_suite_api (suite_id, api_id),
     INDEX idx_comparison_suite_id (suite_id),
-    INDEX idx_comparison_api_id (api_id)
+    INDEX idx_comparison_api_id (api_id),
+    INDEX idx_comparison_fingerprint (api_id, test_response_hash, prod_response_hash),
+    INDEX idx_comparison_result_created (created_at),
+    INDEX idx_comparison_result_reused (reused_from_result_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- ============================================
+-- Table: suite_task
+-- Durable per-API work queue for validation / comparison suites
+-- ============================================
+CREATE TABLE IF NOT EXISTS suite_task (
+    id               BIGINT        NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    suite_id         VARCHAR(36)   NOT NULL,
+    suite_type       VARCHAR(16)   NOT NULL,
+    api_id           VARCHAR(128)  NOT NULL,
+    status           VARCHAR(16)   NOT NULL,
+    lane             INT,
+    rank_ms          BIGINT,
+    depends_on       VARCHAR(512),
+    params_json      VARCHAR(2048),
+    attempts         INT,
+    max_attempts     INT,
+    lease_owner      VARCHAR(128),
+    lease_expires_at DATETIME(6),
+    not_before       DATETIME(6),
+    last_error       VARCHAR(1024),
+    created_at       DATETIME(6),
+    updated_at       DATETIME(6),
+    INDEX idx_suite_task_suite (suite_id),
+    INDEX idx_suite_task_claim (status, lane, rank_ms)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- ============================================
+-- Table: suite_summary
+-- Running per-suite category counts + per-API report rows (apis_json), updated on each result save
+-- ============================================
+CREATE TABLE IF NOT EXISTS suite_summary (
+    suite_id          VARCHAR(36)  NOT NULL PRIMARY KEY,
+    suite_type        VARCHAR(16)  NOT NULL,
+    suite_status      VARCHAR(32),
+    completed_count   INT,
+    passed_count      INT,
+    mismatch_count    INT,
+    failed_count      INT,
+    empty_both_count  INT,
+    apis_json         LONGTEXT,
+    version           BIGINT,
+    updated_at        DATETIME(6)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- ============================================
+-- Table: executions / execution_results
+-- POST /api/run-tests runs and their per-request results
+-- ============================================
+CREATE TABLE IF NOT EXISTS executions (
+    execution_id       VARCHAR(36)   NOT NULL PRIMARY KEY,
+    client             VARCHAR(64)   NOT NULL,
+    environment        VARCHAR(32)   NOT NULL,
+    api_group          VARCHAR(64),
+    status             VARCHAR(16)   NOT NULL,
+    started_at         DATETIME(6)   NOT NULL,
+    completed_at       DATETIME(6),
+    error_message      VARCHAR(4096),
+    total_tests        INT,
+    passed_tests       INT,
+    failed_tests       INT,
+    report_email_sent  TINYINT(1),
+    report_email_error VARCHAR(512)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS execution_results (
+    id                  BIGINT        NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    execution_id        VARCHAR(36)   NOT NULL,
+    api_id              VARCHAR(64)   NOT NULL,
+    data_provider_label VARCHAR(128),
+    status              VARCHAR(16)   NOT NULL,
+    http_status         INT,
+    request_payload     TEXT,
+    response_payload    TEXT,
+    error_message       VARCHAR(4096),
+    duration_ms         BIGINT,
+    executed_at         DATETIME(6)   NOT NULL,
+    archived_at         DATETIME(6),
+    INDEX idx_execution_results_execution (execution_id, executed_at),
+    INDEX idx_execution_results_executed_at (executed_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
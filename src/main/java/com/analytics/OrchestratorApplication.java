@@ -9,7 +9,8 @@ import org.springframework.scheduling.annotation.EnableAsync;
 @SpringBootApplication(scanBasePackages = {"com.analytics.orchestrator", "com.analytics", "com.analytics.comparison"})
 @EntityScan(basePackages = {"com.analytics.orchestrator.entity", "com.analytics.comparison.entity"})
 @EnableJpaRepositories(basePackages = {"com.analytics.orchestrator.repository", "com.analytics.comparison.repository"})
-@EnableAsync
+// Class proxies: the async runners also implement SuiteTaskHandler but are injected by concrete type
+@EnableAsync(proxyTargetClass = true)
 public class OrchestratorApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,66 @@
+package com.analytics.comparison;
+
+import com.analytics.comparison.repository.ComparisonResultRepository;
+import com.analytics.orchestrator.config.ApiDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Expected per-API comparison duration, used by {@link SuiteScheduler} for longest-first ordering.
+ * Seeded once from the average duration_ms of past comparison_result rows, then updated as an
+ * exponentially weighted moving average after every run.
+ */
+@Component
+public class ApiDurationStats {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiDurationStats.class);
+    private static final double ALPHA = 0.3;
+
+    private final ComparisonResultRepository resultRepository;
+    private final Map<String, Double> averageMs = new ConcurrentHashMap<>();
+    private volatile boolean seeded;
+
+    /** Used for APIs with no history; export APIs (create-job + query) count twice. */
+    @Value("${comparison.scheduler.default-duration-ms:10000}")
+    private long defaultDurationMs = 10000;
+
+    public ApiDurationStats(ComparisonResultRepository resultRepository) {
+        this.resultRepository = resultRepository;
+    }
+
+    public long expectedMs(ApiDefinition.ApiSpec spec) {
+        seedIfNeeded();
+        Double avg = averageMs.get(spec.getApiId());
+        if (avg != null) return Math.round(avg);
+        boolean export = spec.getCreateJobEndpoint() != null && !spec.getCreateJobEndpoint().isBlank();
+        return export ? 2 * defaultDurationMs : defaultDurationMs;
+    }
+
+    public void record(String apiId, long durationMs) {
+        if (apiId == null || durationMs < 0) return;
+        averageMs.merge(apiId, (double) durationMs, (old, now) -> old + ALPHA * (now - old));
+    }
+
+    private void seedIfNeeded() {
+        if (seeded || resultRepository == null) return;
+        synchronized (this) {
+            if (seeded) return;
+            try {
+                for (Object[] row : resultRepository.averageDurationByApi()) {
+                    if (row[0] != null && row[1] != null) {
+                        averageMs.putIfAbsent((String) row[0], ((Number) row[1]).doubleValue());
+                    }
+                }
+                log.info("[SCHEDULER] Loaded duration history for {} API(s)", averageMs.size());
+            } catch (Exception e) {
+                log.warn("[SCHEDULER] Could not load duration history: {}", e.getMessage());
+            }
+            seeded = true;
+        }
+    }
+}
@@ -4,21 +4,37 @@ import com.analytics.comparison.entity.ComparisonResult;
 import com.analytics.comparison.entity.ComparisonSuite;
 import com.analytics.comparison.repository.ComparisonResultRepository;
 import com.analytics.comparison.repository.ComparisonSuiteRepository;
+import com.analytics.comparison.util.MismatchPattern;
+import com.analytics.comparison.util.SampleSummary;
 import com.analytics.orchestrator.ConfigResolver;
+import com.analytics.orchestrator.chunking.ChunkBreakdown;
 import com.analytics.orchestrator.config.ApiDefinition;
+import com.analytics.orchestrator.entity.SuiteTask;
+import com.analytics.orchestrator.events.SuiteEventBroker;
+import com.analytics.orchestrator.queue.SuiteTaskHandler;
+import com.analytics.orchestrator.queue.SuiteTaskQueue;
+import com.analytics.orchestrator.summary.SuiteSummaryService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Component
-public class AsyncComparisonRunner {
+public class AsyncComparisonRunner implements SuiteTaskHandler {
 
     private static final Logger log = LoggerFactory.getLogger(AsyncComparisonRunner.class);
     private static final ObjectMapper objectMapper = new ObjectMapper();
@@ -35,56 +51,185 @@ public class AsyncComparisonRunner {
     private final ComparisonSuiteRepository suiteRepository;
     private final ComparisonResultRepository resultRepository;
     private final ConfigResolver configResolver;
+    private final SuiteScheduler suiteScheduler;
+    private final ApiDurationStats durationStats;
+    private final SuiteTaskQueue taskQueue;
+    private final SuiteEventBroker eventBroker;
+    private final SuiteSummaryService summaryService;
+
+    @Value("${queue.enabled:true}")
+    private boolean queueEnabled;
 
     public AsyncComparisonRunner(TestVsProdComparisonService comparisonService,
                                  ComparisonSuiteRepository suiteRepository,
                                  ComparisonResultRepository resultRepository,
-                                 ConfigResolver configResolver) {
+                                 ConfigResolver configResolver,
+                                 SuiteScheduler suiteScheduler,
+                                 ApiDurationStats durationStats,
+                                 SuiteTaskQueue taskQueue,
+                                 SuiteEventBroker eventBroker,
+                                 SuiteSummaryService summaryService) {
         this.comparisonService = comparisonService;
         this.suiteRepository = suiteRepository;
         this.resultRepository = resultRepository;
         this.configResolver = configResolver;
+        this.suiteScheduler = suiteScheduler;
+        this.durationStats = durationStats;
+        this.taskQueue = taskQueue;
+        this.eventBroker = eventBroker;
+        this.summaryService = summaryService;
     }
 
     @Async
     public void runAsync(String suiteId, String client, String startDate, String endDate, String apiGroup, List<String> apis) {
-        log.info("[COMPARE-ASYNC] Starting suiteId={} client={} apiGroup={}", suiteId, client, apiGroup);
+        runAsync(suiteId, client, startDate, endDate, apiGroup, apis, SuiteScheduler.Lane.BULK);
+    }
+
+    /**
+     * One node/task per API. With the durable queue enabled (default) the suite is written to suite_task and
+     * picked up by any instance's SuiteTaskWorker; otherwise it runs on the in-memory SuiteScheduler.
+     * Export APIs keep create-job -> query inside their own node (the query needs the job); cross-API
+     * ordering comes from the optional dependsOn list in the API YAML.
+     */
+    @Async
+    public void runAsync(String suiteId, String client, String startDate, String endDate, String apiGroup,
+                         List<String> apis, SuiteScheduler.Lane lane) {
+        runAsync(suiteId, client, startDate, endDate, apiGroup, apis, lane, 0);
+    }
+
+    /** As above; with {@code maxMismatches > 0} each API's comparison stops at that many mismatches. */
+    @Async
+    public void runAsync(String suiteId, String client, String startDate, String endDate, String apiGroup,
+                         List<String> apis, SuiteScheduler.Lane lane, int maxMismatches) {
+        log.info("[COMPARE-ASYNC] Starting suiteId={} client={} apiGroup={} lane={} queued={}", suiteId, client, apiGroup, lane, queueEnabled);
+        summaryService.start(SuiteTaskQueue.TYPE_COMPARISON, suiteId);
         List<ApiDefinition.ApiSpec> apiSpecs = configResolver.resolveApis(apiGroup, apis)
                 .stream().collect(Collectors.toList());
+        Set<String> inSuite = apiSpecs.stream().map(ApiDefinition.ApiSpec::getApiId).collect(Collectors.toSet());
         int total = apiSpecs.size();
-        int completed = 0;
-        boolean anyFailure = false;
+        AtomicInteger completed = new AtomicInteger();
+        AtomicBoolean anyFailure = new AtomicBoolean();
 
+        List<SuiteScheduler.Node> nodes = new ArrayList<>();
         for (ApiDefinition.ApiSpec spec : apiSpecs) {
             String apiId = spec.getApiId();
-            try {
-                List<TestVsProdComparisonService.ApiComparisonResult> batch = comparisonService.runComparison(
-                        client, startDate, endDate, apiGroup, List.of(apiId));
-                if (batch.isEmpty()) continue;
-
-                TestVsProdComparisonService.ApiComparisonResult r = batch.get(0);
-                saveResult(suiteId, r);
-                completed++;
-                log.info("[COMPARE-ASYNC] Saved {}/{} apiId={}", completed, total, apiId);
-            } catch (Exception e) {
-                log.error("[COMPARE-ASYNC] Failed for apiId={}: {}", apiId, e.getMessage(), e);
-                anyFailure = true;
-                saveErrorResult(suiteId, apiId, e.getMessage());
-            }
+            // Dependencies outside the selected APIs are ignored so single-API runs still work
+            List<String> deps = spec.getDependsOn() == null ? List.of()
+                    : spec.getDependsOn().stream().filter(inSuite::contains).collect(Collectors.toList());
+            nodes.add(new SuiteScheduler.Node(apiId, durationStats.expectedMs(spec), deps, () -> {
+                try {
+                    if (compareAndSave(suiteId, client, startDate, endDate, apiGroup, apiId, maxMismatches)) {
+                        log.info("[COMPARE-ASYNC] Saved {}/{} apiId={}", completed.incrementAndGet(), total, apiId);
+                    }
+                } catch (Exception e) {
+                    log.error("[COMPARE-ASYNC] Failed for apiId={}: {}", apiId, e.getMessage(), e);
+                    anyFailure.set(true);
+                    saveErrorResult(suiteId, apiId, e.getMessage());
+                    throw e;
+                }
+            }, failedDep -> {
+                anyFailure.set(true);
+                saveErrorResult(suiteId, apiId, "Skipped: dependency " + failedDep + " failed");
+            }));
+        }
+
+        if (queueEnabled) {
+            Map<String, Long> ranks = SuiteScheduler.criticalPathRanks(nodes);
+            Map<String, Object> params = new LinkedHashMap<>();
+            params.put("client", client);
+            params.put("startDate", startDate);
+            params.put("endDate", endDate);
+            params.put("apiGroup", apiGroup);
+            if (maxMismatches > 0) params.put("maxMismatches", maxMismatches);
+            List<SuiteTaskQueue.NewTask> tasks = apiSpecs.stream()
+                    .map(spec -> new SuiteTaskQueue.NewTask(spec.getApiId(), ranks.get(spec.getApiId()),
+                            spec.getDependsOn() == null ? List.of()
+                                    : spec.getDependsOn().stream().filter(inSuite::contains).collect(Collectors.toList())))
+                    .collect(Collectors.toList());
+            taskQueue.enqueue(suiteId, SuiteTaskQueue.TYPE_COMPARISON, lane.ordinal(), params, tasks);
+            if (tasks.isEmpty()) onSuiteFinished(suiteId, false);
+            return;
         }
 
-        String finalStatus = anyFailure ? "FAILED" : STATUS_COMPLETED;
+        suiteScheduler.submit(suiteId, lane, nodes).whenComplete((v, err) -> {
+            String finalStatus = anyFailure.get() || err != null ? "FAILED" : STATUS_COMPLETED;
+            suiteRepository.findById(suiteId).ifPresent(s -> {
+                s.setSuiteStatus(finalStatus);
+                suiteRepository.save(s);
+            });
+            summaryService.finish(suiteId, finalStatus);
+            eventBroker.publishSuiteFinished(suiteId, finalStatus);
+            log.info("[COMPARE-ASYNC] Finished suiteId={} completed={}/{} failed={}", suiteId, completed.get(), total, anyFailure.get());
+        });
+    }
+
+    /** Compare one API and persist (or overwrite) its result row. Returns false when nothing was compared. */
+    private boolean compareAndSave(String suiteId, String client, String startDate, String endDate,
+                                   String apiGroup, String apiId, int maxMismatches) {
+        long t0 = System.currentTimeMillis();
+        List<TestVsProdComparisonService.ApiComparisonResult> batch = comparisonService.runComparison(
+                client, startDate, endDate, apiGroup, List.of(apiId), maxMismatches, suiteId);
+        if (batch.isEmpty()) return false;
+
+        TestVsProdComparisonService.ApiComparisonResult r = batch.get(0);
+        long durationMs = System.currentTimeMillis() - t0;
+        if (r.getError() == null) durationStats.record(apiId, durationMs);
+        saveResult(suiteId, r, durationMs);
+        return true;
+    }
+
+    @Override
+    public String suiteType() {
+        return SuiteTaskQueue.TYPE_COMPARISON;
+    }
+
+    @Override
+    public void runTask(SuiteTask task, Map<String, Object> params) {
+        compareAndSave(task.getSuiteId(), (String) params.get("client"), (String) params.get("startDate"),
+                (String) params.get("endDate"), (String) params.get("apiGroup"), task.getApiId(),
+                params.get("maxMismatches") instanceof Number ? ((Number) params.get("maxMismatches")).intValue() : 0);
+        log.info("[COMPARE-ASYNC] Saved apiId={} suiteId={} (task {})", task.getApiId(), task.getSuiteId(), task.getId());
+    }
+
+    @Override
+    public void onTaskFailed(SuiteTask task, Map<String, Object> params, String error) {
+        saveErrorResult(task.getSuiteId(), task.getApiId(), error);
+    }
+
+    @Override
+    public Collection<String> findUnfinishedSuiteIds() {
+        return suiteRepository.findBySuiteStatus(STATUS_IN_PROGRESS).stream()
+                .map(ComparisonSuite::getSuiteId).collect(Collectors.toList());
+    }
+
+    @Override
+    public void onSuiteFinished(String suiteId, boolean anyFailed) {
+        String finalStatus = anyFailed ? "FAILED" : STATUS_COMPLETED;
         suiteRepository.findById(suiteId).ifPresent(s -> {
+            if (finalStatus.equals(s.getSuiteStatus())) return;
             s.setSuiteStatus(finalStatus);
             suiteRepository.save(s);
+            summaryService.finish(suiteId, finalStatus);
+            eventBroker.publishSuiteFinished(suiteId, finalStatus);
+            log.info("[COMPARE-ASYNC] Finished suiteId={} status={}", suiteId, finalStatus);
         });
-        log.info("[COMPARE-ASYNC] Finished suiteId={} completed={}/{} failed={}", suiteId, completed, total, anyFailure);
     }
 
-    private void saveResult(String suiteId, TestVsProdComparisonService.ApiComparisonResult r) {
-        String mismatchesJson = serializeMismatchesTruncated(r.getMismatches());
-        String testResp = truncateForDb(r.getTestJson());
-        String prodResp = truncateForDb(r.getProdJson());
+    private void saveResult(String suiteId, TestVsProdComparisonService.ApiComparisonResult r, long durationMs) {
+        // A re-run task (lease expired, restart) replaces its earlier row instead of adding a second one
+        Long existingId = resultRepository.findBySuiteIdAndApiId(suiteId, r.getApiId())
+                .map(ComparisonResult::getId).orElse(null);
+        // Reused diffs link to the source row; its LOBs already hold the mismatches and identical responses.
+        // Never when the source is the row about to be overwritten: that would drop its LOBs and leave it self-linked.
+        if (r.getReusedFromResultId() != null && r.getReusedFromResultId().equals(existingId)) {
+            log.warn("[COMPARE-ASYNC] {} in suite {} reused its own row id={} - storing the diff in full",
+                    r.getApiId(), suiteId, existingId);
+            r.setReusedFromResultId(null);
+        }
+        boolean reused = r.getReusedFromResultId() != null;
+        String mismatchesJson = reused ? null : serializeMismatchesTruncated(r.getMismatches());
+        String testResp = reused ? null : truncateForDb(r.getTestJson());
+        String prodResp = reused ? null : truncateForDb(r.getProdJson());
         String reqPayload = truncateForDb(r.getRequestPayload());
 
         ComparisonResult cr = ComparisonResult.builder()
@@ -101,9 +246,67 @@ public class AsyncComparisonRunner {
                 .testResponseJson(testResp)
                 .prodResponseJson(prodResp)
                 .requestPayload(reqPayload)
+                .mismatchPatternsJson(reused ? null : serializePatterns(r.getMismatchPatterns()))
                 .error(r.getError())
+                .testResponseHash(r.getTestResponseHash())
+                .prodResponseHash(r.getProdResponseHash())
+                .reusedFromResultId(r.getReusedFromResultId())
+                .durationMs(durationMs)
+                .breakdownJson(ChunkBreakdown.toJson(r.getBreakdown()))
+                .testMerkleJson(r.getTestMerkleTree() != null ? r.getTestMerkleTree().toJson() : null)
+                .prodMerkleJson(r.getProdMerkleTree() != null ? r.getProdMerkleTree().toJson() : null)
+                .stoppedEarly(r.isStoppedEarly() ? Boolean.TRUE : null)
+                .samplingJson(reused ? null : serializeSampling(r.getSampling()))
+                .profileFingerprint(r.getProfileFingerprint())
+                .createdAt(Instant.now())
                 .build();
+        cr.setId(existingId);
         resultRepository.save(cr);
+        resultSaved(suiteId, cr);
+    }
+
+    /** Keeps the suite summary and progress stream in step with comparison_result. */
+    private void resultSaved(String suiteId, ComparisonResult cr) {
+        Map<String, Object> row = resultRow(cr);
+        summaryService.record(suiteId, cr.getApiId(), categorize(row), row);
+        eventBroker.publishApiResult(suiteId, row);
+    }
+
+    /**
+     * Status fields of a GET /api/json-comparison/{suiteId} "results" row (the controller adds report links).
+     * Also the progress event payload and the row kept in the suite summary.
+     */
+    static Map<String, Object> resultRow(ComparisonResult r) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("apiId", r.getApiId());
+        m.put("status", "completed");
+        m.put("jobId", r.getJobId());
+        m.put("match", r.getMatch());
+        m.put("testRowCount", r.getTestRowCount());
+        m.put("prodRowCount", r.getProdRowCount());
+        m.put("diffCount", r.getMismatchCount());
+        boolean rowCountMatching = r.getTestRowCount() != null && r.getTestRowCount().equals(r.getProdRowCount());
+        m.put("rowCountStatus", rowCountMatching ? "matching" : "mismatch");
+        boolean pass = Boolean.TRUE.equals(r.getMatch()) && rowCountMatching
+                && (r.getMismatchCount() == null || r.getMismatchCount() == 0);
+        m.put("testStatus", pass ? "pass" : "fail");
+        List<Map<String, Object>> breakdown = ChunkBreakdown.parse(r.getBreakdownJson());
+        if (breakdown != null) m.put("breakdown", breakdown);
+        return m;
+    }
+
+    /** Report section for a completed row: both sides empty, not compared at all, clean pass, or mismatch. */
+    static String categorize(Map<String, Object> row) {
+        Object testRows = row.get("testRowCount");
+        Object prodRows = row.get("prodRowCount");
+        Object diffCount = row.get("diffCount");
+        if (Integer.valueOf(0).equals(testRows) && Integer.valueOf(0).equals(prodRows)) {
+            return SuiteSummaryService.CATEGORY_EMPTY_BOTH;
+        }
+        if (testRows == null && prodRows == null) return SuiteSummaryService.CATEGORY_FAILED;
+        boolean noDiff = diffCount == null || Integer.valueOf(0).equals(diffCount);
+        if ("matching".equals(row.get("rowCountStatus")) && noDiff) return SuiteSummaryService.CATEGORY_PASSED;
+        return SuiteSummaryService.CATEGORY_MISMATCH;
     }
 
     private String truncateForDb(String s) {
@@ -112,6 +315,26 @@ public class AsyncComparisonRunner {
         return s.substring(0, MAX_LOB_BYTES) + "\n...[truncated, total " + s.length() + " chars]";
     }
 
+    private String serializePatterns(List<MismatchPattern> patterns) {
+        if (patterns == null || patterns.isEmpty()) return null;
+        try {
+            return objectMapper.writeValueAsString(patterns);
+        } catch (JsonProcessingException e) {
+            log.warn("[COMPARE-ASYNC] Could not serialize mismatch patterns: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String serializeSampling(SampleSummary sampling) {
+        if (sampling == null) return null;
+        try {
+            return objectMapper.writeValueAsString(sampling);
+        } catch (JsonProcessingException e) {
+            log.warn("[COMPARE-ASYNC] Could not serialize sampling summary: {}", e.getMessage());
+            return null;
+        }
+    }
+
     /** Serialize mismatches as valid JSON, truncating by item count to fit H2 VARCHAR(10000). */
     private String serializeMismatchesTruncated(List<Map<String, String>> mismatches) {
         if (mismatches == null || mismatches.isEmpty()) return null;
@@ -157,8 +380,11 @@ public class AsyncComparisonRunner {
                     .prodResponseJson(null)
                     .requestPayload(null)
                     .error(errorMsg)
+                    .createdAt(Instant.now())
                     .build();
+            resultRepository.findBySuiteIdAndApiId(suiteId, apiId).ifPresent(existing -> cr.setId(existing.getId()));
             resultRepository.save(cr);
+            resultSaved(suiteId, cr);
         } catch (Exception e) {
             log.error("[COMPARE-ASYNC] Could not save error result for apiId={}: {}", apiId, e.getMessage());
         }
@@ -2,31 +2,41 @@ package com.analytics.comparison;
 
 import com.analytics.comparison.entity.ComparisonResult;
 import com.analytics.comparison.util.JsonComparisonUtils;
+import com.analytics.comparison.util.MerkleTree;
 import com.analytics.comparison.entity.ComparisonSuite;
 import com.analytics.comparison.repository.ComparisonResultRepository;
 import com.analytics.comparison.repository.ComparisonSuiteRepository;
 import com.analytics.orchestrator.ConfigResolver;
+import com.analytics.orchestrator.chunking.ChunkBreakdown;
 import com.analytics.orchestrator.config.ApiDefinition;
+import com.analytics.orchestrator.events.SuiteEventBroker;
+import com.analytics.orchestrator.summary.SuiteSummaryService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * API for test vs prod JSON comparison.
  * - POST /api/json-comparison/run - async, returns suiteId immediately
  * - GET /api/json-comparison/{suiteId} - get results by suiteId
+ * - GET /api/json-comparison/{suiteId}/events - per-API progress as Server-Sent Events
  * - POST /api/json-comparison/compare - two raw JSON strings (sync)
  */
 @RestController
+@Profile("!worker")
 @RequestMapping("/api")
 public class ComparisonController {
 
@@ -38,6 +48,8 @@ public class ComparisonController {
     private final ComparisonSuiteRepository suiteRepository;
     private final ComparisonResultRepository resultRepository;
     private final ConfigResolver configResolver;
+    private final SuiteEventBroker eventBroker;
+    private final SuiteSummaryService summaryService;
 
     @Value("${orchestrator.report.base-url:http://localhost:8080}")
     private String reportBaseUrl;
@@ -49,18 +61,24 @@ public class ComparisonController {
                                 AsyncComparisonRunner asyncRunner,
                                 ComparisonSuiteRepository suiteRepository,
                                 ComparisonResultRepository resultRepository,
-                                ConfigResolver configResolver) {
+                                ConfigResolver configResolver,
+                                SuiteEventBroker eventBroker,
+                                SuiteSummaryService summaryService) {
         this.comparisonService = comparisonService;
         this.asyncRunner = asyncRunner;
         this.suiteRepository = suiteRepository;
         this.resultRepository = resultRepository;
         this.configResolver = configResolver;
+        this.eventBroker = eventBroker;
+        this.summaryService = summaryService;
     }
 
     /**
      * JSON comparison - async: returns suiteId immediately, runs in background.
      * GET /api/json-comparison/{suiteId} to poll results.
      * Body: { "client": "mondelez-fr", "startDate": "2026-02-01", "endDate": "2026-02-09", "apiGroup": "multiLocation2.0", "apis": ["assortmentInsights"] }
+     * Optional "priority": "interactive" | "bulk" picks the scheduler lane.
+     * Optional "maxMismatches": N fails fast - each API stops comparing after N mismatches.
      */
     @PostMapping("/json-comparison/run")
     public ResponseEntity<?> jsonComparisonRun(@RequestBody CompareRequest request) {
@@ -97,7 +115,9 @@ public class ComparisonController {
                     request.getStartDate(),
                     request.getEndDate(),
                     request.getApiGroup(),
-                    request.getApis());
+                    request.getApis(),
+                    resolveLane(request),
+                    mismatchBudget(request.getMaxMismatches()));
 
             String reportUrl = reportBaseUrl.replaceAll("/$", "") + "/json-comparison-report/" + suiteId;
             Map<String, Object> resp = new LinkedHashMap<>();
@@ -118,7 +138,8 @@ public class ComparisonController {
                         request.getStartDate(),
                         request.getEndDate(),
                         request.getApiGroup(),
-                        request.getApis());
+                        request.getApis(),
+                        mismatchBudget(request.getMaxMismatches()));
                 Map<String, Object> response = new LinkedHashMap<>();
                 response.put("suiteId", null);
                 response.put("suiteStatus", "COMPLETED_SYNC_FALLBACK");
@@ -139,6 +160,25 @@ public class ComparisonController {
         }
     }
 
+    /**
+     * Stream suite progress instead of polling GET /api/json-comparison/{suiteId}.
+     * Event "api" per saved result, "suite" once when the suite is COMPLETED/FAILED (stream then closes).
+     * Reconnects send Last-Event-ID and only receive the events they missed.
+     */
+    @GetMapping(value = "/json-comparison/{suiteId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamComparisonEvents(@PathVariable String suiteId,
+                                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        ComparisonSuite suite = suiteRepository.findById(suiteId).orElse(null);
+        if (suite == null) {
+            return ResponseEntity.status(404).contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error", "Suite not found: " + suiteId));
+        }
+        String status = suite.getSuiteStatus();
+        String finishedStatus = "COMPLETED".equals(status) || "FAILED".equals(status) ? status : null;
+        SseEmitter emitter = eventBroker.subscribe(suiteId, lastEventId, finishedStatus);
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+    }
+
     /**
      * Get JSON comparison results by suiteId.
      * GET http://localhost:8080/api/json-comparison/{suiteId}
@@ -153,35 +193,37 @@ public class ComparisonController {
         List<String> apisList = suite.getApis() != null && !suite.getApis().isBlank()
                 ? Arrays.asList(suite.getApis().split(","))
                 : Collections.emptyList();
-        Map<String, ComparisonResult> resultByApi = resultRepository.findBySuiteIdOrderByIdAsc(suiteId).stream()
-                .collect(Collectors.toMap(ComparisonResult::getApiId, r -> r, (a, b) -> b));
+
+        // Summary rows when the suite has one; only failed / empty APIs then load their full row (for curls)
+        Map<String, Map<String, Object>> rowByApi = new HashMap<>();
+        Function<String, ComparisonResult> fullResult;
+        SuiteSummaryService.Summary suiteSummary = summaryService.get(suiteId);
+        if (suiteSummary != null) {
+            suiteSummary.getApis().forEach((aid, entry) -> rowByApi.put(aid, entry.row));
+            fullResult = aid -> resultRepository.findBySuiteIdAndApiId(suiteId, aid).orElse(null);
+        } else {
+            Map<String, ComparisonResult> resultByApi = resultRepository.findBySuiteIdOrderByIdAsc(suiteId).stream()
+                    .collect(Collectors.toMap(ComparisonResult::getApiId, r -> r, (a, b) -> b));
+            resultByApi.forEach((aid, r) -> rowByApi.put(aid, AsyncComparisonRunner.resultRow(r)));
+            fullResult = resultByApi::get;
+        }
 
         String reportBase = reportBaseUrl.replaceAll("/$", "") + "/json-comparison-report/" + suiteId;
         List<Map<String, Object>> apiResults = new ArrayList<>();
         for (String apiId : apisList) {
             String aid = apiId.trim();
-            ComparisonResult r = resultByApi.get(aid);
+            Map<String, Object> row = rowByApi.get(aid);
             Map<String, Object> m = new LinkedHashMap<>();
-            m.put("apiId", aid);
-            if (r == null) {
+            if (row == null) {
+                m.put("apiId", aid);
                 m.put("status", "in_progress");
             } else {
-                m.put("status", "completed");
-                m.put("jobId", r.getJobId());
-                m.put("match", r.getMatch());
-                m.put("testRowCount", r.getTestRowCount());
-                m.put("prodRowCount", r.getProdRowCount());
-                m.put("diffCount", r.getMismatchCount());
-                boolean rowCountMatching = r.getTestRowCount() != null && r.getProdRowCount() != null
-                        && r.getTestRowCount().equals(r.getProdRowCount());
-                m.put("rowCountStatus", rowCountMatching ? "matching" : "mismatch");
-                boolean pass = r.getMatch() != null && r.getMatch() && rowCountMatching
-                        && (r.getMismatchCount() == null || r.getMismatchCount() == 0);
-                m.put("testStatus", pass ? "pass" : "fail");
+                m.putAll(row);
                 String mismatchReportURL = reportBase + "/api/" + URLEncoder.encode(aid, StandardCharsets.UTF_8).replace("+", "%20");
                 m.put("mismatchReportURL", mismatchReportURL);
-                String queryGenieUrl = r.getJobId() != null && !r.getJobId().isBlank()
-                        ? queryGenieBaseUrl.replaceAll("/$", "") + "/alert-validation-detail/" + r.getJobId()
+                String jobId = (String) row.get("jobId");
+                String queryGenieUrl = jobId != null && !jobId.isBlank()
+                        ? queryGenieBaseUrl.replaceAll("/$", "") + "/alert-validation-detail/" + jobId
                         : null;
                 m.put("queryGenieUrl", queryGenieUrl);
             }
@@ -205,15 +247,11 @@ public class ComparisonController {
             Integer prodRows = (Integer) api.get("prodRowCount");
             Integer diffCount = (Integer) api.get("diffCount");
             String rowStatus = (String) api.get("rowCountStatus");
+            String category = AsyncComparisonRunner.categorize(api);
 
-            boolean bothZero = Integer.valueOf(0).equals(testRows) && Integer.valueOf(0).equals(prodRows);
-            boolean failed = (testRows == null && prodRows == null);
-            boolean rowMatch = "matching".equals(rowStatus);
-            boolean noDiff = (diffCount == null || diffCount == 0);
-
-            if (bothZero) {
+            if (SuiteSummaryService.CATEGORY_EMPTY_BOTH.equals(category)) {
                 // Both DBX and BQ returned empty (HTTP 200 with no data)
-                ComparisonResult r = resultByApi.get(aid);
+                ComparisonResult r = fullResult.apply(aid);
                 Map<String, Object> entry = new LinkedHashMap<>();
                 entry.put("apiId", aid);
                 entry.put("message", "Both DBX and BQ returned empty response (0 rows) — no data for this date/filters");
@@ -227,9 +265,9 @@ public class ComparisonController {
                     if (qgUrl != null) entry.put("queryGenieUrl", qgUrl);
                 }
                 emptyBothApis.add(entry);
-            } else if (failed) {
+            } else if (SuiteSummaryService.CATEGORY_FAILED.equals(category)) {
                 // API could not be compared - HTTP error or exception
-                ComparisonResult r = resultByApi.get(aid);
+                ComparisonResult r = fullResult.apply(aid);
                 Map<String, Object> entry = new LinkedHashMap<>();
                 entry.put("apiId", aid);
                 String reason = (r != null && r.getError() != null) ? r.getError()
@@ -254,7 +292,7 @@ public class ComparisonController {
                     if (qgUrl != null) entry.put("queryGenieUrl", qgUrl);
                 }
                 failedApis.add(entry);
-            } else if (rowMatch && noDiff) {
+            } else if (SuiteSummaryService.CATEGORY_PASSED.equals(category)) {
                 // Row counts match and zero diffs → passed
                 passedApis.add(aid);
             } else {
@@ -307,6 +345,10 @@ public class ComparisonController {
             return ResponseEntity.status(404).body(Map.of("error", "API result not found: " + apiId));
         }
         ComparisonResult r = opt.get();
+        // Reused diffs keep mismatches/responses on the linked source row
+        ComparisonResult lobSource = r.getReusedFromResultId() != null
+                ? resultRepository.findById(r.getReusedFromResultId()).orElse(r)
+                : r;
         String client = suiteRepository.findById(suiteId).map(ComparisonSuite::getClient).orElse("client");
         Map<String, String> headers = configResolver.getConfigHeaders(client, null, null);
 
@@ -318,7 +360,20 @@ public class ComparisonController {
         m.put("testRowCount", r.getTestRowCount());
         m.put("prodRowCount", r.getProdRowCount());
         m.put("mismatchCount", r.getMismatchCount());
-        if (r.getTestRowCount() == null && r.getProdRowCount() == null && isEmptyResponse(r.getTestResponseJson()) && isEmptyResponse(r.getProdResponseJson())) {
+        if (Boolean.TRUE.equals(r.getStoppedEarly())) {
+            m.put("stoppedEarly", true);
+        }
+        if (r.getReusedFromResultId() != null) {
+            m.put("reusedFromResultId", r.getReusedFromResultId());
+        }
+        List<Map<String, Object>> breakdown = ChunkBreakdown.parse(r.getBreakdownJson());
+        if (breakdown != null) {
+            m.put("breakdown", breakdown);
+        }
+        if (lobSource.getArchivedAt() != null) {
+            // Bodies were moved to the retention archive; counts and status above are still accurate
+            m.put("archivedAt", lobSource.getArchivedAt().toString());
+        } else if (r.getTestRowCount() == null && r.getProdRowCount() == null && isEmptyResponse(lobSource.getTestResponseJson()) && isEmptyResponse(lobSource.getProdResponseJson())) {
             m.put("emptyMessage", "Test prod api have empty response");
         }
         m.put("testDBXcurl", buildCurlWithBqDbxConfig(r.getTestUrl(), r.getJobId(), r.getRequestPayload(), headers, "DBX_ONLY"));
@@ -327,23 +382,103 @@ public class ComparisonController {
                 ? queryGenieBaseUrl.replaceAll("/$", "") + "/alert-validation-detail/" + r.getJobId()
                 : null;
         m.put("queryGenieUrl", queryGenieUrl);
-        m.put("testResponse", formatResponseForDisplay(r.getTestResponseJson()));
-        m.put("prodResponse", formatResponseForDisplay(r.getProdResponseJson()));
-        m.put("dbxResponse", formatResponseForDisplay(r.getTestResponseJson()));
-        m.put("bqResponse", formatResponseForDisplay(r.getProdResponseJson()));
-        if (r.getMismatchesJson() != null && !r.getMismatchesJson().isEmpty()) {
+        m.put("testResponse", formatResponseForDisplay(lobSource.getTestResponseJson()));
+        m.put("prodResponse", formatResponseForDisplay(lobSource.getProdResponseJson()));
+        m.put("dbxResponse", formatResponseForDisplay(lobSource.getTestResponseJson()));
+        m.put("bqResponse", formatResponseForDisplay(lobSource.getProdResponseJson()));
+        if (lobSource.getMismatchesJson() != null && !lobSource.getMismatchesJson().isEmpty()) {
             try {
-                m.put("mismatches", objectMapper.readValue(r.getMismatchesJson(), new TypeReference<List<Map<String, String>>>() {}));
+                m.put("mismatches", objectMapper.readValue(lobSource.getMismatchesJson(), new TypeReference<List<Map<String, String>>>() {}));
             } catch (Exception e) {
-                List<Map<String, String>> recovered = tryRecoverMismatchesFromTruncated(r.getMismatchesJson());
+                List<Map<String, String>> recovered = tryRecoverMismatchesFromTruncated(lobSource.getMismatchesJson());
                 m.put("mismatches", recovered != null ? recovered : Collections.emptyList());
             }
         } else {
             m.put("mismatches", Collections.emptyList());
         }
+        if (lobSource.getMismatchPatternsJson() != null && !lobSource.getMismatchPatternsJson().isEmpty()) {
+            try {
+                m.put("mismatchPatterns", objectMapper.readValue(lobSource.getMismatchPatternsJson(),
+                        new TypeReference<List<Map<String, Object>>>() {}));
+            } catch (Exception e) {
+                log.warn("Could not parse mismatch patterns of {}: {}", apiId, e.getMessage());
+            }
+        }
+        if (lobSource.getSamplingJson() != null && !lobSource.getSamplingJson().isEmpty()) {
+            try {
+                m.put("sampling", objectMapper.readValue(lobSource.getSamplingJson(), new TypeReference<Map<String, Object>>() {}));
+            } catch (Exception e) {
+                log.warn("Could not parse sampling summary of {}: {}", apiId, e.getMessage());
+            }
+        }
         return ResponseEntity.ok(m);
     }
 
+    /**
+     * Compare the stored row hash trees of an API without fetching the responses again: test vs prod of this
+     * suite and, with {@code against}, each side of this suite vs the same side of another suite.
+     * GET /api/json-comparison/{suiteId}/api/{apiId}/merkle-diff?against={otherSuiteId}
+     */
+    @GetMapping("/json-comparison/{suiteId}/api/{apiId}/merkle-diff")
+    public ResponseEntity<?> getMerkleDiff(@PathVariable String suiteId, @PathVariable String apiId,
+                                           @RequestParam(required = false) String against) {
+        ComparisonResult r = treeSource(suiteId, apiId);
+        if (r == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "API result not found: " + apiId));
+        }
+        MerkleTree test = MerkleTree.parse(r.getTestMerkleJson());
+        MerkleTree prod = MerkleTree.parse(r.getProdMerkleJson());
+        if (test == null || prod == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "No hash trees stored for " + apiId
+                    + " (only out-of-core comparisons of keyed row arrays keep them)"));
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("apiId", apiId);
+        m.put("suiteId", suiteId);
+        m.put("testVsProd", treeDiff(test, prod));
+        if (against != null && !against.isBlank()) {
+            ComparisonResult other = treeSource(against, apiId);
+            if (other == null) {
+                return ResponseEntity.status(404).body(Map.of("error", "API result not found in suite " + against + ": " + apiId));
+            }
+            MerkleTree otherTest = MerkleTree.parse(other.getTestMerkleJson());
+            MerkleTree otherProd = MerkleTree.parse(other.getProdMerkleJson());
+            m.put("against", against);
+            m.put("test", otherTest != null ? treeDiff(otherTest, test) : null);
+            m.put("prod", otherProd != null ? treeDiff(otherProd, prod) : null);
+        }
+        return ResponseEntity.ok(m);
+    }
+
+    /** The row holding the LOB columns of a suite's API result (the linked source row for reused diffs). */
+    private ComparisonResult treeSource(String suiteId, String apiId) {
+        ComparisonResult r = resultRepository.findBySuiteIdAndApiId(suiteId, apiId).orElse(null);
+        if (r == null || r.getReusedFromResultId() == null) return r;
+        return resultRepository.findById(r.getReusedFromResultId()).orElse(r);
+    }
+
+    private static Map<String, Object> treeDiff(MerkleTree first, MerkleTree second) {
+        List<Integer> differing = MerkleTree.diff(first, second);
+        int buckets = Math.min(first.getBucketCount(), second.getBucketCount());
+        MerkleTree a = first.fold(buckets);
+        MerkleTree b = second.fold(buckets);
+        long firstRows = 0;
+        long secondRows = 0;
+        for (int i : differing) {
+            firstRows += a.getBucketRowCount(i);
+            secondRows += b.getBucketRowCount(i);
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("identical", differing.isEmpty());
+        m.put("buckets", buckets);
+        m.put("firstRows", first.getRowCount());
+        m.put("secondRows", second.getRowCount());
+        m.put("differingBuckets", differing);
+        m.put("firstRowsInDifferingBuckets", firstRows);
+        m.put("secondRowsInDifferingBuckets", secondRows);
+        return m;
+    }
+
     private String formatResponseForDisplay(String raw) {
         if (raw == null || raw.isBlank()) return raw;
         try {
@@ -467,14 +602,15 @@ public class ComparisonController {
     /**
      * Compare two raw JSON strings (for testing).
      * POST /api/compare-json
-     * Body: { "testJson": "{...}", "prodJson": "{...}" }
+     * Body: { "testJson": "{...}", "prodJson": "{...}" }, optionally "maxMismatches": N to stop after N mismatches.
      */
     @PostMapping("/compare-json")
     public ResponseEntity<?> compareJson(@RequestBody CompareJsonRequest request) {
         log.info("POST /compare-json | comparing two JSON payloads");
         try {
             TestVsProdComparisonService.ApiComparisonResult result = comparisonService.compareTwoJsonResponses(
-                    request.getTestJson(), request.getProdJson());
+                    request.getTestJson(), request.getProdJson(), 0.01, "comparison", null,
+                    mismatchBudget(request.getMaxMismatches()));
             return ResponseEntity.ok(toResultMap(result));
         } catch (Exception e) {
             log.error("compare-json failed: {}", e.getMessage(), e);
@@ -492,9 +628,15 @@ public class ComparisonController {
         m.put("prodRowCount", r.getProdRowCount());
         m.put("mismatchCount", r.getMismatchCount());
         m.put("mismatches", r.getMismatches());
+        m.put("stoppedEarly", r.isStoppedEarly());
+        if (r.getSampling() != null) m.put("sampling", r.getSampling());
         return m;
     }
 
+    private static int mismatchBudget(Integer maxMismatches) {
+        return maxMismatches != null && maxMismatches > 0 ? maxMismatches : 0;
+    }
+
     private Map<String, Object> buildSummary(List<TestVsProdComparisonService.ApiComparisonResult> results) {
         long matchCount = results.stream().filter(TestVsProdComparisonService.ApiComparisonResult::isMatch).count();
         long mismatchCount = results.stream().filter(r -> !r.isMatch()).count();
@@ -506,6 +648,16 @@ public class ComparisonController {
                 "totalFieldMismatches", totalMismatches);
     }
 
+    /** Explicit priority wins; otherwise a single-API run is treated as interactive and anything larger as bulk. */
+    private static SuiteScheduler.Lane resolveLane(CompareRequest request) {
+        if (request.getPriority() != null && !request.getPriority().isBlank()) {
+            return "interactive".equalsIgnoreCase(request.getPriority().trim())
+                    ? SuiteScheduler.Lane.INTERACTIVE : SuiteScheduler.Lane.BULK;
+        }
+        return request.getApis() != null && request.getApis().size() == 1
+                ? SuiteScheduler.Lane.INTERACTIVE : SuiteScheduler.Lane.BULK;
+    }
+
     @lombok.Data
     public static class CompareRequest {
         private String client;
@@ -513,11 +665,17 @@ public class ComparisonController {
         private String endDate;
         private String apiGroup;
         private List<String> apis;
+        /** Scheduler lane: "interactive" or "bulk" (optional) */
+        private String priority;
+        /** Fail fast: stop each API's comparison after this many mismatches (optional, unlimited by default) */
+        private Integer maxMismatches;
     }
 
     @lombok.Data
     public static class CompareJsonRequest {
         private String testJson;
         private String prodJson;
+        /** Fail fast: stop the comparison after this many mismatches (optional, unlimited by default) */
+        private Integer maxMismatches;
     }
 }
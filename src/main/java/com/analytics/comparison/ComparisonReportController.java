@@ -1,5 +1,6 @@
 package com.analytics.comparison;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -14,6 +15,7 @@ import java.nio.charset.StandardCharsets;
  * Serves the JSON comparison report UI at /json-comparison-report/{suiteId}.
  */
 @Controller
+@Profile("!worker")
 public class ComparisonReportController {
 
     @GetMapping(value = "/json-comparison-report/{suiteId}", produces = MediaType.TEXT_HTML_VALUE)
@@ -0,0 +1,78 @@
+package com.analytics.comparison;
+
+import com.analytics.orchestrator.PayloadGenerator;
+import com.analytics.orchestrator.TestExecutor;
+import com.analytics.orchestrator.catalog.ApiCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pays the first-suite costs at startup: parses every payload template named in the {@link ApiCatalog}, runs a
+ * small JSON diff through the comparator and loads the HTTP/TLS stack. A broken template fails startup here
+ * rather than mid-suite.
+ * <p>
+ * With orchestrator.warmup.exit-after=true the application exits once warmed up; scripts/cds-archive.sh uses
+ * that for the class-list training run.
+ */
+@Component
+public class StartupWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private static final String SAMPLE_TEST = "[{\"product_id\":\"p1\",\"retailer\":\"r1\",\"sales\":10.5,\"units\":3},"
+            + "{\"product_id\":\"p2\",\"retailer\":\"r1\",\"sales\":7.25,\"units\":1}]";
+    private static final String SAMPLE_PROD = "[{\"product_id\":\"p2\",\"retailer\":\"r1\",\"sales\":7.25,\"units\":2},"
+            + "{\"product_id\":\"p1\",\"retailer\":\"r1\",\"sales\":10.5,\"units\":3}]";
+
+    private final ApiCatalog apiCatalog;
+    private final PayloadGenerator payloadGenerator;
+    private final TestVsProdComparisonService comparisonService;
+    private final TestExecutor testExecutor;
+
+    /** Off in the fast-start profile, where beans are created on first use instead. */
+    @Value("${orchestrator.warmup.enabled:true}")
+    private boolean enabled = true;
+
+    /** Optional URL to GET once at startup (e.g. the staging base URL) to resolve DNS and set up TLS early. */
+    @Value("${orchestrator.warmup.http-probe-url:}")
+    private String httpProbeUrl = "";
+
+    @Value("${orchestrator.warmup.exit-after:false}")
+    private boolean exitAfter = false;
+
+    public StartupWarmup(ApiCatalog apiCatalog, PayloadGenerator payloadGenerator,
+                         TestVsProdComparisonService comparisonService, TestExecutor testExecutor) {
+        this.apiCatalog = apiCatalog;
+        this.payloadGenerator = payloadGenerator;
+        this.comparisonService = comparisonService;
+        this.testExecutor = testExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady(ApplicationReadyEvent event) {
+        if (enabled) warmUp();
+        if (exitAfter) {
+            log.info("[WARMUP] orchestrator.warmup.exit-after=true - exiting");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    void warmUp() {
+        long start = System.currentTimeMillis();
+        int templates = payloadGenerator.preload(apiCatalog.templateNames());
+        long templatesMs = System.currentTimeMillis() - start;
+
+        TestVsProdComparisonService.ApiComparisonResult sample = comparisonService.compareTwoJsonResponses(SAMPLE_TEST, SAMPLE_PROD);
+        long comparatorMs = System.currentTimeMillis() - start - templatesMs;
+
+        testExecutor.warmUp(httpProbeUrl);
+        log.info("[WARMUP] {} APIs in {} groups | {} templates parsed in {}ms | comparator {}ms ({} mismatches) | total {}ms",
+                apiCatalog.size(), apiCatalog.groupNames().size(), templates, templatesMs, comparatorMs,
+                sample.getMismatchCount(), System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,252 @@
+package com.analytics.comparison;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Shared scheduler for comparison suites. Each suite is a DAG of nodes (one per API); a node becomes runnable
+ * once all of its dependencies finished successfully. Runnable nodes are picked by lane first (interactive
+ * runs jump ahead of bulk suites), then by critical path - the node's expected duration plus the longest chain
+ * of dependents behind it - so slow exports start first instead of stretching the tail of the suite.
+ * A node whose dependency failed is skipped and reported through {@link Node#onSkipped}.
+ */
+@Component
+public class SuiteScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(SuiteScheduler.class);
+
+    public enum Lane { INTERACTIVE, BULK }
+
+    @Value("${comparison.scheduler.parallelism:4}")
+    private int parallelism;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private ThreadPoolExecutor executor;
+
+    public SuiteScheduler() {
+    }
+
+    SuiteScheduler(int parallelism) {
+        this.parallelism = parallelism;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        int threads = Math.max(1, parallelism);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "suite-scheduler-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        log.info("[SCHEDULER] Started with parallelism={}", threads);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedule a suite. The returned future completes once every node has run or been skipped; it never
+     * completes exceptionally because of a node failure.
+     *
+     * @throws IllegalArgumentException on duplicate ids, unknown dependencies or cycles
+     */
+    public CompletableFuture<Void> submit(String suiteId, Lane lane, List<Node> nodes) {
+        Map<String, Node> byId = index(nodes);
+        Map<String, List<Node>> dependents = dependents(byId);
+        Map<String, Long> rank = criticalPath(byId, dependents);
+
+        SuiteRun run = new SuiteRun(suiteId, lane, byId, dependents, rank);
+        log.info("[SCHEDULER] suiteId={} lane={} nodes={} criticalPathMs={}", suiteId, lane, nodes.size(),
+                rank.values().stream().mapToLong(Long::longValue).max().orElse(0));
+        if (nodes.isEmpty()) {
+            run.done.complete(null);
+            return run.done;
+        }
+        for (Node n : nodes) {
+            if (n.dependsOn.isEmpty()) run.enqueue(n);
+        }
+        return run.done;
+    }
+
+    /**
+     * Critical-path rank per node id, for callers that order work themselves (e.g. the durable task queue).
+     *
+     * @throws IllegalArgumentException on duplicate ids, unknown dependencies or cycles
+     */
+    public static Map<String, Long> criticalPathRanks(List<Node> nodes) {
+        Map<String, Node> byId = index(nodes);
+        return criticalPath(byId, dependents(byId));
+    }
+
+    private static Map<String, Node> index(List<Node> nodes) {
+        Map<String, Node> byId = new LinkedHashMap<>();
+        for (Node n : nodes) {
+            if (byId.put(n.id, n) != null) throw new IllegalArgumentException("Duplicate node id: " + n.id);
+        }
+        return byId;
+    }
+
+    private static Map<String, List<Node>> dependents(Map<String, Node> byId) {
+        Map<String, List<Node>> dependents = new HashMap<>();
+        for (Node n : byId.values()) {
+            for (String dep : n.dependsOn) {
+                if (!byId.containsKey(dep)) throw new IllegalArgumentException(n.id + " depends on unknown node " + dep);
+                dependents.computeIfAbsent(dep, k -> new ArrayList<>()).add(n);
+            }
+        }
+        return dependents;
+    }
+
+    /** Longest expected path from each node to the end of the DAG, including the node itself. */
+    private static Map<String, Long> criticalPath(Map<String, Node> byId, Map<String, List<Node>> dependents) {
+        Map<String, Integer> indegree = new HashMap<>();
+        for (Node n : byId.values()) indegree.put(n.id, n.dependsOn.size());
+        Deque<Node> ready = new ArrayDeque<>();
+        for (Node n : byId.values()) if (n.dependsOn.isEmpty()) ready.add(n);
+        List<Node> topo = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            Node n = ready.poll();
+            topo.add(n);
+            for (Node d : dependents.getOrDefault(n.id, List.of())) {
+                if (indegree.merge(d.id, -1, Integer::sum) == 0) ready.add(d);
+            }
+        }
+        if (topo.size() != byId.size()) throw new IllegalArgumentException("Dependency cycle in suite");
+
+        Map<String, Long> rank = new HashMap<>();
+        for (int i = topo.size() - 1; i >= 0; i--) {
+            Node n = topo.get(i);
+            long tail = 0;
+            for (Node d : dependents.getOrDefault(n.id, List.of())) tail = Math.max(tail, rank.get(d.id));
+            rank.put(n.id, Math.max(0, n.expectedMs) + tail);
+        }
+        return rank;
+    }
+
+    private final class SuiteRun {
+        private final String suiteId;
+        private final Lane lane;
+        private final Map<String, List<Node>> dependents;
+        private final Map<String, Long> rank;
+        private final Map<String, AtomicInteger> pendingDeps = new ConcurrentHashMap<>();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        SuiteRun(String suiteId, Lane lane, Map<String, Node> byId, Map<String, List<Node>> dependents,
+                 Map<String, Long> rank) {
+            this.suiteId = suiteId;
+            this.lane = lane;
+            this.dependents = dependents;
+            this.rank = rank;
+            this.remaining = new AtomicInteger(byId.size());
+            for (Node n : byId.values()) pendingDeps.put(n.id, new AtomicInteger(n.dependsOn.size()));
+        }
+
+        void enqueue(Node n) {
+            executor.execute(new QueuedNode(this, n, lane.ordinal(), rank.get(n.id), sequence.incrementAndGet()));
+        }
+
+        void run(Node n) {
+            boolean ok;
+            try {
+                n.work.run();
+                ok = true;
+            } catch (Exception e) {
+                log.warn("[SCHEDULER] suiteId={} node={} failed: {}", suiteId, n.id, e.getMessage());
+                ok = false;
+            }
+            if (ok) {
+                for (Node d : dependents.getOrDefault(n.id, List.of())) {
+                    if (pendingDeps.get(d.id).decrementAndGet() == 0) enqueue(d);
+                }
+            } else {
+                skipDependents(n);
+            }
+            finish();
+        }
+
+        private void skipDependents(Node failed) {
+            for (Node d : dependents.getOrDefault(failed.id, List.of())) {
+                // -1 marks skipped so a node reachable through several failed paths is only skipped once
+                if (pendingDeps.get(d.id).getAndSet(-1) < 0) continue;
+                log.info("[SCHEDULER] suiteId={} skipping {} (dependency {} failed)", suiteId, d.id, failed.id);
+                try {
+                    d.onSkipped.accept(failed.id);
+                } catch (Exception e) {
+                    log.warn("[SCHEDULER] onSkipped failed for {}: {}", d.id, e.getMessage());
+                }
+                skipDependents(d);
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (remaining.decrementAndGet() == 0) done.complete(null);
+        }
+    }
+
+    private static final class QueuedNode implements Runnable, Comparable<QueuedNode> {
+        private final SuiteRun run;
+        private final Node node;
+        private final int lane;
+        private final long rank;
+        private final long seq;
+
+        QueuedNode(SuiteRun run, Node node, int lane, long rank, long seq) {
+            this.run = run;
+            this.node = node;
+            this.lane = lane;
+            this.rank = rank;
+            this.seq = seq;
+        }
+
+        @Override
+        public void run() {
+            run.run(node);
+        }
+
+        @Override
+        public int compareTo(QueuedNode o) {
+            if (lane != o.lane) return Integer.compare(lane, o.lane);
+            if (rank != o.rank) return Long.compare(o.rank, rank);
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    /** One schedulable unit of a suite. */
+    public static final class Node {
+        private final String id;
+        private final long expectedMs;
+        private final Set<String> dependsOn;
+        private final Runnable work;
+        private final Consumer<String> onSkipped;
+
+        public Node(String id, long expectedMs, Collection<String> dependsOn, Runnable work,
+                    Consumer<String> onSkipped) {
+            this.id = Objects.requireNonNull(id);
+            this.expectedMs = expectedMs;
+            this.dependsOn = dependsOn != null ? new LinkedHashSet<>(dependsOn) : Set.of();
+            this.work = Objects.requireNonNull(work);
+            this.onSkipped = onSkipped != null ? onSkipped : failedDep -> { };
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.analytics.comparison;
+
+import com.analytics.comparison.util.JsonComparisonUtils;
+import com.analytics.comparison.util.MismatchPattern;
+import com.analytics.comparison.util.PatternDiffSink;
+import com.analytics.comparison.util.SampleSummary;
+import com.analytics.orchestrator.TaxonomyFieldMappingRegistry;
+import com.analytics.orchestrator.config.ApiDefinition;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits one API comparison into taxonomy shards when its response would not fit the comparison size target.
+ * The shard dimension is the largest taxonomy list the API's template injects (e.g. sub_brands); it is cut into
+ * consecutive chunks sized from the response chars per taxonomy value seen on earlier runs of the same API
+ * (an exponentially weighted moving average, like {@link ApiDurationStats}). Each shard is a complete DBX vs BQ
+ * comparison of its own, so {@link #merge} is valid whether the API returns rows or aggregates.
+ */
+@Component
+public class TaxonomySharder {
+
+    private static final Logger log = LoggerFactory.getLogger(TaxonomySharder.class);
+    private static final double ALPHA = 0.3;
+
+    private final TaxonomyFieldMappingRegistry fieldMappingRegistry;
+    private final Map<String, Double> charsPerValue = new ConcurrentHashMap<>();
+    private volatile ExecutorService shardPool;
+    private volatile ExecutorService legPool;
+
+    @Value("${comparison.sharding.enabled:true}")
+    private boolean enabled = true;
+
+    /** Response chars per leg a shard should stay under; keeps shards on the in-memory comparison path. */
+    @Value("${comparison.sharding.target-response-chars:250000}")
+    private long targetResponseChars = 250_000;
+
+    @Value("${comparison.sharding.max-shards:50}")
+    private int maxShards = 50;
+
+    /** Values per shard when an API failed unsharded (5xx / oversized) before any size was learned. */
+    @Value("${comparison.sharding.default-values-per-shard:25}")
+    private int defaultValuesPerShard = 25;
+
+    /** Shards in flight across all suites; each shard runs its DBX and BQ calls concurrently. */
+    @Value("${comparison.sharding.parallelism:4}")
+    private int parallelism = 4;
+
+    public TaxonomySharder(TaxonomyFieldMappingRegistry fieldMappingRegistry) {
+        this.fieldMappingRegistry = fieldMappingRegistry;
+    }
+
+    TaxonomySharder(TaxonomyFieldMappingRegistry fieldMappingRegistry, long targetResponseChars, int maxShards,
+                    int defaultValuesPerShard) {
+        this(fieldMappingRegistry);
+        this.targetResponseChars = targetResponseChars;
+        this.maxShards = maxShards;
+        this.defaultValuesPerShard = defaultValuesPerShard;
+    }
+
+    /**
+     * Shards for a run with the full taxonomy, or null when the learned size says one request fits
+     * (or nothing is known about the API yet).
+     */
+    public ShardPlan plan(ApiDefinition.ApiSpec spec, Map<String, List<String>> taxonomy) {
+        String dimension = shardDimension(spec, taxonomy);
+        if (dimension == null) return null;
+        Double perValue = charsPerValue.get(spec.getApiId());
+        if (perValue == null) return null;
+        List<String> values = taxonomy.get(dimension);
+        if (perValue * values.size() <= targetResponseChars) return null;
+        return split(spec.getApiId(), dimension, values, (int) Math.max(1, targetResponseChars / Math.max(1.0, perValue)));
+    }
+
+    /** Shards after the unsharded call failed or was too large; uses learned sizes when there are any. */
+    public ShardPlan planAfterFailure(ApiDefinition.ApiSpec spec, Map<String, List<String>> taxonomy) {
+        ShardPlan plan = plan(spec, taxonomy);
+        if (plan != null) return plan;
+        String dimension = shardDimension(spec, taxonomy);
+        if (dimension == null) return null;
+        return split(spec.getApiId(), dimension, taxonomy.get(dimension), Math.max(1, defaultValuesPerShard));
+    }
+
+    /** Learn from a completed call: responseChars is the larger leg, dimensionValues the shard dimension size. */
+    public void record(String apiId, int dimensionValues, long responseChars) {
+        if (apiId == null || dimensionValues <= 0 || responseChars < 0) return;
+        double perValue = (double) responseChars / dimensionValues;
+        charsPerValue.merge(apiId, perValue, (old, now) -> old + ALPHA * (now - old));
+    }
+
+    /** Size of the list the API would be sharded on (0 when it cannot be sharded). */
+    public int dimensionSize(ApiDefinition.ApiSpec spec, Map<String, List<String>> taxonomy) {
+        String dimension = shardDimension(spec, taxonomy);
+        return dimension != null ? taxonomy.get(dimension).size() : 0;
+    }
+
+    /** The largest taxonomy list with more than one value that the API's template injects; null if none. */
+    String shardDimension(ApiDefinition.ApiSpec spec, Map<String, List<String>> taxonomy) {
+        if (!enabled || taxonomy == null || spec.getTemplate() == null) return null;
+        String best = null;
+        int bestSize = 1;
+        for (String taxKey : fieldMappingRegistry.getFieldMappings(spec.getTemplate()).values()) {
+            List<String> values = taxKey.isEmpty() ? null : taxonomy.get(taxKey);
+            if (values != null && values.size() > bestSize) {
+                best = taxKey;
+                bestSize = values.size();
+            }
+        }
+        return best;
+    }
+
+    private ShardPlan split(String apiId, String dimension, List<String> values, int valuesPerShard) {
+        int shardSize = Math.max(valuesPerShard, (values.size() + maxShards - 1) / maxShards);
+        if (shardSize >= values.size()) return null;
+        List<List<String>> shards = new ArrayList<>();
+        for (int start = 0; start < values.size(); start += shardSize) {
+            shards.add(new ArrayList<>(values.subList(start, Math.min(start + shardSize, values.size()))));
+        }
+        log.info("[SHARD] {}: {} {} value(s) in {} shard(s) of up to {}", apiId, values.size(), dimension, shards.size(), shardSize);
+        return new ShardPlan(dimension, shards);
+    }
+
+    /**
+     * One result for the API from its part results (taxonomy shards or date chunks, in order, named by labels):
+     * match only if every part matched, row and mismatch counts summed, mismatch paths prefixed with their part,
+     * mismatch patterns combined, responses kept as a JSON array per side and one breakdown entry per part. The curl fields (job id, URLs,
+     * payload) are those of the first part.
+     */
+    static TestVsProdComparisonService.ApiComparisonResult merge(String apiId, List<String> labels,
+                                                                 List<TestVsProdComparisonService.ApiComparisonResult> shards,
+                                                                 int maxReportedMismatches) {
+        TestVsProdComparisonService.ApiComparisonResult first = shards.get(0);
+        boolean match = true;
+        Integer testRows = 0;
+        Integer prodRows = 0;
+        int mismatchCount = 0;
+        boolean stoppedEarly = false;
+        List<Map<String, String>> mismatches = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        List<Map<String, Object>> breakdown = new ArrayList<>(shards.size());
+        List<List<MismatchPattern>> patterns = new ArrayList<>(shards.size());
+        List<SampleSummary> samples = new ArrayList<>(shards.size());
+        StringBuilder testJson = new StringBuilder("[");
+        StringBuilder prodJson = new StringBuilder("[");
+        for (int i = 0; i < shards.size(); i++) {
+            TestVsProdComparisonService.ApiComparisonResult r = shards.get(i);
+            String label = labels.get(i);
+            match &= r.isMatch() && r.getError() == null;
+            testRows = testRows == null || r.getTestRowCount() == null ? null : testRows + r.getTestRowCount();
+            prodRows = prodRows == null || r.getProdRowCount() == null ? null : prodRows + r.getProdRowCount();
+            if (r.getMismatchCount() != null) mismatchCount += r.getMismatchCount();
+            stoppedEarly |= r.isStoppedEarly();
+            if (r.getError() != null) errors.add(label + ": " + r.getError());
+            if (r.getMismatches() != null) {
+                for (Map<String, String> m : r.getMismatches()) {
+                    if (mismatches.size() >= maxReportedMismatches) break;
+                    Map<String, String> copy = new LinkedHashMap<>(m);
+                    copy.put("path", "[" + label + "] " + m.getOrDefault("path", ""));
+                    mismatches.add(copy);
+                }
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("part", label);
+            entry.put("match", r.isMatch() && r.getError() == null);
+            entry.put("testRowCount", r.getTestRowCount());
+            entry.put("prodRowCount", r.getProdRowCount());
+            entry.put("mismatchCount", r.getMismatchCount());
+            entry.put("jobId", r.getJobId());
+            entry.put("error", r.getError());
+            breakdown.add(entry);
+            patterns.add(r.getMismatchPatterns());
+            samples.add(r.getSampling());
+            appendElement(testJson, i, r.getTestJson());
+            appendElement(prodJson, i, r.getProdJson());
+        }
+        String mergedTest = testJson.append(']').toString();
+        String mergedProd = prodJson.append(']').toString();
+        return TestVsProdComparisonService.ApiComparisonResult.builder()
+                .apiId(apiId)
+                .jobId(first.getJobId())
+                .testUrl(first.getTestUrl())
+                .prodUrl(first.getProdUrl())
+                .requestPayload(first.getRequestPayload())
+                .match(match)
+                .testRowCount(testRows)
+                .prodRowCount(prodRows)
+                .mismatchCount(mismatchCount)
+                .mismatches(mismatches)
+                .mismatchPatterns(PatternDiffSink.merge(patterns))
+                .stoppedEarly(stoppedEarly)
+                .sampling(SampleSummary.merge(samples))
+                .error(errors.isEmpty() ? null : String.join(" | ", errors))
+                .testJson(mergedTest)
+                .prodJson(mergedProd)
+                .testResponseHash(JsonComparisonUtils.fingerprint(mergedTest))
+                .prodResponseHash(JsonComparisonUtils.fingerprint(mergedProd))
+                .breakdown(breakdown)
+                .build();
+    }
+
+    private static void appendElement(StringBuilder out, int index, String json) {
+        if (index > 0) out.append(',');
+        out.append(json != null && !json.isBlank() ? json.trim() : "null");
+    }
+
+    ExecutorService shardPool() {
+        if (shardPool == null) {
+            synchronized (this) {
+                if (shardPool == null) shardPool = Executors.newFixedThreadPool(Math.max(1, parallelism), daemon("compare-shard"));
+            }
+        }
+        return shardPool;
+    }
+
+    /** BQ leg of a shard; separate from the shard pool so a shard never waits on its own pool. */
+    ExecutorService legPool() {
+        if (legPool == null) {
+            synchronized (this) {
+                if (legPool == null) legPool = Executors.newCachedThreadPool(daemon("compare-leg"));
+            }
+        }
+        return legPool;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (shardPool != null) shardPool.shutdownNow();
+        if (legPool != null) legPool.shutdownNow();
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @Getter
+    public static final class ShardPlan {
+        private final String dimension;
+        private final List<List<String>> shards;
+
+        ShardPlan(String dimension, List<List<String>> shards) {
+            this.dimension = dimension;
+            this.shards = Collections.unmodifiableList(shards);
+        }
+
+        public int size() {
+            return shards.size();
+        }
+
+        /** The taxonomy with the shard dimension narrowed to shard i. */
+        public Map<String, List<String>> taxonomyFor(Map<String, List<String>> taxonomy, int i) {
+            Map<String, List<String>> narrowed = new HashMap<>(taxonomy);
+            narrowed.put(dimension, shards.get(i));
+            return narrowed;
+        }
+
+        String label(int i) {
+            return dimension + " shard " + (i + 1) + "/" + shards.size();
+        }
+
+        List<String> labels() {
+            List<String> labels = new ArrayList<>(shards.size());
+            for (int i = 0; i < shards.size(); i++) labels.add(label(i));
+            return labels;
+        }
+    }
+}
@@ -1,7 +1,18 @@
 package com.analytics.comparison;
 
+import com.analytics.comparison.entity.ComparisonResult;
+import com.analytics.comparison.repository.ComparisonResultRepository;
+import com.analytics.comparison.util.ComparisonPlan;
+import com.analytics.comparison.util.ComparisonPlanner;
+import com.analytics.comparison.util.ComparisonProfile;
+import com.analytics.comparison.util.CsvStreamComparator;
+import com.analytics.comparison.util.ExternalJsonArrayComparator;
 import com.analytics.comparison.util.JsonComparisonUtils;
 import com.analytics.comparison.util.JsonDiff;
+import com.analytics.comparison.util.MerkleTree;
+import com.analytics.comparison.util.MismatchPattern;
+import com.analytics.comparison.util.PatternDiffSink;
+import com.analytics.comparison.util.SampleSummary;
 import com.analytics.comparison.util.UniversalJsonComparator;
 import com.analytics.orchestrator.ConfigResolver;
 import com.analytics.orchestrator.ConfigFetcher;
@@ -9,6 +20,8 @@ import com.analytics.orchestrator.DataProviderRegistry;
 import com.analytics.orchestrator.PayloadGenerator;
 import com.analytics.orchestrator.ConfigTaxonomyParser;
 import com.analytics.orchestrator.TestExecutor;
+import com.analytics.orchestrator.chunking.DateChunk;
+import com.analytics.orchestrator.chunking.DateChunkPlanner;
 import com.analytics.orchestrator.config.ApiDefinition;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -20,14 +33,21 @@ import org.springframework.stereotype.Service;
 
 import utils.DateUtils;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Compares test vs prod API responses using UniversalJsonComparator.
@@ -46,6 +66,9 @@ public class TestVsProdComparisonService {
     private final DataProviderRegistry dataProviderRegistry;
     private final PayloadGenerator payloadGenerator;
     private final TestExecutor testExecutor;
+    private final ComparisonResultRepository resultRepository;
+    private final TaxonomySharder taxonomySharder;
+    private final DateChunkPlanner dateChunkPlanner;
 
     @Value("${orchestrator.user-email:user2@test.com}")
     private String defaultUserEmail;
@@ -68,17 +91,75 @@ public class TestVsProdComparisonService {
     @Value("${validation.max-response-size-for-comparison:500000}")
     private int maxResponseSizeForComparison;
 
+    @Value("${validation.reuse-previous-results:true}")
+    private boolean reusePreviousResults = true;
+
+    /** Rows / approx. bytes held in memory per side before sorted runs are spilled to temp files (CSV and large JSON). */
+    @Value("${validation.sort-max-rows-in-memory:200000}")
+    private int sortMaxRowsInMemory = 200_000;
+
+    @Value("${validation.sort-max-bytes-in-memory:67108864}")
+    private long sortMaxBytesInMemory = 64L * 1024 * 1024;
+
+    /**
+     * Responses above max-response-size-for-comparison but below this size are compared with the
+     * out-of-core merge join instead of retrying with reduced filters.
+     */
+    @Value("${validation.external-sort-max-response-size:500000000}")
+    private long externalSortMaxResponseSize = 500_000_000L;
+
+    @Value("${validation.external-sort-key-sample-size:2000}")
+    private int externalSortKeySampleSize = 2000;
+
+    /** Distinct path patterns per comparison; diffs of later patterns are counted under "_other". */
+    @Value("${validation.mismatch-patterns.max-patterns:200}")
+    private int maxMismatchPatterns = 200;
+
+    @Value("${validation.mismatch-patterns.examples-per-pattern:5}")
+    private int mismatchPatternExamples = 5;
+
+    /** Leaves of the per-side hash trees in out-of-core comparisons; 0 compares every matched row pair. */
+    @Value("${validation.merkle.max-buckets:1024}")
+    private int merkleMaxBuckets = 1024;
+
+    @Value("${validation.merkle.rows-per-bucket:256}")
+    private int merkleRowsPerBucket = 256;
+
+    private static final int MAX_REPORTED_MISMATCHES = 1000;
+
+    /** Head of a body that decides whether it is CSV (header line with a comma followed by a newline). */
+    private static final int CSV_SNIFF_CHARS = 64 * 1024;
+
+    /** Trigger bodies above this are not kept in memory; only their head is read back. */
+    private static final int TRIGGER_BODY_CHARS = 4096;
+
+
     private static final String VALIDATION_DETAIL_PATH = "/api/alerts/validation/detail/";
 
+    /** Shared so polls reuse its connection pool instead of opening a new client per request. */
+    private final HttpClient validationHttpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    /** Comparison plans (array keys, field lists) kept across runs, keyed by API and response schema fingerprint. */
+    private final ComparisonPlanner comparisonPlanner;
+
     public TestVsProdComparisonService(ConfigResolver configResolver, ConfigFetcher configFetcher,
                                        ConfigTaxonomyParser taxonomyParser, DataProviderRegistry dataProviderRegistry,
-                                       PayloadGenerator payloadGenerator, TestExecutor testExecutor) {
+                                       PayloadGenerator payloadGenerator, TestExecutor testExecutor,
+                                       ComparisonResultRepository resultRepository, TaxonomySharder taxonomySharder,
+                                       DateChunkPlanner dateChunkPlanner,
+                                       @Value("${comparison.plan-cache-size:500}") int planCacheSize) {
         this.configResolver = configResolver;
         this.configFetcher = configFetcher;
         this.taxonomyParser = taxonomyParser;
         this.dataProviderRegistry = dataProviderRegistry;
         this.payloadGenerator = payloadGenerator;
         this.testExecutor = testExecutor;
+        this.resultRepository = resultRepository;
+        this.taxonomySharder = taxonomySharder;
+        this.dateChunkPlanner = dateChunkPlanner;
+        this.comparisonPlanner = new ComparisonPlanner(planCacheSize);
     }
 
     /**
@@ -97,8 +178,62 @@ public class TestVsProdComparisonService {
      * When both are arrays of objects, compares by primary key (product_id, retailer, id) so same entity is matched.
      */
     public ApiComparisonResult compareTwoJsonResponses(String testJson, String prodJson, double floatTolerance) {
-        Integer testRowCount = countRows(testJson);
-        Integer prodRowCount = countRows(prodJson);
+        return compareTwoJsonResponses(testJson, prodJson, floatTolerance, null);
+    }
+
+    /**
+     * As {@link #compareTwoJsonResponses(String, String, double)}, with the API's compiled comparison profile
+     * (declared keys, ignored fields, per-field tolerances); null discovers keys at runtime.
+     */
+    public ApiComparisonResult compareTwoJsonResponses(String testJson, String prodJson, double floatTolerance,
+                                                       ComparisonProfile profile) {
+        return compareTwoJsonResponses(testJson, prodJson, floatTolerance, "comparison", profile);
+    }
+
+    /** As above; the comparison plan inferred from the responses is cached under {@code apiId} and their schema. */
+    public ApiComparisonResult compareTwoJsonResponses(String testJson, String prodJson, double floatTolerance,
+                                                       String apiId, ComparisonProfile profile) {
+        return compareTwoJsonResponses(testJson, prodJson, floatTolerance, apiId, profile, 0);
+    }
+
+    /**
+     * As above, failing fast: with {@code maxMismatches > 0} the comparison stops once that many mismatches were
+     * found. The result is then marked {@code stoppedEarly} and its mismatch count is a lower bound.
+     * Only the structural walk stops early: both full documents are still parsed, normalised and scanned for the
+     * comparison plan first, so in memory the budget saves diffing time, not parse time or heap. For that, use
+     * {@link #compareLargeResponses}, whose streamed join stops reading at the budget.
+     */
+    public ApiComparisonResult compareTwoJsonResponses(String testJson, String prodJson, double floatTolerance,
+                                                       String apiId, ComparisonProfile profile, int maxMismatches) {
+        String testHash = JsonComparisonUtils.fingerprint(testJson);
+        String prodHash = JsonComparisonUtils.fingerprint(prodJson);
+        if (testHash != null && testHash.equals(prodHash)) {
+            // Byte-identical legs: nothing to diff, only the row count is needed
+            Integer rowCount = countRows(testJson);
+            log.debug("[COMPARE] Identical responses (hash={}) - skipping structural comparison", testHash);
+            return ApiComparisonResult.builder()
+                    .apiId("comparison")
+                    .match(true)
+                    .testRowCount(rowCount)
+                    .prodRowCount(rowCount)
+                    .mismatchCount(0)
+                    .mismatches(Collections.emptyList())
+                    .testResponseHash(testHash)
+                    .prodResponseHash(prodHash)
+                    .build();
+        }
+
+        // Single parse per leg: the tree feeds row counts, the canonical hash and the structural comparison
+        JsonNode testTree = readTreeOrNull(testJson);
+        JsonNode prodTree = readTreeOrNull(prodJson);
+        String testCsv = csvBody(testJson, testTree);
+        String prodCsv = csvBody(prodJson, prodTree);
+        if (testCsv != null && prodCsv != null) {
+            return compareCsvResponses(ResponseBody.of(testCsv), ResponseBody.of(prodCsv), floatTolerance, profile,
+                    testHash, prodHash, maxMismatches);
+        }
+        Integer testRowCount = testTree != null ? JsonComparisonUtils.countRows(testTree) : countRows(testJson);
+        Integer prodRowCount = prodTree != null ? JsonComparisonUtils.countRows(prodTree) : countRows(prodJson);
         if ((testRowCount == null || prodRowCount == null) && log.isDebugEnabled()) {
             log.debug("[COMPARE] countRows returned null - test={} prod={} | testPreview={} | prodPreview={}",
                     testRowCount, prodRowCount,
@@ -106,39 +241,46 @@ public class TestVsProdComparisonService {
                     previewResponse(prodJson, 300));
         }
 
+        PatternDiffSink sink = newDiffSink(maxMismatches);
         List<JsonDiff> mismatches;
+        List<MismatchPattern> patterns = null;
+        int totalMismatches;
         boolean match;
         try {
-            Object testObj = parseToComparable(testJson);
-            Object prodObj = parseToComparable(prodJson);
-
-            mismatches = UniversalJsonComparator.compare(testObj, prodObj, floatTolerance);
-            match = mismatches.isEmpty();
+            if (testTree != null && prodTree != null
+                    && JsonComparisonUtils.canonicalHash(testTree).equals(JsonComparisonUtils.canonicalHash(prodTree))) {
+                // Same content up to key order / number formatting - structural walk cannot find a diff
+                log.debug("[COMPARE] Canonical hashes equal - skipping structural comparison");
+            } else {
+                Object testObj = testTree != null ? parseToComparable(testTree) : parseToComparable(testJson);
+                Object prodObj = prodTree != null ? parseToComparable(prodTree) : parseToComparable(prodJson);
+                ComparisonPlan plan = comparisonPlanner.compare(apiId, testObj, prodObj, floatTolerance, profile, sink);
+                log.debug("[PLAN] {} schema={} keyedArrays={} | cache hits={} misses={}", apiId, plan.getFingerprint(),
+                        plan.keyedArrayCount(), comparisonPlanner.getHits(), comparisonPlanner.getMisses());
+            }
+            mismatches = sink.getDiffs();
+            totalMismatches = (int) Math.min(Integer.MAX_VALUE, sink.getTotal());
+            match = totalMismatches == 0;
+            if (!match) patterns = sink.getPatterns();
         } catch (Exception e) {
             String msg = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
             if (msg.contains("Average Availability %") || msg.contains("non-JSON") || msg.contains("deserialize")) {
                 log.info("API returns non-JSON or unsupported format, skipping comparison: {}", msg.substring(0, Math.min(80, msg.length())));
                 mismatches = Collections.singletonList(new JsonDiff("_skipped", "non-JSON format (prod)", msg));
+                totalMismatches = 1;
                 match = true;
             } else {
                 log.warn("Comparison failed: {}", msg);
                 mismatches = Collections.singletonList(new JsonDiff("_error", "parse/comparison failed (prod)", msg));
+                totalMismatches = 1;
                 match = false;
             }
         }
 
-        int totalMismatches = mismatches != null ? mismatches.size() : 0;
-        List<JsonDiff> toReport = mismatches;
-        if (totalMismatches > 1000) {
-            toReport = mismatches.subList(0, 1000);
-            log.info("[COMPARE] Capping mismatches to 1000 for display (total={})", totalMismatches);
+        if (totalMismatches > MAX_REPORTED_MISMATCHES) {
+            log.info("[COMPARE] Capped mismatches to {} for display (total={}, patterns={})",
+                    MAX_REPORTED_MISMATCHES, totalMismatches, patterns != null ? patterns.size() : 0);
         }
-        List<Map<String, String>> mismatchMaps = toReport.stream()
-                .map(d -> Map.of(
-                        "path", d.getPath(),
-                        "prod", d.getProd() != null ? d.getProd() : "",
-                        "test", d.getTest() != null ? d.getTest() : ""))
-                .collect(Collectors.toList());
         return ApiComparisonResult.builder()
                 .apiId("comparison")
                 .jobId(null)
@@ -148,10 +290,191 @@ public class TestVsProdComparisonService {
                 .testRowCount(testRowCount)
                 .prodRowCount(prodRowCount)
                 .mismatchCount(totalMismatches)
-                .mismatches(mismatchMaps)
+                .mismatches(toMismatchMaps(mismatches))
+                .mismatchPatterns(patterns)
+                .stoppedEarly(sink.isFull())
+                .testResponseHash(testHash)
+                .prodResponseHash(prodHash)
                 .build();
     }
 
+    /**
+     * CSV body of a response: the raw body when it is CSV, or a CSV string under "data" in a JSON wrapper.
+     * Null when the response is not CSV.
+     */
+    private String csvBody(String raw, JsonNode tree) {
+        if (tree == null) {
+            return JsonComparisonUtils.looksLikeCsv(raw) ? raw : null;
+        }
+        JsonNode data = tree.path("data");
+        return data.isTextual() && JsonComparisonUtils.looksLikeCsv(data.asText()) ? data.asText() : null;
+    }
+
+    /**
+     * Export CSVs: streamed, key-sorted merge join instead of the JSON path (which rejects CSV as non-JSON).
+     * A body spilled to disk by {@link TestExecutor#executeToFile} is read from its file; CSV wrapped in a JSON
+     * "data" string is only recognised in memory, by {@link #compareTwoJsonResponses}.
+     */
+    private ApiComparisonResult compareCsvResponses(ResponseBody test, ResponseBody prod, double floatTolerance,
+                                                    ComparisonProfile profile, String testHash, String prodHash,
+                                                    int maxMismatches) {
+        PatternDiffSink sink = newDiffSink(maxMismatches);
+        CsvStreamComparator comparator = new CsvStreamComparator(floatTolerance, sortMaxRowsInMemory, sortMaxBytesInMemory);
+        try (Reader testReader = test.open(); Reader prodReader = prod.open()) {
+            CsvStreamComparator.Summary summary = comparator.compare(testReader, prodReader, profile, sink);
+            int total = (int) Math.min(Integer.MAX_VALUE, sink.getTotal());
+            log.info("[COMPARE] CSV comparison | key={} testRows={} prodRows={} mismatches={} spilledRuns={}",
+                    summary.getKeyColumns(), summary.getFirstRowCount(), summary.getSecondRowCount(), total, summary.getSpilledRuns());
+            logSample(summary.getSample());
+            return ApiComparisonResult.builder()
+                    .apiId("comparison")
+                    .match(total == 0)
+                    .testRowCount((int) summary.getFirstRowCount())
+                    .prodRowCount((int) summary.getSecondRowCount())
+                    .mismatchCount(total)
+                    .mismatches(toMismatchMaps(sink.getDiffs()))
+                    .mismatchPatterns(total > 0 ? sink.getPatterns() : null)
+                    .stoppedEarly(sink.isFull())
+                    .sampling(summary.getSample())
+                    .testResponseHash(testHash)
+                    .prodResponseHash(prodHash)
+                    .build();
+        } catch (IOException | RuntimeException e) {
+            String msg = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            log.warn("[COMPARE] CSV comparison failed: {}", msg);
+            return ApiComparisonResult.builder()
+                    .apiId("comparison")
+                    .match(false)
+                    .testRowCount(test.text != null ? countRows(test.text) : null)
+                    .prodRowCount(prod.text != null ? countRows(prod.text) : null)
+                    .mismatchCount(1)
+                    .mismatches(toMismatchMaps(Collections.singletonList(
+                            new JsonDiff("_error", "CSV comparison failed (prod)", msg))))
+                    .testResponseHash(testHash)
+                    .prodResponseHash(prodHash)
+                    .build();
+        }
+    }
+
+    /**
+     * Large responses: stream the row array of each side through the external merge-sort join so neither
+     * side is materialized as a Map tree. CSV bodies go through the streaming CSV comparator.
+     * If the two documents have no common row array, the failure is reported as an "_error" mismatch.
+     */
+    public ApiComparisonResult compareLargeResponses(String testJson, String prodJson, double floatTolerance) {
+        return compareLargeResponses(testJson, prodJson, floatTolerance, null);
+    }
+
+    public ApiComparisonResult compareLargeResponses(String testJson, String prodJson, double floatTolerance,
+                                                     ComparisonProfile profile) {
+        return compareLargeResponses(testJson, prodJson, floatTolerance, profile, 0);
+    }
+
+    /**
+     * As above, failing fast at {@code maxMismatches} (0 for no budget). A fail-fast run also accepts
+     * byte-identical bodies on their fingerprints alone, without streaming them to count rows.
+     */
+    public ApiComparisonResult compareLargeResponses(String testJson, String prodJson, double floatTolerance,
+                                                     ComparisonProfile profile, int maxMismatches) {
+        return compareLargeResponses(ResponseBody.of(testJson), ResponseBody.of(prodJson), floatTolerance, profile,
+                maxMismatches, JsonComparisonUtils.fingerprint(testJson), JsonComparisonUtils.fingerprint(prodJson));
+    }
+
+    /**
+     * As above for bodies on disk (e.g. the responseFile of {@link TestExecutor#executeToFile}): both files are
+     * read as streams, so the comparison holds no more of them in heap than the sorter's in-memory runs.
+     */
+    public ApiComparisonResult compareLargeResponses(Path testFile, Path prodFile, double floatTolerance,
+                                                     ComparisonProfile profile, int maxMismatches) throws IOException {
+        ResponseBody test = ResponseBody.of(testFile);
+        ResponseBody prod = ResponseBody.of(prodFile);
+        return compareLargeResponses(test, prod, floatTolerance, profile, maxMismatches, test.fingerprint(), prod.fingerprint());
+    }
+
+    private ApiComparisonResult compareLargeResponses(ResponseBody test, ResponseBody prod, double floatTolerance,
+                                                      ComparisonProfile profile, int maxMismatches,
+                                                      String testHash, String prodHash) {
+        if (maxMismatches > 0 && testHash != null && testHash.equals(prodHash)) {
+            log.debug("[COMPARE] Identical large responses (hash={}) - fail-fast run skips the row join", testHash);
+            return ApiComparisonResult.builder()
+                    .apiId("comparison")
+                    .match(true)
+                    .mismatchCount(0)
+                    .mismatches(Collections.emptyList())
+                    .testResponseHash(testHash)
+                    .prodResponseHash(prodHash)
+                    .build();
+        }
+        if (JsonComparisonUtils.looksLikeCsv(test.head(CSV_SNIFF_CHARS))
+                && JsonComparisonUtils.looksLikeCsv(prod.head(CSV_SNIFF_CHARS))) {
+            return compareCsvResponses(test, prod, floatTolerance, profile, testHash, prodHash, maxMismatches);
+        }
+        PatternDiffSink sink = newDiffSink(maxMismatches);
+        ExternalJsonArrayComparator comparator = new ExternalJsonArrayComparator(floatTolerance, sortMaxRowsInMemory,
+                sortMaxBytesInMemory, externalSortKeySampleSize, merkleMaxBuckets, merkleRowsPerBucket);
+        try (Reader testReader = test.open(); Reader prodReader = prod.open()) {
+            ExternalJsonArrayComparator.Summary summary = comparator.compare(testReader, prodReader, profile, sink);
+            int total = (int) Math.min(Integer.MAX_VALUE, sink.getTotal());
+            log.info("[COMPARE] Out-of-core comparison | key={} testRows={} prodRows={} mismatches={} spilledRuns={} skippedRows={} keylessRows={}",
+                    summary.getKeyFields(), summary.getFirstRowCount(), summary.getSecondRowCount(), total,
+                    summary.getSpilledRuns(), summary.getSkippedRows(), summary.getKeylessRows());
+            logSample(summary.getSample());
+            return ApiComparisonResult.builder()
+                    .apiId("comparison")
+                    .match(total == 0)
+                    .testRowCount((int) summary.getFirstRowCount())
+                    .prodRowCount((int) summary.getSecondRowCount())
+                    .mismatchCount(total)
+                    .mismatches(toMismatchMaps(sink.getDiffs()))
+                    .mismatchPatterns(total > 0 ? sink.getPatterns() : null)
+                    .stoppedEarly(sink.isFull())
+                    .sampling(summary.getSample())
+                    .testMerkleTree(summary.getFirstTree())
+                    .prodMerkleTree(summary.getSecondTree())
+                    .testResponseHash(testHash)
+                    .prodResponseHash(prodHash)
+                    .build();
+        } catch (Exception e) {
+            String msg = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            log.warn("[COMPARE] Out-of-core comparison failed: {}", msg);
+            return ApiComparisonResult.builder()
+                    .apiId("comparison")
+                    .match(false)
+                    .mismatchCount(1)
+                    .mismatches(toMismatchMaps(Collections.singletonList(
+                            new JsonDiff("_error", "out-of-core comparison failed (prod)", msg))))
+                    .testResponseHash(testHash)
+                    .prodResponseHash(prodHash)
+                    .build();
+        }
+    }
+
+    private static void logSample(SampleSummary sample) {
+        if (sample == null) return;
+        log.info("[COMPARE] Sampled {} of keys | rows={} mismatched={} rate={} ({}% interval {}..{}) aggregateMismatches={}",
+                sample.getRate(), sample.getSampledRows(), sample.getMismatchedRows(), sample.getMismatchRate(),
+                Math.round(sample.getConfidence() * 100), sample.getMismatchRateLower(), sample.getMismatchRateUpper(),
+                sample.getAggregateMismatches());
+    }
+
+    /**
+     * First MAX_REPORTED_MISMATCHES diffs verbatim plus every diff aggregated by path pattern; full after
+     * {@code maxMismatches} diffs when that is positive.
+     */
+    private PatternDiffSink newDiffSink(int maxMismatches) {
+        return new PatternDiffSink(MAX_REPORTED_MISMATCHES, maxMismatchPatterns, mismatchPatternExamples,
+                Math.max(0, maxMismatches));
+    }
+
+    private static List<Map<String, String>> toMismatchMaps(List<JsonDiff> diffs) {
+        return diffs.stream()
+                .map(d -> Map.of(
+                        "path", d.getPath(),
+                        "prod", d.getProd() != null ? d.getProd() : "",
+                        "test", d.getTest() != null ? d.getTest() : ""))
+                .collect(Collectors.toList());
+    }
+
     /**
      * Run comparison for all APIs in the group: hit test and prod, compare each.
      *
@@ -172,6 +495,25 @@ public class TestVsProdComparisonService {
      */
     public List<ApiComparisonResult> runComparison(String client, String startDate, String endDate,
                                                    String apiGroup, List<String> apis) {
+        return runComparison(client, startDate, endDate, apiGroup, apis, 0);
+    }
+
+    /**
+     * As above; with {@code maxMismatches > 0} each API's comparison stops at that many mismatches (CI gating
+     * only needs to know whether DBX matches BQ).
+     */
+    public List<ApiComparisonResult> runComparison(String client, String startDate, String endDate,
+                                                   String apiGroup, List<String> apis, int maxMismatches) {
+        return runComparison(client, startDate, endDate, apiGroup, apis, maxMismatches, null);
+    }
+
+    /**
+     * As above for the APIs of suite {@code suiteId}: the suite's own earlier rows are never offered for reuse, so a
+     * re-run task (lease expired, restart) compares afresh instead of linking to the row it is about to replace.
+     */
+    public List<ApiComparisonResult> runComparison(String client, String startDate, String endDate,
+                                                   String apiGroup, List<String> apis, int maxMismatches,
+                                                   String suiteId) {
         String testBaseUrl = configResolver.getBaseUrl("test");
         Map<String, String> headers = configResolver.getConfigHeaders(client, defaultUserEmail, defaultAuthToken);
 
@@ -189,18 +531,25 @@ public class TestVsProdComparisonService {
         baseParams.put("start_date", normStart);
         baseParams.put("end_date", normEnd);
         baseParams.put("_limit", "pricing".equalsIgnoreCase(apiGroup) ? 1 : Integer.MAX_VALUE);
+        if (maxMismatches > 0) baseParams.put(MAX_MISMATCHES_PARAM, maxMismatches);
+        if (suiteId != null) baseParams.put(SUITE_ID_PARAM, suiteId);
 
         taxonomy = ensurePricingTaxonomy(taxonomy, apiGroup, client);
 
         List<ApiComparisonResult> results = new ArrayList<>();
         for (ApiDefinition.ApiSpec spec : apiSpecs) {
             ApiComparisonResult r = compareOneApi(spec, baseParams, taxonomy, headers, testBaseUrl);
+            if (r != null) r.setProfileFingerprint(profileFingerprint(spec));
             results.add(r);
         }
         return results;
     }
 
     private static final String HEADER_BQDBX_CONFIG = "x-bqdbx-config";
+    /** Internal parameter (not sent to the API) carrying the fail-fast mismatch budget down to compareLegs. */
+    private static final String MAX_MISMATCHES_PARAM = "_max_mismatches";
+    /** Internal parameter carrying the suite being compared down to {@link #findReusableResult}. */
+    private static final String SUITE_ID_PARAM = "_suite_id";
     private static final String DBX_ONLY = "DBX_ONLY";
     private static final String BQ_ONLY = "BQ_ONLY";
 
@@ -212,8 +561,26 @@ public class TestVsProdComparisonService {
     private ApiComparisonResult compareOneApi(ApiDefinition.ApiSpec spec, Map<String, Object> baseParams,
                                               Map<String, List<String>> taxonomy, Map<String, String> headers,
                                               String testBaseUrl) {
+        return compareOneApi(spec, baseParams, taxonomy, headers, testBaseUrl, true);
+    }
+
+    /**
+     * @param topLevel the suite's own window: split into planned date chunks when it is longer than
+     *                 chunking.max-days-per-request. Any window longer than a day that fails with the full
+     *                 taxonomy is split by day before falling back to taxonomy shards or reduced filters.
+     */
+    private ApiComparisonResult compareOneApi(ApiDefinition.ApiSpec spec, Map<String, Object> baseParams,
+                                              Map<String, List<String>> taxonomy, Map<String, String> headers,
+                                              String testBaseUrl, boolean topLevel) {
         String apiId = spec.getApiId();
         try {
+            String startDate = String.valueOf(baseParams.get("start_date"));
+            String endDate = String.valueOf(baseParams.get("end_date"));
+            List<DateChunk> chunks = topLevel && dateChunkPlanner != null ? dateChunkPlanner.plan(startDate, endDate) : null;
+            if (chunks != null) {
+                return compareChunked(spec, baseParams, taxonomy, headers, testBaseUrl, chunks);
+            }
+
             Map<String, Object> effectiveBaseParams = new HashMap<>(baseParams);
             Map<String, List<String>> effectiveTaxonomy = taxonomy;
             ApiComparisonResult sparseEmptyFallback = null;
@@ -223,9 +590,34 @@ public class TestVsProdComparisonService {
             // Set when attempt 0 returns genuinely empty (0 rows, no 5xx) — triggers filter-cycling retries
             boolean firstAttemptWasEmpty = false;
 
+            TaxonomySharder.ShardPlan plan = canShard(spec) ? taxonomySharder.plan(spec, taxonomy) : null;
+            if (plan != null) {
+                return compareSharded(spec, baseParams, taxonomy, headers, testBaseUrl, plan);
+            }
+
             for (int attempt = 0; attempt < MAX_RETRIES_FOR_500_OR_EMPTY; attempt++) {
                 ApiComparisonResult result = tryCompareOneApi(spec, effectiveBaseParams, effectiveTaxonomy, headers, testBaseUrl);
 
+                if (attempt == 0 && dateChunkPlanner != null && (result == null || result.isShouldRetry())) {
+                    // Too large or 5xx for the whole window: cover every day instead of retrying on the last one
+                    chunks = dateChunkPlanner.planByDay(startDate, endDate);
+                    if (chunks != null) {
+                        log.info("[COMPARE] {} failed for {}..{} ({}) - retrying in {} date chunks", apiId, startDate, endDate,
+                                result == null ? "response too large" : result.getError(), chunks.size());
+                        return compareChunked(spec, baseParams, taxonomy, headers, testBaseUrl, chunks);
+                    }
+                }
+
+                if (attempt == 0 && canShard(spec) && (result == null || result.isShouldRetry())) {
+                    // Too large or 5xx with the full taxonomy: shard it for full coverage instead of cutting filters
+                    plan = taxonomySharder.planAfterFailure(spec, taxonomy);
+                    if (plan != null) {
+                        log.info("[COMPARE] {} failed unsharded ({}) - retrying in {} shards", apiId,
+                                result == null ? "response too large" : result.getError(), plan.size());
+                        return compareSharded(spec, baseParams, taxonomy, headers, testBaseUrl, plan);
+                    }
+                }
+
                 if (result != null) {
                     if (result.isShouldRetry()) {
                         // 5xx — keep FIRST failure so the stored curl always has real filter data
@@ -396,6 +788,102 @@ public class TestVsProdComparisonService {
             "feedbackProductComments", "searchProductHistory", "search"
     );
 
+    /** Sparse, export and row-cycling APIs keep their own filter cycling and are never sharded. */
+    private boolean canShard(ApiDefinition.ApiSpec spec) {
+        return taxonomySharder != null
+                && !SPARSE_DATA_APIS.contains(spec.getApiId())
+                && (spec.getCreateJobEndpoint() == null || spec.getCreateJobEndpoint().isBlank())
+                && !CYCLE_ROWS_PROVIDERS.contains(spec.getDataProvider());
+    }
+
+    /** Compare the API once per date chunk, chunks in parallel on the planner's pool, and merge them into one result. */
+    private ApiComparisonResult compareChunked(ApiDefinition.ApiSpec spec, Map<String, Object> baseParams,
+                                               Map<String, List<String>> taxonomy, Map<String, String> headers,
+                                               String testBaseUrl, List<DateChunk> chunks) {
+        String apiId = spec.getApiId();
+        long start = System.currentTimeMillis();
+        List<ApiComparisonResult> results = dateChunkPlanner.runAll(chunks, chunk -> {
+            Map<String, Object> chunkParams = new HashMap<>(baseParams);
+            chunkParams.put("start_date", chunk.startDate());
+            chunkParams.put("end_date", chunk.endDate());
+            return compareOneApi(spec, chunkParams, taxonomy, headers, testBaseUrl, false);
+        });
+        List<String> labels = chunks.stream().map(DateChunk::label).collect(Collectors.toList());
+        ApiComparisonResult merged = TaxonomySharder.merge(apiId, labels, results, MAX_REPORTED_MISMATCHES);
+        log.info("[COMPARE] {} compared in {} date chunks in {} ms | match={} mismatchCount={} rows={}/{}", apiId, chunks.size(),
+                System.currentTimeMillis() - start, merged.isMatch(), merged.getMismatchCount(),
+                merged.getTestRowCount(), merged.getProdRowCount());
+        return merged;
+    }
+
+    /**
+     * Compare the API once per taxonomy shard, shards in parallel on the sharder's pool, and merge them into one
+     * result. Uses the data provider's first row for the non-taxonomy parameters.
+     */
+    private ApiComparisonResult compareSharded(ApiDefinition.ApiSpec spec, Map<String, Object> baseParams,
+                                               Map<String, List<String>> taxonomy, Map<String, String> headers,
+                                               String testBaseUrl, TaxonomySharder.ShardPlan plan) {
+        String apiId = spec.getApiId();
+        long start = System.currentTimeMillis();
+        List<Map<String, Object>> dataRows = dataProviderRegistry.getData(
+                spec.getDataProvider(), apiId, new HashMap<>(baseParams), taxonomy);
+        Map<String, Object> params = new HashMap<>(dataRows.isEmpty() ? baseParams : dataRows.get(0));
+        params.put("start_date", baseParams.get("start_date"));
+        params.put("end_date", baseParams.get("end_date"));
+
+        List<CompletableFuture<ApiComparisonResult>> shards = new ArrayList<>(plan.size());
+        for (int i = 0; i < plan.size(); i++) {
+            Map<String, List<String>> shardTaxonomy = plan.taxonomyFor(taxonomy, i);
+            boolean trigger = i == 0;
+            shards.add(CompletableFuture.supplyAsync(
+                    () -> compareShard(spec, params, shardTaxonomy, headers, testBaseUrl, trigger, mismatchBudget(baseParams),
+                            suiteIdOf(baseParams)),
+                    taxonomySharder.shardPool()));
+        }
+        List<ApiComparisonResult> results = shards.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        ApiComparisonResult merged = TaxonomySharder.merge(apiId, plan.labels(), results, MAX_REPORTED_MISMATCHES);
+        log.info("[COMPARE] {} compared in {} shards in {} ms | match={} mismatchCount={} rows={}/{}", apiId, plan.size(),
+                System.currentTimeMillis() - start, merged.isMatch(), merged.getMismatchCount(),
+                merged.getTestRowCount(), merged.getProdRowCount());
+        return merged;
+    }
+
+    /**
+     * One shard: DBX and BQ concurrently, one retry on 5xx. Only the first shard sends the Query Genie trigger,
+     * so the suite links to one validation record per API as before.
+     */
+    private ApiComparisonResult compareShard(ApiDefinition.ApiSpec spec, Map<String, Object> params,
+                                             Map<String, List<String>> taxonomy, Map<String, String> headers,
+                                             String testBaseUrl, boolean trigger, int maxMismatches, String suiteId) {
+        String apiId = spec.getApiId();
+        String fullUrl = testBaseUrl + spec.getEndpoint();
+        try {
+            String payload = payloadGenerator.generate(spec.getTemplate(), params, taxonomy);
+            String jobId = UUID.randomUUID().toString();
+            Map<String, String> reqHeaders = new HashMap<>(headers);
+            reqHeaders.put("X-qg-request-id", jobId);
+            if (trigger) {
+                TestExecutor.ApiExecutionResult t = executeTrigger(testBaseUrl, spec.getEndpoint(), reqHeaders, payload);
+                if ("PASS".equals(t.getStatus()) && !isEmptyResponse(t.getResponsePayload())) pollForQueryGenieRecord(jobId, apiId);
+            }
+            ApiComparisonResult r = compareLegs(spec, taxonomy, reqHeaders, testBaseUrl, payload, jobId, true, true, maxMismatches, suiteId);
+            if (r != null && r.isShouldRetry()) {
+                log.info("[COMPARE] {} shard got 5xx ({}) - retrying once", apiId, r.getError());
+                r = compareLegs(spec, taxonomy, reqHeaders, testBaseUrl, payload, jobId, true, true, maxMismatches, suiteId);
+            }
+            if (r == null) {
+                r = buildErrorResult(apiId, "Shard response too large to compare");
+                r.setTestUrl(fullUrl);
+                r.setProdUrl(fullUrl);
+                r.setRequestPayload(payload);
+            }
+            return r;
+        } catch (Exception e) {
+            log.warn("[COMPARE] {} shard failed: {}", apiId, e.getMessage());
+            return buildErrorResult(apiId, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
     private ApiComparisonResult tryCompareOneApi(ApiDefinition.ApiSpec spec, Map<String, Object> baseParams,
                                                  Map<String, List<String>> taxonomy, Map<String, String> headers,
                                                  String testBaseUrl) {
@@ -546,6 +1034,7 @@ public class TestVsProdComparisonService {
         querySpec.setApiId(spec.getApiId());
         querySpec.setEndpoint(queryEndpoint);
         querySpec.setMethod(spec.getMethod());
+        querySpec.setComparisonProfile(spec.getComparisonProfile());
         ApiComparisonResult result = tryCompareWithPayload(querySpec, baseParams, taxonomy, headers, testBaseUrl, queryPayload);
         // Prepend create-job success so the UI shows the two-step breakdown
         if (result != null && result.getError() != null) {
@@ -566,7 +1055,7 @@ public class TestVsProdComparisonService {
 
         // Query Genie: send normal request (no x-bqdbx-config) first to trigger validation record
         log.info("[COMPARE] Query Genie trigger: POST {} | X-qg-request-id={}", fullUrl, jobId);
-        TestExecutor.ApiExecutionResult triggerResult = testExecutor.execute(testBaseUrl, endpoint, reqHeaders, payload, 0);
+        TestExecutor.ApiExecutionResult triggerResult = executeTrigger(testBaseUrl, endpoint, reqHeaders, payload);
         boolean triggerFail = triggerResult.getResponsePayload() == null || !"PASS".equals(triggerResult.getStatus());
         boolean triggerEmpty = isEmptyResponse(triggerResult.getResponsePayload());
         Integer triggerStatus = triggerResult.getHttpStatus();
@@ -593,27 +1082,62 @@ public class TestVsProdComparisonService {
         } else {
             pollForQueryGenieRecord(jobId, apiId);
         }
+        return compareLegs(spec, taxonomy, reqHeaders, testBaseUrl, payload, jobId, triggerEmpty, false,
+                mismatchBudget(baseParams), suiteIdOf(baseParams));
+    }
+
+    private static int mismatchBudget(Map<String, Object> params) {
+        Object budget = params != null ? params.get(MAX_MISMATCHES_PARAM) : null;
+        return budget instanceof Number ? ((Number) budget).intValue() : 0;
+    }
 
-        // Same payload used for DBX and BQ comparison
-        Map<String, String> dbxHeaders = new HashMap<>(reqHeaders);
-        dbxHeaders.put(HEADER_BQDBX_CONFIG, DBX_ONLY);
-        log.info("[COMPARE] Hitting test API (DBX_ONLY): {} | X-qg-request-id={}", fullUrl, jobId);
-        TestExecutor.ApiExecutionResult dbxResult = testExecutor.execute(testBaseUrl, endpoint, dbxHeaders, payload, 0);
-        log.info("[COMPARE] DBX_ONLY done for {}: status={} http={} durationMs={}", apiId, dbxResult.getStatus(), dbxResult.getHttpStatus(), dbxResult.getDurationMs());
+    private static String suiteIdOf(Map<String, Object> params) {
+        Object suiteId = params != null ? params.get(SUITE_ID_PARAM) : null;
+        return suiteId instanceof String ? (String) suiteId : null;
+    }
 
-        Map<String, String> bqHeaders = new HashMap<>(reqHeaders);
-        bqHeaders.put(HEADER_BQDBX_CONFIG, BQ_ONLY);
-        log.info("[COMPARE] Hitting test API (BQ_ONLY): {} | X-qg-request-id={}", fullUrl, jobId);
-        TestExecutor.ApiExecutionResult bqResult = testExecutor.execute(testBaseUrl, endpoint, bqHeaders, payload, 0);
-        log.info("[COMPARE] BQ_ONLY done for {}: status={} http={} durationMs={}", apiId, bqResult.getStatus(), bqResult.getHttpStatus(), bqResult.getDurationMs());
+    /**
+     * Same payload with DBX_ONLY and BQ_ONLY (concurrently when asked), then the comparison. Both legs empty is a
+     * 0-row match when emptyIsMatch; otherwise null, as for a response too large to compare.
+     */
+    private ApiComparisonResult compareLegs(ApiDefinition.ApiSpec spec, Map<String, List<String>> taxonomy,
+                                            Map<String, String> reqHeaders, String testBaseUrl, String payload,
+                                            String jobId, boolean emptyIsMatch, boolean concurrent, int maxMismatches,
+                                            String suiteId) {
+        String apiId = spec.getApiId();
+        String fullUrl = testBaseUrl + spec.getEndpoint();
+        CompletableFuture<TestExecutor.ApiExecutionResult> bqFuture = concurrent
+                ? CompletableFuture.supplyAsync(() -> executeLeg(spec, reqHeaders, testBaseUrl, payload, jobId, BQ_ONLY), taxonomySharder.legPool())
+                : null;
+        TestExecutor.ApiExecutionResult dbxResult = executeLeg(spec, reqHeaders, testBaseUrl, payload, jobId, DBX_ONLY);
+        TestExecutor.ApiExecutionResult bqResult = bqFuture != null ? bqFuture.join()
+                : executeLeg(spec, reqHeaders, testBaseUrl, payload, jobId, BQ_ONLY);
+        try {
+            return compareLegResults(spec, taxonomy, dbxResult, bqResult, fullUrl, payload, jobId, emptyIsMatch,
+                    maxMismatches, suiteId);
+        } finally {
+            TestExecutor.deleteQuietly(dbxResult.getResponseFile());
+            TestExecutor.deleteQuietly(bqResult.getResponseFile());
+        }
+    }
 
-        String dbxJson = dbxResult.getResponsePayload();
-        String bqJson = bqResult.getResponsePayload();
+    /**
+     * The comparison part of {@link #compareLegs}. Bodies above max-response-size-for-comparison arrive on disk
+     * and are compared out of core straight from their files; only a preview of them is kept on the result.
+     */
+    private ApiComparisonResult compareLegResults(ApiDefinition.ApiSpec spec, Map<String, List<String>> taxonomy,
+                                                  TestExecutor.ApiExecutionResult dbxResult,
+                                                  TestExecutor.ApiExecutionResult bqResult, String fullUrl,
+                                                  String payload, String jobId, boolean emptyIsMatch, int maxMismatches,
+                                                  String suiteId) {
+        String apiId = spec.getApiId();
+        ResponseBody dbxBody = ResponseBody.of(dbxResult);
+        ResponseBody bqBody = ResponseBody.of(bqResult);
 
-        boolean dbxFail = dbxJson == null || !"PASS".equals(dbxResult.getStatus());
-        boolean bqFail = bqJson == null || !"PASS".equals(bqResult.getStatus());
-        boolean dbxEmpty = isEmptyResponse(dbxJson);
-        boolean bqEmpty = isEmptyResponse(bqJson);
+        boolean dbxFail = dbxBody == null || !"PASS".equals(dbxResult.getStatus());
+        boolean bqFail = bqBody == null || !"PASS".equals(bqResult.getStatus());
+        boolean dbxEmpty = dbxBody == null || dbxBody.isEmpty();
+        boolean bqEmpty = bqBody == null || bqBody.isEmpty();
 
         if (dbxFail || bqFail) {
             Integer dbxStatus = dbxResult.getHttpStatus();
@@ -621,10 +1145,10 @@ public class TestVsProdComparisonService {
 
             // Build a detailed per-source error message
             String dbxSummary = dbxFail
-                    ? "DBX HTTP " + dbxStatus + ": " + truncateBody(dbxResult.getErrorMessage() != null ? dbxResult.getErrorMessage() : dbxResult.getResponsePayload())
+                    ? "DBX HTTP " + dbxStatus + ": " + truncateBody(dbxResult.getErrorMessage() != null ? dbxResult.getErrorMessage() : head(dbxBody))
                     : "DBX HTTP " + dbxStatus + " (OK)";
             String bqSummary  = bqFail
-                    ? "BQ HTTP " + bqStatus  + ": " + truncateBody(bqResult.getErrorMessage()  != null ? bqResult.getErrorMessage()  : bqResult.getResponsePayload())
+                    ? "BQ HTTP " + bqStatus  + ": " + truncateBody(bqResult.getErrorMessage()  != null ? bqResult.getErrorMessage()  : head(bqBody))
                     : "BQ HTTP "  + bqStatus  + " (OK)";
             String errMsg = dbxSummary + " | " + bqSummary;
 
@@ -648,7 +1172,7 @@ public class TestVsProdComparisonService {
                     .build();
         }
         if (dbxEmpty && bqEmpty) {
-            if (triggerEmpty) {
+            if (emptyIsMatch) {
                 // All three returned empty — API works (HTTP 200) but no data for these filters
                 // Return a 0-row match result; compareOneApi will retry with different sub_brand groups
                 log.info("[COMPARE] {} returned empty from trigger, DBX, and BQ - no data for these filters (match=true, 0 rows)", apiId);
@@ -662,29 +1186,237 @@ public class TestVsProdComparisonService {
             return null;
         }
 
-        int dbxLen = dbxJson != null ? dbxJson.length() : 0;
-        int bqLen = bqJson != null ? bqJson.length() : 0;
-        int totalLen = dbxLen + bqLen;
-        if (totalLen > maxResponseSizeForComparison) {
+        long dbxLen = dbxBody.length();
+        long bqLen = bqBody.length();
+        long totalLen = dbxLen + bqLen;
+        if (taxonomySharder != null) {
+            taxonomySharder.record(apiId, taxonomySharder.dimensionSize(spec, taxonomy), Math.max(dbxLen, bqLen));
+        }
+        boolean outOfCore = totalLen > maxResponseSizeForComparison || dbxBody.file != null || bqBody.file != null;
+        // A sampled comparison only sorts the selected rows, so the sort limit applies to that share
+        ComparisonProfile.Sampling sampling = spec.getComparisonProfile() != null ? spec.getComparisonProfile().getSampling() : null;
+        long sortedLen = sampling != null ? (long) (totalLen * sampling.getRate()) : totalLen;
+        if (outOfCore && sortedLen > externalSortMaxResponseSize) {
             log.info("[COMPARE] Response too large for {} (dbxLen={} bqLen={} total={}) - retrying with less filter", apiId, dbxLen, bqLen, totalLen);
             return null;
         }
 
-        log.info("[COMPARE] Comparing DBX vs BQ for {} | dbxLen={} bqLen={}", apiId, dbxLen, bqLen);
-        long compareStart = System.currentTimeMillis();
-        ApiComparisonResult r = compareTwoJsonResponses(dbxJson, bqJson);
-        log.info("[COMPARE] Comparison done for {} in {} ms | match={} mismatchCount={}", apiId, System.currentTimeMillis() - compareStart, r.isMatch(), r.getMismatchCount());
+        String dbxHash;
+        String bqHash;
+        try {
+            dbxHash = dbxBody.fingerprint();
+            bqHash = bqBody.fingerprint();
+        } catch (IOException e) {
+            log.warn("[COMPARE] Could not read spilled response of {}: {}", apiId, e.getMessage());
+            ApiComparisonResult r = buildErrorResult(apiId, "Could not read response file: " + e.getMessage());
+            r.setJobId(jobId);
+            r.setTestUrl(fullUrl);
+            r.setProdUrl(fullUrl);
+            r.setRequestPayload(payload);
+            return r;
+        }
+        ApiComparisonResult r = findReusableResult(apiId, dbxHash, bqHash, outOfCore ? sampling : null, profileFingerprint(spec),
+                suiteId);
+        if (r == null) {
+            log.info("[COMPARE] Comparing DBX vs BQ for {} | dbxLen={} bqLen={} outOfCore={} onDisk={}/{}", apiId, dbxLen, bqLen,
+                    outOfCore, dbxBody.file != null, bqBody.file != null);
+            long compareStart = System.currentTimeMillis();
+            ComparisonProfile profile = spec.getComparisonProfile();
+            r = outOfCore ? compareLargeResponses(dbxBody, bqBody, 0.01, profile, maxMismatches, dbxHash, bqHash)
+                    : compareTwoJsonResponses(dbxBody.text, bqBody.text, 0.01, apiId, profile, maxMismatches);
+            log.info("[COMPARE] Comparison done for {} in {} ms | match={} mismatchCount={}", apiId, System.currentTimeMillis() - compareStart, r.isMatch(), r.getMismatchCount());
+        }
         r.setApiId(apiId);
         r.setJobId(jobId);
         r.setTestUrl(fullUrl);
         r.setProdUrl(fullUrl);
-        r.setTestJson(dbxJson);
-        r.setProdJson(bqJson);
+        r.setTestJson(dbxBody.preview(maxResponseSizeForComparison));
+        r.setProdJson(bqBody.preview(maxResponseSizeForComparison));
         r.setRequestPayload(payload);
         return r;
     }
 
-    private boolean isEmptyResponse(String json) {
+    /**
+     * The Query Genie trigger only needs its status and whether it returned data, so its body is received to disk
+     * and only a head of {@link #TRIGGER_BODY_CHARS} is kept as the payload.
+     */
+    private TestExecutor.ApiExecutionResult executeTrigger(String testBaseUrl, String endpoint, Map<String, String> reqHeaders,
+                                                           String payload) {
+        TestExecutor.ApiExecutionResult result = testExecutor.executeToFile(testBaseUrl, endpoint, reqHeaders, payload,
+                TRIGGER_BODY_CHARS);
+        if (result.getResponseFile() != null) {
+            result.setResponsePayload(ResponseBody.of(result).head(TRIGGER_BODY_CHARS));
+            TestExecutor.deleteQuietly(result.getResponseFile());
+            result.setResponseFile(null);
+        }
+        return result;
+    }
+
+    private TestExecutor.ApiExecutionResult executeLeg(ApiDefinition.ApiSpec spec, Map<String, String> reqHeaders,
+                                                       String testBaseUrl, String payload, String jobId, String mode) {
+        Map<String, String> legHeaders = new HashMap<>(reqHeaders);
+        legHeaders.put(HEADER_BQDBX_CONFIG, mode);
+        log.info("[COMPARE] Hitting test API ({}): {} | X-qg-request-id={}", mode, testBaseUrl + spec.getEndpoint(), jobId);
+        TestExecutor.ApiExecutionResult result = testExecutor.executeToFile(testBaseUrl, spec.getEndpoint(), legHeaders, payload,
+                maxResponseSizeForComparison);
+        log.info("[COMPARE] {} done for {}: status={} http={} durationMs={} bytes={}{}", mode, spec.getApiId(), result.getStatus(),
+                result.getHttpStatus(), result.getDurationMs(), result.getResponseLength(),
+                result.getResponseFile() != null ? " (on disk)" : "");
+        return result;
+    }
+
+    /**
+     * When an earlier completed result exists for the same API with byte-identical DBX and BQ responses
+     * (same fingerprints),
+     * return its outcome instead of recomputing the diff. The returned result links to the source row
+     * (the original one, not an intermediate reuse) so AsyncComparisonRunner can skip the LOB writes.
+     * Returns null when reuse is disabled, the legs are identical (the hash fast path is cheaper) or no prior result exists.
+     * {@code sampling} is the sampling this comparison would run with; a prior result must have used the same rate.
+     * It must also have been compared under the same profile ({@code profileFingerprint}): changed keys, ignored
+     * fields or tolerances can change the diff of the same bodies.
+     * Rows of {@code suiteId} (the suite being compared, null outside a suite) are never reused: the suite's
+     * row for this API is the one the result will overwrite.
+     */
+    ApiComparisonResult findReusableResult(String apiId, String dbxHash, String bqHash,
+                                           ComparisonProfile.Sampling sampling, String profileFingerprint,
+                                           String suiteId) {
+        if (!reusePreviousResults || resultRepository == null) return null;
+        if (dbxHash == null || bqHash == null || dbxHash.equals(bqHash)) return null;
+        try {
+            Optional<ComparisonResult> prior = suiteId == null
+                    ? resultRepository.findFirstByApiIdAndTestResponseHashAndProdResponseHashAndErrorIsNullOrderByIdDesc(
+                            apiId, dbxHash, bqHash)
+                    : resultRepository.findFirstByApiIdAndTestResponseHashAndProdResponseHashAndErrorIsNullAndSuiteIdNotOrderByIdDesc(
+                            apiId, dbxHash, bqHash, suiteId);
+            if (prior.isEmpty() || prior.get().getMismatchCount() == null) return null;
+            ComparisonResult source = prior.get();
+            if (source.getReusedFromResultId() != null) {
+                source = resultRepository.findById(source.getReusedFromResultId()).orElse(null);
+                if (source == null) return null;
+            }
+            // Another suite's row may link back into this suite, to the very row being replaced
+            if (suiteId != null && suiteId.equals(source.getSuiteId())) return null;
+            // A fail-fast diff is incomplete; recompare rather than hand it on as the full result
+            if (Boolean.TRUE.equals(source.getStoppedEarly())) return null;
+            if (!Objects.equals(source.getProfileFingerprint(), profileFingerprint)) {
+                log.info("[COMPARE] Comparison profile of {} changed since result id={} - comparing afresh", apiId, source.getId());
+                return null;
+            }
+            List<Map<String, String>> mismatches = source.getMismatchesJson() != null && !source.getMismatchesJson().isEmpty()
+                    ? objectMapper.readValue(source.getMismatchesJson(), new TypeReference<List<Map<String, String>>>() {})
+                    : Collections.emptyList();
+            List<MismatchPattern> patterns = source.getMismatchPatternsJson() != null && !source.getMismatchPatternsJson().isEmpty()
+                    ? objectMapper.readValue(source.getMismatchPatternsJson(), new TypeReference<List<MismatchPattern>>() {})
+                    : null;
+            SampleSummary sampled = source.getSamplingJson() != null && !source.getSamplingJson().isEmpty()
+                    ? objectMapper.readValue(source.getSamplingJson(), SampleSummary.class)
+                    : null;
+            // A diff taken at another sampling rate (or without sampling) covered other rows
+            Double sourceRate = sampled != null ? sampled.getRate() : null;
+            Double rate = sampling != null ? sampling.getRate() : null;
+            if (!Objects.equals(sourceRate, rate)) return null;
+            log.info("[COMPARE] Reusing diff of result id={} for {} (responses unchanged) | match={} mismatchCount={}",
+                    source.getId(), apiId, source.getMatch(), source.getMismatchCount());
+            return ApiComparisonResult.builder()
+                    .apiId(apiId)
+                    .match(Boolean.TRUE.equals(source.getMatch()))
+                    .testRowCount(source.getTestRowCount())
+                    .prodRowCount(source.getProdRowCount())
+                    .mismatchCount(source.getMismatchCount())
+                    .mismatches(mismatches)
+                    .mismatchPatterns(patterns)
+                    .sampling(sampled)
+                    .testResponseHash(dbxHash)
+                    .prodResponseHash(bqHash)
+                    .reusedFromResultId(source.getId())
+                    .build();
+        } catch (Exception e) {
+            log.warn("[COMPARE] Could not reuse previous result for {}: {}", apiId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String head(ResponseBody body) {
+        return body != null ? body.head(300) : null;
+    }
+
+    /**
+     * One leg's response body: the String TestExecutor returned, or the temp file it spilled a larger body to.
+     * Lets the out-of-core comparators, the fingerprint and the stored preview work the same on either.
+     */
+    private static final class ResponseBody {
+        private final String text;
+        private final Path file;
+        private final long length;
+
+        private ResponseBody(String text, Path file, long length) {
+            this.text = text;
+            this.file = file;
+            this.length = length;
+        }
+
+        static ResponseBody of(String text) {
+            return new ResponseBody(text, null, text.length());
+        }
+
+        static ResponseBody of(Path file) throws IOException {
+            return new ResponseBody(null, file, Files.size(file));
+        }
+
+        /** Null when the call returned no body. */
+        static ResponseBody of(TestExecutor.ApiExecutionResult result) {
+            if (result.getResponsePayload() != null) return of(result.getResponsePayload());
+            if (result.getResponseFile() == null) return null;
+            return new ResponseBody(null, result.getResponseFile(),
+                    result.getResponseLength() != null ? result.getResponseLength() : 0L);
+        }
+
+        /** Characters in memory, bytes on disk. */
+        long length() {
+            return length;
+        }
+
+        Reader open() throws IOException {
+            return text != null ? new StringReader(text) : Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+
+        String fingerprint() throws IOException {
+            return text != null ? JsonComparisonUtils.fingerprint(text) : JsonComparisonUtils.fingerprint(file);
+        }
+
+        /** Up to maxChars from the start of the body; empty when the file cannot be read. */
+        String head(int maxChars) {
+            if (text != null) return text.length() <= maxChars ? text : text.substring(0, maxChars);
+            char[] buffer = new char[maxChars];
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                int n = 0;
+                int read;
+                while (n < maxChars && (read = reader.read(buffer, n, maxChars - n)) > 0) n += read;
+                return new String(buffer, 0, n);
+            } catch (IOException e) {
+                return "";
+            }
+        }
+
+        /** The body as stored on the result: whole when in memory, else its first maxChars and its size. */
+        String preview(int maxChars) {
+            if (text != null) return text;
+            return head(maxChars) + "...[truncated, " + length + " bytes]";
+        }
+
+        /** A body spilled to disk exceeded the in-memory limit, so it is never one of the empty forms. */
+        boolean isEmpty() {
+            return text != null && isEmptyResponse(text);
+        }
+    }
+
+    /** Fingerprint of the API's comparison profile; an API without one gets that of the empty profile. */
+    private static String profileFingerprint(ApiDefinition.ApiSpec spec) {
+        ComparisonProfile profile = spec.getComparisonProfile();
+        return (profile != null ? profile : ComparisonProfile.empty()).fingerprint();
+    }
+
+    private static boolean isEmptyResponse(String json) {
         if (json == null || json.isBlank()) return true;
         String t = json.trim();
         if ("[]".equals(t) || "{}".equals(t) || "null".equals(t)) return true;
@@ -811,10 +1543,23 @@ public class TestVsProdComparisonService {
         }
     }
 
-    @SuppressWarnings("unchecked")
+    /** Parsed tree, or null when the body is blank or not JSON (callers then fall back to the String paths). */
+    private JsonNode readTreeOrNull(String json) {
+        if (json == null || json.isBlank()) return null;
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     private Object parseToComparable(String json) throws Exception {
         if (json == null || json.isBlank()) return Collections.emptyMap();
-        JsonNode node = objectMapper.readTree(json);
+        return parseToComparable(objectMapper.readTree(json));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object parseToComparable(JsonNode node) throws Exception {
         try {
             if (node.isArray()) {
                 List<Map<String, Object>> result = new ArrayList<>();
@@ -895,10 +1640,8 @@ public class TestVsProdComparisonService {
             if (validationAccessToken != null && !validationAccessToken.isBlank()) {
                 builder.header("Cookie", "access_token=" + validationAccessToken);
             }
-            HttpResponse<String> response = HttpClient.newBuilder()
-                    .followRedirects(HttpClient.Redirect.NORMAL)
-                    .build()
-                    .send(builder.GET().build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            HttpResponse<String> response = validationHttpClient.send(builder.GET().build(),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
             if (response.statusCode() >= 400) return false;
             JsonNode root = objectMapper.readTree(response.body());
             JsonNode data = root.path("data");
@@ -933,5 +1676,23 @@ public class TestVsProdComparisonService {
          * so that when retries are exhausted the last failure details are available.
          */
         private boolean shouldRetry;
+        /** SHA-256 fingerprints of the raw test/prod bodies (see JsonComparisonUtils.fingerprint). */
+        private String testResponseHash;
+        private String prodResponseHash;
+        /** Set when the diff was taken from an earlier ComparisonResult with identical fingerprints. */
+        private Long reusedFromResultId;
+        /** Every diff aggregated by path pattern (see PatternDiffSink); null when the legs matched. */
+        private List<MismatchPattern> mismatchPatterns;
+        /** One entry per shard or date chunk when the result was merged from parts (see TaxonomySharder.merge). */
+        private List<Map<String, Object>> breakdown;
+        /** Fail-fast budget reached: the comparison stopped there and mismatchCount is a lower bound. */
+        private boolean stoppedEarly;
+        /** Set when the API's profile samples rows: sampled mismatch rate with its interval and column aggregates. */
+        private SampleSummary sampling;
+        /** ComparisonProfile.fingerprint of the API's profile; stored so later runs reuse the diff only under it. */
+        private String profileFingerprint;
+        /** Row hash trees of the two bodies; only set by the out-of-core comparison of keyed row arrays. */
+        private MerkleTree testMerkleTree;
+        private MerkleTree prodMerkleTree;
     }
 }
@@ -6,11 +6,18 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
 @Entity
-@Table(name = "comparison_result")
+@Table(name = "comparison_result",
+        uniqueConstraints = @UniqueConstraint(name = "uk_comparison_result_suite_api", columnNames = {"suite_id", "api_id"}),
+        indexes = {
+                @Index(name = "idx_comparison_fingerprint", columnList = "api_id, test_response_hash, prod_response_hash"),
+                @Index(name = "idx_comparison_result_created", columnList = "created_at"),
+                @Index(name = "idx_comparison_result_reused", columnList = "reused_from_result_id")
+        })
 @Data
 @Builder
 @NoArgsConstructor
@@ -64,7 +71,71 @@ public class ComparisonResult {
     @Column(name = "request_payload")
     private String requestPayload;
 
+    /**
+     * Every diff aggregated by path pattern (PatternDiffSink JSON). Bounded in size, so retention keeps it on
+     * the row when it archives the other LOBs.
+     */
+    @Lob
+    @Column(name = "mismatch_patterns_json")
+    private String mismatchPatternsJson;
+
     /** Human-readable failure reason (HTTP status + message) when API could not be compared. */
     @Column(name = "error", length = 1024)
     private String error;
+
+    /** SHA-256 of the raw test (DBX) response body. */
+    @Column(name = "test_response_hash", length = 64)
+    private String testResponseHash;
+
+    /** SHA-256 of the raw prod (BQ) response body. */
+    @Column(name = "prod_response_hash", length = 64)
+    private String prodResponseHash;
+
+    /**
+     * Id of an earlier result with the same response hashes whose diff was reused. When set, the LOB columns
+     * on this row are left empty and readers resolve mismatches/responses from the linked row.
+     */
+    @Column(name = "reused_from_result_id")
+    private Long reusedFromResultId;
+
+    /** Wall-clock time of the comparison run for this API; feeds the scheduler's duration history. */
+    @Column(name = "duration_ms")
+    private Long durationMs;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    /**
+     * Set by retention once the LOB columns (and response hashes) were moved to an archive file and cleared;
+     * counts, status and error stay on the row.
+     */
+    @Column(name = "archived_at")
+    private Instant archivedAt;
+
+    /** Per-shard / per-date-chunk counts (ChunkBreakdown JSON) when the API was compared in parts. */
+    @Lob
+    @Column(name = "breakdown_json")
+    private String breakdownJson;
+
+    /** Row hash trees of the test / prod bodies (MerkleTree JSON), kept by retention so runs can be compared later. */
+    @Lob
+    @Column(name = "test_merkle_json")
+    private String testMerkleJson;
+
+    @Lob
+    @Column(name = "prod_merkle_json")
+    private String prodMerkleJson;
+
+    /** Fail-fast run that stopped at its mismatch budget; mismatch_count is then a lower bound. */
+    @Column(name = "stopped_early")
+    private Boolean stoppedEarly;
+
+    /** Sampled comparison outcome (SampleSummary JSON): mismatch-rate interval and per-column aggregates. */
+    @Lob
+    @Column(name = "sampling_json")
+    private String samplingJson;
+
+    /** ComparisonProfile.fingerprint of the API's profile when compared; a diff is only reused under the same one. */
+    @Column(name = "profile_fingerprint", length = 64)
+    private String profileFingerprint;
 }
@@ -8,10 +8,11 @@ import lombok.NoArgsConstructor;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 @Entity
-@Table(name = "comparison_suite")
+@Table(name = "comparison_suite", indexes = @Index(name = "idx_comparison_suite_status", columnList = "suite_status"))
 @Data
 @Builder
 @NoArgsConstructor
@@ -2,6 +2,7 @@ package com.analytics.comparison.repository;
 
 import com.analytics.comparison.entity.ComparisonResult;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -10,4 +11,17 @@ public interface ComparisonResultRepository extends JpaRepository<ComparisonResu
     List<ComparisonResult> findBySuiteIdOrderByIdAsc(String suiteId);
 
     Optional<ComparisonResult> findBySuiteIdAndApiId(String suiteId, String apiId);
+
+    /** Latest successfully compared result for the same API and byte-identical DBX/BQ responses. */
+    Optional<ComparisonResult> findFirstByApiIdAndTestResponseHashAndProdResponseHashAndErrorIsNullOrderByIdDesc(
+            String apiId, String testResponseHash, String prodResponseHash);
+
+    /** As above, leaving out the rows of {@code suiteId} (the suite whose row the result will replace). */
+    Optional<ComparisonResult> findFirstByApiIdAndTestResponseHashAndProdResponseHashAndErrorIsNullAndSuiteIdNotOrderByIdDesc(
+            String apiId, String testResponseHash, String prodResponseHash, String suiteId);
+
+    /** Rows of [apiId, avg(durationMs)] over successful runs. */
+    @Query("select r.apiId, avg(r.durationMs) from ComparisonResult r "
+            + "where r.durationMs is not null and r.error is null group by r.apiId")
+    List<Object[]> averageDurationByApi();
 }
@@ -3,5 +3,9 @@ package com.analytics.comparison.repository;
 import com.analytics.comparison.entity.ComparisonSuite;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 public interface ComparisonSuiteRepository extends JpaRepository<ComparisonSuite, String> {
+
+    List<ComparisonSuite> findBySuiteStatus(String suiteStatus);
 }
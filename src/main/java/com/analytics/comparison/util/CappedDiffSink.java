@@ -0,0 +1,62 @@
+package com.analytics.comparison.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DiffSink that keeps the first {@code limit} diffs (in {@link JsonDiff} form, same wording as
+ * {@link UniversalJsonComparator.JsonComparisonResult#toFlatDiffs()}) and only counts the rest.
+ * With a {@code stopAfter} budget it reports itself full once that many diffs were seen, so the comparison
+ * ends early and the total is a lower bound.
+ */
+public class CappedDiffSink implements DiffSink {
+
+    private final int limit;
+    private final long stopAfter;
+    private final List<JsonDiff> diffs = new ArrayList<>();
+    private long total;
+
+    public CappedDiffSink(int limit) {
+        this(limit, 0);
+    }
+
+    /** @param stopAfter diffs after which {@link #isFull()} turns true; 0 for no budget */
+    public CappedDiffSink(int limit, long stopAfter) {
+        this.limit = limit;
+        this.stopAfter = Math.max(0, stopAfter);
+    }
+
+    @Override
+    public void addMissingInFirst(String path, String keyLabel, String compositeKey) {
+        add(path + "[" + keyLabel + "=" + compositeKey + "]", "present in second", "missing in first");
+    }
+
+    @Override
+    public void addMissingInSecond(String path, String keyLabel, String compositeKey) {
+        add(path + "[" + keyLabel + "=" + compositeKey + "]", "missing in second", "present in first");
+    }
+
+    @Override
+    public void addFieldDiff(String path, String prodValue, String testValue) {
+        add(path, prodValue, testValue);
+    }
+
+    private void add(String path, String prod, String test) {
+        total++;
+        if (diffs.size() < limit) diffs.add(new JsonDiff(path, prod, test));
+    }
+
+    @Override
+    public boolean isFull() {
+        return stopAfter > 0 && total >= stopAfter;
+    }
+
+    public List<JsonDiff> getDiffs() {
+        return Collections.unmodifiableList(diffs);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}
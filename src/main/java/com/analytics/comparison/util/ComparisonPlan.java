@@ -0,0 +1,54 @@
+package com.analytics.comparison.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of the planning phase of a comparison (see {@link UniversalJsonComparator#scan}): for every schema path
+ * (as in {@link ComparisonProfile}) the sorted union of object field names, and for every array of objects the
+ * composite key found once over all its instances in both documents. Arrays without a unique key are absent and
+ * fall back to discovery per instance. Immutable; cached by {@link ComparisonPlanner} under its fingerprint.
+ */
+public final class ComparisonPlan {
+
+    private final String fingerprint;
+    private final Map<String, List<String>> keys;
+    private final Map<String, List<String>> fields;
+    private final Map<String, Set<String>> fieldSets;
+
+    ComparisonPlan(String fingerprint, Map<String, List<String>> keys, Map<String, List<String>> fields) {
+        this.fingerprint = fingerprint;
+        this.keys = Collections.unmodifiableMap(keys);
+        this.fields = Collections.unmodifiableMap(fields);
+        Map<String, Set<String>> sets = new HashMap<>();
+        for (Map.Entry<String, List<String>> e : fields.entrySet()) sets.put(e.getKey(), new HashSet<>(e.getValue()));
+        this.fieldSets = sets;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /** Planned key of the array at {@code path}, or null when none was found. */
+    public List<String> keysFor(String path) {
+        return keys.get(path);
+    }
+
+    /** Sorted field names seen on objects at {@code path}, or null for a path the plan did not see. */
+    public List<String> fieldsFor(String path) {
+        return fields.get(path);
+    }
+
+    boolean hasField(String path, String name) {
+        Set<String> set = fieldSets.get(path);
+        return set != null && set.contains(name);
+    }
+
+    public int keyedArrayCount() {
+        return keys.size();
+    }
+}
@@ -0,0 +1,81 @@
+package com.analytics.comparison.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-phase in-memory comparison: plan (one walk over both documents to infer field names, types and array keys),
+ * then execute the plan. Plans are cached per API under the schema fingerprint of the documents, so later runs
+ * against the same response shape skip key discovery entirely. A cached key that no longer identifies the
+ * records of some array instance is ignored for that instance, which then discovers its own key.
+ */
+public class ComparisonPlanner {
+
+    private final int maxPlans;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final Map<String, ComparisonPlan> plans = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ComparisonPlan> eldest) {
+            return size() > maxPlans;
+        }
+    };
+
+    /** @param maxPlans plans kept (least recently used evicted first); 0 plans every comparison afresh */
+    public ComparisonPlanner(int maxPlans) {
+        this.maxPlans = Math.max(0, maxPlans);
+    }
+
+    /**
+     * As {@link UniversalJsonComparator#compare(Object, Object, double, ComparisonProfile, DiffSink)}, planned
+     * once per schema of {@code apiId}. Declared keys in {@code profile} take precedence over planned ones.
+     *
+     * @return the plan the comparison ran with
+     */
+    public ComparisonPlan compare(String apiId, Object json1, Object json2, double floatTolerance,
+                                  ComparisonProfile profile, DiffSink sink) throws Exception {
+        ComparisonProfile declared = profile != null ? profile : ComparisonProfile.empty();
+        Object prepared1 = UniversalJsonComparator.prepare(json1, "", declared);
+        Object prepared2 = UniversalJsonComparator.prepare(json2, "", declared);
+        ComparisonPlan plan = plan(apiId, prepared1, prepared2, "");
+        UniversalJsonComparator.execute("", "", prepared1, prepared2, floatTolerance, declared.withPlan(plan), sink);
+        return plan;
+    }
+
+    /** Cached plan for the documents' schema, compiled from this scan on a miss. */
+    ComparisonPlan plan(String apiId, Object prepared1, Object prepared2, String rootSchema) {
+        UniversalJsonComparator.Scan scan = UniversalJsonComparator.scan(prepared1, prepared2, rootSchema);
+        String cacheKey = apiId + "|" + rootSchema + "|" + scan.fingerprint();
+        synchronized (plans) {
+            ComparisonPlan cached = plans.get(cacheKey);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        ComparisonPlan plan = UniversalJsonComparator.plan(scan);
+        if (maxPlans > 0) {
+            synchronized (plans) {
+                plans.put(cacheKey, plan);
+            }
+        }
+        return plan;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.analytics.comparison.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Per-API comparison settings from the {@code comparison:} block of an API YAML, compiled once by ApiCatalog.
+ * Rules are addressed by schema path: the JSON path with array keys and indexes left out ({@code ""} for the
+ * root array, {@code data}, {@code data.variants}). A rule name without a dot matches that field name at any
+ * depth, a dotted one only that path.
+ * <ul>
+ *   <li>keys: key fields per array path; declared arrays skip key discovery and are matched by hash lookup</li>
+ *   <li>ignore: fields dropped from both sides before comparing (volatile timestamps, request ids)</li>
+ *   <li>tolerances: absolute and/or relative numeric tolerance replacing the default float tolerance</li>
+ *   <li>sampling: out-of-core comparisons compare only a hash-selected share of the row keys (see {@link Sampling})</li>
+ * </ul>
+ * {@link #withPlan} adds the keys and field lists of a {@link ComparisonPlan}; declared keys win over planned ones.
+ */
+public final class ComparisonProfile {
+
+    private final Map<String, List<String>> keys;
+    private final Set<String> ignoredPaths;
+    private final Set<String> ignoredNames;
+    private final Map<String, Tolerance> tolerancePaths;
+    private final Map<String, Tolerance> toleranceNames;
+    private final ComparisonPlan plan;
+    private Sampling sampling;
+
+    private ComparisonProfile(Map<String, List<String>> keys) {
+        this.keys = keys;
+        this.ignoredPaths = new HashSet<>();
+        this.ignoredNames = new HashSet<>();
+        this.tolerancePaths = new HashMap<>();
+        this.toleranceNames = new HashMap<>();
+        this.plan = null;
+    }
+
+    private ComparisonProfile(ComparisonProfile declared, ComparisonPlan plan) {
+        this.keys = declared.keys;
+        this.ignoredPaths = declared.ignoredPaths;
+        this.ignoredNames = declared.ignoredNames;
+        this.tolerancePaths = declared.tolerancePaths;
+        this.toleranceNames = declared.toleranceNames;
+        this.plan = plan;
+        this.sampling = declared.sampling;
+    }
+
+    /** A profile with nothing declared. */
+    public static ComparisonProfile empty() {
+        return new ComparisonProfile(Collections.emptyMap());
+    }
+
+    /** This profile's rules plus the keys and field lists of {@code plan} (replacing any earlier plan). */
+    public ComparisonProfile withPlan(ComparisonPlan plan) {
+        return new ComparisonProfile(this, plan);
+    }
+
+    public static ComparisonProfile compile(Map<String, List<String>> keys, List<String> ignore,
+                                            Map<String, Tolerance> tolerances) {
+        return compile(keys, ignore, tolerances, null);
+    }
+
+    /**
+     * @throws IllegalArgumentException for an empty key list, a tolerance without a non-negative absolute or
+     *                                  relative value, or a sampling rate / confidence outside (0, 1]
+     */
+    public static ComparisonProfile compile(Map<String, List<String>> keys, List<String> ignore,
+                                            Map<String, Tolerance> tolerances, Sampling sampling) {
+        Map<String, List<String>> compiledKeys = new HashMap<>();
+        if (keys != null) {
+            for (Map.Entry<String, List<String>> e : keys.entrySet()) {
+                if (e.getValue() == null || e.getValue().isEmpty()) {
+                    throw new IllegalArgumentException("No key fields for array '" + e.getKey() + "'");
+                }
+                compiledKeys.put(e.getKey() != null ? e.getKey().trim() : "", List.copyOf(e.getValue()));
+            }
+        }
+        ComparisonProfile profile = new ComparisonProfile(Collections.unmodifiableMap(compiledKeys));
+        if (ignore != null) {
+            for (String field : ignore) {
+                if (field == null || field.isBlank()) continue;
+                (field.contains(".") ? profile.ignoredPaths : profile.ignoredNames).add(field.trim());
+            }
+        }
+        if (tolerances != null) {
+            for (Map.Entry<String, Tolerance> e : tolerances.entrySet()) {
+                Tolerance t = e.getValue();
+                if (t == null || (t.getAbsolute() == null && t.getRelative() == null)
+                        || (t.getAbsolute() != null && t.getAbsolute() < 0) || (t.getRelative() != null && t.getRelative() < 0)) {
+                    throw new IllegalArgumentException("Tolerance for '" + e.getKey() + "' needs a non-negative absolute or relative value");
+                }
+                String field = e.getKey().trim();
+                (field.contains(".") ? profile.tolerancePaths : profile.toleranceNames).put(field, t);
+            }
+        }
+        if (sampling != null) {
+            if (sampling.getRate() == null || !(sampling.getRate() > 0) || sampling.getRate() > 1) {
+                throw new IllegalArgumentException("Sampling rate must be in (0, 1], got " + sampling.getRate());
+            }
+            if (sampling.getConfidence() != null && !(sampling.getConfidence() > 0 && sampling.getConfidence() < 1)) {
+                throw new IllegalArgumentException("Sampling confidence must be in (0, 1), got " + sampling.getConfidence());
+            }
+            profile.sampling = new Sampling(sampling.getRate(),
+                    sampling.getConfidence() != null ? sampling.getConfidence() : Sampling.DEFAULT_CONFIDENCE);
+        }
+        return profile;
+    }
+
+    /** Sampling mode of out-of-core comparisons, or null to compare every row. */
+    public Sampling getSampling() {
+        return sampling;
+    }
+
+    /** Declared (else planned) key fields of the array at {@code arrayPath}, or null to discover them. */
+    public List<String> keysFor(String arrayPath) {
+        List<String> declared = keys.get(arrayPath);
+        if (declared != null || plan == null) return declared;
+        return plan.keysFor(arrayPath);
+    }
+
+    /** True when the key of {@code arrayPath} comes from the YAML rather than a plan. */
+    public boolean isDeclared(String arrayPath) {
+        return keys.containsKey(arrayPath);
+    }
+
+    /** Planned sorted field names of the objects at {@code path}, or null. */
+    List<String> plannedFields(String path) {
+        return plan != null ? plan.fieldsFor(path) : null;
+    }
+
+    boolean isPlannedField(String path, String name) {
+        return plan != null && plan.hasField(path, name);
+    }
+
+    public boolean isIgnored(String path, String name) {
+        return ignoredNames.contains(name) || (!ignoredPaths.isEmpty() && ignoredPaths.contains(path));
+    }
+
+    /** Tolerance for the field, or null for the default float tolerance. */
+    public Tolerance toleranceFor(String path, String name) {
+        if (!tolerancePaths.isEmpty()) {
+            Tolerance t = tolerancePaths.get(path);
+            if (t != null) return t;
+        }
+        return toleranceNames.isEmpty() ? null : toleranceNames.get(name);
+    }
+
+    public boolean hasIgnoredFields() {
+        return !ignoredNames.isEmpty() || !ignoredPaths.isEmpty();
+    }
+
+    /** Schema path of field {@code name} under {@code parent}. */
+    public static String child(String parent, String name) {
+        return parent == null || parent.isEmpty() ? name : parent + "." + name;
+    }
+
+    /**
+     * The node without ignored fields (copied only when something is removed), so that the row hashes of
+     * {@link MerkleTree} agree when only ignored fields differ.
+     */
+    public JsonNode withoutIgnored(JsonNode node, String path) {
+        if (!hasIgnoredFields()) return node;
+        if (node.isArray()) {
+            ArrayNode copy = null;
+            for (int i = 0; i < node.size(); i++) {
+                JsonNode item = node.get(i);
+                JsonNode stripped = withoutIgnored(item, path);
+                if (stripped != item && copy == null) copy = ((ArrayNode) node).deepCopy();
+                if (copy != null) copy.set(i, stripped);
+            }
+            return copy != null ? copy : node;
+        }
+        if (!node.isObject()) return node;
+        ObjectNode copy = null;
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        for (String name : names) {
+            String childPath = child(path, name);
+            if (isIgnored(childPath, name)) {
+                if (copy == null) copy = ((ObjectNode) node).deepCopy();
+                copy.remove(name);
+                continue;
+            }
+            JsonNode value = node.get(name);
+            JsonNode stripped = withoutIgnored(value, childPath);
+            if (stripped != value) {
+                if (copy == null) copy = ((ObjectNode) node).deepCopy();
+                copy.set(name, stripped);
+            }
+        }
+        return copy != null ? copy : node;
+    }
+
+    /** Numeric tolerance of one field: equal when within {@code absolute} or within {@code relative} of the larger magnitude. */
+    @Data
+    @NoArgsConstructor
+    public static class Tolerance {
+        private Double absolute;
+        private Double relative;
+
+        public Tolerance(Double absolute, Double relative) {
+            this.absolute = absolute;
+            this.relative = relative;
+        }
+
+        public boolean equal(double a, double b) {
+            if (a == b) return true;
+            double diff = Math.abs(a - b);
+            if (absolute != null && diff <= absolute) return true;
+            return relative != null && diff <= relative * Math.max(Math.abs(a), Math.abs(b));
+        }
+    }
+
+    /**
+     * Share of row keys an out-of-core comparison compares field by field. A key is selected by its hash, so
+     * test and prod pick the same rows without coordinating; numeric column aggregates still cover every row.
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Sampling {
+        static final double DEFAULT_CONFIDENCE = 0.95;
+
+        /** Fraction of keys compared, in (0, 1] */
+        private Double rate;
+        /** Confidence level of the reported mismatch-rate interval (default 0.95) */
+        private Double confidence;
+
+        public Sampling(Double rate, Double confidence) {
+            this.rate = rate;
+            this.confidence = confidence;
+        }
+
+        /** True when the row with this composite key (or index) belongs to the sample, on either side. */
+        public boolean selects(String key) {
+            if (rate >= 1) return true;
+            // Top 53 bits of the mixed hash as a uniform fraction in [0, 1)
+            return (JsonComparisonUtils.hash64(key) >>> 11) * 0x1.0p-53 < rate;
+        }
+    }
+
+    /**
+     * SHA-256 (hex) of the declared rules: keys, ignored fields, tolerances with their values and sampling. A
+     * cached plan is not part of it. Two profiles with the same fingerprint compare any pair of bodies alike.
+     */
+    public String fingerprint() {
+        StringBuilder sb = new StringBuilder("keys=").append(new TreeMap<>(keys))
+                .append(";ignore=").append(new TreeSet<>(ignoredNames)).append(new TreeSet<>(ignoredPaths))
+                .append(";tolerances=");
+        for (Map<String, Tolerance> tolerances : List.of(toleranceNames, tolerancePaths)) {
+            for (Map.Entry<String, Tolerance> e : new TreeMap<>(tolerances).entrySet()) {
+                sb.append(e.getKey()).append('=').append(e.getValue().getAbsolute()).append('/')
+                        .append(e.getValue().getRelative()).append(',');
+            }
+            sb.append('|');
+        }
+        if (sampling != null) sb.append(";sampling=").append(sampling.getRate()).append('/').append(sampling.getConfidence());
+        return JsonComparisonUtils.fingerprint(sb.toString());
+    }
+
+    @Override
+    public String toString() {
+        return "ComparisonProfile{keys=" + keys + ", ignore=" + ignoredNames + ignoredPaths
+                + ", tolerances=" + toleranceNames.keySet() + tolerancePaths.keySet()
+                + (sampling != null ? ", sampling=" + sampling.getRate() : "") + "}";
+    }
+}
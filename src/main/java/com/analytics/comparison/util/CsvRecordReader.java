@@ -0,0 +1,102 @@
+package com.analytics.comparison.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 CSV reader: one record per {@link #next()}, quoted fields may contain commas,
+ * doubled quotes and line breaks. Only the current record is held in memory. Blank lines are skipped.
+ */
+public class CsvRecordReader implements Closeable {
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private int pushback = Integer.MIN_VALUE;
+
+    public CsvRecordReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader, 64 * 1024);
+    }
+
+    /** Next record, or null at end of input. */
+    public List<String> next() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == EOF) return null;
+            if (c == '\n') continue;
+            if (c == '\r') {
+                skipLf();
+                continue;
+            }
+            unread(c);
+            return readRecord();
+        }
+    }
+
+    private List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        while (true) {
+            int c = read();
+            if (inQuotes) {
+                if (c == EOF) {
+                    fields.add(field.toString());
+                    return fields;
+                }
+                if (c == '"') {
+                    int n = read();
+                    if (n == '"') {
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                        unread(n);
+                    }
+                } else {
+                    field.append((char) c);
+                }
+                continue;
+            }
+            if (c == EOF || c == '\n' || c == '\r') {
+                if (c == '\r') skipLf();
+                fields.add(field.toString());
+                return fields;
+            }
+            if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.length() == 0) {
+                inQuotes = true;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    private void skipLf() throws IOException {
+        int n = read();
+        if (n != '\n') unread(n);
+    }
+
+    private int read() throws IOException {
+        if (pushback != Integer.MIN_VALUE) {
+            int c = pushback;
+            pushback = Integer.MIN_VALUE;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c) {
+        pushback = c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,296 @@
+package com.analytics.comparison.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Streaming comparator for CSV exports. Both inputs are read record by record, keyed by columns discovered
+ * from the header (non-metric columns whose sample value is not a fractional number), sorted with
+ * {@link ExternalKeySorter} (spilling to disk past the in-memory limits) and merge-joined. Matched rows are
+ * compared column by column with the same float tolerance as {@link UniversalJsonComparator}; results
+ * go to a {@link DiffSink}, so memory stays bounded regardless of file size. With
+ * {@link ComparisonProfile.Sampling} only rows whose key is selected are sorted and compared, and the numeric
+ * value columns of every row are aggregated instead.
+ */
+public class CsvStreamComparator {
+
+    private static final String KEY_DELIMITER = "|";
+
+    private final double floatTolerance;
+    private final int maxRowsInMemory;
+    private final long maxBytesInMemory;
+
+    public CsvStreamComparator(double floatTolerance, int maxRowsInMemory, long maxBytesInMemory) {
+        this.floatTolerance = floatTolerance;
+        this.maxRowsInMemory = maxRowsInMemory;
+        this.maxBytesInMemory = maxBytesInMemory;
+    }
+
+    /**
+     * Compare two CSV streams (first = test/DBX, second = prod/BQ). Readers are closed on return.
+     */
+    public Summary compare(Reader first, Reader second, DiffSink sink) throws IOException {
+        return compare(first, second, null, sink);
+    }
+
+    /**
+     * As {@link #compare(Reader, Reader, DiffSink)}, with the root-array ({@code ""}) keys of {@code profile} as
+     * key columns when both headers have them, its ignored columns left out, its tolerances per column and its
+     * sampling (if any) limiting the rows compared.
+     */
+    public Summary compare(Reader first, Reader second, ComparisonProfile profile, DiffSink sink) throws IOException {
+        try (CsvRecordReader r1 = new CsvRecordReader(first);
+             CsvRecordReader r2 = new CsvRecordReader(second);
+             ExternalKeySorter sorter1 = new ExternalKeySorter(maxRowsInMemory, maxBytesInMemory);
+             ExternalKeySorter sorter2 = new ExternalKeySorter(maxRowsInMemory, maxBytesInMemory)) {
+
+            List<String> header1 = normalizeHeader(r1.next());
+            List<String> header2 = normalizeHeader(r2.next());
+            List<String> sample1 = r1.next();
+            List<String> sample2 = r2.next();
+
+            List<String> declared = profile != null ? profile.keysFor("") : null;
+            List<String> keyColumns = declared != null && hasColumns(header1, declared) && hasColumns(header2, declared)
+                    ? declared : discoverKeyColumns(header1, header2, sample1, sample2);
+            int[] keyIdx1 = indexesOf(header1, keyColumns);
+            int[] keyIdx2 = indexesOf(header2, keyColumns);
+            List<String> valueColumns = valueColumns(header1, header2, keyColumns);
+            if (profile != null) valueColumns.removeIf(col -> profile.isIgnored(col, col));
+            int[] valIdx1 = indexesOf(header1, valueColumns);
+            int[] valIdx2 = indexesOf(header2, valueColumns);
+
+            RowSample sample = profile != null && profile.getSampling() != null
+                    ? new RowSample(profile.getSampling(), sink) : null;
+            long rows1 = feed(sorter1, r1, sample1, keyIdx1, valueColumns, valIdx1, sample, true);
+            long rows2 = feed(sorter2, r2, sample2, keyIdx2, valueColumns, valIdx2, sample, false);
+
+            ComparisonProfile.Tolerance[] tolerances = new ComparisonProfile.Tolerance[valueColumns.size()];
+            for (int c = 0; profile != null && c < tolerances.length; c++) {
+                tolerances[c] = profile.toleranceFor(valueColumns.get(c), valueColumns.get(c));
+            }
+            String keyLabel = String.join(",", keyColumns);
+
+            mergeJoin(sorter1.sorted(), sorter2.sorted(), keyLabel, valueColumns, valIdx1, valIdx2, tolerances,
+                    sample != null ? sample : sink, sample);
+            SampleSummary sampled = sample != null ? sample.finish("", floatTolerance, profile) : null;
+            return new Summary(rows1, rows2, keyColumns, sorter1.getSpilledRunCount() + sorter2.getSpilledRunCount(), sampled);
+        }
+    }
+
+    /** Sorts the rows of one side (only the selected ones when sampling) and returns how many were read. */
+    private static long feed(ExternalKeySorter sorter, CsvRecordReader reader, List<String> first, int[] keyIdx,
+                             List<String> valueColumns, int[] valIdx, RowSample sample, boolean firstSide) throws IOException {
+        long rows = 0;
+        for (List<String> row = first; row != null; row = reader.next()) {
+            rows++;
+            String key = buildKey(row, keyIdx);
+            if (sample != null) {
+                for (int c = 0; c < valIdx.length; c++) {
+                    if (valIdx[c] >= 0 && valIdx[c] < row.size()) sample.addValue(firstSide, valueColumns.get(c), row.get(valIdx[c]));
+                }
+                if (!sample.selects(key)) continue;
+            }
+            sorter.add(key, row.toArray(new String[0]));
+        }
+        return rows;
+    }
+
+    private void mergeJoin(Iterator<ExternalKeySorter.KeyedRecord> it1, Iterator<ExternalKeySorter.KeyedRecord> it2,
+                           String keyLabel, List<String> valueColumns, int[] valIdx1, int[] valIdx2,
+                           ComparisonProfile.Tolerance[] tolerances, DiffSink sink, RowSample sample) {
+        PeekingIterator p1 = new PeekingIterator(it1);
+        PeekingIterator p2 = new PeekingIterator(it2);
+        while ((p1.peek() != null || p2.peek() != null) && !sink.isFull()) {
+            String k1 = p1.peek() != null ? p1.peek().getKey() : null;
+            String k2 = p2.peek() != null ? p2.peek().getKey() : null;
+            int cmp = k1 == null ? 1 : k2 == null ? -1 : k1.compareTo(k2);
+            String key = cmp <= 0 ? k1 : k2;
+            List<String[]> group1 = cmp <= 0 ? p1.takeGroup(key) : Collections.emptyList();
+            List<String[]> group2 = cmp >= 0 ? p2.takeGroup(key) : Collections.emptyList();
+
+            // Duplicate keys are paired in file order; the occurrence suffix keeps reported keys distinct
+            boolean duplicated = group1.size() > 1 || group2.size() > 1;
+            int n = Math.max(group1.size(), group2.size());
+            for (int i = 0; i < n; i++) {
+                String reportedKey = duplicated ? key + "#" + (i + 1) : key;
+                long before = sample != null ? sample.diffs() : 0;
+                if (i >= group2.size()) {
+                    sink.addMissingInSecond("", keyLabel, reportedKey);
+                } else if (i >= group1.size()) {
+                    sink.addMissingInFirst("", keyLabel, reportedKey);
+                } else {
+                    compareRow("[" + keyLabel + "=" + reportedKey + "]", group1.get(i), group2.get(i),
+                            valueColumns, valIdx1, valIdx2, tolerances, sink);
+                }
+                if (sample != null) sample.compared(before);
+            }
+        }
+    }
+
+    private void compareRow(String rowPath, String[] row1, String[] row2, List<String> valueColumns,
+                            int[] valIdx1, int[] valIdx2, ComparisonProfile.Tolerance[] tolerances, DiffSink sink) {
+        for (int c = 0; c < valueColumns.size(); c++) {
+            String v1 = valueAt(row1, valIdx1[c]);
+            String v2 = valueAt(row2, valIdx2[c]);
+            if (!UniversalJsonComparator.scalarsEqual(v1, v2, floatTolerance, tolerances[c])) {
+                sink.addFieldDiff(rowPath + "." + valueColumns.get(c),
+                        v2 != null ? v2 : "null", v1 != null ? v1 : "null");
+            }
+        }
+    }
+
+    private static String valueAt(String[] row, int idx) {
+        return idx >= 0 && idx < row.length ? row[idx] : null;
+    }
+
+    /**
+     * Key columns: present in both headers, not metric-like by name, and (when a sample row exists) not
+     * numeric unless the name reads like an identifier (id, sku, date, ...). Falls back to all shared
+     * columns when nothing qualifies.
+     */
+    static List<String> discoverKeyColumns(List<String> header1, List<String> header2,
+                                           List<String> sample1, List<String> sample2) {
+        List<String> shared = new ArrayList<>();
+        for (String col : header1) {
+            if (indexOf(header2, col) >= 0) shared.add(col);
+        }
+        List<String> keys = new ArrayList<>();
+        for (String col : shared) {
+            if (UniversalJsonComparator.isMetricField(col)) continue;
+            boolean numeric = isNumericSample(sample1, indexOf(header1, col)) || isNumericSample(sample2, indexOf(header2, col));
+            if (numeric && !isIdentifierName(col)) continue;
+            keys.add(col);
+        }
+        return keys.isEmpty() ? shared : keys;
+    }
+
+    private static final Set<String> IDENTIFIER_TOKENS = Set.of(
+            "id", "sku", "upc", "ean", "gtin", "asin", "tcin", "code", "key", "store", "date", "day", "week", "month", "year");
+
+    private static boolean isIdentifierName(String column) {
+        for (String token : column.split("(?<=[a-z])(?=[A-Z])|[^A-Za-z0-9]+")) {
+            if (IDENTIFIER_TOKENS.contains(token.toLowerCase(Locale.ROOT))) return true;
+        }
+        return false;
+    }
+
+    private static boolean isNumericSample(List<String> sample, int idx) {
+        if (sample == null || idx < 0 || idx >= sample.size()) return false;
+        return UniversalJsonComparator.isNumeric(sample.get(idx));
+    }
+
+    private static List<String> valueColumns(List<String> header1, List<String> header2, List<String> keyColumns) {
+        List<String> cols = new ArrayList<>();
+        for (String col : header1) {
+            if (indexOf(keyColumns, col) < 0) cols.add(col);
+        }
+        for (String col : header2) {
+            if (indexOf(keyColumns, col) < 0 && indexOf(cols, col) < 0) cols.add(col);
+        }
+        return cols;
+    }
+
+    private static String buildKey(List<String> row, int[] keyIdx) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keyIdx.length; i++) {
+            if (i > 0) sb.append(KEY_DELIMITER);
+            int idx = keyIdx[i];
+            String v = idx >= 0 && idx < row.size() ? row.get(idx) : "";
+            String norm = UniversalJsonComparator.normalizeKeyValueForMatching(v, "");
+            sb.append(norm != null ? norm.trim() : "");
+        }
+        return sb.toString();
+    }
+
+    private static List<String> normalizeHeader(List<String> header) {
+        if (header == null) return Collections.emptyList();
+        List<String> out = new ArrayList<>(header.size());
+        for (String h : header) out.add(h.trim());
+        if (!out.isEmpty() && out.get(0).startsWith("\uFEFF")) {
+            out.set(0, out.get(0).substring(1));
+        }
+        return out;
+    }
+
+    private static boolean hasColumns(List<String> header, List<String> columns) {
+        for (String col : columns) {
+            if (indexOf(header, col) < 0) return false;
+        }
+        return true;
+    }
+
+    private static int[] indexesOf(List<String> header, List<String> columns) {
+        int[] idx = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) idx[i] = indexOf(header, columns.get(i));
+        return idx;
+    }
+
+    private static int indexOf(List<String> header, String column) {
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).equalsIgnoreCase(column)) return i;
+        }
+        return -1;
+    }
+
+    private static class PeekingIterator {
+        private final Iterator<ExternalKeySorter.KeyedRecord> it;
+        private ExternalKeySorter.KeyedRecord head;
+
+        PeekingIterator(Iterator<ExternalKeySorter.KeyedRecord> it) {
+            this.it = it;
+            this.head = it.hasNext() ? it.next() : null;
+        }
+
+        ExternalKeySorter.KeyedRecord peek() {
+            return head;
+        }
+
+        List<String[]> takeGroup(String key) {
+            List<String[]> group = new ArrayList<>(1);
+            while (head != null && head.getKey().equals(key)) {
+                group.add(head.getFields());
+                head = it.hasNext() ? it.next() : null;
+            }
+            return group;
+        }
+    }
+
+    /** Row counts and the key used for matching. */
+    public static class Summary {
+        private final long firstRowCount;
+        private final long secondRowCount;
+        private final List<String> keyColumns;
+        private final int spilledRuns;
+        private final SampleSummary sample;
+
+        Summary(long firstRowCount, long secondRowCount, List<String> keyColumns, int spilledRuns, SampleSummary sample) {
+            this.firstRowCount = firstRowCount;
+            this.secondRowCount = secondRowCount;
+            this.keyColumns = keyColumns;
+            this.spilledRuns = spilledRuns;
+            this.sample = sample;
+        }
+
+        public long getFirstRowCount() {
+            return firstRowCount;
+        }
+
+        public long getSecondRowCount() {
+            return secondRowCount;
+        }
+
+        public List<String> getKeyColumns() {
+            return keyColumns;
+        }
+
+        public int getSpilledRuns() {
+            return spilledRuns;
+        }
+
+        /** Sampled rows, mismatch-rate interval and column aggregates; null when the profile has no sampling. */
+        public SampleSummary getSample() {
+            return sample;
+        }
+    }
+}
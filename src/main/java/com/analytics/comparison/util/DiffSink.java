@@ -0,0 +1,23 @@
+package com.analytics.comparison.util;
+
+/**
+ * Receives differences as a comparator finds them, so callers decide what to keep
+ * (everything, a capped list, counts only) instead of the comparator buffering every diff.
+ * "First" is the test/DBX side, "second" the prod/BQ side.
+ */
+public interface DiffSink {
+
+    /** Record keyed by {@code keyLabel=compositeKey} exists only in the second input. */
+    void addMissingInFirst(String path, String keyLabel, String compositeKey);
+
+    /** Record keyed by {@code keyLabel=compositeKey} exists only in the first input. */
+    void addMissingInSecond(String path, String keyLabel, String compositeKey);
+
+    /** Field at {@code path} differs: {@code prodValue} from the second input, {@code testValue} from the first. */
+    void addFieldDiff(String path, String prodValue, String testValue);
+
+    /** True once the sink needs no further diffs; comparators then stop walking the documents. */
+    default boolean isFull() {
+        return false;
+    }
+}
@@ -0,0 +1,419 @@
+package com.analytics.comparison.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Out-of-core variant of the keyed array comparison in {@link UniversalJsonComparator}, for responses too
+ * large to hold as Map trees. The row array (root array, or the first array-of-objects field of a root
+ * object) is streamed element by element; the composite key is discovered from the first
+ * {@code keySampleSize} rows of each side, rows are sorted by key with {@link ExternalKeySorter} (binary
+ * runs on disk once the in-memory limits are exceeded) and the two sides are merge-joined. Only one matched
+ * pair is materialized at a time; differences go straight to the {@link DiffSink}. Other root fields are
+ * small and compared in memory. Rows with no key values are paired by position among the keyless rows of
+ * each side and reported as {@code (no key)#n}.
+ * <p>
+ * While the rows are fed to the sorters each side also builds a {@link MerkleTree} from the rows' canonical
+ * hashes. The join only parses and compares rows whose bucket differs between the two trees, so a mostly
+ * matching response costs one hash per row plus the sort.
+ * <p>
+ * With {@link ComparisonProfile.Sampling} only rows whose key is selected are sorted and compared (no hash
+ * trees), while the numeric fields of every row feed per-column aggregates; see {@link Summary#getSample()}.
+ */
+public class ExternalJsonArrayComparator {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    /**
+     * Sort key prefix of rows whose key fields are all empty. Such rows get this plus their zero-padded ordinal
+     * among the keyless rows of their side, so they sort first and pair up positionally with the other side's.
+     */
+    private static final String KEYLESS_PREFIX = "\u0000#";
+
+    private final double floatTolerance;
+    private final int maxRowsInMemory;
+    private final long maxBytesInMemory;
+    private final int keySampleSize;
+    private final int merkleMaxBuckets;
+    private final int merkleRowsPerBucket;
+
+    public ExternalJsonArrayComparator(double floatTolerance, int maxRowsInMemory, long maxBytesInMemory, int keySampleSize) {
+        this(floatTolerance, maxRowsInMemory, maxBytesInMemory, keySampleSize, 1024, 256);
+    }
+
+    /** @param merkleMaxBuckets leaves of the per-side hash trees; 0 compares every row pair */
+    public ExternalJsonArrayComparator(double floatTolerance, int maxRowsInMemory, long maxBytesInMemory, int keySampleSize,
+                                       int merkleMaxBuckets, int merkleRowsPerBucket) {
+        this.floatTolerance = floatTolerance;
+        this.maxRowsInMemory = maxRowsInMemory;
+        this.maxBytesInMemory = maxBytesInMemory;
+        this.keySampleSize = Math.max(1, keySampleSize);
+        this.merkleMaxBuckets = Math.max(0, merkleMaxBuckets);
+        this.merkleRowsPerBucket = Math.max(1, merkleRowsPerBucket);
+    }
+
+    /**
+     * Compare two JSON documents (first = test/DBX, second = prod/BQ). Readers are closed on return.
+     *
+     * @throws IllegalArgumentException when the two documents do not have a matching row array
+     */
+    public Summary compare(Reader first, Reader second, DiffSink sink) throws Exception {
+        return compare(first, second, null, sink);
+    }
+
+    /**
+     * As {@link #compare(Reader, Reader, DiffSink)}; keys declared in {@code profile} for the row array replace
+     * key discovery, its ignored fields and tolerances apply to every row, and its sampling (if any) limits the
+     * rows compared.
+     */
+    public Summary compare(Reader first, Reader second, ComparisonProfile profile, DiffSink sink) throws Exception {
+        try (RowStream s1 = new RowStream(objectMapper.getFactory().createParser(first));
+             RowStream s2 = new RowStream(objectMapper.getFactory().createParser(second));
+             ExternalKeySorter sorter1 = new ExternalKeySorter(maxRowsInMemory, maxBytesInMemory);
+             ExternalKeySorter sorter2 = new ExternalKeySorter(maxRowsInMemory, maxBytesInMemory)) {
+
+            s1.open();
+            s2.open();
+            if (!Objects.equals(s1.arrayField, s2.arrayField)) {
+                throw new IllegalArgumentException("Row arrays differ: first=" + s1.arrayField + " second=" + s2.arrayField);
+            }
+            String path = s1.arrayField != null ? s1.arrayField : "";
+
+            List<Map<String, Object>> sample1 = s1.sample(keySampleSize);
+            List<Map<String, Object>> sample2 = s2.sample(keySampleSize);
+            List<String> keyFields = profile != null ? profile.keysFor(path) : null;
+            if (keyFields == null) {
+                keyFields = UniversalJsonComparator.discoverKeyFields(sample1, sample2);
+            }
+            ComparisonProfile rowProfile = planRows(path, sample1, sample2, profile);
+            RowSample sample = profile != null && profile.getSampling() != null
+                    ? new RowSample(profile.getSampling(), sink) : null;
+            DiffSink rowSink = sample != null ? sample : sink;
+
+            MerkleTree tree1 = null;
+            MerkleTree tree2 = null;
+            long skippedRows = 0;
+            long keylessRows = 0;
+            if (keyFields.isEmpty()) {
+                // No key: compare by position like the in-memory comparator, without sorting
+                compareByIndex(path, path, s1, s2, rowProfile, rowSink, sample);
+            } else {
+                if (merkleMaxBuckets > 0 && sample == null) {
+                    tree1 = new MerkleTree(merkleMaxBuckets);
+                    tree2 = new MerkleTree(merkleMaxBuckets);
+                    tree1.setKeyFields(keyFields);
+                    tree2.setKeyFields(keyFields);
+                }
+                keylessRows = feed(sorter1, s1, keyFields, tree1, path, profile, sample, true)
+                        + feed(sorter2, s2, keyFields, tree2, path, profile, sample, false);
+                boolean[] differing = null;
+                if (tree1 != null) {
+                    int buckets = MerkleTree.bucketCountFor(Math.max(tree1.getRowCount(), tree2.getRowCount()),
+                            merkleRowsPerBucket, merkleMaxBuckets);
+                    tree1 = tree1.fold(buckets);
+                    tree2 = tree2.fold(buckets);
+                    differing = MerkleTree.differingBuckets(tree1, tree2);
+                }
+                skippedRows = mergeJoin(path, path, String.join(",", keyFields), sorter1.sorted(), sorter2.sorted(),
+                        tree1, differing, rowProfile, rowSink, sample);
+            }
+            SampleSummary sampled = sample != null ? sample.finish(path, floatTolerance, profile) : null;
+
+            Map<String, Object> rest1 = s1.finishRest();
+            Map<String, Object> rest2 = s2.finishRest();
+            if ((!rest1.isEmpty() || !rest2.isEmpty()) && !sink.isFull()) {
+                UniversalJsonComparator.compareInto("", profile != null ? "" : null, rest1, rest2, floatTolerance, profile, sink);
+            }
+            return new Summary(s1.rowCount, s2.rowCount, keyFields,
+                    sorter1.getSpilledRunCount() + sorter2.getSpilledRunCount(), tree1, tree2, skippedRows, keylessRows, sampled);
+        }
+    }
+
+    /**
+     * Profile for comparing matched rows: the declared one plus a plan compiled once from the key samples, so
+     * nested arrays reuse the planned keys instead of discovering them again for every row pair.
+     */
+    private static ComparisonProfile planRows(String path, List<Map<String, Object>> sample1,
+                                              List<Map<String, Object>> sample2, ComparisonProfile profile) throws Exception {
+        ComparisonProfile declared = profile != null ? profile : ComparisonProfile.empty();
+        Object prepared1 = UniversalJsonComparator.prepare(sample1, path, declared);
+        Object prepared2 = UniversalJsonComparator.prepare(sample2, path, declared);
+        return declared.withPlan(UniversalJsonComparator.plan(UniversalJsonComparator.scan(prepared1, prepared2, path)));
+    }
+
+    /** Sorts the rows of one side by key; returns how many of them had no key values (see {@link #KEYLESS_PREFIX}). */
+    private long feed(ExternalKeySorter sorter, RowStream stream, List<String> keyFields, MerkleTree tree,
+                      String schema, ComparisonProfile profile, RowSample sample, boolean firstSide) throws IOException {
+        long keyless = 0;
+        for (JsonNode row = stream.nextRow(); row != null; row = stream.nextRow()) {
+            if (!row.isObject()) continue;
+            Map<String, Object> m = objectMapper.convertValue(row, MAP_TYPE);
+            if (sample != null) sample.addRow(firstSide, m, keyFields, schema, profile);
+            String key = UniversalJsonComparator.compositeKey(m, keyFields);
+            if (key.isEmpty()) {
+                // Not dropped: a response whose rows lost their keys must not compare as a match
+                key = KEYLESS_PREFIX + String.format("%019d", ++keyless);
+            }
+            if (sample != null && !sample.selects(key)) continue;
+            if (tree != null) {
+                // Ignored fields are left out of the hash so that they cannot make a bucket differ
+                tree.add(key, JsonComparisonUtils.canonicalHash64(profile != null ? profile.withoutIgnored(row, schema) : row));
+            }
+            sorter.add(key, new String[]{objectMapper.writeValueAsString(row)});
+        }
+        return keyless;
+    }
+
+    /** Positional comparison; a sampling run selects rows by index, so both sides still pick the same ones. */
+    private void compareByIndex(String path, String schema, RowStream s1, RowStream s2, ComparisonProfile profile,
+                                DiffSink sink, RowSample sample) throws Exception {
+        for (int i = 0; !sink.isFull(); i++) {
+            JsonNode a = s1.nextRow();
+            JsonNode b = s2.nextRow();
+            if (a == null && b == null) return;
+            Object m1 = a != null ? objectMapper.convertValue(a, Object.class) : Collections.emptyMap();
+            Object m2 = b != null ? objectMapper.convertValue(b, Object.class) : Collections.emptyMap();
+            if (sample != null) {
+                if (a != null && a.isObject()) sample.addRow(true, objectMapper.convertValue(a, MAP_TYPE), List.of(), schema, profile);
+                if (b != null && b.isObject()) sample.addRow(false, objectMapper.convertValue(b, MAP_TYPE), List.of(), schema, profile);
+                if (!sample.selects(String.valueOf(i))) continue;
+            }
+            long before = sample != null ? sample.diffs() : 0;
+            UniversalJsonComparator.compareInto(path + "[" + i + "]", schema, m1, m2, floatTolerance, profile, sink);
+            if (sample != null) sample.compared(before);
+        }
+    }
+
+    /**
+     * Joins the two sorted sides. Key groups whose bucket in {@code tree} is not flagged in {@code differing}
+     * hold identical rows on both sides and are skipped without parsing; returns the number of rows skipped.
+     */
+    private long mergeJoin(String path, String schema, String keyLabel, Iterator<ExternalKeySorter.KeyedRecord> it1,
+                           Iterator<ExternalKeySorter.KeyedRecord> it2, MerkleTree tree, boolean[] differing,
+                           ComparisonProfile profile, DiffSink sink, RowSample sample) throws Exception {
+        long skipped = 0;
+        ExternalKeySorter.KeyedRecord r1 = it1.hasNext() ? it1.next() : null;
+        ExternalKeySorter.KeyedRecord r2 = it2.hasNext() ? it2.next() : null;
+        while ((r1 != null || r2 != null) && !sink.isFull()) {
+            int cmp = r1 == null ? 1 : r2 == null ? -1 : r1.getKey().compareTo(r2.getKey());
+            String key = cmp <= 0 ? r1.getKey() : r2.getKey();
+            List<String> group1 = new ArrayList<>(1);
+            List<String> group2 = new ArrayList<>(1);
+            while (cmp <= 0 && r1 != null && r1.getKey().equals(key)) {
+                group1.add(r1.getFields()[0]);
+                r1 = it1.hasNext() ? it1.next() : null;
+            }
+            while (cmp >= 0 && r2 != null && r2.getKey().equals(key)) {
+                group2.add(r2.getFields()[0]);
+                r2 = it2.hasNext() ? it2.next() : null;
+            }
+            if (differing != null && !differing[tree.bucketOf(key)]) {
+                skipped += group1.size() + group2.size();
+                continue;
+            }
+
+            // Key discovered from a sample may repeat later: pair duplicates in document order
+            boolean duplicated = group1.size() > 1 || group2.size() > 1;
+            int n = Math.max(group1.size(), group2.size());
+            for (int i = 0; i < n; i++) {
+                String reportedKey = key.startsWith(KEYLESS_PREFIX)
+                        ? "(no key)#" + Long.parseLong(key.substring(KEYLESS_PREFIX.length()))
+                        : duplicated ? key + "#" + (i + 1) : key;
+                long before = sample != null ? sample.diffs() : 0;
+                if (i >= group2.size()) {
+                    sink.addMissingInSecond(path, keyLabel, reportedKey);
+                } else if (i >= group1.size()) {
+                    sink.addMissingInFirst(path, keyLabel, reportedKey);
+                } else {
+                    Map<String, Object> m1 = objectMapper.readValue(group1.get(i), MAP_TYPE);
+                    Map<String, Object> m2 = objectMapper.readValue(group2.get(i), MAP_TYPE);
+                    UniversalJsonComparator.compareInto(path + "[" + keyLabel + "=" + reportedKey + "]", schema,
+                            m1, m2, floatTolerance, profile, sink);
+                }
+                if (sample != null) sample.compared(before);
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Pull parser over one document: positions on the row array, hands out rows one at a time (sampled rows
+     * first), and collects every other root field into {@code rest}.
+     */
+    private static class RowStream implements AutoCloseable {
+        private final JsonParser parser;
+        private final Map<String, Object> rest = new LinkedHashMap<>();
+        private final Deque<JsonNode> sampled = new ArrayDeque<>();
+        private String arrayField;
+        private boolean rootIsArray;
+        private boolean arrayDone = true;
+        private long rowCount;
+
+        RowStream(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        void open() throws IOException {
+            JsonToken t = parser.nextToken();
+            if (t == JsonToken.START_ARRAY) {
+                rootIsArray = true;
+                arrayDone = false;
+                return;
+            }
+            if (t != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Expected JSON object or array, got " + t);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                if (valueToken == JsonToken.START_ARRAY) {
+                    JsonToken firstElement = parser.nextToken();
+                    if (firstElement == JsonToken.START_OBJECT) {
+                        arrayField = name;
+                        arrayDone = false;
+                        sampled.add(parser.readValueAsTree());
+                        rowCount++;
+                        return;
+                    }
+                    rest.put(name, readRemainingArray(firstElement));
+                } else {
+                    rest.put(name, objectMapper.convertValue(parser.readValueAsTree(), Object.class));
+                }
+            }
+        }
+
+        /** Reads the rest of an array whose START_ARRAY and first element token were already consumed. */
+        private List<Object> readRemainingArray(JsonToken current) throws IOException {
+            List<Object> values = new ArrayList<>();
+            while (current != JsonToken.END_ARRAY) {
+                values.add(objectMapper.convertValue(parser.readValueAsTree(), Object.class));
+                current = parser.nextToken();
+            }
+            return values;
+        }
+
+        /** Buffers up to {@code n} rows for key discovery; they are replayed by {@link #nextRow()}. */
+        List<Map<String, Object>> sample(int n) throws IOException {
+            List<Map<String, Object>> out = new ArrayList<>();
+            for (JsonNode row : sampled) {
+                if (row.isObject()) out.add(objectMapper.convertValue(row, MAP_TYPE));
+            }
+            while (sampled.size() < n) {
+                JsonNode row = readRow();
+                if (row == null) break;
+                sampled.add(row);
+                if (row.isObject()) out.add(objectMapper.convertValue(row, MAP_TYPE));
+            }
+            return out;
+        }
+
+        JsonNode nextRow() throws IOException {
+            if (!sampled.isEmpty()) return sampled.poll();
+            return readRow();
+        }
+
+        private JsonNode readRow() throws IOException {
+            if (arrayDone) return null;
+            JsonToken t = parser.nextToken();
+            if (t == null || t == JsonToken.END_ARRAY) {
+                arrayDone = true;
+                return null;
+            }
+            rowCount++;
+            return parser.readValueAsTree();
+        }
+
+        /** Drains any unread rows and reads the root fields after the row array. */
+        Map<String, Object> finishRest() throws IOException {
+            while (nextRow() != null) {
+                // rows not consumed (e.g. by the index comparison) are only counted
+            }
+            if (!rootIsArray) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    rest.put(name, objectMapper.convertValue(parser.readValueAsTree(), Object.class));
+                }
+            }
+            return rest;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    /** Row counts, the key used for matching and the hash trees of both sides (null without a key or when sampling). */
+    public static class Summary {
+        private final long firstRowCount;
+        private final long secondRowCount;
+        private final List<String> keyFields;
+        private final int spilledRuns;
+        private final MerkleTree firstTree;
+        private final MerkleTree secondTree;
+        private final long skippedRows;
+        private final long keylessRows;
+        private final SampleSummary sample;
+
+        Summary(long firstRowCount, long secondRowCount, List<String> keyFields, int spilledRuns,
+                MerkleTree firstTree, MerkleTree secondTree, long skippedRows, long keylessRows, SampleSummary sample) {
+            this.firstRowCount = firstRowCount;
+            this.secondRowCount = secondRowCount;
+            this.keyFields = keyFields;
+            this.spilledRuns = spilledRuns;
+            this.firstTree = firstTree;
+            this.secondTree = secondTree;
+            this.skippedRows = skippedRows;
+            this.keylessRows = keylessRows;
+            this.sample = sample;
+        }
+
+        public long getFirstRowCount() {
+            return firstRowCount;
+        }
+
+        public long getSecondRowCount() {
+            return secondRowCount;
+        }
+
+        public List<String> getKeyFields() {
+            return keyFields;
+        }
+
+        public int getSpilledRuns() {
+            return spilledRuns;
+        }
+
+        public MerkleTree getFirstTree() {
+            return firstTree;
+        }
+
+        public MerkleTree getSecondTree() {
+            return secondTree;
+        }
+
+        /** Rows (both sides) in identical buckets that were not compared field by field. */
+        public long getSkippedRows() {
+            return skippedRows;
+        }
+
+        /** Rows (both sides) with no key values, paired by position among themselves as "(no key)#n". */
+        public long getKeylessRows() {
+            return keylessRows;
+        }
+
+        /** Sampled rows, mismatch-rate interval and column aggregates; null when the profile has no sampling. */
+        public SampleSummary getSample() {
+            return sample;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.analytics.comparison.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Sorts keyed records by key in bounded memory. Records are buffered until {@code maxRecordsInMemory}
+ * or roughly {@code maxBytesInMemory} is reached, then the buffer is sorted and spilled to a temp file
+ * as a run. {@link #sorted()} k-way merges the runs. Records with equal keys keep insertion order.
+ * <p>
+ * Run format (per record): int keyLength, key UTF-8 bytes, int fieldCount, then per field an int length
+ * (-1 for null) followed by UTF-8 bytes. Temp files are removed by {@link #close()}.
+ */
+public class ExternalKeySorter implements Closeable {
+
+    private final int maxRecordsInMemory;
+    private final long maxBytesInMemory;
+    private final List<KeyedRecord> buffer = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private final List<DataInputStream> openInputs = new ArrayList<>();
+    private long bufferedBytes;
+    private long recordCount;
+    private boolean sortedCalled;
+
+    public ExternalKeySorter(int maxRecordsInMemory, long maxBytesInMemory) {
+        this.maxRecordsInMemory = Math.max(1, maxRecordsInMemory);
+        this.maxBytesInMemory = Math.max(1, maxBytesInMemory);
+    }
+
+    public void add(String key, String[] fields) throws IOException {
+        if (sortedCalled) throw new IllegalStateException("add() after sorted()");
+        KeyedRecord r = new KeyedRecord(key, fields);
+        buffer.add(r);
+        bufferedBytes += r.estimatedBytes();
+        recordCount++;
+        if (buffer.size() >= maxRecordsInMemory || bufferedBytes >= maxBytesInMemory) {
+            spill();
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /** Number of runs written to disk so far (0 when everything fit in memory). */
+    public int getSpilledRunCount() {
+        return runs.size();
+    }
+
+    /** Iterator over all added records in key order. May be called once. */
+    public Iterator<KeyedRecord> sorted() throws IOException {
+        if (sortedCalled) throw new IllegalStateException("sorted() already called");
+        sortedCalled = true;
+        if (runs.isEmpty()) {
+            buffer.sort(Comparator.comparing(KeyedRecord::getKey));
+            return buffer.iterator();
+        }
+        if (!buffer.isEmpty()) spill();
+        return new MergeIterator();
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(Comparator.comparing(KeyedRecord::getKey));
+        Path run = Files.createTempFile("cmp-run-", ".bin");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 64 * 1024))) {
+            for (KeyedRecord r : buffer) {
+                writeString(out, r.key);
+                out.writeInt(r.fields.length);
+                for (String f : r.fields) writeString(out, f);
+            }
+        }
+        buffer.clear();
+        bufferedBytes = 0;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** Next record from a run, or null at the end of the run. */
+    private static KeyedRecord readRecord(DataInputStream in) throws IOException {
+        int keyLen;
+        try {
+            keyLen = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        byte[] kb = new byte[keyLen];
+        in.readFully(kb);
+        int n = in.readInt();
+        String[] fields = new String[n];
+        for (int i = 0; i < n; i++) fields[i] = readString(in);
+        return new KeyedRecord(new String(kb, StandardCharsets.UTF_8), fields);
+    }
+
+    @Override
+    public void close() {
+        for (DataInputStream in : openInputs) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+        openInputs.clear();
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException ignored) {
+            }
+        }
+        runs.clear();
+        buffer.clear();
+    }
+
+    /** K-way merge over the spilled runs; ties broken by run index so insertion order is kept. */
+    private class MergeIterator implements Iterator<KeyedRecord> {
+        private final PriorityQueue<RunHead> heads = new PriorityQueue<>(
+                Comparator.comparing((RunHead h) -> h.record.key).thenComparingInt(h -> h.runIndex));
+
+        MergeIterator() throws IOException {
+            for (int i = 0; i < runs.size(); i++) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(runs.get(i)), 64 * 1024));
+                openInputs.add(in);
+                KeyedRecord first = readRecord(in);
+                if (first != null) heads.add(new RunHead(i, in, first));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public KeyedRecord next() {
+            RunHead head = heads.poll();
+            if (head == null) throw new NoSuchElementException();
+            KeyedRecord current = head.record;
+            try {
+                KeyedRecord following = readRecord(head.in);
+                if (following != null) {
+                    head.record = following;
+                    heads.add(head);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return current;
+        }
+    }
+
+    private static class RunHead {
+        final int runIndex;
+        final DataInputStream in;
+        KeyedRecord record;
+
+        RunHead(int runIndex, DataInputStream in, KeyedRecord record) {
+            this.runIndex = runIndex;
+            this.in = in;
+            this.record = record;
+        }
+    }
+
+    /** A sort key plus its payload fields. */
+    public static class KeyedRecord {
+        private final String key;
+        private final String[] fields;
+
+        public KeyedRecord(String key, String[] fields) {
+            this.key = key;
+            this.fields = fields;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String[] getFields() {
+            return fields;
+        }
+
+        long estimatedBytes() {
+            long bytes = 64L + 2L * key.length();
+            for (String f : fields) bytes += 16 + (f != null ? 2L * f.length() : 0);
+            return bytes;
+        }
+    }
+}
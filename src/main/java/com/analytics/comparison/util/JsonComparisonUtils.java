@@ -2,7 +2,15 @@ package com.analytics.comparison.util;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 /**
@@ -15,6 +23,46 @@ public final class JsonComparisonUtils {
     private JsonComparisonUtils() {
     }
 
+    /**
+     * SHA-256 (hex) of the raw response body. Byte-identical responses produce the same fingerprint,
+     * so it can be compared before any parsing. Returns null for null input.
+     */
+    public static String fingerprint(String body) {
+        if (body == null) return null;
+        return hex(sha256().digest(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * {@link #fingerprint(String)} of a body on disk, read in blocks. A UTF-8 file gets the same fingerprint as
+     * its content held as a String.
+     */
+    public static String fingerprint(Path file) throws IOException {
+        if (file == null) return null;
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) digest.update(buffer, 0, n);
+        }
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String hex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
     /**
      * Count rows in JSON. Returns null for empty arrays or unparseable.
      * Handles: data, results, items, spotlights.retailers, spotlights.prolonged_oos_weekly.skus,
@@ -26,22 +74,7 @@ public final class JsonComparisonUtils {
 
         // Try JSON first
         try {
-            JsonNode node = OBJECT_MAPPER.readTree(trimmed);
-
-            // Empty root array
-            if (node.isArray() && node.size() == 0) return null;
-            if (node.isArray()) return node.size();
-
-            // Known paths (order matters - check specific first)
-            Integer fromPath = countFromKnownPaths(node);
-            if (fromPath != null) return fromPath;
-
-            // Recursively find largest array (for nested structures)
-            int[] max = {0};
-            findLargestArray(node, max);
-            if (max[0] > 0) return max[0];
-
-            return null;
+            return countRows(OBJECT_MAPPER.readTree(trimmed));
         } catch (Exception ignored) {
         }
 
@@ -52,6 +85,147 @@ public final class JsonComparisonUtils {
         return null;
     }
 
+    /**
+     * Count rows in an already parsed JSON tree (same rules as {@link #countRows(String)} minus the CSV fallback).
+     * Lets callers that need the tree anyway avoid parsing the response a second time.
+     */
+    public static Integer countRows(JsonNode node) {
+        if (node == null) return null;
+
+        // Empty root array
+        if (node.isArray() && node.size() == 0) return null;
+        if (node.isArray()) return node.size();
+
+        // Known paths (order matters - check specific first)
+        Integer fromPath = countFromKnownPaths(node);
+        if (fromPath != null) return fromPath;
+
+        // Recursively find largest array (for nested structures)
+        int[] max = {0};
+        findLargestArray(node, max);
+        if (max[0] > 0) return max[0];
+
+        return null;
+    }
+
+    /**
+     * SHA-256 (hex) of the canonical form of a JSON tree: object keys sorted, numbers normalized
+     * (1, 1.0 and 1.00 hash the same), array order kept. Equal canonical hashes imply the trees are
+     * equal for UniversalJsonComparator at any tolerance; unequal hashes say nothing.
+     */
+    public static String canonicalHash(JsonNode node) {
+        if (node == null) return null;
+        StringBuilder sb = new StringBuilder();
+        appendCanonical(node, sb);
+        return fingerprint(sb.toString());
+    }
+
+    /**
+     * 64-bit variant of {@link #canonicalHash(JsonNode)} for per-row use (see {@link MerkleTree}), where a
+     * SHA-256 per row of a million-row response would dominate the comparison.
+     */
+    public static long canonicalHash64(JsonNode node) {
+        if (node == null) return 0L;
+        StringBuilder sb = new StringBuilder();
+        appendCanonical(node, sb);
+        return hash64(sb);
+    }
+
+    /**
+     * {@link #canonicalHash64(JsonNode)} of a value already converted to Maps, Lists and scalars, as compared by
+     * UniversalJsonComparator; equal values of both representations hash the same.
+     */
+    public static long canonicalValueHash64(Object value) {
+        StringBuilder sb = new StringBuilder();
+        appendCanonicalValue(value, sb);
+        return hash64(sb);
+    }
+
+    /** FNV-1a over the UTF-16 chars, with a final avalanche so that the low bits are usable as a bucket index. */
+    public static long hash64(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+
+    /** SplitMix64 finalizer. */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static void appendCanonical(JsonNode node, StringBuilder sb) {
+        if (node.isObject()) {
+            List<String> names = new ArrayList<>();
+            node.fieldNames().forEachRemaining(names::add);
+            Collections.sort(names);
+            sb.append('{');
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append(TextNode.valueOf(names.get(i))).append(':');
+                appendCanonical(node.get(names.get(i)), sb);
+            }
+            sb.append('}');
+        } else if (node.isArray()) {
+            sb.append('[');
+            for (int i = 0; i < node.size(); i++) {
+                if (i > 0) sb.append(',');
+                appendCanonical(node.get(i), sb);
+            }
+            sb.append(']');
+        } else if (node.isNumber()) {
+            if (node.isDouble() || node.isFloat()) {
+                double d = node.doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    sb.append(d);
+                    return;
+                }
+            }
+            sb.append(node.decimalValue().stripTrailingZeros().toString());
+        } else {
+            // Strings are quoted/escaped, so "1" and 1 or "null" and null stay distinct
+            sb.append(node.toString());
+        }
+    }
+
+    private static void appendCanonicalValue(Object value, StringBuilder sb) {
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            List<String> names = new ArrayList<>();
+            for (Object k : map.keySet()) names.add(String.valueOf(k));
+            Collections.sort(names);
+            sb.append('{');
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append(TextNode.valueOf(names.get(i))).append(':');
+                appendCanonicalValue(map.get(names.get(i)), sb);
+            }
+            sb.append('}');
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            sb.append('[');
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) sb.append(',');
+                appendCanonicalValue(list.get(i), sb);
+            }
+            sb.append(']');
+        } else if (value instanceof Number) {
+            if ((value instanceof Double || value instanceof Float) && !Double.isFinite(((Number) value).doubleValue())) {
+                sb.append(((Number) value).doubleValue());
+                return;
+            }
+            sb.append(new java.math.BigDecimal(value.toString()).stripTrailingZeros().toString());
+        } else if (value instanceof String) {
+            sb.append(TextNode.valueOf((String) value));
+        } else {
+            sb.append(value);
+        }
+    }
+
     private static Integer countFromKnownPaths(JsonNode node) {
         // rowCount / totalRows / total_count as direct integer (e.g. BigQuery, GA)
         JsonNode rowCount = node.path("rowCount");
@@ -126,6 +300,18 @@ public final class JsonComparisonUtils {
         }
     }
 
+    /**
+     * Cheap check that a body is CSV rather than JSON: not starting with '{' or '[', a header line containing
+     * a comma and at least one more line. Single-line bodies (e.g. plain-text errors) are not treated as CSV.
+     */
+    public static boolean looksLikeCsv(String text) {
+        if (text == null) return false;
+        String t = text.strip();
+        if (t.length() < 2 || t.startsWith("{") || t.startsWith("[")) return false;
+        int eol = t.indexOf('\n');
+        return eol > 0 && t.substring(0, eol).contains(",");
+    }
+
     private static int countCsvRows(String text) {
         if (text == null || text.length() < 2) return -1;
         // CSV typically has header + data lines, comma-separated
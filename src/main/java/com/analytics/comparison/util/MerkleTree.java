@@ -0,0 +1,198 @@
+package com.analytics.comparison.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash tree over the rows of a keyed array. Each row goes to the leaf bucket picked by the hash of its composite
+ * key; a leaf holds the row count and the sum of the rows' canonical hashes, so it does not depend on row order
+ * and two trees of the same size can be compared leaf by leaf. Inner nodes hash their two children, up to the
+ * root. Comparing two trees descends only into differing subtrees; rows in equal leaves are equal (up to a
+ * 64-bit collision) and need no field-by-field comparison.
+ * <p>
+ * Leaves are additive, so a tree built with many buckets is {@link #fold folded} to fewer once the row count is
+ * known. Serialised by {@link #toJson()} into comparison_result.test_merkle_json / prod_merkle_json, which lets
+ * two stored runs be compared bucket by bucket without fetching the responses again.
+ */
+public class MerkleTree {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final long[] sums;
+    private final long[] counts;
+    private long rowCount;
+    private List<String> keyFields;
+
+    /** @param buckets leaf count, rounded up to a power of two */
+    public MerkleTree(int buckets) {
+        int n = Integer.highestOneBit(Math.max(1, buckets));
+        if (n < buckets) n <<= 1;
+        this.sums = new long[n];
+        this.counts = new long[n];
+    }
+
+    /** Power-of-two leaf count giving about {@code rowsPerBucket} rows per leaf, at most {@code maxBuckets}. */
+    public static int bucketCountFor(long rows, int rowsPerBucket, int maxBuckets) {
+        long wanted = Math.max(1, (rows + Math.max(1, rowsPerBucket) - 1) / Math.max(1, rowsPerBucket));
+        int n = 1;
+        while (n < wanted && n < maxBuckets) n <<= 1;
+        return Math.min(n, Integer.highestOneBit(Math.max(1, maxBuckets)));
+    }
+
+    public void add(String key, long rowHash) {
+        int b = bucketOf(key);
+        sums[b] += JsonComparisonUtils.mix64(rowHash);
+        counts[b]++;
+        rowCount++;
+    }
+
+    public int bucketOf(String key) {
+        return (int) (JsonComparisonUtils.hash64(key) & (sums.length - 1));
+    }
+
+    public int getBucketCount() {
+        return sums.length;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getBucketRowCount(int bucket) {
+        return counts[bucket];
+    }
+
+    public List<String> getKeyFields() {
+        return keyFields;
+    }
+
+    public void setKeyFields(List<String> keyFields) {
+        this.keyFields = keyFields;
+    }
+
+    /** The same rows in {@code buckets} leaves (a smaller power of two): leaf i absorbs every leaf j with j mod buckets == i. */
+    public MerkleTree fold(int buckets) {
+        MerkleTree folded = new MerkleTree(buckets);
+        if (folded.sums.length >= sums.length) return this;
+        int mask = folded.sums.length - 1;
+        for (int i = 0; i < sums.length; i++) {
+            folded.sums[i & mask] += sums[i];
+            folded.counts[i & mask] += counts[i];
+        }
+        folded.rowCount = rowCount;
+        folded.keyFields = keyFields;
+        return folded;
+    }
+
+    /** Root hash (hex); equal roots mean every leaf is equal. */
+    public String root() {
+        long[][] levels = levels();
+        return Long.toHexString(levels[levels.length - 1][0]);
+    }
+
+    /**
+     * Leaves whose rows differ between the two trees, ascending. The larger tree is folded to the size of the
+     * smaller one first, so trees stored with different bucket counts can still be compared. Trees over
+     * different key fields cannot, and are reported as differing everywhere.
+     */
+    public static List<Integer> diff(MerkleTree a, MerkleTree b) {
+        int buckets = Math.min(a.getBucketCount(), b.getBucketCount());
+        MerkleTree x = a.fold(buckets);
+        MerkleTree y = b.fold(buckets);
+        List<Integer> out = new ArrayList<>();
+        if (a.keyFields != null && b.keyFields != null && !a.keyFields.equals(b.keyFields)) {
+            for (int i = 0; i < buckets; i++) out.add(i);
+            return out;
+        }
+        long[][] lx = x.levels();
+        long[][] ly = y.levels();
+        descend(lx, ly, lx.length - 1, 0, out);
+        return out;
+    }
+
+    /** {@link #diff} as a flag per leaf of the smaller tree. */
+    public static boolean[] differingBuckets(MerkleTree a, MerkleTree b) {
+        boolean[] flags = new boolean[Math.min(a.getBucketCount(), b.getBucketCount())];
+        for (int i : diff(a, b)) flags[i] = true;
+        return flags;
+    }
+
+    private static void descend(long[][] lx, long[][] ly, int level, int index, List<Integer> out) {
+        if (lx[level][index] == ly[level][index]) return;
+        if (level == 0) {
+            out.add(index);
+            return;
+        }
+        descend(lx, ly, level - 1, 2 * index, out);
+        descend(lx, ly, level - 1, 2 * index + 1, out);
+    }
+
+    /** Node hashes per level: leaves first, the root last. */
+    private long[][] levels() {
+        int depth = Integer.numberOfTrailingZeros(sums.length);
+        long[][] levels = new long[depth + 1][];
+        levels[0] = new long[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            levels[0][i] = JsonComparisonUtils.mix64(sums[i] ^ JsonComparisonUtils.mix64(counts[i] + 0x9e3779b97f4a7c15L));
+        }
+        for (int l = 1; l <= depth; l++) {
+            long[] below = levels[l - 1];
+            long[] level = new long[below.length / 2];
+            for (int i = 0; i < level.length; i++) {
+                level[i] = JsonComparisonUtils.mix64(below[2 * i] * 0x9e3779b97f4a7c15L + below[2 * i + 1]);
+            }
+            levels[l] = level;
+        }
+        return levels;
+    }
+
+    /** {"buckets", "rows", "keyFields", "root", "sums" (hex per leaf), "counts"}. */
+    public String toJson() {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("buckets", sums.length);
+        node.put("rows", rowCount);
+        if (keyFields != null) {
+            ArrayNode kf = node.putArray("keyFields");
+            keyFields.forEach(kf::add);
+        }
+        node.put("root", root());
+        ArrayNode s = node.putArray("sums");
+        ArrayNode c = node.putArray("counts");
+        for (int i = 0; i < sums.length; i++) {
+            s.add(Long.toHexString(sums[i]));
+            c.add(counts[i]);
+        }
+        return node.toString();
+    }
+
+    /** Tree stored by {@link #toJson()}, or null when there is none or it cannot be read. */
+    public static MerkleTree parse(String json) {
+        if (json == null || json.isBlank()) return null;
+        try {
+            JsonNode node = objectMapper.readTree(json);
+            JsonNode s = node.path("sums");
+            JsonNode c = node.path("counts");
+            int buckets = node.path("buckets").asInt();
+            if (buckets < 1 || Integer.bitCount(buckets) != 1 || s.size() != buckets || c.size() != buckets) return null;
+            MerkleTree tree = new MerkleTree(buckets);
+            for (int i = 0; i < buckets; i++) {
+                tree.sums[i] = Long.parseUnsignedLong(s.get(i).asText(), 16);
+                tree.counts[i] = c.get(i).asLong();
+            }
+            tree.rowCount = node.path("rows").asLong();
+            if (node.path("keyFields").isArray()) {
+                List<String> keyFields = new ArrayList<>();
+                node.path("keyFields").forEach(k -> keyFields.add(k.asText()));
+                tree.keyFields = keyFields;
+            }
+            return tree;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
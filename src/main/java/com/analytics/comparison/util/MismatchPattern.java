@@ -0,0 +1,83 @@
+package com.analytics.comparison.util;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * All diffs of one kind whose paths normalise to the same pattern, e.g. {@code [product_id=*].sales}:
+ * how many there were, the spread of the numeric test - prod deltas and a uniform sample of concrete diffs.
+ * Built by {@link PatternDiffSink}; serialised as-is into comparison_result.mismatch_patterns_json.
+ */
+@Data
+@NoArgsConstructor
+public class MismatchPattern {
+
+    private String pattern;
+    /** "field", "missingInFirst" or "missingInSecond". */
+    private String kind;
+    private long count;
+    /** Diffs where both values were numbers; the delta stats below cover only those. */
+    private long numericCount;
+    private Double minDelta;
+    private Double maxDelta;
+    private Double meanDelta;
+    /** Reservoir sample of concrete diffs (path / prod / test), at most the sink's examples-per-pattern. */
+    private List<Map<String, String>> examples = new ArrayList<>();
+
+    MismatchPattern(String pattern, String kind) {
+        this.pattern = pattern;
+        this.kind = kind;
+    }
+
+    void add(String path, String prod, String test, int maxExamples, Random random) {
+        count++;
+        Double delta = delta(test, prod);
+        if (delta != null) {
+            numericCount++;
+            minDelta = minDelta == null ? delta : Math.min(minDelta, delta);
+            maxDelta = maxDelta == null ? delta : Math.max(maxDelta, delta);
+            meanDelta = meanDelta == null ? delta : meanDelta + (delta - meanDelta) / numericCount;
+        }
+        // Algorithm R: every diff of the pattern ends up in the sample with probability maxExamples / count
+        if (examples.size() < maxExamples) {
+            examples.add(example(path, prod, test));
+        } else if (maxExamples > 0) {
+            long slot = (long) (random.nextDouble() * count);
+            if (slot < maxExamples) examples.set((int) slot, example(path, prod, test));
+        }
+    }
+
+    private static Map<String, String> example(String path, String prod, String test) {
+        Map<String, String> m = new LinkedHashMap<>();
+        m.put("path", path);
+        m.put("prod", prod != null ? prod : "");
+        m.put("test", test != null ? test : "");
+        return m;
+    }
+
+    /** test - prod when both parse as numbers, else null. */
+    static Double delta(String test, String prod) {
+        Double t = number(test);
+        if (t == null) return null;
+        Double p = number(prod);
+        return p == null ? null : t - p;
+    }
+
+    private static Double number(String s) {
+        if (s == null || s.isEmpty()) return null;
+        char c = s.charAt(0);
+        if (!(Character.isDigit(c) || c == '-' || c == '+' || c == '.')) return null;
+        try {
+            double d = Double.parseDouble(s.trim());
+            return Double.isFinite(d) ? d : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
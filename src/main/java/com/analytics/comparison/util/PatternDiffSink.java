@@ -0,0 +1,146 @@
+package com.analytics.comparison.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * {@link CappedDiffSink} that also aggregates every diff by path pattern: composite-key segments
+ * ({@code [product_id=P70]}) and array indexes ({@code [3]}) are replaced by {@code *}, so a column that
+ * drifts on every row is one {@link MismatchPattern} with its count and delta spread rather than thousands of
+ * separate diffs. Memory is bounded by max-patterns x examples-per-pattern; diffs of patterns first seen after
+ * the limit is reached are counted under {@value #OTHER_PATTERN}.
+ */
+public class PatternDiffSink extends CappedDiffSink {
+
+    public static final String KIND_FIELD = "field";
+    public static final String KIND_MISSING_IN_FIRST = "missingInFirst";
+    public static final String KIND_MISSING_IN_SECOND = "missingInSecond";
+    public static final String OTHER_PATTERN = "_other";
+
+    private static final Pattern KEY_SEGMENT = Pattern.compile("\\[([^\\[\\]=]+)=[^\\[\\]]*]");
+    private static final Pattern INDEX_SEGMENT = Pattern.compile("\\[\\d+]");
+    private static final Comparator<MismatchPattern> BY_COUNT =
+            Comparator.comparingLong(MismatchPattern::getCount).reversed().thenComparing(MismatchPattern::getPattern);
+
+    private final int maxPatterns;
+    private final int examplesPerPattern;
+    private final Map<String, MismatchPattern> patterns = new HashMap<>();
+    // Fixed seed: the same two responses always give the same sample
+    private final Random random = new Random(17);
+
+    public PatternDiffSink(int limit, int maxPatterns, int examplesPerPattern) {
+        this(limit, maxPatterns, examplesPerPattern, 0);
+    }
+
+    /** @param stopAfter mismatch budget of a fail-fast comparison (see {@link CappedDiffSink}); 0 for none */
+    public PatternDiffSink(int limit, int maxPatterns, int examplesPerPattern, long stopAfter) {
+        super(limit, stopAfter);
+        this.maxPatterns = maxPatterns;
+        this.examplesPerPattern = examplesPerPattern;
+    }
+
+    @Override
+    public void addMissingInFirst(String path, String keyLabel, String compositeKey) {
+        super.addMissingInFirst(path, keyLabel, compositeKey);
+        record(KIND_MISSING_IN_FIRST, normalize(path) + "[" + keyLabel + "=*]",
+                path + "[" + keyLabel + "=" + compositeKey + "]", "present in second", "missing in first");
+    }
+
+    @Override
+    public void addMissingInSecond(String path, String keyLabel, String compositeKey) {
+        super.addMissingInSecond(path, keyLabel, compositeKey);
+        record(KIND_MISSING_IN_SECOND, normalize(path) + "[" + keyLabel + "=*]",
+                path + "[" + keyLabel + "=" + compositeKey + "]", "missing in second", "present in first");
+    }
+
+    @Override
+    public void addFieldDiff(String path, String prodValue, String testValue) {
+        super.addFieldDiff(path, prodValue, testValue);
+        record(KIND_FIELD, normalize(path), path, prodValue, testValue);
+    }
+
+    private void record(String kind, String pattern, String path, String prod, String test) {
+        MismatchPattern p = patterns.get(kind + '|' + pattern);
+        if (p == null) {
+            if (patterns.size() >= maxPatterns) pattern = OTHER_PATTERN;
+            p = patterns.computeIfAbsent(kind + '|' + pattern, k -> new MismatchPattern(k.substring(kind.length() + 1), kind));
+        }
+        p.add(path, prod, test, examplesPerPattern, random);
+    }
+
+    /** Patterns by descending count. */
+    public List<MismatchPattern> getPatterns() {
+        List<MismatchPattern> list = new ArrayList<>(patterns.values());
+        list.sort(BY_COUNT);
+        return list;
+    }
+
+    /** {@code [product_id=P70].sales} and {@code [3].sales} both become {@code [product_id=*].sales} / {@code [*].sales}. */
+    static String normalize(String path) {
+        if (path == null || path.indexOf('[') < 0) return path;
+        String keyed = KEY_SEGMENT.matcher(path).replaceAll("[$1=*]");
+        return INDEX_SEGMENT.matcher(keyed).replaceAll("[*]");
+    }
+
+    /**
+     * Combines the patterns of several comparisons (taxonomy shards, date chunks): counts add up, delta stats are
+     * combined and the examples are a weighted sample, so each diff of a pattern stays equally likely to be shown.
+     * Returns null when no part has patterns.
+     */
+    public static List<MismatchPattern> merge(List<List<MismatchPattern>> parts) {
+        Map<String, MismatchPattern> merged = new LinkedHashMap<>();
+        Map<String, List<Candidate>> candidates = new HashMap<>();
+        int maxExamples = 0;
+        Random random = new Random(17);
+        for (List<MismatchPattern> part : parts) {
+            if (part == null) continue;
+            for (MismatchPattern p : part) {
+                String key = p.getKind() + '|' + p.getPattern();
+                MismatchPattern m = merged.computeIfAbsent(key, k -> new MismatchPattern(p.getPattern(), p.getKind()));
+                long numeric = m.getNumericCount() + p.getNumericCount();
+                if (p.getNumericCount() > 0) {
+                    m.setMinDelta(m.getMinDelta() == null ? p.getMinDelta() : Math.min(m.getMinDelta(), p.getMinDelta()));
+                    m.setMaxDelta(m.getMaxDelta() == null ? p.getMaxDelta() : Math.max(m.getMaxDelta(), p.getMaxDelta()));
+                    m.setMeanDelta(m.getMeanDelta() == null ? p.getMeanDelta()
+                            : (m.getMeanDelta() * m.getNumericCount() + p.getMeanDelta() * p.getNumericCount()) / numeric);
+                }
+                m.setNumericCount(numeric);
+                m.setCount(m.getCount() + p.getCount());
+                List<Map<String, String>> examples = p.getExamples() != null ? p.getExamples() : List.of();
+                maxExamples = Math.max(maxExamples, examples.size());
+                // Efraimidis-Spirakis: each example stands for count / sample-size diffs of its part
+                double weight = examples.isEmpty() ? 1 : (double) p.getCount() / examples.size();
+                for (Map<String, String> e : examples) {
+                    candidates.computeIfAbsent(key, k -> new ArrayList<>())
+                            .add(new Candidate(Math.pow(random.nextDouble(), 1.0 / weight), e));
+                }
+            }
+        }
+        if (merged.isEmpty()) return null;
+        for (Map.Entry<String, List<Candidate>> c : candidates.entrySet()) {
+            List<Candidate> ranked = c.getValue();
+            ranked.sort(Comparator.comparingDouble((Candidate x) -> x.key).reversed());
+            List<Map<String, String>> examples = merged.get(c.getKey()).getExamples();
+            for (int i = 0; i < Math.min(maxExamples, ranked.size()); i++) examples.add(ranked.get(i).example);
+        }
+        List<MismatchPattern> list = new ArrayList<>(merged.values());
+        list.sort(BY_COUNT);
+        return list;
+    }
+
+    private static final class Candidate {
+        final double key;
+        final Map<String, String> example;
+
+        Candidate(double key, Map<String, String> example) {
+            this.key = key;
+            this.example = example;
+        }
+    }
+}
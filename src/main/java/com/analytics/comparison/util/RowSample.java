@@ -0,0 +1,153 @@
+package com.analytics.comparison.util;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sampling state of one out-of-core comparison. Every row of both sides goes through {@link #addRow} or
+ * {@link #addValue} for the numeric column aggregates; only rows whose key {@link #selects} are sorted and
+ * compared. Diffs of sampled rows pass through this sink to the caller's, counted per compared row, and
+ * {@link #finish} adds the aggregate diffs and builds the {@link SampleSummary}.
+ */
+final class RowSample implements DiffSink {
+
+    /** Columns aggregated per side; further ones are left out so a ragged document cannot grow the maps. */
+    static final int MAX_COLUMNS = 512;
+
+    private final ComparisonProfile.Sampling sampling;
+    private final DiffSink sink;
+    private final Map<String, SampleSummary.ColumnAggregate> first = new LinkedHashMap<>();
+    private final Map<String, SampleSummary.ColumnAggregate> second = new LinkedHashMap<>();
+    private long diffs;
+    private long sampledRows;
+    private long mismatchedRows;
+
+    RowSample(ComparisonProfile.Sampling sampling, DiffSink sink) {
+        this.sampling = sampling;
+        this.sink = sink;
+    }
+
+    boolean selects(String key) {
+        return sampling.selects(key);
+    }
+
+    /** Aggregates the numeric top-level fields of a JSON row, except key and ignored fields. */
+    void addRow(boolean firstSide, Map<String, Object> row, Collection<String> keyFields, String schema,
+                ComparisonProfile profile) {
+        for (Map.Entry<String, Object> e : row.entrySet()) {
+            if (!(e.getValue() instanceof Number) || keyFields.contains(e.getKey())) continue;
+            if (profile != null && profile.isIgnored(ComparisonProfile.child(schema, e.getKey()), e.getKey())) continue;
+            add(firstSide, e.getKey(), ((Number) e.getValue()).doubleValue());
+        }
+    }
+
+    /** Aggregates one CSV cell when it parses as a number. */
+    void addValue(boolean firstSide, String column, String value) {
+        if (value == null || !UniversalJsonComparator.isNumeric(value)) return;
+        try {
+            add(firstSide, column, Double.parseDouble(value.trim()));
+        } catch (NumberFormatException e) {
+            // isNumeric accepts a few spellings Double does not; such cells are not aggregated
+        }
+    }
+
+    private void add(boolean firstSide, String column, double value) {
+        if (!Double.isFinite(value)) return;
+        Map<String, SampleSummary.ColumnAggregate> side = firstSide ? first : second;
+        SampleSummary.ColumnAggregate a = side.get(column);
+        if (a == null) {
+            if (side.size() >= MAX_COLUMNS) return;
+            a = new SampleSummary.ColumnAggregate(column);
+            side.put(column, a);
+        }
+        a.setCount(a.getCount() + 1);
+        a.setSum(a.getSum() + value);
+        a.setMin(a.getMin() == null ? value : Math.min(a.getMin(), value));
+        a.setMax(a.getMax() == null ? value : Math.max(a.getMax(), value));
+    }
+
+    /** Diffs seen so far; pass the value from before a row's comparison to {@link #compared}. */
+    long diffs() {
+        return diffs;
+    }
+
+    void compared(long diffsBefore) {
+        sampledRows++;
+        if (diffs > diffsBefore) mismatchedRows++;
+    }
+
+    /**
+     * Compares the aggregates of the two sides into the caller's sink ({@code path._aggregate.column.sum} etc.)
+     * and returns the summary. Sums use the column's relative tolerance as is and its absolute one per row.
+     */
+    SampleSummary finish(String path, double floatTolerance, ComparisonProfile profile) {
+        SampleSummary summary = new SampleSummary();
+        summary.setRate(sampling.getRate());
+        summary.setConfidence(sampling.getConfidence());
+        summary.setSampledRows(sampledRows);
+        summary.setMismatchedRows(mismatchedRows);
+        summary.updateRate();
+        summary.getTestAggregates().addAll(first.values());
+        summary.getProdAggregates().addAll(second.values());
+
+        String prefix = path == null || path.isEmpty() ? "_aggregate." : path + "._aggregate.";
+        Set<String> columns = new LinkedHashSet<>(first.keySet());
+        columns.addAll(second.keySet());
+        long mismatches = 0;
+        for (String column : columns) {
+            if (sink.isFull()) break;
+            SampleSummary.ColumnAggregate a = first.getOrDefault(column, new SampleSummary.ColumnAggregate(column));
+            SampleSummary.ColumnAggregate b = second.getOrDefault(column, new SampleSummary.ColumnAggregate(column));
+            ComparisonProfile.Tolerance tolerance = profile != null
+                    ? profile.toleranceFor(ComparisonProfile.child(path, column), column) : null;
+            ComparisonProfile.Tolerance sumTolerance = tolerance != null && tolerance.getAbsolute() != null
+                    ? new ComparisonProfile.Tolerance(tolerance.getAbsolute() * Math.max(a.getCount(), b.getCount()),
+                    tolerance.getRelative())
+                    : tolerance;
+            if (a.getCount() != b.getCount()) {
+                sink.addFieldDiff(prefix + column + ".count", String.valueOf(b.getCount()), String.valueOf(a.getCount()));
+                mismatches++;
+            }
+            if (!UniversalJsonComparator.scalarsEqual(a.getSum(), b.getSum(), floatTolerance, sumTolerance)) {
+                sink.addFieldDiff(prefix + column + ".sum", String.valueOf(b.getSum()), String.valueOf(a.getSum()));
+                mismatches++;
+            }
+            if (!UniversalJsonComparator.scalarsEqual(a.getMin(), b.getMin(), floatTolerance, tolerance)) {
+                sink.addFieldDiff(prefix + column + ".min", String.valueOf(b.getMin()), String.valueOf(a.getMin()));
+                mismatches++;
+            }
+            if (!UniversalJsonComparator.scalarsEqual(a.getMax(), b.getMax(), floatTolerance, tolerance)) {
+                sink.addFieldDiff(prefix + column + ".max", String.valueOf(b.getMax()), String.valueOf(a.getMax()));
+                mismatches++;
+            }
+        }
+        summary.setAggregateMismatches(mismatches);
+        return summary;
+    }
+
+    @Override
+    public void addMissingInFirst(String path, String keyLabel, String compositeKey) {
+        diffs++;
+        sink.addMissingInFirst(path, keyLabel, compositeKey);
+    }
+
+    @Override
+    public void addMissingInSecond(String path, String keyLabel, String compositeKey) {
+        diffs++;
+        sink.addMissingInSecond(path, keyLabel, compositeKey);
+    }
+
+    @Override
+    public void addFieldDiff(String path, String prodValue, String testValue) {
+        diffs++;
+        sink.addFieldDiff(path, prodValue, testValue);
+    }
+
+    @Override
+    public boolean isFull() {
+        return sink.isFull();
+    }
+}
@@ -0,0 +1,117 @@
+package com.analytics.comparison.util;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a sampled comparison (see {@link ComparisonProfile.Sampling}): how many sampled rows were compared,
+ * how many of them differed, the mismatch rate with its Wilson score interval, and the numeric column aggregates
+ * of every row on each side. Serialised as-is into comparison_result.sampling_json.
+ */
+@Data
+@NoArgsConstructor
+public class SampleSummary {
+
+    private double rate;
+    private double confidence;
+    /** Sampled rows compared (a row present on one side only counts once). */
+    private long sampledRows;
+    /** Sampled rows with at least one diff, or missing on one side. */
+    private long mismatchedRows;
+    private double mismatchRate;
+    private double mismatchRateLower;
+    private double mismatchRateUpper;
+    /** Aggregate values (count / sum / min / max of a column) that differ between test and prod. */
+    private long aggregateMismatches;
+    private List<ColumnAggregate> testAggregates = new ArrayList<>();
+    private List<ColumnAggregate> prodAggregates = new ArrayList<>();
+
+    /** count / sum / min / max of the numeric values of one column over all rows of one side. */
+    @Data
+    @NoArgsConstructor
+    public static class ColumnAggregate {
+        private String column;
+        private long count;
+        private double sum;
+        private Double min;
+        private Double max;
+
+        ColumnAggregate(String column) {
+            this.column = column;
+        }
+
+        void add(ColumnAggregate other) {
+            count += other.count;
+            sum += other.sum;
+            if (other.min != null) min = min == null ? other.min : Math.min(min, other.min);
+            if (other.max != null) max = max == null ? other.max : Math.max(max, other.max);
+        }
+    }
+
+    /** Sets the mismatch rate and its interval at this summary's confidence from the row counts. */
+    void updateRate() {
+        mismatchRate = sampledRows == 0 ? 0.0 : (double) mismatchedRows / sampledRows;
+        double[] bounds = wilson(mismatchedRows, sampledRows, confidence);
+        mismatchRateLower = bounds[0];
+        mismatchRateUpper = bounds[1];
+    }
+
+    /**
+     * One summary for parts of the same API (taxonomy shards, date chunks): row counts and aggregates added up,
+     * the interval recomputed over all sampled rows. Null when no part was sampled.
+     */
+    public static SampleSummary merge(List<SampleSummary> parts) {
+        SampleSummary merged = null;
+        Map<String, ColumnAggregate> test = new LinkedHashMap<>();
+        Map<String, ColumnAggregate> prod = new LinkedHashMap<>();
+        for (SampleSummary part : parts) {
+            if (part == null) continue;
+            if (merged == null) {
+                merged = new SampleSummary();
+                merged.rate = part.rate;
+                merged.confidence = part.confidence;
+            }
+            merged.sampledRows += part.sampledRows;
+            merged.mismatchedRows += part.mismatchedRows;
+            merged.aggregateMismatches += part.aggregateMismatches;
+            addAll(test, part.testAggregates);
+            addAll(prod, part.prodAggregates);
+        }
+        if (merged == null) return null;
+        merged.testAggregates = new ArrayList<>(test.values());
+        merged.prodAggregates = new ArrayList<>(prod.values());
+        merged.updateRate();
+        return merged;
+    }
+
+    private static void addAll(Map<String, ColumnAggregate> into, List<ColumnAggregate> aggregates) {
+        if (aggregates == null) return;
+        for (ColumnAggregate a : aggregates) {
+            into.computeIfAbsent(a.getColumn(), ColumnAggregate::new).add(a);
+        }
+    }
+
+    /** Wilson score interval of {@code x} successes in {@code n} trials; [0, 1] when nothing was sampled. */
+    static double[] wilson(long x, long n, double confidence) {
+        if (n == 0) return new double[]{0.0, 1.0};
+        double z = normalQuantile(1 - (1 - confidence) / 2);
+        double p = (double) x / n;
+        double z2n = z * z / n;
+        double center = (p + z2n / 2) / (1 + z2n);
+        double half = z / (1 + z2n) * Math.sqrt(p * (1 - p) / n + z2n / (4.0 * n));
+        return new double[]{Math.max(0.0, center - half), Math.min(1.0, center + half)};
+    }
+
+    /** Standard normal quantile (Abramowitz-Stegun 26.2.23, error below 4.5e-4) for p in (0, 1). */
+    static double normalQuantile(double p) {
+        if (p < 0.5) return -normalQuantile(1 - p);
+        double t = Math.sqrt(-2 * Math.log(1 - p));
+        return t - (2.515517 + 0.802853 * t + 0.010328 * t * t)
+                / (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+    }
+}
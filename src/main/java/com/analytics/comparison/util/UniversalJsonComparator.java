@@ -15,6 +15,10 @@ import java.util.regex.Pattern;
  * - Matches objects across two JSONs by discovered composite key
  * - Handles nested arrays with recursive key discovery per array
  * - Produces structured output: missing records + field-level differences
+ * <p>
+ * {@link ComparisonPlanner} splits a comparison into a planning phase ({@link #scan}, {@link #plan}) that finds one
+ * key per array path over both documents, and an execution phase ({@link #execute}) that reuses it for every
+ * instance of that array instead of discovering keys per nested array.
  */
 public class UniversalJsonComparator {
 
@@ -28,6 +32,17 @@ public class UniversalJsonComparator {
             ".*(count|_pct|score|availability|percent|amount|total|avg|sum|share|_avg|delivery|pickup|shipping|deliver|ship)\\.?$",
             Pattern.CASE_INSENSITIVE);
 
+    /** Slots (power of two) of the per-thread cache behind {@link #normalizeKeyValueForMatching}. */
+    private static final int NORMALIZED_KEY_SLOTS = 256;
+    private static final int MAX_CACHED_KEY_LENGTH = 128;
+    /**
+     * Per thread: input at even index, its normalized form at the next one. Lives as long as the thread, and every
+     * comparing pool thread (shard, leg, chunk, queue workers) gets one: a 2 KB array plus the cached strings, at most
+     * {@code 2 * NORMALIZED_KEY_SLOTS} of up to {@code MAX_CACHED_KEY_LENGTH} chars (under 150 KB), typically a few KB.
+     */
+    private static final ThreadLocal<String[]> NORMALIZED_KEYS =
+            ThreadLocal.withInitial(() -> new String[NORMALIZED_KEY_SLOTS * 2]);
+
     public static Map<String, String> flatten(Object input) throws Exception {
         if (input instanceof Map) return flattenMap((Map<?, ?>) input);
         if (input instanceof List) {
@@ -86,14 +101,71 @@ public class UniversalJsonComparator {
         }
     }
 
-    private static final Pattern FLOAT_PATTERN = Pattern.compile("^-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?$");
-
-    /** Normalize id/product_id for matching: "Walgreens-USprod6020383" and "Walgreens-US-prod6020383" -> same key */
-    private static final Pattern ID_RETAILER_PRODUCT = Pattern.compile("^(.+?-[A-Z]{2})(-?)(.+)$", Pattern.CASE_INSENSITIVE);
+    /** Integer literals up to this many digits are exactly representable as double, so long equality is equivalent. */
+    private static final int MAX_EXACT_LONG_DIGITS = 15;
 
-    private static boolean isNumeric(String s) {
+    /**
+     * Hand-written equivalent of {@code ^-?\d+(\.\d+)?([eE][+-]?\d+)?$} (ASCII digits only).
+     * Called for every scalar pair, so it avoids the regex engine.
+     */
+    static boolean isNumeric(String s) {
         if (s == null || s.isBlank()) return false;
-        return FLOAT_PATTERN.matcher(s.trim()).matches();
+        String t = s.trim();
+        int len = t.length();
+        if (len == 0) return false;
+        int i = 0;
+        if (t.charAt(i) == '-') i++;
+        int digits = skipDigits(t, i);
+        if (digits == i) return false;
+        i = digits;
+        if (i < len && t.charAt(i) == '.') {
+            digits = skipDigits(t, i + 1);
+            if (digits == i + 1) return false;
+            i = digits;
+        }
+        if (i < len && (t.charAt(i) == 'e' || t.charAt(i) == 'E')) {
+            i++;
+            if (i < len && (t.charAt(i) == '+' || t.charAt(i) == '-')) i++;
+            digits = skipDigits(t, i);
+            if (digits == i) return false;
+            i = digits;
+        }
+        return i == len;
+    }
+
+    private static int skipDigits(String s, int from) {
+        int i = from;
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') i++;
+        return i;
+    }
+
+    /** True for an optional '-' followed by 1..15 ASCII digits (exact as both long and double). */
+    private static boolean isShortIntegerLiteral(String s) {
+        int start = s.startsWith("-") ? 1 : 0;
+        int len = s.length() - start;
+        if (len < 1 || len > MAX_EXACT_LONG_DIGITS) return false;
+        return skipDigits(s, start) == s.length();
+    }
+
+    /** Numbers whose {@code doubleValue()} equals {@code Double.parseDouble(toString())}. */
+    private static boolean isExactFiniteNumber(Object v) {
+        if (v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte
+                || v instanceof java.math.BigInteger) {
+            return true;
+        }
+        return v instanceof Double && Double.isFinite((Double) v);
+    }
+
+    /**
+     * Compare two scalar values. Jackson numbers (Integer/Long/Double/BigInteger) are compared as primitives
+     * without a String round trip; anything else goes through {@link #valuesEqualWithFloatTolerance}.
+     * Semantics are identical to comparing {@code String.valueOf} of both values.
+     */
+    static boolean scalarsEqualWithFloatTolerance(Object v1, Object v2, double tolerance) {
+        if (isExactFiniteNumber(v1) && isExactFiniteNumber(v2)) {
+            return numbersEqualWithFloatTolerance(((Number) v1).doubleValue(), ((Number) v2).doubleValue(), tolerance);
+        }
+        return valuesEqualWithFloatTolerance(valueToString(v1), valueToString(v2), tolerance);
     }
 
     /**
@@ -102,7 +174,7 @@ public class UniversalJsonComparator {
      * - If difference >= 1%: consider mismatch
      * - For values near zero: use absolute tolerance 1e-6
      */
-    private static boolean valuesEqualWithFloatTolerance(String val1, String val2, double tolerance) {
+    static boolean valuesEqualWithFloatTolerance(String val1, String val2, double tolerance) {
         if (Objects.equals(val1, val2)) return true;
         String n1 = val1 == null ? "null" : val1.trim();
         String n2 = val2 == null ? "null" : val2.trim();
@@ -114,21 +186,11 @@ public class UniversalJsonComparator {
         if (("null".equalsIgnoreCase(n1) && "1".equals(n2)) || ("1".equals(n1) && "null".equalsIgnoreCase(n2))) return true;
 
         if (isNumeric(n1) && isNumeric(n2)) {
+            if (isShortIntegerLiteral(n1) && isShortIntegerLiteral(n2)) {
+                return Long.parseLong(n1) == Long.parseLong(n2);
+            }
             try {
-                double d1 = Double.parseDouble(n1);
-                double d2 = Double.parseDouble(n2);
-                boolean isInt1 = d1 == Math.floor(d1) && !Double.isInfinite(d1);
-                boolean isInt2 = d2 == Math.floor(d2) && !Double.isInfinite(d2);
-                if (isInt1 && isInt2) {
-                    return d1 == d2;
-                }
-                double absDiff = Math.abs(d1 - d2);
-                double maxAbs = Math.max(Math.abs(d1), Math.abs(d2));
-                if (maxAbs < 1e-10) {
-                    return absDiff < 1e-6;
-                }
-                double relativeDiff = absDiff / maxAbs;
-                return relativeDiff <= tolerance;
+                return numbersEqualWithFloatTolerance(Double.parseDouble(n1), Double.parseDouble(n2), tolerance);
             } catch (NumberFormatException ignored) {
                 return false;
             }
@@ -139,6 +201,21 @@ public class UniversalJsonComparator {
         return false;
     }
 
+    private static boolean numbersEqualWithFloatTolerance(double d1, double d2, double tolerance) {
+        boolean isInt1 = d1 == Math.floor(d1) && !Double.isInfinite(d1);
+        boolean isInt2 = d2 == Math.floor(d2) && !Double.isInfinite(d2);
+        if (isInt1 && isInt2) {
+            return d1 == d2;
+        }
+        double absDiff = Math.abs(d1 - d2);
+        double maxAbs = Math.max(Math.abs(d1), Math.abs(d2));
+        if (maxAbs < 1e-10) {
+            return absDiff < 1e-6;
+        }
+        double relativeDiff = absDiff / maxAbs;
+        return relativeDiff <= tolerance;
+    }
+
     public static List<JsonDiff> compare(Object json1, Object json2) throws Exception {
         return compare(json1, json2, DEFAULT_FLOAT_TOLERANCE);
     }
@@ -157,24 +234,80 @@ public class UniversalJsonComparator {
      * @return Structured result with missing records and field differences
      */
     public static JsonComparisonResult compareStructured(Object json1, Object json2, double floatTolerance) throws Exception {
-        Object norm1 = normalizeForComparison(json1);
-        Object norm2 = normalizeForComparison(json2);
+        Object norm1 = normalizeForComparison(json1, null, null);
+        Object norm2 = normalizeForComparison(json2, null, null);
         JsonComparisonResult result = new JsonComparisonResult();
-        compareRecursive("", norm1, norm2, floatTolerance, result);
+        compareRecursive("", null, norm1, norm2, floatTolerance, null, result);
         return result;
     }
 
+    /** Compare two JSON values and send every difference to {@code sink} instead of collecting them in a result. */
+    public static void compare(Object json1, Object json2, double floatTolerance, DiffSink sink) throws Exception {
+        compare(json1, json2, floatTolerance, null, sink);
+    }
+
+    /**
+     * As {@link #compare(Object, Object, double, DiffSink)}, with the API's declared keys, ignored fields and
+     * per-field tolerances; a null profile discovers keys and uses {@code floatTolerance} everywhere.
+     */
+    public static void compare(Object json1, Object json2, double floatTolerance, ComparisonProfile profile,
+                               DiffSink sink) throws Exception {
+        compareInto("", profile != null ? "" : null, json1, json2, floatTolerance, profile, sink);
+    }
+
+    /**
+     * Compare two values rooted at {@code path} and send differences to {@code sink}. Used by the out-of-core
+     * array join to compare one matched record pair at a time.
+     */
+    static void compareInto(String path, Object json1, Object json2, double floatTolerance, DiffSink sink) throws Exception {
+        compareInto(path, null, json1, json2, floatTolerance, null, sink);
+    }
+
+    /** {@code schema} is the profile path of the two values ("" at the root, ignored without a profile). */
+    static void compareInto(String path, String schema, Object json1, Object json2, double floatTolerance,
+                            ComparisonProfile profile, DiffSink sink) throws Exception {
+        String s = profile != null ? (schema != null ? schema : "") : null;
+        compareRecursive(path, s, normalizeForComparison(json1, s, profile), normalizeForComparison(json2, s, profile),
+                floatTolerance, profile, sink);
+    }
+
+    /** Composite key fields for two record samples (empty when no unique combination exists). */
+    @SuppressWarnings("unchecked")
+    static List<String> discoverKeyFields(List<Map<String, Object>> sample1, List<Map<String, Object>> sample2) throws Exception {
+        List<Map<String, Object>> norm1 = new ArrayList<>();
+        for (Map<String, Object> m : sample1) norm1.add((Map<String, Object>) normalizeForComparison(m, null, null));
+        List<Map<String, Object>> norm2 = new ArrayList<>();
+        for (Map<String, Object> m : sample2) norm2.add((Map<String, Object>) normalizeForComparison(m, null, null));
+        return discoverCompositeKeyFromResponse(norm1, norm2);
+    }
+
+    /** Normalized composite key value of a record, as used for matching ("" when no key field is present). */
+    static String compositeKey(Map<String, Object> item, List<String> keyFields) {
+        return buildCompositeKeyValue(item, keyFields);
+    }
+
+    /**
+     * Parses embedded JSON strings and sorts arrays of objects by their key. With a profile, {@code schema} is
+     * the path of {@code obj}: ignored fields are dropped and arrays with declared keys are left unsorted
+     * (they are matched by key, not position).
+     */
+    private static Object normalizeForComparison(Object obj, String schema, ComparisonProfile profile) throws Exception {
+        return normalizeForComparison(obj, schema, profile, true);
+    }
+
+    /** {@code sort} false leaves arrays in document order, for {@link #prepare} (sorted later by {@link #execute}). */
     @SuppressWarnings("unchecked")
-    private static Object normalizeForComparison(Object obj) throws Exception {
+    private static Object normalizeForComparison(Object obj, String schema, ComparisonProfile profile, boolean sort) throws Exception {
         if (obj instanceof String) {
             String s = (String) obj;
             if ((s.startsWith("{") || s.startsWith("[")) && s.length() > 1) {
                 try {
                     JsonNode node = objectMapper.readTree(s);
                     if (node.isArray()) {
-                        return normalizeForComparison(objectMapper.convertValue(node, List.class));
+                        return normalizeForComparison(objectMapper.convertValue(node, List.class), schema, profile, sort);
                     }
-                    return objectMapper.convertValue(node, Map.class);
+                    Map<String, Object> parsed = objectMapper.convertValue(node, Map.class);
+                    return profile != null && profile.hasIgnoredFields() ? normalizeForComparison(parsed, schema, profile, sort) : parsed;
                 } catch (Exception e) {
                     // Not valid JSON - e.g. productComments "content" field contains
                     // "[This review was collected as part of a promotion.] ..." which is plain text
@@ -187,7 +320,10 @@ public class UniversalJsonComparator {
             Map<String, Object> result = new LinkedHashMap<>();
             Map<?, ?> map = (Map<?, ?>) obj;
             for (Map.Entry<?, ?> e : map.entrySet()) {
-                result.put(String.valueOf(e.getKey()), normalizeForComparison(e.getValue()));
+                String name = String.valueOf(e.getKey());
+                String childSchema = profile != null ? ComparisonProfile.child(schema, name) : null;
+                if (profile != null && profile.isIgnored(childSchema, name)) continue;
+                result.put(name, normalizeForComparison(e.getValue(), childSchema, profile, sort));
             }
             return result;
         }
@@ -198,21 +334,153 @@ public class UniversalJsonComparator {
             if (first instanceof Map) {
                 List<Map<String, Object>> sorted = new ArrayList<>();
                 for (Object item : list) {
-                    sorted.add((Map<String, Object>) normalizeForComparison(item));
-                }
-                List<String> sortFields = discoverCompositeKeyFromResponse(sorted, sorted);
-                if (!sortFields.isEmpty()) {
-                    sorted.sort(Comparator.comparing(m -> buildCompositeKeyValue(m, sortFields)));
+                    sorted.add((Map<String, Object>) normalizeForComparison(item, schema, profile, sort));
                 }
+                if (sort) sortByDiscoveredKey(sorted, schema, profile);
                 return sorted;
             }
             List<Object> result = new ArrayList<>();
-            for (Object item : list) result.add(normalizeForComparison(item));
+            for (Object item : list) result.add(normalizeForComparison(item, schema, profile, sort));
             return result;
         }
         return obj;
     }
 
+    /** Sorts records by their own discovered key, unless the array is matched by a declared or planned key. */
+    private static void sortByDiscoveredKey(List<Map<String, Object>> items, String schema, ComparisonProfile profile) {
+        if (profile != null && profile.keysFor(schema) != null) return;
+        List<String> sortFields = discoverCompositeKeyFromResponse(items, items);
+        if (!sortFields.isEmpty()) {
+            items.sort(Comparator.comparing(m -> buildCompositeKeyValue(m, sortFields)));
+        }
+    }
+
+    /**
+     * Planning input: a value normalized as for comparison (embedded JSON parsed, ignored fields dropped) but
+     * with arrays still unsorted, since which arrays need sorting is only known once the plan exists.
+     */
+    static Object prepare(Object json, String schema, ComparisonProfile profile) throws Exception {
+        return normalizeForComparison(json, schema, profile, false);
+    }
+
+    /**
+     * One walk over both prepared documents: field names and value types per schema path, and every instance
+     * of every array of objects. The fingerprint covers the names and types only, not the values.
+     */
+    static Scan scan(Object doc1, Object doc2, String rootSchema) {
+        Scan scan = new Scan();
+        scan.walk(doc1, rootSchema);
+        scan.walk(doc2, rootSchema);
+        return scan;
+    }
+
+    /**
+     * Compiles a scan: per array path, the smallest key unique within every instance on both sides (candidates
+     * from the first record seen, as in per-array discovery). Paths without such a key are left out.
+     */
+    static ComparisonPlan plan(Scan scan) {
+        Map<String, List<String>> keys = new HashMap<>();
+        for (Map.Entry<String, List<List<Map<String, Object>>>> e : scan.arrays.entrySet()) {
+            List<List<Map<String, Object>>> instances = e.getValue();
+            Map<String, Object> first = null;
+            for (List<Map<String, Object>> items : instances) {
+                if (!items.isEmpty()) {
+                    first = items.get(0);
+                    break;
+                }
+            }
+            if (first == null) continue;
+            List<String> candidates = collectKeyCandidateFields(first);
+            List<String> key = candidates.isEmpty() ? Collections.emptyList() : findMinimalUniqueKey(instances, candidates);
+            if (!key.isEmpty()) keys.put(e.getKey(), key);
+        }
+        Map<String, List<String>> fields = new HashMap<>();
+        for (Map.Entry<String, Set<String>> e : scan.fields.entrySet()) {
+            fields.put(e.getKey(), List.copyOf(e.getValue()));
+        }
+        return new ComparisonPlan(scan.fingerprint(), keys, fields);
+    }
+
+    /**
+     * Execution phase: sorts the arrays the plan has no key for (as {@link #normalizeForComparison} would) and
+     * compares the prepared documents using the plan carried by {@code profile}.
+     */
+    static void execute(String path, String schema, Object prepared1, Object prepared2, double floatTolerance,
+                        ComparisonProfile profile, DiffSink sink) throws Exception {
+        sortUnplanned(prepared1, schema, profile);
+        sortUnplanned(prepared2, schema, profile);
+        compareRecursive(path, schema, prepared1, prepared2, floatTolerance, profile, sink);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void sortUnplanned(Object obj, String schema, ComparisonProfile profile) {
+        if (obj instanceof Map) {
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) obj).entrySet()) {
+                sortUnplanned(e.getValue(), ComparisonProfile.child(schema, e.getKey()), profile);
+            }
+        } else if (obj instanceof List) {
+            List<Object> list = (List<Object>) obj;
+            for (Object item : list) sortUnplanned(item, schema, profile);
+            if (!list.isEmpty() && list.get(0) instanceof Map) {
+                sortByDiscoveredKey((List<Map<String, Object>>) (List<?>) list, schema, profile);
+            }
+        }
+    }
+
+    /** Field names, types and array instances per schema path, collected by {@link #scan}. */
+    static final class Scan {
+        private static final int OBJECT = 1, ARRAY = 2, STRING = 4, NUMBER = 8, BOOLEAN = 16, NULL = 32;
+
+        private final Map<String, Set<String>> fields = new HashMap<>();
+        private final Map<String, Integer> types = new HashMap<>();
+        private final Map<String, List<List<Map<String, Object>>>> arrays = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        private void walk(Object obj, String schema) {
+            if (obj instanceof Map) {
+                mark(schema, OBJECT);
+                Set<String> names = fields.computeIfAbsent(schema, k -> new TreeSet<>());
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) obj).entrySet()) {
+                    String name = String.valueOf(e.getKey());
+                    names.add(name);
+                    walk(e.getValue(), ComparisonProfile.child(schema, name));
+                }
+            } else if (obj instanceof List) {
+                mark(schema, ARRAY);
+                List<?> list = (List<?>) obj;
+                if (!list.isEmpty() && list.get(0) instanceof Map) {
+                    arrays.computeIfAbsent(schema, k -> new ArrayList<>()).add((List<Map<String, Object>>) list);
+                }
+                for (Object item : list) walk(item, schema);
+            } else {
+                mark(schema, obj == null ? NULL : obj instanceof Number ? NUMBER : obj instanceof Boolean ? BOOLEAN : STRING);
+            }
+        }
+
+        private void mark(String schema, int type) {
+            types.merge(schema, type, (a, b) -> a | b);
+        }
+
+        private String fingerprint;
+
+        /** Hash of the sorted "path:typeMask" lines. */
+        String fingerprint() {
+            if (fingerprint != null) return fingerprint;
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Integer> e : new TreeMap<>(types).entrySet()) {
+                sb.append(e.getKey()).append(':').append(e.getValue()).append('\n');
+            }
+            fingerprint = Long.toHexString(JsonComparisonUtils.hash64(sb));
+            return fingerprint;
+        }
+
+        int arrayInstanceCount() {
+            int n = 0;
+            for (List<List<Map<String, Object>>> instances : arrays.values()) n += instances.size();
+            return n;
+        }
+    }
+
     /**
      * Discover composite key by analyzing the actual JSON response.
      * Scans objects in both arrays, collects scalar fields (excluding metrics),
@@ -242,11 +510,16 @@ public class UniversalJsonComparator {
         List<String> candidates = new ArrayList<>();
         collectKeyCandidatesRecursive(item, "", candidates);
         return candidates.stream()
-                .filter(f -> !METRIC_FIELD_PATTERN.matcher(f).matches())
+                .filter(f -> !isMetricField(f))
                 .sorted(UniversalJsonComparator::keyFieldPriority)
                 .collect(java.util.stream.Collectors.toList());
     }
 
+    /** True when the field name looks like a metric/value (excluded from key discovery). */
+    static boolean isMetricField(String fieldPath) {
+        return fieldPath != null && METRIC_FIELD_PATTERN.matcher(fieldPath).matches();
+    }
+
     private static int keyFieldPriority(String a, String b) {
         int ia = preferredKeyIndex(a);
         int ib = preferredKeyIndex(b);
@@ -289,22 +562,29 @@ public class UniversalJsonComparator {
     private static List<String> findMinimalUniqueKeyCombination(List<Map<String, Object>> items1,
                                                                 List<Map<String, Object>> items2,
                                                                 List<String> candidates) {
+        return findMinimalUniqueKey(List.of(items1, items2), candidates);
+    }
+
+    /** As above, with the key unique within each of {@code instances}. */
+    private static List<String> findMinimalUniqueKey(List<List<Map<String, Object>>> instances, List<String> candidates) {
         for (int len = 1; len <= candidates.size(); len++) {
-            List<String> combo = tryCombinations(items1, items2, candidates, len, 0, new ArrayList<>());
+            List<String> combo = tryCombinations(instances, candidates, len, 0, new ArrayList<>());
             if (combo != null) return combo;
         }
         return Collections.emptyList();
     }
 
-    private static List<String> tryCombinations(List<Map<String, Object>> items1, List<Map<String, Object>> items2,
+    private static List<String> tryCombinations(List<List<Map<String, Object>>> instances,
                                                  List<String> candidates, int targetLen, int start, List<String> current) {
         if (current.size() == targetLen) {
-            if (!isUniqueWithinItems(items1, current) || !isUniqueWithinItems(items2, current)) return null;
+            for (List<Map<String, Object>> items : instances) {
+                if (!isUniqueWithinItems(items, current)) return null;
+            }
             return new ArrayList<>(current);
         }
         for (int i = start; i < candidates.size(); i++) {
             current.add(candidates.get(i));
-            List<String> result = tryCombinations(items1, items2, candidates, targetLen, i + 1, current);
+            List<String> result = tryCombinations(instances, candidates, targetLen, i + 1, current);
             current.remove(current.size() - 1);
             if (result != null) return result;
         }
@@ -368,30 +648,95 @@ public class UniversalJsonComparator {
      * "Walgreens-USprod6020383" vs "Walgreens-US-prod6020383" -> same normalized form.
      * "Kroger-US0002113618087" vs "Kroger-US-0002113618087" -> same.
      */
-    private static String normalizeKeyValueForMatching(String val, String fieldPath) {
+    static String normalizeKeyValueForMatching(String val, String fieldPath) {
         if (val == null || val.isBlank()) return val;
         String s = val.trim();
         if (s.length() < 4) return s;
-        java.util.regex.Matcher m = ID_RETAILER_PRODUCT.matcher(s);
-        if (m.matches()) {
-            String retailer = m.group(1);
-            String productPart = m.group(3);
-            return retailer + "-" + productPart;
+        if (s.length() > MAX_CACHED_KEY_LENGTH) return normalizeRetailerCode(s);
+        // Key values repeat across rows and both documents: a small per-thread direct-mapped cache saves the scan
+        String[] cache = NORMALIZED_KEYS.get();
+        int slot = (s.hashCode() & (NORMALIZED_KEY_SLOTS - 1)) << 1;
+        if (s.equals(cache[slot])) return cache[slot + 1];
+        String normalized = normalizeRetailerCode(s);
+        cache[slot] = s;
+        cache[slot + 1] = normalized;
+        return normalized;
+    }
+
+    private static String normalizeRetailerCode(String s) {
+        int sep = findRetailerCodeSeparator(s);
+        if (sep < 0) return s;
+        int productStart = sep + 3;
+        if (s.charAt(productStart) == '-' && productStart + 1 < s.length()) productStart++;
+        return s.substring(0, sep + 3) + "-" + s.substring(productStart);
+    }
+
+    /**
+     * Hand-written equivalent of {@code ^(.+?-[A-Z]{2})(-?)(.+)$} (case-insensitive): index of the first '-' (not at position 0)
+     * followed by two ASCII letters and at least one more character, or -1. Like the regex, any line
+     * terminator in the value prevents a match.
+     */
+    private static int findRetailerCodeSeparator(String s) {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') return -1;
         }
-        return s;
+        for (int i = 1; i + 3 < len; i++) {
+            if (s.charAt(i) == '-' && isAsciiLetter(s.charAt(i + 1)) && isAsciiLetter(s.charAt(i + 2))) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
     }
 
+    /**
+     * Items by composite key. Discovered keys are unique; a declared key may repeat, in which case every
+     * occurrence is suffixed #1, #2, ... in document order, as in the out-of-core join.
+     */
     private static Map<String, Map<String, Object>> groupByCompositeKey(List<Map<String, Object>> items, List<String> keyFields) {
         Map<String, Map<String, Object>> result = new LinkedHashMap<>();
         for (Map<String, Object> item : items) {
             String key = buildCompositeKeyValue(item, keyFields);
-            if (!key.isEmpty()) result.put(key, item);
+            if (key.isEmpty()) continue;
+            if (result.putIfAbsent(key, item) != null) return groupWithOccurrences(items, keyFields);
+        }
+        return result;
+    }
+
+    /** Items by a planned key, or null when the key is empty or repeats in this instance (the plan does not fit it). */
+    private static Map<String, Map<String, Object>> groupByPlannedKey(List<Map<String, Object>> items, List<String> keyFields) {
+        Map<String, Map<String, Object>> result = new HashMap<>();
+        for (Map<String, Object> item : items) {
+            String key = buildCompositeKeyValue(item, keyFields);
+            if (key.isEmpty() || result.putIfAbsent(key, item) != null) return null;
+        }
+        return result;
+    }
+
+    private static Map<String, Map<String, Object>> groupWithOccurrences(List<Map<String, Object>> items, List<String> keyFields) {
+        Map<String, List<Map<String, Object>>> groups = new LinkedHashMap<>();
+        for (Map<String, Object> item : items) {
+            String key = buildCompositeKeyValue(item, keyFields);
+            if (!key.isEmpty()) groups.computeIfAbsent(key, k -> new ArrayList<>(1)).add(item);
+        }
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Map<String, Object>>> e : groups.entrySet()) {
+            List<Map<String, Object>> group = e.getValue();
+            if (group.size() == 1) {
+                result.put(e.getKey(), group.get(0));
+            } else {
+                for (int i = 0; i < group.size(); i++) result.put(e.getKey() + "#" + (i + 1), group.get(i));
+            }
         }
         return result;
     }
 
     @SuppressWarnings("unchecked")
-    private static void compareRecursive(String path, Object obj1, Object obj2, double floatTolerance, JsonComparisonResult result) throws Exception {
+    private static void compareRecursive(String path, String schema, Object obj1, Object obj2, double floatTolerance,
+                                         ComparisonProfile profile, DiffSink result) throws Exception {
         if (obj1 instanceof List && obj2 instanceof List) {
             List<?> list1 = (List<?>) obj1;
             List<?> list2 = (List<?>) obj2;
@@ -400,20 +745,25 @@ public class UniversalJsonComparator {
             if (!list1.isEmpty() && list1.get(0) instanceof Map && !list2.isEmpty() && list2.get(0) instanceof Map) {
                 List<Map<String, Object>> items1 = (List<Map<String, Object>>) list1;
                 List<Map<String, Object>> items2 = (List<Map<String, Object>>) list2;
-                List<String> keyFields = discoverCompositeKeyFromResponse(items1, items2);
+                List<String> keyFields = profile != null ? profile.keysFor(schema) : null;
+                Map<String, Map<String, Object>> byKey1 = null;
+                Map<String, Map<String, Object>> byKey2 = null;
+                if (keyFields != null && !profile.isDeclared(schema)) {
+                    byKey1 = groupByPlannedKey(items1, keyFields);
+                    byKey2 = byKey1 != null ? groupByPlannedKey(items2, keyFields) : null;
+                    if (byKey2 == null) keyFields = null;
+                }
+                if (keyFields == null) keyFields = discoverCompositeKeyFromResponse(items1, items2);
 
                 if (keyFields.isEmpty()) {
-                    int maxLen = Math.max(list1.size(), list2.size());
-                    for (int i = 0; i < maxLen; i++) {
-                        Object a = i < list1.size() ? list1.get(i) : Collections.emptyMap();
-                        Object b = i < list2.size() ? list2.get(i) : Collections.emptyMap();
-                        compareRecursive(path + "[" + i + "]", a, b, floatTolerance, result);
-                    }
+                    compareAsMultiset(path, schema, items1, items2, floatTolerance, profile, result);
                     return;
                 }
 
-                Map<String, Map<String, Object>> byKey1 = groupByCompositeKey(items1, keyFields);
-                Map<String, Map<String, Object>> byKey2 = groupByCompositeKey(items2, keyFields);
+                if (byKey2 == null) {
+                    byKey1 = groupByCompositeKey(items1, keyFields);
+                    byKey2 = groupByCompositeKey(items2, keyFields);
+                }
 
                 Set<String> onlyInFirst = new TreeSet<>(byKey1.keySet());
                 onlyInFirst.removeAll(byKey2.keySet());
@@ -422,17 +772,20 @@ public class UniversalJsonComparator {
 
                 String keyLabel = String.join(",", keyFields);
                 for (String k : onlyInFirst) {
+                    if (result.isFull()) return;
                     result.addMissingInSecond(path, keyLabel, k);
                 }
                 for (String k : onlyInSecond) {
+                    if (result.isFull()) return;
                     result.addMissingInFirst(path, keyLabel, k);
                 }
 
                 Set<String> common = new HashSet<>(byKey1.keySet());
                 common.retainAll(byKey2.keySet());
                 for (String key : common) {
+                    if (result.isFull()) return;
                     String subPath = path + "[" + keyLabel + "=" + key + "]";
-                    compareRecursive(subPath, byKey1.get(key), byKey2.get(key), floatTolerance, result);
+                    compareRecursive(subPath, schema, byKey1.get(key), byKey2.get(key), floatTolerance, profile, result);
                 }
                 return;
             }
@@ -441,14 +794,20 @@ public class UniversalJsonComparator {
         if (obj1 instanceof Map && obj2 instanceof Map) {
             Map<?, ?> m1 = (Map<?, ?>) obj1;
             Map<?, ?> m2 = (Map<?, ?>) obj2;
-            Set<String> allKeys = new TreeSet<>();
-            m1.keySet().forEach(k -> allKeys.add(String.valueOf(k)));
-            m2.keySet().forEach(k -> allKeys.add(String.valueOf(k)));
+            Collection<String> allKeys = profile != null ? plannedFields(schema, m1, m2, profile) : null;
+            if (allKeys == null) {
+                Set<String> union = new TreeSet<>();
+                m1.keySet().forEach(k -> union.add(String.valueOf(k)));
+                m2.keySet().forEach(k -> union.add(String.valueOf(k)));
+                allKeys = union;
+            }
 
             for (String k : allKeys) {
+                if (result.isFull()) return;
                 Object v1 = m1.get(k);
                 Object v2 = m2.get(k);
                 String subPath = path.isEmpty() ? k : path + "." + k;
+                String subSchema = profile != null ? ComparisonProfile.child(schema, k) : null;
 
                 if (v1 == null && v2 == null) continue;
                 if (v1 == null) {
@@ -461,7 +820,7 @@ public class UniversalJsonComparator {
                 }
 
                 if ((v1 instanceof Map && v2 instanceof Map) || (v1 instanceof List && v2 instanceof List)) {
-                    compareRecursive(subPath, v1, v2, floatTolerance, result);
+                    compareRecursive(subPath, subSchema, v1, v2, floatTolerance, profile, result);
                 } else {
                     Map<String, String> flat1 = flattenScalarOrFlatten(v1);
                     Map<String, String> flat2 = flattenScalarOrFlatten(v2);
@@ -476,23 +835,144 @@ public class UniversalJsonComparator {
                                 result.addFieldDiff(subPath + (fk.isEmpty() ? "" : "." + fk), s2, s1);
                             }
                         }
-                    } else {
-                        String s1 = valueToString(v1);
-                        String s2 = valueToString(v2);
-                        if (!valuesEqualWithFloatTolerance(s1, s2, floatTolerance)) {
-                            result.addFieldDiff(subPath, s2, s1);
-                        }
+                    } else if (!scalarsEqual(v1, v2, floatTolerance,
+                            profile != null ? profile.toleranceFor(subSchema, k) : null)) {
+                        result.addFieldDiff(subPath, valueToString(v2), valueToString(v1));
                     }
                 }
             }
             return;
         }
 
-        String s1 = valueToString(obj1);
-        String s2 = valueToString(obj2);
-        if (!valuesEqualWithFloatTolerance(s1, s2, floatTolerance)) {
-            result.addFieldDiff(path, s2, s1);
+        if (!scalarsEqualWithFloatTolerance(obj1, obj2, floatTolerance)) {
+            result.addFieldDiff(path, valueToString(obj2), valueToString(obj1));
+        }
+    }
+
+    private static final String MULTISET_KEY_LABEL = "index";
+    private static final int MAX_SIMILARITY_PAIRS = 250_000;
+
+    /**
+     * Matching for arrays without a unique key (genuine duplicate rows). Rows with equal canonical hashes are
+     * matched as equal, as often as they occur on both sides. The leftovers are paired by similarity, so an
+     * inserted row does not shift every later row out of position. Similarity is the number of equal
+     * top-level fields, and the most similar pairs are taken first. Above {@value #MAX_SIMILARITY_PAIRS}
+     * candidate pairs, leftovers are paired in document order. Unpaired leftovers of the longer side are
+     * reported as missing by index.
+     */
+    private static void compareAsMultiset(String path, String schema, List<Map<String, Object>> items1,
+                                          List<Map<String, Object>> items2, double floatTolerance,
+                                          ComparisonProfile profile, DiffSink result) throws Exception {
+        Map<Long, Deque<Integer>> bag = new HashMap<>();
+        for (int j = 0; j < items2.size(); j++) {
+            bag.computeIfAbsent(JsonComparisonUtils.canonicalValueHash64(items2.get(j)), h -> new ArrayDeque<>()).add(j);
+        }
+        List<Integer> left1 = new ArrayList<>();
+        for (int i = 0; i < items1.size(); i++) {
+            Deque<Integer> equal = bag.get(JsonComparisonUtils.canonicalValueHash64(items1.get(i)));
+            if (equal == null || equal.poll() == null) left1.add(i);
+        }
+        List<Integer> left2 = new ArrayList<>();
+        for (Deque<Integer> unmatched : bag.values()) left2.addAll(unmatched);
+        Collections.sort(left2);
+
+        int[] pairs = pairBySimilarity(left1, left2, items1, items2);
+        boolean[] paired2 = new boolean[left2.size()];
+        for (int a = 0; a < left1.size(); a++) {
+            if (result.isFull()) return;
+            int i = left1.get(a);
+            if (pairs[a] < 0) {
+                result.addMissingInSecond(path, MULTISET_KEY_LABEL, String.valueOf(i));
+                continue;
+            }
+            paired2[pairs[a]] = true;
+            compareRecursive(path + "[" + i + "]", schema, items1.get(i), items2.get(left2.get(pairs[a])),
+                    floatTolerance, profile, result);
+        }
+        for (int b = 0; b < left2.size() && !result.isFull(); b++) {
+            if (!paired2[b]) result.addMissingInFirst(path, MULTISET_KEY_LABEL, String.valueOf(left2.get(b)));
+        }
+    }
+
+    /** For each leftover of the first side, the index into {@code left2} of its partner, or -1. */
+    private static int[] pairBySimilarity(List<Integer> left1, List<Integer> left2,
+                                          List<Map<String, Object>> items1, List<Map<String, Object>> items2) {
+        int[] pairs = new int[left1.size()];
+        Arrays.fill(pairs, -1);
+        if (left1.isEmpty() || left2.isEmpty()) return pairs;
+        if ((long) left1.size() * left2.size() > MAX_SIMILARITY_PAIRS) {
+            for (int a = 0; a < Math.min(left1.size(), left2.size()); a++) pairs[a] = a;
+            return pairs;
         }
+        List<Map<String, Long>> fields1 = new ArrayList<>();
+        for (int i : left1) fields1.add(fieldHashes(items1.get(i)));
+        List<Map<String, Long>> fields2 = new ArrayList<>();
+        for (int j : left2) fields2.add(fieldHashes(items2.get(j)));
+
+        // (fields - similarity, a, b) packed so that ascending order takes the most similar pair first, then document order
+        long[] candidates = new long[left1.size() * left2.size()];
+        int n = 0;
+        for (int a = 0; a < left1.size(); a++) {
+            for (int b = 0; b < left2.size(); b++) {
+                int similarity = 0;
+                for (Map.Entry<String, Long> e : fields1.get(a).entrySet()) {
+                    if (e.getValue().equals(fields2.get(b).get(e.getKey()))) similarity++;
+                }
+                long dissimilarity = Math.max(0, (1 << 22) - similarity);
+                candidates[n++] = (dissimilarity << 40) | ((long) a << 20) | b;
+            }
+        }
+        Arrays.sort(candidates);
+        boolean[] taken2 = new boolean[left2.size()];
+        int remaining = Math.min(left1.size(), left2.size());
+        for (long c : candidates) {
+            int a = (int) ((c >>> 20) & 0xFFFFF);
+            int b = (int) (c & 0xFFFFF);
+            if (pairs[a] >= 0 || taken2[b]) continue;
+            pairs[a] = b;
+            taken2[b] = true;
+            if (--remaining == 0) break;
+        }
+        return pairs;
+    }
+
+    private static Map<String, Long> fieldHashes(Map<String, Object> item) {
+        Map<String, Long> hashes = new HashMap<>();
+        for (Map.Entry<String, Object> e : item.entrySet()) {
+            hashes.put(e.getKey(), JsonComparisonUtils.canonicalValueHash64(e.getValue()));
+        }
+        return hashes;
+    }
+
+    /** The plan's sorted field names for the two maps, or null when either has a field the plan did not see. */
+    private static List<String> plannedFields(String schema, Map<?, ?> m1, Map<?, ?> m2, ComparisonProfile profile) {
+        List<String> planned = profile.plannedFields(schema);
+        if (planned == null) return null;
+        for (Object k : m1.keySet()) if (!profile.isPlannedField(schema, String.valueOf(k))) return null;
+        for (Object k : m2.keySet()) if (!profile.isPlannedField(schema, String.valueOf(k))) return null;
+        return planned;
+    }
+
+    /** {@link #scalarsEqualWithFloatTolerance}, except that two numbers use the field's declared tolerance when it has one. */
+    static boolean scalarsEqual(Object v1, Object v2, double floatTolerance, ComparisonProfile.Tolerance tolerance) {
+        if (tolerance != null) {
+            Double d1 = asDouble(v1);
+            Double d2 = asDouble(v2);
+            if (d1 != null && d2 != null) return tolerance.equal(d1, d2);
+        }
+        return scalarsEqualWithFloatTolerance(v1, v2, floatTolerance);
+    }
+
+    private static Double asDouble(Object v) {
+        if (v instanceof Number) return ((Number) v).doubleValue();
+        if (v instanceof String && isNumeric((String) v)) {
+            try {
+                return Double.parseDouble(((String) v).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
     }
 
     private static Map<String, String> flattenScalarOrFlatten(Object v) {
@@ -522,20 +1002,23 @@ public class UniversalJsonComparator {
     /**
      * Structured comparison result: missing records + field-level differences.
      */
-    public static class JsonComparisonResult {
+    public static class JsonComparisonResult implements DiffSink {
         private final List<String> missingInFirst = new ArrayList<>();
         private final List<String> missingInSecond = new ArrayList<>();
         private final List<FieldDiff> fieldDifferences = new ArrayList<>();
 
-        void addMissingInFirst(String path, String keyLabel, String compositeKey) {
+        @Override
+        public void addMissingInFirst(String path, String keyLabel, String compositeKey) {
             missingInFirst.add(path + "[" + keyLabel + "=" + compositeKey + "]");
         }
 
-        void addMissingInSecond(String path, String keyLabel, String compositeKey) {
+        @Override
+        public void addMissingInSecond(String path, String keyLabel, String compositeKey) {
             missingInSecond.add(path + "[" + keyLabel + "=" + compositeKey + "]");
         }
 
-        void addFieldDiff(String path, String value1, String value2) {
+        @Override
+        public void addFieldDiff(String path, String value1, String value2) {
             fieldDifferences.add(new FieldDiff(path, value1, value2));
         }
 
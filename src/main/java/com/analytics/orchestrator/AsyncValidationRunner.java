@@ -1,29 +1,55 @@
 package com.analytics.orchestrator;
 
+import com.analytics.orchestrator.config.ApiDefinition;
+import com.analytics.orchestrator.entity.SuiteTask;
+import com.analytics.orchestrator.queue.SuiteTaskHandler;
+import com.analytics.orchestrator.queue.SuiteTaskQueue;
+import com.analytics.orchestrator.repository.TestReportDetailRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Runs validation in background. Separate component so @Async works (avoids self-invocation).
+ * With queue.enabled the suite is split into per-API suite_task rows instead, so it survives restarts
+ * and can be picked up by any instance.
  */
 @Component
-public class AsyncValidationRunner {
+public class AsyncValidationRunner implements SuiteTaskHandler {
 
     private static final Logger log = LoggerFactory.getLogger(AsyncValidationRunner.class);
     private final ValidationService validationService;
+    private final ConfigResolver configResolver;
+    private final SuiteTaskQueue taskQueue;
+    private final TestReportDetailRepository testReportDetailRepository;
 
-    public AsyncValidationRunner(ValidationService validationService) {
+    @Value("${queue.enabled:true}")
+    private boolean queueEnabled;
+
+    public AsyncValidationRunner(ValidationService validationService, ConfigResolver configResolver,
+                                 SuiteTaskQueue taskQueue, TestReportDetailRepository testReportDetailRepository) {
         this.validationService = validationService;
+        this.configResolver = configResolver;
+        this.taskQueue = taskQueue;
+        this.testReportDetailRepository = testReportDetailRepository;
     }
 
     @Async
     public void runAsync(String suiteId, String client, String environment, String apiGroup,
                          String startDate, String endDate, List<String> apisToRun,
                          String baseUrl, String userEmail) {
+        if (queueEnabled) {
+            enqueue(suiteId, client, environment, apiGroup, startDate, endDate, apisToRun, baseUrl, userEmail);
+            return;
+        }
         try {
             validationService.runValidationTestsInternal(suiteId, client, environment, apiGroup, startDate, endDate, apisToRun, baseUrl, userEmail);
         } catch (Exception e) {
@@ -33,4 +59,74 @@ public class AsyncValidationRunner {
             validationService.markSuiteCompleted(suiteId);
         }
     }
+
+    void enqueue(String suiteId, String client, String environment, String apiGroup,
+                         String startDate, String endDate, List<String> apisToRun,
+                         String baseUrl, String userEmail) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("client", client);
+        params.put("environment", environment);
+        params.put("apiGroup", apiGroup);
+        params.put("startDate", startDate);
+        params.put("endDate", endDate);
+        params.put("baseUrl", baseUrl);
+        params.put("userEmail", userEmail);
+        // validation.timeout-minutes counts from submission, not from when a worker picks the task up
+        params.put("deadlineMs", validationService.deadlineFromNow());
+        List<ApiDefinition.ApiSpec> specs = configResolver.resolveApis(apiGroup, apisToRun);
+        List<SuiteTaskQueue.NewTask> tasks = new ArrayList<>();
+        // Keep the configured API order: earlier APIs rank higher
+        for (int i = 0; i < specs.size(); i++) {
+            tasks.add(new SuiteTaskQueue.NewTask(specs.get(i).getApiId(), specs.size() - i, null));
+        }
+        taskQueue.enqueue(suiteId, SuiteTaskQueue.TYPE_VALIDATION, 1, params, tasks);
+        if (tasks.isEmpty()) validationService.markSuiteCompleted(suiteId);
+    }
+
+    @Override
+    public String suiteType() {
+        return SuiteTaskQueue.TYPE_VALIDATION;
+    }
+
+    @Override
+    public void runTask(SuiteTask task, Map<String, Object> params) {
+        String apiGroup = (String) params.get("apiGroup");
+        ValidationService.SuiteContext ctx = validationService.getSuiteContext(task.getSuiteId(),
+                (String) params.get("client"), (String) params.get("environment"),
+                (String) params.get("startDate"), (String) params.get("endDate"),
+                (String) params.get("baseUrl"), (String) params.get("userEmail"));
+        List<ApiDefinition.ApiSpec> specs = configResolver.resolveApis(apiGroup, List.of(task.getApiId()));
+        if (specs.isEmpty()) throw new IllegalStateException("API " + task.getApiId() + " not found in group " + apiGroup);
+        if (task.getAttempts() != null && task.getAttempts() > 1) {
+            testReportDetailRepository.deleteBySuiteIdAndApiId(task.getSuiteId(), task.getApiId());
+        }
+        Number deadlineMs = (Number) params.get("deadlineMs");
+        boolean pastDeadline = deadlineMs != null && System.currentTimeMillis() > deadlineMs.longValue();
+        if (pastDeadline) {
+            log.warn("[TIMEOUT] Validation exceeded {} min - running apiId={} without retries. suiteId={}",
+                    validationService.getValidationTimeoutMinutes(), task.getApiId(), task.getSuiteId());
+        }
+        // Transient failures throw (and are retried by the queue) until the suite's deadline has passed
+        validationService.validateApi(task.getSuiteId(), (String) params.get("client"), apiGroup, specs.get(0), ctx,
+                !pastDeadline);
+    }
+
+    @Override
+    public void onTaskFailed(SuiteTask task, Map<String, Object> params, String error) {
+        testReportDetailRepository.deleteBySuiteIdAndApiId(task.getSuiteId(), task.getApiId());
+        String message = error != null && error.startsWith(task.getApiId() + ": ") ? error : task.getApiId() + ": " + error;
+        validationService.recordApiError(task.getSuiteId(), (String) params.get("apiGroup"), task.getApiId(), message);
+    }
+
+    @Override
+    public Collection<String> findUnfinishedSuiteIds() {
+        return validationService.findInProgressSuiteIds();
+    }
+
+    @Override
+    public void onSuiteFinished(String suiteId, boolean anyFailed) {
+        validationService.evictSuiteContext(suiteId);
+        validationService.markSuiteCompleted(suiteId);
+        log.info("Queued validation finished for suiteId={} anyTaskFailed={}", suiteId, anyFailed);
+    }
 }
@@ -1,17 +1,12 @@
 package com.analytics.orchestrator;
 
+import com.analytics.orchestrator.catalog.ApiCatalog;
 import com.analytics.orchestrator.config.ApiDefinition;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import utils.DateUtils;
 
-import java.io.InputStream;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Resolves API definitions. No hardcoded clients - config fetched from /rpax/user/config.
@@ -19,9 +14,7 @@ import java.util.stream.Collectors;
 @Component
 public class ConfigResolver {
 
-    private static final Logger log = LoggerFactory.getLogger(ConfigResolver.class);
-    private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
-    private final Map<String, ApiDefinition> apiGroups = new HashMap<>();
+    private final ApiCatalog apiCatalog;
 
     @Value("${orchestrator.prod-base-url:https://prod.ef.uk.com}")
     private String prodBaseUrl;
@@ -35,89 +28,8 @@ public class ConfigResolver {
     @Value("${orchestrator.auth-token:ciq-internal-bypass-api-key-a16e0586bf29}")
     private String defaultAuthToken;
 
-    @javax.annotation.PostConstruct
-    public void loadApis() {
-        try (InputStream in = getClass().getResourceAsStream("/config/apis/analytics-apis.yaml")) {
-            if (in != null) {
-                ApiDefinition def = yamlMapper.readValue(in, ApiDefinition.class);
-                apiGroups.put("analytics", def);
-                apiGroups.put("productContent", def);
-                log.info("Loaded API group 'analytics'/'productContent' with {} APIs", def.getApis() != null ? def.getApis().size() : 0);
-            }
-        } catch (Exception e) {
-            log.error("Failed to load API config", e);
-            throw new RuntimeException("Failed to load API config", e);
-        }
-        try (InputStream in = getClass().getResourceAsStream("/config/apis/multiLocation-apis.yaml")) {
-            if (in != null) {
-                ApiDefinition def = yamlMapper.readValue(in, ApiDefinition.class);
-                apiGroups.put("multiLocation2.0", def);
-                log.info("Loaded API group 'multiLocation2.0' with {} APIs", def.getApis() != null ? def.getApis().size() : 0);
-            }
-        } catch (Exception e) {
-            log.error("Failed to load multiLocation config", e);
-            throw new RuntimeException("Failed to load multiLocation config", e);
-        }
-        try (InputStream in = getClass().getResourceAsStream("/config/apis/search-apis.yaml")) {
-            if (in != null) {
-                ApiDefinition def = yamlMapper.readValue(in, ApiDefinition.class);
-                apiGroups.put("search", def);
-                log.info("Loaded API group 'search' with {} APIs", def.getApis() != null ? def.getApis().size() : 0);
-            }
-        } catch (Exception e) {
-            log.error("Failed to load search config", e);
-            throw new RuntimeException("Failed to load search config", e);
-        }
-        try (InputStream in = getClass().getResourceAsStream("/config/apis/pricing-apis.yaml")) {
-            if (in != null) {
-                ApiDefinition def = yamlMapper.readValue(in, ApiDefinition.class);
-                apiGroups.put("pricing", def);
-                log.info("Loaded API group 'pricing' with {} APIs", def.getApis() != null ? def.getApis().size() : 0);
-            }
-        } catch (Exception e) {
-            log.error("Failed to load pricing config", e);
-            throw new RuntimeException("Failed to load pricing config", e);
-        }
-        try (InputStream in = getClass().getResourceAsStream("/config/apis/promotions-apis.yaml")) {
-            if (in != null) {
-                ApiDefinition def = yamlMapper.readValue(in, ApiDefinition.class);
-                apiGroups.put("promotion", def);
-                log.info("Loaded API group 'promotion' with {} APIs", def.getApis() != null ? def.getApis().size() : 0);
-            }
-        } catch (Exception e) {
-            log.error("Failed to load promotion config", e);
-            throw new RuntimeException("Failed to load promotion config", e);
-        }
-        try (InputStream in = getClass().getResourceAsStream("/config/apis/rating-reviews-apis.yaml")) {
-            if (in != null) {
-                ApiDefinition def = yamlMapper.readValue(in, ApiDefinition.class);
-                apiGroups.put("ratingReviews", def);
-                log.info("Loaded API group 'ratingReviews' with {} APIs", def.getApis() != null ? def.getApis().size() : 0);
-            }
-        } catch (Exception e) {
-            log.error("Failed to load rating-reviews config", e);
-            throw new RuntimeException("Failed to load rating-reviews config", e);
-        }
-        try (InputStream in = getClass().getResourceAsStream("/config/apis/export-apis.yaml")) {
-            if (in != null) {
-                ApiDefinition def = yamlMapper.readValue(in, ApiDefinition.class);
-                apiGroups.put("export", def);
-                log.info("Loaded API group 'export' with {} APIs", def.getApis() != null ? def.getApis().size() : 0);
-            }
-        } catch (Exception e) {
-            log.error("Failed to load export config", e);
-            throw new RuntimeException("Failed to load export config", e);
-        }
-        try (InputStream in = getClass().getResourceAsStream("/config/apis/settings-apis.yaml")) {
-            if (in != null) {
-                ApiDefinition def = yamlMapper.readValue(in, ApiDefinition.class);
-                apiGroups.put("settings", def);
-                log.info("Loaded API group 'settings' with {} APIs", def.getApis() != null ? def.getApis().size() : 0);
-            }
-        } catch (Exception e) {
-            log.error("Failed to load settings config", e);
-            throw new RuntimeException("Failed to load settings config", e);
-        }
+    public ConfigResolver(ApiCatalog apiCatalog) {
+        this.apiCatalog = apiCatalog;
     }
 
     public String getBaseUrl(String environment) {
@@ -134,22 +46,9 @@ public class ConfigResolver {
         return h;
     }
 
+    /** Specs of the group in YAML order, optionally only the given apiIds; see {@link ApiCatalog#resolve}. */
     public List<ApiDefinition.ApiSpec> resolveApis(String apiGroup, List<String> specificApis) {
-        String key = "analytics".equalsIgnoreCase(apiGroup) ? "productContent"
-                : "pricing".equalsIgnoreCase(apiGroup) ? "pricing"
-                : "promotion".equalsIgnoreCase(apiGroup) ? "promotion"
-                : "rating&reviews".equalsIgnoreCase(apiGroup) || "ratingReviews".equalsIgnoreCase(apiGroup) ? "ratingReviews"
-                : "export".equalsIgnoreCase(apiGroup) ? "export" : apiGroup;
-        ApiDefinition def = apiGroups.get(key);
-        if (def == null) def = apiGroups.get(apiGroup);
-        if (def == null) throw new IllegalArgumentException("Unknown API group: " + apiGroup);
-
-        List<ApiDefinition.ApiSpec> apis = def.getApis();
-        if (specificApis != null && !specificApis.isEmpty()) {
-            Set<String> wanted = new HashSet<>(specificApis);
-            apis = apis.stream().filter(a -> wanted.contains(a.getApiId())).collect(Collectors.toList());
-        }
-        return apis;
+        return apiCatalog.resolve(apiGroup, specificApis);
     }
 
     public Map<String, Object> getBaseParams(String clientId, Map<String, Object> overrides) {
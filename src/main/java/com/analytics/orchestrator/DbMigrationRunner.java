@@ -2,78 +2,373 @@ package com.analytics.orchestrator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.event.EventListener;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
-import javax.sql.DataSource;
+import javax.annotation.PostConstruct;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
- * Runs DB migrations on startup. JPA ddl-auto=update handles schema; this only runs legacy migrations.
+ * Versioned schema migrations, applied once each and recorded in schema_version. Runs before Hibernate starts
+ * (the EntityManagerFactory depends on this bean, see {@link MigrationsBeforeJpa}), so ddl-auto=validate in prod
+ * checks the migrated schema. A migration that found one of its tables missing (a fresh DB, where ddl-auto=update
+ * creates the tables from the entities) is not recorded then; it runs again once all singletons, Hibernate
+ * included, are up, and before the app serves requests or claims queue work. Every step checks the live schema
+ * through JDBC metadata before changing it, so a migration interrupted half-way (MySQL DDL is not transactional),
+ * or one that races another instance starting at the same time, can simply run again.
+ * <p>
+ * New schema changes go in as a new version at the end of {@link #migrations()}; never edit an applied one.
+ * Never lazy, so the fast-start profile (spring.main.lazy-initialization) still migrates at startup.
  */
 @Component
-public class DbMigrationRunner {
+@Lazy(false)
+public class DbMigrationRunner implements SmartInitializingSingleton {
 
     private static final Logger log = LoggerFactory.getLogger(DbMigrationRunner.class);
+    static final String VERSION_TABLE = "schema_version";
+
     private final JdbcTemplate jdbcTemplate;
+    private boolean mysql;
+    /** Set by {@link #tableExists} when a step had to skip a table that is not there (yet). */
+    private boolean missingTable;
 
     public DbMigrationRunner(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    @EventListener(ApplicationReadyEvent.class)
+    private Map<Integer, Migration> migrations() {
+        Map<Integer, Migration> m = new LinkedHashMap<>();
+        m.put(1, new Migration("legacy columns (test_id width, added columns, MySQL LONGTEXT payloads)", this::legacyColumns));
+        m.put(2, new Migration("(suite_id, api_id) unique keys and lookup indexes", this::suiteApiKeysAndIndexes));
+        m.put(3, new Migration("created_at / archived_at columns for retention", this::retentionColumns));
+        m.put(4, new Migration("breakdown_json columns for chunked / sharded results", this::breakdownColumns));
+        m.put(5, new Migration("comparison_result.mismatch_patterns_json", this::mismatchPatternsColumn));
+        m.put(6, new Migration("comparison_result test_merkle_json / prod_merkle_json", this::merkleColumns));
+        m.put(7, new Migration("comparison_result.stopped_early", this::stoppedEarlyColumn));
+        m.put(8, new Migration("comparison_result.sampling_json", this::samplingColumn));
+        m.put(9, new Migration("comparison_result.profile_fingerprint", this::profileFingerprintColumn));
+        return m;
+    }
+
+    @PostConstruct
     public void runMigrations() {
-        boolean isMysql = isMySQL();
-        try {
-            if (isMysql) {
-                jdbcTemplate.execute("ALTER TABLE test_report_detail MODIFY COLUMN test_id VARCHAR(128)");
-            } else {
-                jdbcTemplate.execute("ALTER TABLE test_report_detail ALTER COLUMN test_id VARCHAR(128)");
+        applyPending(true);
+    }
+
+    /** Migrations deferred for missing tables: Hibernate has created them by now. */
+    @Override
+    public void afterSingletonsInstantiated() {
+        applyPending(false);
+    }
+
+    private void applyPending(boolean deferForMissingTables) {
+        mysql = isMySQL();
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + " ("
+                + "version INT NOT NULL PRIMARY KEY, "
+                + "description VARCHAR(200), "
+                + "applied_at TIMESTAMP NOT NULL)");
+        Set<Integer> applied = new HashSet<>(jdbcTemplate.queryForList("SELECT version FROM " + VERSION_TABLE, Integer.class));
+        for (Map.Entry<Integer, Migration> e : new TreeMap<>(migrations()).entrySet()) {
+            int version = e.getKey();
+            Migration migration = e.getValue();
+            if (applied.contains(version)) continue;
+            log.info("[MIGRATION] Applying V{}: {}", version, migration.description);
+            long t0 = System.currentTimeMillis();
+            missingTable = false;
+            try {
+                migration.action.run();
+            } catch (Exception ex) {
+                throw new IllegalStateException("Schema migration V" + version + " failed: " + ex.getMessage(), ex);
+            }
+            if (missingTable && deferForMissingTables) {
+                log.info("[MIGRATION] V{} skipped missing tables - running it again after Hibernate has started", version);
+                continue;
+            }
+            try {
+                jdbcTemplate.update("INSERT INTO " + VERSION_TABLE + " (version, description, applied_at) VALUES (?, ?, ?)",
+                        version, migration.description, Timestamp.from(Instant.now()));
+            } catch (DuplicateKeyException dup) {
+                log.info("[MIGRATION] V{} was recorded by another instance", version);
             }
-            log.info("Migration: expanded test_id column to VARCHAR(128)");
-        } catch (Exception e) {
-            log.debug("Migration skipped (column may already be updated): {}", e.getMessage());
+            log.info("[MIGRATION] V{} applied in {}ms", version, System.currentTimeMillis() - t0);
+        }
+    }
+
+    /**
+     * Makes the EntityManagerFactory depend on the migrations, the way Spring Boot orders Flyway before JPA,
+     * so Hibernate validates or updates the schema only after they ran.
+     */
+    @Component
+    static class MigrationsBeforeJpa extends EntityManagerFactoryDependsOnPostProcessor {
+        MigrationsBeforeJpa() {
+            super(DbMigrationRunner.class);
+        }
+    }
+
+    // ---- V1 ----
+
+    private void legacyColumns() {
+        Integer testIdSize = columnSize("test_report_detail", "test_id");
+        if (testIdSize != null && testIdSize < 128) {
+            execute(mysql ? "ALTER TABLE test_report_detail MODIFY COLUMN test_id VARCHAR(128)"
+                    : "ALTER TABLE test_report_detail ALTER COLUMN test_id VARCHAR(128)");
         }
-        runAddColumn("user_input_detail", "suite_status", "VARCHAR(32)");
-        runAddColumn("user_input_detail", "apis", "VARCHAR(512)");
-        runAddColumn("test_report_detail", "message", "VARCHAR(512)");
-        runAddColumn("test_report_detail", "row_count_status", "VARCHAR(32)");
-        if (isMysql) {
-            migrateComparisonResultForMysql();
+        addColumnIfMissing("user_input_detail", "suite_status", "VARCHAR(32)");
+        addColumnIfMissing("user_input_detail", "apis", "VARCHAR(512)");
+        addColumnIfMissing("test_report_detail", "message", "VARCHAR(512)");
+        addColumnIfMissing("test_report_detail", "row_count_status", "VARCHAR(32)");
+        addColumnIfMissing("comparison_result", "test_response_hash", "VARCHAR(64)");
+        addColumnIfMissing("comparison_result", "prod_response_hash", "VARCHAR(64)");
+        addColumnIfMissing("comparison_result", "reused_from_result_id", "BIGINT");
+        addColumnIfMissing("comparison_result", "duration_ms", "BIGINT");
+        if (mysql) {
+            for (String column : List.of("mismatches_json", "test_response_json", "prod_response_json", "request_payload")) {
+                String type = columnType("comparison_result", column);
+                if (type != null && !"LONGTEXT".equalsIgnoreCase(type)) {
+                    execute("ALTER TABLE comparison_result MODIFY COLUMN " + column + " LONGTEXT");
+                }
+            }
         }
     }
 
-    private void migrateComparisonResultForMysql() {
-        try {
-            jdbcTemplate.execute("ALTER TABLE comparison_result MODIFY COLUMN mismatches_json LONGTEXT");
-            jdbcTemplate.execute("ALTER TABLE comparison_result MODIFY COLUMN test_response_json LONGTEXT");
-            jdbcTemplate.execute("ALTER TABLE comparison_result MODIFY COLUMN prod_response_json LONGTEXT");
-            jdbcTemplate.execute("ALTER TABLE comparison_result MODIFY COLUMN request_payload LONGTEXT");
-            log.info("Migration: comparison_result columns converted to LONGTEXT for MySQL");
-        } catch (Exception e) {
-            log.debug("Migration skipped (comparison_result may not exist or already migrated): {}", e.getMessage());
+    // ---- V2 ----
+
+    /** Keys and indexes declared on the entities, for databases whose tables predate the declarations. */
+    private void suiteApiKeysAndIndexes() {
+        // A re-run used to add a second row per API; reports showed the newest comparison and the first validation row
+        if (tableExists("comparison_result")) {
+            addColumnIfMissing("comparison_result", "error", "VARCHAR(1024)");
+            deleteDuplicateSuiteApiRows("comparison_result", true);
+            addUniqueKeyIfMissing("comparison_result", "uk_comparison_result_suite_api", "suite_id", "api_id");
+            createIndexIfMissing("comparison_result", "idx_comparison_fingerprint", "api_id", "test_response_hash", "prod_response_hash");
+        }
+        if (tableExists("test_report_detail")) {
+            deleteDuplicateSuiteApiRows("test_report_detail", false);
+            addUniqueKeyIfMissing("test_report_detail", "uk_test_report_detail_suite_api", "suite_id", "api_id");
         }
+        createIndexIfMissing("execution_results", "idx_execution_results_execution", "execution_id", "executed_at");
+        createIndexIfMissing("suite_task", "idx_suite_task_suite", "suite_id");
+        createIndexIfMissing("suite_task", "idx_suite_task_claim", "status", "lane", "rank_ms");
+        createIndexIfMissing("comparison_suite", "idx_comparison_suite_status", "suite_status");
+        createIndexIfMissing("user_input_detail", "idx_user_input_detail_status", "suite_status");
     }
 
-    private boolean isMySQL() {
-        try {
-            DataSource ds = jdbcTemplate.getDataSource();
-            if (ds == null) return false;
-            try (java.sql.Connection conn = ds.getConnection()) {
-                return conn.getMetaData().getURL().contains("mysql");
+    private void deleteDuplicateSuiteApiRows(String table, boolean keepNewest) {
+        String cmp = keepNewest ? ">" : "<";
+        // MySQL cannot reference the target table in a DELETE subquery; H2 has no multi-table DELETE
+        String sql = mysql
+                ? "DELETE r FROM " + table + " r JOIN " + table + " k ON k.suite_id = r.suite_id AND k.api_id = r.api_id AND k.id " + cmp + " r.id"
+                : "DELETE FROM " + table + " r WHERE EXISTS (SELECT 1 FROM " + table + " k WHERE k.suite_id = r.suite_id AND k.api_id = r.api_id AND k.id " + cmp + " r.id)";
+        int removed = jdbcTemplate.update(sql);
+        if (removed > 0) log.info("[MIGRATION] Removed {} duplicate (suite_id, api_id) row(s) from {}", removed, table);
+    }
+
+    // ---- V3 ----
+
+    /** Rows written before created_at existed start their retention period now. */
+    private void retentionColumns() {
+        Timestamp now = Timestamp.from(Instant.now());
+        String type = mysql ? "DATETIME(6)" : "TIMESTAMP";
+        for (String table : List.of("comparison_result", "test_report_detail")) {
+            if (!tableExists(table)) continue;
+            addColumnIfMissing(table, "created_at", type);
+            int backfilled = jdbcTemplate.update("UPDATE " + table + " SET created_at = ? WHERE created_at IS NULL", now);
+            if (backfilled > 0) log.info("[MIGRATION] Set created_at on {} existing {} row(s)", backfilled, table);
+        }
+        addColumnIfMissing("comparison_result", "archived_at", type);
+        addColumnIfMissing("execution_results", "archived_at", type);
+        createIndexIfMissing("comparison_result", "idx_comparison_result_created", "created_at");
+        createIndexIfMissing("comparison_result", "idx_comparison_result_reused", "reused_from_result_id");
+        createIndexIfMissing("test_report_detail", "idx_test_report_detail_created", "created_at");
+        createIndexIfMissing("execution_results", "idx_execution_results_executed_at", "executed_at");
+    }
+
+    // ---- V4 ----
+
+    private void breakdownColumns() {
+        String type = mysql ? "LONGTEXT" : "CLOB";
+        addColumnIfMissing("test_report_detail", "breakdown_json", type);
+        addColumnIfMissing("comparison_result", "breakdown_json", type);
+    }
+
+    // ---- V5 ----
+
+    private void mismatchPatternsColumn() {
+        addColumnIfMissing("comparison_result", "mismatch_patterns_json", mysql ? "LONGTEXT" : "CLOB");
+    }
+
+    // ---- V6 ----
+
+    private void merkleColumns() {
+        addColumnIfMissing("comparison_result", "test_merkle_json", mysql ? "LONGTEXT" : "CLOB");
+        addColumnIfMissing("comparison_result", "prod_merkle_json", mysql ? "LONGTEXT" : "CLOB");
+    }
+
+    // ---- V7 ----
+
+    private void stoppedEarlyColumn() {
+        addColumnIfMissing("comparison_result", "stopped_early", mysql ? "TINYINT(1)" : "BOOLEAN");
+    }
+
+    // ---- V8 ----
+
+    private void samplingColumn() {
+        addColumnIfMissing("comparison_result", "sampling_json", mysql ? "LONGTEXT" : "CLOB");
+    }
+
+    // ---- V9 ----
+
+    /** Rows from before V9 have none, so their diffs are not reused: the profile they ran with is unknown. */
+    private void profileFingerprintColumn() {
+        addColumnIfMissing("comparison_result", "profile_fingerprint", "VARCHAR(64)");
+    }
+
+    // ---- schema helpers ----
+
+    private void execute(String sql) {
+        log.info("[MIGRATION] {}", sql);
+        jdbcTemplate.execute(sql);
+    }
+
+    private void addColumnIfMissing(String table, String column, String type) {
+        if (tableExists(table) && columnSize(table, column) == null) {
+            execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+        }
+    }
+
+    /** Same DDL Hibernate emits for a unique constraint, so later ddl-auto runs see it as present. */
+    private void addUniqueKeyIfMissing(String table, String name, String... columns) {
+        if (!hasUniqueIndexOn(table, columns)) {
+            execute("ALTER TABLE " + table + " ADD CONSTRAINT " + name + " UNIQUE (" + String.join(", ", columns) + ")");
+        }
+    }
+
+    private void createIndexIfMissing(String table, String name, String... columns) {
+        if (tableExists(table) && !indexExists(table, name)) {
+            execute("CREATE INDEX " + name + " ON " + table + " (" + String.join(", ", columns) + ")");
+        }
+    }
+
+    private boolean tableExists(String table) {
+        boolean exists = metadata(md -> {
+            for (String name : nameVariants(table)) {
+                try (ResultSet rs = md.getTables(catalog(md), schema(md), name, new String[]{"TABLE"})) {
+                    if (rs.next()) return true;
+                }
             }
-        } catch (Exception e) {
             return false;
-        }
+        });
+        if (!exists) missingTable = true;
+        return exists;
+    }
+
+    /** Column size, or null when the column (or table) does not exist. */
+    private Integer columnSize(String table, String column) {
+        String size = columnAttribute(table, column, "COLUMN_SIZE");
+        return size == null ? null : Integer.valueOf(size);
+    }
+
+    private String columnType(String table, String column) {
+        return columnAttribute(table, column, "TYPE_NAME");
+    }
+
+    private String columnAttribute(String table, String column, String attribute) {
+        return metadata(md -> {
+            for (String t : nameVariants(table)) {
+                for (String c : nameVariants(column)) {
+                    try (ResultSet rs = md.getColumns(catalog(md), schema(md), t, c)) {
+                        if (rs.next()) return rs.getString(attribute);
+                    }
+                }
+            }
+            return null;
+        });
     }
 
-    private void runAddColumn(String table, String column, String type) {
-        try {
-            jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
-            log.info("Migration: added {} to {}", column, table);
-        } catch (Exception e) {
-            log.debug("Migration skipped ({} may exist): {}", column, e.getMessage());
+    private boolean indexExists(String table, String index) {
+        return indexes(table, false).containsKey(index.toUpperCase());
+    }
+
+    /** True when some unique index covers exactly these columns (H2 names constraint indexes itself). */
+    private boolean hasUniqueIndexOn(String table, String... columns) {
+        List<String> wanted = new ArrayList<>();
+        for (String c : columns) wanted.add(c.toUpperCase());
+        return indexes(table, true).values().stream().anyMatch(wanted::equals);
+    }
+
+    /** Index name (upper-case) to its columns in key order. */
+    private Map<String, List<String>> indexes(String table, boolean uniqueOnly) {
+        return metadata(md -> {
+            Map<String, TreeMap<Short, String>> byName = new LinkedHashMap<>();
+            for (String t : nameVariants(table)) {
+                try (ResultSet rs = md.getIndexInfo(catalog(md), schema(md), t, uniqueOnly, true)) {
+                    while (rs.next()) {
+                        String name = rs.getString("INDEX_NAME");
+                        String column = rs.getString("COLUMN_NAME");
+                        if (name == null || column == null) continue;
+                        byName.computeIfAbsent(name.toUpperCase(), k -> new TreeMap<>())
+                                .put(rs.getShort("ORDINAL_POSITION"), column.toUpperCase());
+                    }
+                }
+                if (!byName.isEmpty()) break;
+            }
+            Map<String, List<String>> result = new LinkedHashMap<>();
+            byName.forEach((name, cols) -> result.put(name, new ArrayList<>(cols.values())));
+            return result;
+        });
+    }
+
+    /** MySQL keeps identifiers as written (lower-case here), H2 upper-cases unquoted ones. */
+    private static List<String> nameVariants(String name) {
+        return Arrays.asList(name, name.toUpperCase());
+    }
+
+    private static String catalog(DatabaseMetaData md) throws SQLException {
+        return md.getConnection().getCatalog();
+    }
+
+    private static String schema(DatabaseMetaData md) throws SQLException {
+        return md.getConnection().getSchema();
+    }
+
+    private <T> T metadata(MetadataQuery<T> query) {
+        return jdbcTemplate.execute((ConnectionCallback<T>) con -> query.run(con.getMetaData()));
+    }
+
+    private boolean isMySQL() {
+        Boolean result = jdbcTemplate.execute((ConnectionCallback<Boolean>) con ->
+                con.getMetaData().getURL().contains("mysql"));
+        return Boolean.TRUE.equals(result);
+    }
+
+    private interface MetadataQuery<T> {
+        T run(DatabaseMetaData md) throws SQLException;
+    }
+
+    private static final class Migration {
+        final String description;
+        final Runnable action;
+
+        Migration(String description, Runnable action) {
+            this.description = description;
+            this.action = action;
         }
     }
 }
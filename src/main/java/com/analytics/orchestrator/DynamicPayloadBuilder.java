@@ -5,11 +5,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Builds payloads from minimal templates + taxonomy (like dps-data-tests).
@@ -19,12 +23,23 @@ public class DynamicPayloadBuilder {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    /** Parsed templates by classpath path; each build works on a deep copy. */
+    private static final Map<String, JsonNode> TEMPLATES = new ConcurrentHashMap<>();
+
+    /**
+     * Parse and cache the given templates ahead of the first build. Returns how many were loaded;
+     * a missing or malformed template throws, naming the path.
+     */
+    public static int preload(Collection<String> templatePaths) {
+        templatePaths.forEach(DynamicPayloadBuilder::template);
+        return templatePaths.size();
+    }
+
     public static String buildFromTaxonomy(String templatePath, Map<String, String> userParams,
                                            Map<String, List<String>> taxonomy,
                                            Map<String, String> fieldMappings) {
         try {
-            String json = loadResource(templatePath);
-            JsonNode root = MAPPER.readTree(json);
+            JsonNode root = template(templatePath).deepCopy();
 
             replacePlaceholders(root, userParams);
 
@@ -76,6 +91,16 @@ public class DynamicPayloadBuilder {
         }
     }
 
+    private static JsonNode template(String path) {
+        return TEMPLATES.computeIfAbsent(path, p -> {
+            try {
+                return MAPPER.readTree(loadResource(p));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Invalid template " + p, e);
+            }
+        });
+    }
+
     private static String loadResource(String path) {
         InputStream in = DynamicPayloadBuilder.class.getClassLoader().getResourceAsStream(path);
         if (in == null) throw new RuntimeException("Template not found: " + path);
@@ -13,7 +13,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
@@ -198,26 +197,26 @@ public class OrchestratorService {
         List<ExecutionResult> results = resultRepository.findByExecutionIdOrderByExecutedAtAsc(exec.getExecutionId());
         if (results.isEmpty()) return;
 
+        Path reportDir = null;
         try {
             log.info("Generating Allure report");
-            allureReportService.generateReport(exec, results);
+            reportDir = allureReportService.generateReport(exec, results);
         } catch (Exception e) {
             log.warn("Failed to generate report: {}", e.getMessage());
         }
 
         if (reportEmail != null && !reportEmail.isBlank()) {
             try {
-                Path reportDir = allureReportService.getReportDir();
-                Path zipPath = allureReportService.zipReport(reportDir);
-                try {
-                    reportEmailService.sendReport(reportEmail, zipPath, exec.getExecutionId(),
-                            exec.getPassedTests() != null ? exec.getPassedTests() : 0,
-                            exec.getFailedTests() != null ? exec.getFailedTests() : 0);
-                    exec.setReportEmailSent(true);
-                    executionRepository.save(exec);
-                } finally {
-                    Files.deleteIfExists(zipPath);
+                if (reportDir == null) throw new IllegalStateException("Report could not be generated");
+                ReportEmailService.Delivery delivery = reportEmailService.sendReport(reportEmail, reportDir, exec.getExecutionId(),
+                        exec.getPassedTests() != null ? exec.getPassedTests() : 0,
+                        exec.getFailedTests() != null ? exec.getFailedTests() : 0);
+                exec.setReportEmailSent(true);
+                if (delivery == ReportEmailService.Delivery.LINK) {
+                    exec.setReportEmailError("Report too large to attach; the email links to "
+                            + reportEmailService.reportUrl(exec.getExecutionId()));
                 }
+                executionRepository.save(exec);
             } catch (Exception e) {
                 log.error("Failed to send report to {}: {}", reportEmail, e.getMessage(), e);
                 exec.setReportEmailSent(false);
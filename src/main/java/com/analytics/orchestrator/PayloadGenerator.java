@@ -3,6 +3,8 @@ package com.analytics.orchestrator;
 import com.google.gson.Gson;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,8 +30,18 @@ public class PayloadGenerator {
                            Map<String, List<String>> taxonomy) {
         Map<String, String> userParams = toUserParams(params);
         Map<String, String> fieldMappings = fieldMappingRegistry.getFieldMappings(templateName);
-        String templatePath = "payloads/" + templateName + ".json";
-        return DynamicPayloadBuilder.buildFromTaxonomy(templatePath, userParams, taxonomy, fieldMappings);
+        return DynamicPayloadBuilder.buildFromTaxonomy(templatePath(templateName), userParams, taxonomy, fieldMappings);
+    }
+
+    /** Parse the named templates now so the first suite does not pay for it. */
+    public int preload(Collection<String> templateNames) {
+        List<String> paths = new ArrayList<>(templateNames.size());
+        for (String name : templateNames) paths.add(templatePath(name));
+        return DynamicPayloadBuilder.preload(paths);
+    }
+
+    private static String templatePath(String templateName) {
+        return "payloads/" + templateName + ".json";
     }
 
     private Map<String, String> toUserParams(Map<String, Object> params) {
@@ -1,36 +1,67 @@
 package com.analytics.orchestrator;
 
+import com.analytics.orchestrator.report.AllureReportService;
+import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 
 /**
- * Serves Allure report at /reports so it can be viewed in browser.
+ * Serves execution reports: /reports/{executionId}/ for one execution, /reports/ redirects to the latest.
+ * Report assets (summary.json, attachments) are served by WebConfig.
  */
 @Controller
+@Profile("!worker")
 public class ReportController {
 
-    private static final Path REPORT_DIR = Paths.get(System.getProperty("user.dir", "."))
-            .resolve("target").resolve("site").resolve("allure-maven-plugin");
+    private final AllureReportService allureReportService;
+
+    public ReportController(AllureReportService allureReportService) {
+        this.allureReportService = allureReportService;
+    }
 
     @GetMapping({"/reports", "/reports/", "/reports/index.html"})
-    public ResponseEntity<Resource> serveReport() {
-        Path indexFile = REPORT_DIR.resolve("index.html");
+    public ResponseEntity<Resource> serveLatestReport() throws IOException {
+        String latest = allureReportService.latestExecutionId();
+        if (latest == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return redirect("/reports/" + latest + "/");
+    }
+
+    @GetMapping("/reports/{executionId}")
+    public ResponseEntity<Resource> serveReport(@PathVariable String executionId, HttpServletRequest request) {
+        if (!AllureReportService.isValidExecutionId(executionId)) {
+            return ResponseEntity.notFound().build();
+        }
+        Path indexFile = allureReportService.getReportDir(executionId).resolve("index.html");
         if (!Files.exists(indexFile)) {
             return ResponseEntity.notFound().build();
         }
+        // Relative links (attachments/, summary.json) need the trailing slash
+        if (!request.getRequestURI().endsWith("/")) {
+            return redirect(request.getRequestURI() + "/");
+        }
         Resource resource = new FileSystemResource(indexFile);
         return ResponseEntity.ok()
                 .contentType(MediaType.TEXT_HTML)
                 .header(HttpHeaders.CACHE_CONTROL, "no-cache")
                 .body(resource);
     }
+
+    private static ResponseEntity<Resource> redirect(String location) {
+        return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(location)).build();
+    }
 }
@@ -0,0 +1,56 @@
+package com.analytics.orchestrator;
+
+import com.analytics.orchestrator.retention.RetentionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GET /api/retention/report: dry run - rows and body bytes each table would archive now.
+ * POST /api/retention/run: archives and purges now (same as the scheduled run).
+ */
+@RestController
+@Profile("!worker")
+@RequestMapping("/api/retention")
+public class RetentionController {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionController.class);
+    private final RetentionService retentionService;
+
+    public RetentionController(RetentionService retentionService) {
+        this.retentionService = retentionService;
+    }
+
+    @GetMapping("/report")
+    public ResponseEntity<Map<String, Object>> report() {
+        return ResponseEntity.ok(response(true, retentionService.dryRun()));
+    }
+
+    @PostMapping("/run")
+    public ResponseEntity<Map<String, Object>> run() {
+        log.info("POST /retention/run");
+        List<RetentionService.TableReport> tables = retentionService.run();
+        if (tables == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "A retention run is already in progress"));
+        }
+        return ResponseEntity.ok(response(false, tables));
+    }
+
+    private Map<String, Object> response(boolean dryRun, List<RetentionService.TableReport> tables) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("dryRun", dryRun);
+        body.put("archiveDir", retentionService.getArchiveDir());
+        body.put("tables", tables);
+        return body;
+    }
+}
@@ -5,6 +5,7 @@ import com.analytics.orchestrator.entity.ExecutionResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,6 +15,7 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
+@Profile("!worker")
 @RequestMapping("/api")
 public class RunTestsController {
 
@@ -45,7 +47,7 @@ public class RunTestsController {
         body.put("executionId", execution.getExecutionId());
         body.put("status", execution.getStatus());
         body.put("message", "Execution started. Poll GET /api/executions/" + execution.getExecutionId() + " for results.");
-        body.put("reportUrl", reportBaseUrl.replaceAll("/$", "") + "/reports/");
+        body.put("reportUrl", reportUrl(execution));
         return ResponseEntity.accepted().body(body);
     }
 
@@ -74,10 +76,14 @@ public class RunTestsController {
 
     private Map<String, Object> buildExecutionResponse(Execution execution) {
         Map<String, Object> response = buildGetExecutionResponse(execution);
-        response.put("reportUrl", reportBaseUrl.replaceAll("/$", "") + "/reports/");
+        response.put("reportUrl", reportUrl(execution));
         return response;
     }
 
+    private String reportUrl(Execution execution) {
+        return reportBaseUrl.replaceAll("/$", "") + "/reports/" + execution.getExecutionId() + "/";
+    }
+
     private Map<String, Object> buildGetExecutionResponse(Execution execution) {
         List<ExecutionResult> results = orchestratorService.getResults(execution.getExecutionId());
         List<Map<String, Object>> resultMaps = results.stream().map(r -> {
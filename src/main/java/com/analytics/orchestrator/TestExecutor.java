@@ -9,7 +9,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Set;
 
 @Component
 public class TestExecutor {
@@ -24,6 +35,18 @@ public class TestExecutor {
                     .setParam(CoreConnectionPNames.CONNECTION_TIMEOUT, API_TIMEOUT_MS)
                     .setParam(CoreConnectionPNames.SO_TIMEOUT, API_TIMEOUT_MS));
 
+    /**
+     * Client for {@link #executeToFile}: RestAssured reads every body into a byte array before handing it out,
+     * this one writes it to disk as it arrives.
+     */
+    private static final HttpClient STREAMING_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(API_TIMEOUT_MS))
+            .build();
+
+    /** Headers java.net.http sets itself and refuses from callers. */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
     /** Default max response length 8192 (for validation flow). */
     public ApiExecutionResult execute(String baseUrl, String endpoint, Map<String, String> headers, String body) {
         return execute(baseUrl, endpoint, headers, body, 8192);
@@ -80,6 +103,101 @@ public class TestExecutor {
         }
     }
 
+    /**
+     * As {@link #execute(String, String, Map, String, int)} with no truncation, but the body is written to a temp
+     * file while it is received instead of being collected into one String. A body of at most
+     * {@code maxInMemoryBytes} is read back into responsePayload and the file removed; a larger one is left in
+     * responseFile (responsePayload null, responseLength its size) and the caller deletes the file when done.
+     */
+    public ApiExecutionResult executeToFile(String baseUrl, String endpoint, Map<String, String> headers, String body,
+                                            long maxInMemoryBytes) {
+        String url = baseUrl + endpoint;
+        log.debug("POST {} | payload length={} (body to file above {} bytes)", url, body != null ? body.length() : 0, maxInMemoryBytes);
+
+        long start = System.currentTimeMillis();
+        Path file = null;
+        try {
+            file = Files.createTempFile("api-response-", ".body");
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(API_TIMEOUT_MS))
+                    .POST(HttpRequest.BodyPublishers.ofString(body != null ? body : ""));
+            if (headers != null) {
+                headers.forEach((name, value) -> {
+                    if (value != null && !RESTRICTED_HEADERS.contains(name.toLowerCase())) request.header(name, value);
+                });
+            }
+            HttpResponse<Path> response = STREAMING_CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofFile(file));
+
+            long duration = System.currentTimeMillis() - start;
+            int status = response.statusCode();
+            long length = Files.size(file);
+            String payload = null;
+            Path spilled = null;
+            if (length <= maxInMemoryBytes) {
+                payload = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            } else {
+                spilled = file;
+                file = null;
+            }
+
+            boolean pass = status >= 200 && status < 300;
+            if (!pass) {
+                log.warn("API returned HTTP {} | {} | {}", status, url,
+                        payload != null ? truncate(payload, 200) : "(" + length + " bytes on disk)");
+            }
+            return ApiExecutionResult.builder()
+                    .status(pass ? "PASS" : "FAIL")
+                    .httpStatus(status)
+                    .requestPayload(body)
+                    .responsePayload(payload)
+                    .responseFile(spilled)
+                    .responseLength(length)
+                    .errorMessage(status >= 400 ? "HTTP " + status : null)
+                    .durationMs(duration)
+                    .build();
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - start;
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            log.error("API call failed | {} | {} | {}", url, e.getClass().getSimpleName(), e.getMessage());
+            return ApiExecutionResult.builder()
+                    .status("FAIL")
+                    .httpStatus(null)
+                    .requestPayload(body)
+                    .responsePayload(null)
+                    .errorMessage(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName())
+                    .durationMs(duration)
+                    .build();
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    /** Removes a responseFile left by {@link #executeToFile}; null is ignored. */
+    public static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete response file {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Load the HTTP/TLS stack before the first API call. When probeUrl is set, also send one GET to it
+     * (DNS and TLS session for that host); the response is ignored.
+     */
+    public void warmUp(String probeUrl) {
+        try {
+            SSLContext.getDefault();
+            RestAssured.given().config(TIMEOUT_CONFIG);
+            if (probeUrl != null && !probeUrl.isBlank()) {
+                int status = RestAssured.given().config(TIMEOUT_CONFIG).get(probeUrl).getStatusCode();
+                log.info("[WARMUP] HTTP probe {} -> {}", probeUrl, status);
+            }
+        } catch (Exception e) {
+            log.warn("[WARMUP] HTTP warm-up failed: {}", e.getMessage());
+        }
+    }
 
     private String truncate(String s, int maxLen) {
         if (s == null) return null;
@@ -93,6 +211,10 @@ public class TestExecutor {
         private Integer httpStatus;
         private String requestPayload;
         private String responsePayload;
+        /** Body spilled to disk by {@link #executeToFile} (responsePayload is then null); owned by the caller. */
+        private Path responseFile;
+        /** Body size in bytes; set by {@link #executeToFile} only. */
+        private Long responseLength;
         private String errorMessage;
         private Long durationMs;
     }
@@ -1,10 +1,13 @@
 package com.analytics.orchestrator;
 
+import com.analytics.orchestrator.events.SuiteEventBroker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -14,16 +17,20 @@ import java.util.Map;
  * POST /api/run-validation-tests: runs product content APIs with unique testID per API,
  * fetches validation from alerts API, returns only APIs with matches:false or "all matches, true".
  * GET /api/validation/{suiteId}: returns validation result by suite ID.
+ * GET /api/validation/{suiteId}/events: per-API progress as Server-Sent Events.
  */
 @RestController
+@Profile("!worker")
 @RequestMapping("/api")
 public class ValidationController {
 
     private static final Logger log = LoggerFactory.getLogger(ValidationController.class);
     private final ValidationService validationService;
+    private final SuiteEventBroker eventBroker;
 
-    public ValidationController(ValidationService validationService) {
+    public ValidationController(ValidationService validationService, SuiteEventBroker eventBroker) {
         this.validationService = validationService;
+        this.eventBroker = eventBroker;
     }
 
     @PostMapping("/run-validation-tests")
@@ -57,6 +64,19 @@ public class ValidationController {
         return ResponseEntity.ok(result);
     }
 
+    /** Event "api" per saved test_report_detail row, "suite" when the suite is COMPLETED. */
+    @GetMapping(value = "/validation/{suiteId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamValidationEvents(@PathVariable String suiteId,
+                                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        Boolean completed = validationService.isSuiteCompleted(suiteId);
+        if (completed == null) {
+            return ResponseEntity.status(404).contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error", "Suite not found: " + suiteId));
+        }
+        SseEmitter emitter = eventBroker.subscribe(suiteId, lastEventId, completed ? "COMPLETED" : null);
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+    }
+
     @GetMapping("/validation/api-groups")
     public ResponseEntity<Map<String, Object>> getApiGroups() {
         Map<String, Object> groups = new HashMap<>();
@@ -2,6 +2,7 @@ package com.analytics.orchestrator;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -16,6 +17,7 @@ import java.util.Map;
  * Guarantees API list and form work without client-side JS dependencies.
  */
 @Controller
+@Profile("!worker")
 public class ValidationFormController {
 
     private static final ObjectMapper JSON = new ObjectMapper();
@@ -1,6 +1,7 @@
 package com.analytics.orchestrator;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -16,6 +17,7 @@ import java.nio.charset.StandardCharsets;
  * Displays GET /api/validation/{suiteId} response with auto-refresh.
  */
 @Controller
+@Profile("!worker")
 public class ValidationReportController {
 
     @Value("${validation.api-base-url:http://34-79-29-181.ef.uk.com}")
@@ -1,9 +1,15 @@
 package com.analytics.orchestrator;
 
+import com.analytics.orchestrator.chunking.ChunkBreakdown;
+import com.analytics.orchestrator.chunking.DateChunk;
+import com.analytics.orchestrator.chunking.DateChunkPlanner;
 import com.analytics.orchestrator.entity.TestReportDetail;
 import com.analytics.orchestrator.entity.UserInputDetail;
+import com.analytics.orchestrator.events.SuiteEventBroker;
+import com.analytics.orchestrator.queue.SuiteTaskQueue;
 import com.analytics.orchestrator.repository.TestReportDetailRepository;
 import com.analytics.orchestrator.repository.UserInputDetailRepository;
+import com.analytics.orchestrator.summary.SuiteSummaryService;
 import com.analytics.orchestrator.util.TestReportNamingUtil;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,6 +24,7 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -81,7 +88,11 @@ public class ValidationService {
     private final UserInputDetailRepository userInputDetailRepository;
     private final TestReportDetailRepository testReportDetailRepository;
     private final AsyncValidationRunner asyncValidationRunner;
+    private final SuiteEventBroker eventBroker;
+    private final SuiteSummaryService summaryService;
+    private final DateChunkPlanner dateChunkPlanner;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, SuiteContext> suiteContexts = new java.util.concurrent.ConcurrentHashMap<>();
 
     @Value("${validation.api-base-url:http://34-79-29-181.ef.uk.com}")
     private String validationApiBaseUrl;
@@ -117,7 +128,9 @@ public class ValidationService {
                               PayloadGenerator payloadGenerator, TestExecutor testExecutor,
                               UserInputDetailRepository userInputDetailRepository,
                               TestReportDetailRepository testReportDetailRepository,
-                              @Lazy AsyncValidationRunner asyncValidationRunner) {
+                              @Lazy AsyncValidationRunner asyncValidationRunner,
+                              SuiteEventBroker eventBroker, SuiteSummaryService summaryService,
+                              DateChunkPlanner dateChunkPlanner) {
         this.configResolver = configResolver;
         this.configFetcher = configFetcher;
         this.taxonomyParser = taxonomyParser;
@@ -127,6 +140,9 @@ public class ValidationService {
         this.userInputDetailRepository = userInputDetailRepository;
         this.testReportDetailRepository = testReportDetailRepository;
         this.asyncValidationRunner = asyncValidationRunner;
+        this.eventBroker = eventBroker;
+        this.summaryService = summaryService;
+        this.dateChunkPlanner = dateChunkPlanner;
     }
 
     private static final String SUITE_STATUS_IN_PROGRESS = "IN_PROGRESS";
@@ -166,6 +182,7 @@ public class ValidationService {
                 .apis(String.join(",", apisToRun))
                 .build();
         userInputDetailRepository.save(userInput);
+        summaryService.start(SuiteTaskQueue.TYPE_VALIDATION, suiteId);
         log.info("Validation started async | suiteId={} apis={} apiGroup={} baseUrl={}", suiteId, apisToRun, configGroup, baseUrl);
         asyncValidationRunner.runAsync(suiteId, client, environment, configGroup, startDate, endDate, apisToRun, baseUrl, userEmail);
         Map<String, Object> resp = new LinkedHashMap<>();
@@ -184,9 +201,59 @@ public class ValidationService {
     public void runValidationTestsInternal(String suiteId, String client, String environment, String apiGroup,
                                              String startDate, String endDate, List<String> apisToRun,
                                              String baseUrlOverride, String configUserEmail) {
-        long deadlineMs = System.currentTimeMillis() + validationTimeoutMinutes * 60L * 1000L;
+        long deadlineMs = deadlineFromNow();
         log.info("[STEP 1] runValidationTests START | suiteId={} client={} env={} apis={} timeoutMin={}", suiteId, client, environment, apisToRun, validationTimeoutMinutes);
 
+        log.info("[STEP 4] apisToRun={}", apisToRun);
+        SuiteContext ctx = prepareSuite(client, environment, startDate, endDate, baseUrlOverride, configUserEmail);
+
+        List<com.analytics.orchestrator.config.ApiDefinition.ApiSpec> apiSpecs = configResolver.resolveApis(apiGroup, apisToRun);
+        log.info("[STEP 8] Resolved {} API spec(s)", apiSpecs.size());
+
+        for (com.analytics.orchestrator.config.ApiDefinition.ApiSpec spec : apiSpecs) {
+            if (System.currentTimeMillis() > deadlineMs) {
+                log.warn("[TIMEOUT] Validation exceeded {} min - continuing with remaining APIs. suiteId={}", validationTimeoutMinutes, suiteId);
+            }
+            validateApi(suiteId, client, apiGroup, spec, ctx);
+        }
+        log.info("[STEP 17] runValidationTests COMPLETE | suiteId={} all APIs processed", suiteId);
+    }
+
+    /** End of the validation.timeout-minutes budget for a suite starting now (epoch millis). */
+    public long deadlineFromNow() {
+        return System.currentTimeMillis() + validationTimeoutMinutes * 60L * 1000L;
+    }
+
+    public int getValidationTimeoutMinutes() {
+        return validationTimeoutMinutes;
+    }
+
+    /** Base URL, params and taxonomy shared by every API of a suite. */
+    public static class SuiteContext {
+        final String baseUrl;
+        final Map<String, Object> baseParams;
+        final Map<String, List<String>> taxonomy;
+
+        SuiteContext(String baseUrl, Map<String, Object> baseParams, Map<String, List<String>> taxonomy) {
+            this.baseUrl = baseUrl;
+            this.baseParams = baseParams;
+            this.taxonomy = taxonomy;
+        }
+    }
+
+    /** Suite context for queued tasks: fetched once per suite on each instance, dropped when the suite finishes. */
+    public SuiteContext getSuiteContext(String suiteId, String client, String environment, String startDate, String endDate,
+                                        String baseUrlOverride, String configUserEmail) {
+        return suiteContexts.computeIfAbsent(suiteId,
+                k -> prepareSuite(client, environment, startDate, endDate, baseUrlOverride, configUserEmail));
+    }
+
+    public void evictSuiteContext(String suiteId) {
+        suiteContexts.remove(suiteId);
+    }
+
+    public SuiteContext prepareSuite(String client, String environment, String startDate, String endDate,
+                                     String baseUrlOverride, String configUserEmail) {
         String baseUrl = (baseUrlOverride != null && !baseUrlOverride.isBlank()) ? baseUrlOverride : configResolver.getBaseUrl(environment);
 
         Map<String, Object> baseParams = new HashMap<>();
@@ -195,7 +262,6 @@ public class ValidationService {
         baseParams.put("end_date", endDate != null ? endDate : "2026-01-12");
         baseParams.put("_limit", 1);
 
-        log.info("[STEP 4] apisToRun={}", apisToRun);
         log.info("[STEP 5] Fetching config for client {} from {} | x-client-id={} x-user-email from request/config", client, baseUrl, client);
         String configJson = null;
         try {
@@ -215,131 +281,59 @@ public class ValidationService {
         }
         Map<String, List<String>> taxonomy = taxonomyParser.parseTaxonomy(configNode);
         log.info("[STEP 7] Taxonomy parsed: retailers={} categories={}", taxonomy.getOrDefault("retailers", List.of()).size(), taxonomy.getOrDefault("categories", List.of()).size());
-        baseParams.put("client_id", client);
-
-        List<com.analytics.orchestrator.config.ApiDefinition.ApiSpec> apiSpecs = configResolver.resolveApis(apiGroup, apisToRun);
-        log.info("[STEP 8] Resolved {} API spec(s)", apiSpecs.size());
+        return new SuiteContext(baseUrl, baseParams, taxonomy);
+    }
 
-        for (com.analytics.orchestrator.config.ApiDefinition.ApiSpec spec : apiSpecs) {
-            if (System.currentTimeMillis() > deadlineMs) {
-                log.warn("[TIMEOUT] Validation exceeded {} min - continuing with remaining APIs. suiteId={}", validationTimeoutMinutes, suiteId);
-            }
-            String apiId = spec.getApiId();
-            try {
-            // X-qg-request-id flow: UUID passed to product API IS the jobId. Skip getJobId.
-            String requestId = UUID.randomUUID().toString();
-            String jobId = requestId;
-            log.info("[STEP 9] Processing API {} | X-qg-request-id={} (UUID is jobId)", apiId, requestId);
+    /** Runs one API of a suite and persists its test_report_detail row (FAIL row on error). */
+    public void validateApi(String suiteId, String client, String apiGroup,
+                            com.analytics.orchestrator.config.ApiDefinition.ApiSpec spec, SuiteContext ctx) {
+        validateApi(suiteId, client, apiGroup, spec, ctx, false);
+    }
 
+    /**
+     * As above; with retryTransient (queued tasks) an exception, or an analytics API call that failed on the
+     * network or with 5xx/429, is thrown instead of persisted so the queue retries the task until max_attempts.
+     */
+    public void validateApi(String suiteId, String client, String apiGroup,
+                            com.analytics.orchestrator.config.ApiDefinition.ApiSpec spec, SuiteContext ctx,
+                            boolean retryTransient) {
+        String apiId = spec.getApiId();
+        try {
+            log.info("[STEP 9] Processing API {} | window {}..{}", apiId, ctx.baseParams.get("start_date"), ctx.baseParams.get("end_date"));
             Map<String, String> headers = configResolver.getConfigHeaders(client, defaultUserEmail, defaultAuthToken);
-            headers.put("X-qg-request-id", requestId);
 
             // Use request start_date/end_date for validation (match manual flow) - ensures payload matches what validation pipeline expects
-            Map<String, Object> effectiveBaseParams = new HashMap<>(baseParams);
-            Map<String, List<String>> effectiveTaxonomy = taxonomy;
-            boolean retriedWithReduced = false;
-            String status = "FAIL";
-            Boolean matches = null;
-            Integer diffCount = null;
-            String message = null;
-            String rowCountStatus = null;
-
-            for (int attempt = 0; attempt < 2; attempt++) {
-                List<Map<String, Object>> dataRows = dataProviderRegistry.getData(spec.getDataProvider(), apiId, new HashMap<>(effectiveBaseParams), effectiveTaxonomy);
-                if (dataRows.isEmpty()) {
-                    dataRows = Collections.singletonList(new HashMap<>(effectiveBaseParams));
-                }
-                Map<String, Object> params = new HashMap<>(dataRows.get(0));
-                params.put("start_date", effectiveBaseParams.get("start_date"));
-                params.put("end_date", effectiveBaseParams.get("end_date"));
-                params.put("_label", params.getOrDefault("_label", "Last 1 days"));
-
-                String payload;
-                try {
-                    payload = payloadGenerator.generate(spec.getTemplate(), params, effectiveTaxonomy);
-                } catch (Exception e) {
-                    log.warn("Payload generation failed for {}: {}", apiId, e.getMessage());
-                    payload = payloadGenerator.generate(spec.getTemplate(), effectiveBaseParams, effectiveTaxonomy);
-                }
-
-                String endpoint = spec.getEndpoint();
-
-                String attemptRequestId = UUID.randomUUID().toString();
-                Map<String, String> attemptHeaders = new HashMap<>(headers);
-                attemptHeaders.put("X-qg-request-id", attemptRequestId);
-
-                // Flow: hit product API with X-qg-request-id -> wait briefly -> hit alert-validation-detail/{UUID} directly
-                log.info("[API-0] Analytics API: POST {}{} | X-qg-request-id={} attempt={}", baseUrl, endpoint, attemptRequestId, attempt + 1);
-                TestExecutor.ApiExecutionResult execResult = testExecutor.execute(baseUrl, endpoint, attemptHeaders, payload);
-                log.info("[API-0] Analytics API DONE: status={} http={} apiId={} | response(truncated): {}",
-                        execResult.getStatus(), execResult.getHttpStatus(), apiId,
-                        execResult.getResponsePayload() != null && execResult.getResponsePayload().length() > 500
-                                ? execResult.getResponsePayload().substring(0, 500) + "..." : execResult.getResponsePayload());
-
-                if (!"PASS".equals(execResult.getStatus())) {
-                    String err = execResult.getErrorMessage() != null ? execResult.getErrorMessage() : "Analytics API failed or returned error";
-                    message = apiId + ": " + err;
-                    jobId = null;
-                    break;
-                }
-
-                jobId = attemptRequestId;
-                log.info("[STEP 11] Polling alert-validation-detail/{} (timeout {} sec, interval {} sec)", attemptRequestId, xqgPollTimeoutSeconds, xqgPollIntervalSeconds);
-                ValidationResult vr = pollValidationDetail(attemptRequestId, apiId);
-                if (vr != null) {
-                    matches = vr.matches;
-                    diffCount = vr.diffCount;
-                    rowCountStatus = vr.rowCountStatus;
-                    if (vr.skipped && vr.skipReason != null && (vr.skipReason.contains("too large") || vr.skipReason.contains(">1MB")) && !retriedWithReduced) {
-                        log.info("[RETRY] response_validation skipped (too large), retrying with reduced filters | apiId={} skipReason={}", apiId, vr.skipReason);
-                        effectiveBaseParams.put("start_date", effectiveBaseParams.get("end_date"));
-                        effectiveBaseParams.put("end_date", effectiveBaseParams.get("end_date"));
-                        effectiveBaseParams.put("_limit", 1);
-                        effectiveTaxonomy = reduceTaxonomy(taxonomy, 2);
-                        retriedWithReduced = true;
-                        continue;
-                    }
-                    if (vr.errorMessage != null && !vr.errorMessage.isBlank()) {
-                        status = "FAIL";
-                        message = vr.errorMessage;
-                    } else if ("mismatch".equals(rowCountStatus) || (diffCount != null && diffCount > 0) || Boolean.FALSE.equals(matches)) {
-                        status = "FAIL";
-                        if (message == null && "mismatch".equals(rowCountStatus)) {
-                            message = "Row count mismatch";
-                        }
-                        if (message == null && diffCount != null && diffCount > 0) {
-                            message = "diffCount mismatch: " + diffCount;
-                        }
-                        if (message == null && Boolean.FALSE.equals(matches)) {
-                            message = "Data comparison mismatch";
-                        }
-                    } else {
-                        status = "PASS";
-                    }
-                } else {
-                    message = apiId + ": Validation detail returned no data within " + xqgPollTimeoutSeconds + " seconds";
-                }
-                log.info("[STEP 13] pollValidationDetail returned matches={} diffCount={} rowCountStatus={} status={} for apiId={}", matches, diffCount, rowCountStatus, status, apiId);
-                break;
+            WindowOutcome outcome = validateRange(spec, ctx, headers,
+                    String.valueOf(ctx.baseParams.get("start_date")), String.valueOf(ctx.baseParams.get("end_date")), true);
+            String jobId = outcome.jobId;
+            if (retryTransient && outcome.transientFailure) {
+                throw new IllegalStateException(outcome.message);
             }
 
             String testClass = TestReportNamingUtil.getTestClass(apiGroup);
             String testMethod = TestReportNamingUtil.getTestMethod(apiGroup);
-            log.info("[STEP 16] Persisting to test_report_detail: suiteId={} apiId={} status={} matches={} jobId={} diffCount={} rowCountStatus={} message={} testClass={} testMethod={}", suiteId, apiId, status, matches, jobId, diffCount, rowCountStatus, message, testClass, testMethod);
+            log.info("[STEP 16] Persisting to test_report_detail: suiteId={} apiId={} status={} matches={} jobId={} diffCount={} rowCountStatus={} message={} testClass={} testMethod={} chunks={}",
+                    suiteId, apiId, outcome.status, outcome.matches, jobId, outcome.diffCount, outcome.rowCountStatus, outcome.message,
+                    testClass, testMethod, outcome.breakdown != null ? outcome.breakdown.size() : 1);
             TestReportDetail detail = TestReportDetail.builder()
                     .suiteId(suiteId)
                     .testId(jobId != null ? jobId : apiId)
                     .testClass(testClass)
                     .testMethod(testMethod)
                     .apiId(apiId)
-                    .status(status)
-                    .matches(matches)
+                    .status(outcome.status)
+                    .matches(outcome.matches)
                     .jobId(jobId)
-                    .diffCount(diffCount)
-                    .rowCountStatus(rowCountStatus)
-                    .message(message)
+                    .diffCount(outcome.diffCount)
+                    .rowCountStatus(outcome.rowCountStatus)
+                    .message(outcome.message)
+                    .breakdownJson(ChunkBreakdown.toJson(outcome.breakdown))
+                    .createdAt(Instant.now())
                     .build();
+            // (suite_id, api_id) is unique: a re-validated API replaces its row
+            testReportDetailRepository.findBySuiteIdAndApiId(suiteId, apiId).ifPresent(existing -> detail.setId(existing.getId()));
             testReportDetailRepository.save(detail);
+            detailSaved(suiteId, detail);
 
             // Wait 10 sec before next API (when we got jobID and moving to next)
             if (jobId != null && waitBeforeNextApiSeconds > 0) {
@@ -351,27 +345,225 @@ public class ValidationService {
                     log.warn("Sleep interrupted");
                 }
             }
-            } catch (Exception e) {
-                log.error("Error processing API {} - saving error and continuing to next API. suiteId={}", apiId, suiteId, e);
-                String errMsg = apiId + ": " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
-                String errTestClass = TestReportNamingUtil.getTestClass(apiGroup);
-                String errTestMethod = TestReportNamingUtil.getTestMethod(apiGroup);
-                testReportDetailRepository.save(TestReportDetail.builder()
-                        .suiteId(suiteId)
-                        .testId(apiId)
-                        .testClass(errTestClass)
-                        .testMethod(errTestMethod)
-                        .apiId(apiId)
-                        .status("FAIL")
-                        .matches(null)
-                        .jobId(null)
-                        .diffCount(null)
-                        .rowCountStatus(null)
-                        .message(errMsg)
-                        .build());
+        } catch (Exception e) {
+            if (retryTransient) throw e;
+            log.error("Error processing API {} - saving error and continuing to next API. suiteId={}", apiId, suiteId, e);
+            recordApiError(suiteId, apiGroup, apiId, apiId + ": " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        }
+    }
+
+    /**
+     * Validates start..end: in planned chunks when the window is longer than chunking.max-days-per-request
+     * (top level only), else as one request. A window reported too large is re-run one day per chunk; a single
+     * day that is still too large falls back to reduced filters.
+     */
+    private WindowOutcome validateRange(com.analytics.orchestrator.config.ApiDefinition.ApiSpec spec, SuiteContext ctx,
+                                        Map<String, String> headers, String startDate, String endDate, boolean topLevel) {
+        List<DateChunk> chunks = topLevel ? dateChunkPlanner.plan(startDate, endDate) : null;
+        if (chunks == null) {
+            WindowOutcome outcome = validateWindow(spec, ctx, headers, startDate, endDate, false);
+            if (!outcome.tooLarge) return outcome;
+            chunks = dateChunkPlanner.planByDay(startDate, endDate);
+            if (chunks == null) {
+                log.info("[RETRY] response_validation skipped (too large), retrying with reduced filters | apiId={}", spec.getApiId());
+                return validateWindow(spec, ctx, headers, startDate, endDate, true);
             }
+            log.info("[CHUNK] {} too large for {}..{} - validating {} daily chunk(s)", spec.getApiId(), startDate, endDate, chunks.size());
         }
-        log.info("[STEP 17] runValidationTests COMPLETE | suiteId={} all APIs processed", suiteId);
+        List<WindowOutcome> parts = dateChunkPlanner.runAll(chunks,
+                c -> validateRange(spec, ctx, headers, c.startDate(), c.endDate(), false));
+        return WindowOutcome.aggregate(chunks, parts);
+    }
+
+    /**
+     * One request for start..end and its validation detail. With reduced=true the window is cut to end..end and
+     * the taxonomy to two values per list (the last resort for a response too large to validate).
+     */
+    private WindowOutcome validateWindow(com.analytics.orchestrator.config.ApiDefinition.ApiSpec spec, SuiteContext ctx,
+                                         Map<String, String> headers, String startDate, String endDate, boolean reduced) {
+        String apiId = spec.getApiId();
+        Map<String, Object> effectiveBaseParams = new HashMap<>(ctx.baseParams);
+        effectiveBaseParams.put("start_date", reduced ? endDate : startDate);
+        effectiveBaseParams.put("end_date", endDate);
+        Map<String, List<String>> effectiveTaxonomy = ctx.taxonomy;
+        if (reduced) {
+            effectiveBaseParams.put("_limit", 1);
+            effectiveTaxonomy = reduceTaxonomy(ctx.taxonomy, 2);
+        }
+        WindowOutcome outcome = new WindowOutcome();
+
+        List<Map<String, Object>> dataRows = dataProviderRegistry.getData(spec.getDataProvider(), apiId, new HashMap<>(effectiveBaseParams), effectiveTaxonomy);
+        if (dataRows.isEmpty()) {
+            dataRows = Collections.singletonList(new HashMap<>(effectiveBaseParams));
+        }
+        Map<String, Object> params = new HashMap<>(dataRows.get(0));
+        params.put("start_date", effectiveBaseParams.get("start_date"));
+        params.put("end_date", effectiveBaseParams.get("end_date"));
+        params.put("_label", params.getOrDefault("_label", "Last 1 days"));
+
+        String payload;
+        try {
+            payload = payloadGenerator.generate(spec.getTemplate(), params, effectiveTaxonomy);
+        } catch (Exception e) {
+            log.warn("Payload generation failed for {}: {}", apiId, e.getMessage());
+            payload = payloadGenerator.generate(spec.getTemplate(), effectiveBaseParams, effectiveTaxonomy);
+        }
+
+        String baseUrl = ctx.baseUrl;
+        String endpoint = spec.getEndpoint();
+
+        // X-qg-request-id flow: UUID passed to product API IS the jobId. Skip getJobId.
+        String attemptRequestId = UUID.randomUUID().toString();
+        Map<String, String> attemptHeaders = new HashMap<>(headers);
+        attemptHeaders.put("X-qg-request-id", attemptRequestId);
+
+        // Flow: hit product API with X-qg-request-id -> wait briefly -> hit alert-validation-detail/{UUID} directly
+        log.info("[API-0] Analytics API: POST {}{} | X-qg-request-id={} window={}..{}{}", baseUrl, endpoint, attemptRequestId,
+                effectiveBaseParams.get("start_date"), effectiveBaseParams.get("end_date"), reduced ? " (reduced filters)" : "");
+        TestExecutor.ApiExecutionResult execResult = testExecutor.execute(baseUrl, endpoint, attemptHeaders, payload);
+        log.info("[API-0] Analytics API DONE: status={} http={} apiId={} | response(truncated): {}",
+                execResult.getStatus(), execResult.getHttpStatus(), apiId,
+                execResult.getResponsePayload() != null && execResult.getResponsePayload().length() > 500
+                        ? execResult.getResponsePayload().substring(0, 500) + "..." : execResult.getResponsePayload());
+
+        if (!"PASS".equals(execResult.getStatus())) {
+            String err = execResult.getErrorMessage() != null ? execResult.getErrorMessage() : "Analytics API failed or returned error";
+            outcome.message = apiId + ": " + err;
+            outcome.transientFailure = isTransient(execResult);
+            return outcome;
+        }
+
+        outcome.jobId = attemptRequestId;
+        log.info("[STEP 11] Polling alert-validation-detail/{} (timeout {} sec, interval {} sec)", attemptRequestId, xqgPollTimeoutSeconds, xqgPollIntervalSeconds);
+        ValidationResult vr = pollValidationDetail(attemptRequestId, apiId);
+        if (vr != null) {
+            outcome.matches = vr.matches;
+            outcome.diffCount = vr.diffCount;
+            outcome.rowCountStatus = vr.rowCountStatus;
+            if (vr.skipped && vr.skipReason != null && (vr.skipReason.contains("too large") || vr.skipReason.contains(">1MB")) && !reduced) {
+                log.info("[RETRY] response_validation skipped (too large) | apiId={} window={}..{} skipReason={}", apiId, startDate, endDate, vr.skipReason);
+                outcome.tooLarge = true;
+                outcome.message = vr.skipReason;
+                return outcome;
+            }
+            if (vr.errorMessage != null && !vr.errorMessage.isBlank()) {
+                outcome.message = vr.errorMessage;
+            } else if ("mismatch".equals(outcome.rowCountStatus) || (outcome.diffCount != null && outcome.diffCount > 0) || Boolean.FALSE.equals(outcome.matches)) {
+                if ("mismatch".equals(outcome.rowCountStatus)) {
+                    outcome.message = "Row count mismatch";
+                } else if (outcome.diffCount != null && outcome.diffCount > 0) {
+                    outcome.message = "diffCount mismatch: " + outcome.diffCount;
+                } else {
+                    outcome.message = "Data comparison mismatch";
+                }
+            } else {
+                outcome.status = "PASS";
+            }
+        } else {
+            outcome.message = apiId + ": Validation detail returned no data within " + xqgPollTimeoutSeconds + " seconds";
+        }
+        log.info("[STEP 13] pollValidationDetail returned matches={} diffCount={} rowCountStatus={} status={} for apiId={} window={}..{}",
+                outcome.matches, outcome.diffCount, outcome.rowCountStatus, outcome.status, apiId, startDate, endDate);
+        return outcome;
+    }
+
+    /** No response (connection error, timeout) or a 5xx/429: worth another attempt, unlike a 4xx. */
+    static boolean isTransient(TestExecutor.ApiExecutionResult r) {
+        Integer http = r.getHttpStatus();
+        return http == null || http >= 500 || http == 429;
+    }
+
+    /** Result of validating one window (or, aggregated, of all its chunks). */
+    static final class WindowOutcome {
+        private static final int MAX_MESSAGE_LENGTH = 512;
+
+        String status = "FAIL";
+        Boolean matches;
+        Integer diffCount;
+        String rowCountStatus;
+        String message;
+        String jobId;
+        /** response_validation was skipped as too large; the caller splits the window or reduces filters. */
+        boolean tooLarge;
+        /** The analytics API call itself failed in a way a retry may fix (see {@link #isTransient}). */
+        boolean transientFailure;
+        List<Map<String, Object>> breakdown;
+
+        /**
+         * One outcome for the whole window: PASS only if every chunk passed, matches false if any chunk
+         * mismatched, diff counts summed, row count "mismatch" if any chunk's was. The job id is the first
+         * chunk's; the message names the failing chunks.
+         */
+        static WindowOutcome aggregate(List<DateChunk> chunks, List<WindowOutcome> parts) {
+            WindowOutcome total = new WindowOutcome();
+            boolean allPass = true;
+            boolean allMatch = true;
+            boolean anyMismatch = false;
+            List<String> messages = new ArrayList<>();
+            total.breakdown = new ArrayList<>(parts.size());
+            for (int i = 0; i < parts.size(); i++) {
+                WindowOutcome part = parts.get(i);
+                String label = chunks.get(i).label();
+                allPass &= "PASS".equals(part.status);
+                allMatch &= Boolean.TRUE.equals(part.matches);
+                anyMismatch |= Boolean.FALSE.equals(part.matches);
+                if (part.diffCount != null) total.diffCount = (total.diffCount != null ? total.diffCount : 0) + part.diffCount;
+                if ("mismatch".equals(part.rowCountStatus) || total.rowCountStatus == null) total.rowCountStatus = part.rowCountStatus;
+                if (total.jobId == null) total.jobId = part.jobId;
+                total.transientFailure |= part.transientFailure;
+                if (part.message != null && !"PASS".equals(part.status)) messages.add("[" + label + "] " + part.message);
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("window", label);
+                entry.put("status", part.status);
+                entry.put("matches", part.matches);
+                entry.put("diffCount", part.diffCount);
+                entry.put("rowCountStatus", part.rowCountStatus);
+                entry.put("jobId", part.jobId);
+                entry.put("message", part.message);
+                total.breakdown.add(entry);
+            }
+            total.status = allPass ? "PASS" : "FAIL";
+            total.matches = anyMismatch ? Boolean.FALSE : allMatch ? Boolean.TRUE : null;
+            if (!messages.isEmpty()) {
+                String joined = messages.size() + "/" + parts.size() + " chunk(s) failed: " + String.join("; ", messages);
+                total.message = joined.length() <= MAX_MESSAGE_LENGTH ? joined : joined.substring(0, MAX_MESSAGE_LENGTH - 3) + "...";
+            }
+            return total;
+        }
+    }
+
+    /** Persist a FAIL row for an API that could not be validated. */
+    public void recordApiError(String suiteId, String apiGroup, String apiId, String errMsg) {
+        String errTestClass = TestReportNamingUtil.getTestClass(apiGroup);
+        String errTestMethod = TestReportNamingUtil.getTestMethod(apiGroup);
+        TestReportDetail detail = TestReportDetail.builder()
+                .suiteId(suiteId)
+                .testId(apiId)
+                .testClass(errTestClass)
+                .testMethod(errTestMethod)
+                .apiId(apiId)
+                .status("FAIL")
+                .matches(null)
+                .jobId(null)
+                .diffCount(null)
+                .rowCountStatus(null)
+                .message(errMsg)
+                .createdAt(Instant.now())
+                .build();
+        testReportDetailRepository.findBySuiteIdAndApiId(suiteId, apiId).ifPresent(existing -> detail.setId(existing.getId()));
+        detailSaved(suiteId, testReportDetailRepository.save(detail));
+    }
+
+    /** Keeps the suite summary and progress stream in step with test_report_detail. */
+    private void detailSaved(String suiteId, TestReportDetail detail) {
+        Map<String, Object> row = toResultRow(detail);
+        summaryService.record(suiteId, detail.getApiId(), categorize(row), row);
+        eventBroker.publishApiResult(suiteId, row);
+    }
+
+    public List<String> findInProgressSuiteIds() {
+        return userInputDetailRepository.findBySuiteStatus(SUITE_STATUS_IN_PROGRESS).stream()
+                .map(UserInputDetail::getSuiteId).collect(Collectors.toList());
     }
 
     public void markSuiteCompleted(String suiteId) {
@@ -379,6 +571,15 @@ public class ValidationService {
             u.setSuiteStatus(SUITE_STATUS_COMPLETED);
             userInputDetailRepository.save(u);
         });
+        summaryService.finish(suiteId, SUITE_STATUS_COMPLETED);
+        eventBroker.publishSuiteFinished(suiteId, SUITE_STATUS_COMPLETED);
+    }
+
+    /** Whether the suite is already COMPLETED in user_input_detail (null if unknown suite). */
+    public Boolean isSuiteCompleted(String suiteId) {
+        return userInputDetailRepository.findById(suiteId)
+                .map(u -> SUITE_STATUS_COMPLETED.equals(u.getSuiteStatus()))
+                .orElse(null);
     }
 
     /**
@@ -634,63 +835,87 @@ public class ValidationService {
         }
     }
 
+    /** One "results" row of getValidationResult for a saved detail; also the payload of its progress event. */
+    private static Map<String, Object> toResultRow(TestReportDetail d) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("jobId", d.getJobId());
+        m.put("apiName", d.getApiId());
+        // rowCount: null when not available (was "unknown")
+        m.put("rowCount", d.getRowCountStatus());
+        m.put("message", d.getMessage());
+        m.put("matches", d.getMatches());
+        m.put("apiStatus", "completed");
+        // testStatus: "Pass" | "Fail" (was "status": "PASS"/"FAIL")
+        String rawStatus = d.getStatus();
+        m.put("testStatus", rawStatus != null ? ("PASS".equals(rawStatus) ? "Pass" : "Fail") : null);
+        // diffCount: null when jobId null or failed (was 0)
+        m.put("diffCount", d.getJobId() != null ? d.getDiffCount() : null);
+        List<Map<String, Object>> breakdown = ChunkBreakdown.parse(d.getBreakdownJson());
+        if (breakdown != null) m.put("breakdown", breakdown);
+        return m;
+    }
+
+    /** Report section of a completed row: passed, failed (did not run / BQ-DBX error) or data mismatch. */
+    private static String categorize(Map<String, Object> row) {
+        Object testStatus = row.get("testStatus");
+        if ("Pass".equals(testStatus)) return SuiteSummaryService.CATEGORY_PASSED;
+        if (!"Fail".equals(testStatus)) return null;
+        return isExecutionFailure(row) ? SuiteSummaryService.CATEGORY_FAILED : SuiteSummaryService.CATEGORY_MISMATCH;
+    }
+
     public Map<String, Object> getValidationResult(String suiteId) {
         UserInputDetail userInput = userInputDetailRepository.findById(suiteId).orElse(null);
         if (userInput == null) {
             throw new IllegalArgumentException("Suite not found: " + suiteId);
         }
 
-        List<TestReportDetail> details = testReportDetailRepository.findBySuiteIdOrderByIdAsc(suiteId);
+        // Rows and categories from the suite summary; suites without one are read from test_report_detail
+        Map<String, SuiteSummaryService.ApiEntry> entryByApiId = new LinkedHashMap<>();
+        SuiteSummaryService.Summary summary = summaryService.get(suiteId);
+        if (summary != null) {
+            entryByApiId.putAll(summary.getApis());
+        } else {
+            for (TestReportDetail d : testReportDetailRepository.findBySuiteIdOrderByIdAsc(suiteId)) {
+                if (entryByApiId.containsKey(d.getApiId())) continue;
+                Map<String, Object> row = toResultRow(d);
+                entryByApiId.put(d.getApiId(), new SuiteSummaryService.ApiEntry(categorize(row), row));
+            }
+        }
         List<String> apisToRun;
         if (userInput.getApis() != null && !userInput.getApis().isBlank()) {
             apisToRun = Arrays.asList(userInput.getApis().split(","));
         } else {
-            apisToRun = details.stream().map(TestReportDetail::getApiId).distinct().collect(Collectors.toList());
+            apisToRun = new ArrayList<>(entryByApiId.keySet());
         }
-        Map<String, TestReportDetail> detailByApiId = details.stream().collect(Collectors.toMap(TestReportDetail::getApiId, d -> d, (a, b) -> a));
 
         List<Map<String, Object>> allApiResults = new ArrayList<>();
-        for (String apiId : apisToRun) {
-            TestReportDetail d = detailByApiId.get(apiId);
-
-            Map<String, Object> m = new LinkedHashMap<>();
-            m.put("jobId", d != null ? d.getJobId() : null);
-            m.put("apiName", apiId);
-            // rowCount: null when not available (was "unknown")
-            Object rowCountVal = (d != null && d.getRowCountStatus() != null) ? d.getRowCountStatus() : (d == null ? "in_progress" : null);
-            m.put("rowCount", rowCountVal);
-            m.put("message", d != null ? d.getMessage() : null);
-            m.put("matches", d != null ? d.getMatches() : null);
-            m.put("apiStatus", d != null ? "completed" : "in_progress");
-            // testStatus: "Pass" | "Fail" (was "status": "PASS"/"FAIL")
-            String rawStatus = d != null ? d.getStatus() : null;
-            String testStatus = rawStatus != null ? ("PASS".equals(rawStatus) ? "Pass" : "Fail") : null;
-            m.put("testStatus", testStatus);
-            // diffCount: null when jobId null or failed (was 0)
-            Integer diffCountVal = (d != null && d.getJobId() != null && d.getDiffCount() != null) ? d.getDiffCount() : null;
-            m.put("diffCount", diffCountVal);
-            allApiResults.add(m);
-        }
-
         // apisWithMatches: testStatus=Pass (rowCount matching, diffCount 0 or N/A, no bq/dbx error)
-        List<Map<String, Object>> apisWithMatches = allApiResults.stream()
-                .filter(m -> "completed".equals(m.get("apiStatus")))
-                .filter(m -> "Pass".equals(m.get("testStatus")))
-                .collect(Collectors.toList());
-
+        List<Map<String, Object>> apisWithMatches = new ArrayList<>();
         // apisFailed: execution/validation errors - API did not run (HTTP 500), BQ/DBX error, or response_validation skipped
-        List<Map<String, Object>> apisFailed = allApiResults.stream()
-                .filter(m -> "completed".equals(m.get("apiStatus")))
-                .filter(m -> "Fail".equals(m.get("testStatus")))
-                .filter(ValidationService::isExecutionFailure)
-                .collect(Collectors.toList());
-
+        List<Map<String, Object>> apisFailed = new ArrayList<>();
         // apisWithMismatches: ONLY data validation mismatches - row_count mismatch or diffCount > 0 (API ran, got data, but BQ != DBX)
-        List<Map<String, Object>> apisWithMismatches = allApiResults.stream()
-                .filter(m -> "completed".equals(m.get("apiStatus")))
-                .filter(m -> "Fail".equals(m.get("testStatus")))
-                .filter(m -> !ValidationService.isExecutionFailure(m))
-                .collect(Collectors.toList());
+        List<Map<String, Object>> apisWithMismatches = new ArrayList<>();
+        for (String apiId : apisToRun) {
+            SuiteSummaryService.ApiEntry entry = entryByApiId.get(apiId);
+            if (entry == null) {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("jobId", null);
+                m.put("apiName", apiId);
+                m.put("rowCount", "in_progress");
+                m.put("message", null);
+                m.put("matches", null);
+                m.put("apiStatus", "in_progress");
+                m.put("testStatus", null);
+                m.put("diffCount", null);
+                allApiResults.add(m);
+                continue;
+            }
+            Map<String, Object> m = new LinkedHashMap<>(entry.row);
+            allApiResults.add(m);
+            if (SuiteSummaryService.CATEGORY_PASSED.equals(entry.category)) apisWithMatches.add(m);
+            else if (SuiteSummaryService.CATEGORY_FAILED.equals(entry.category)) apisFailed.add(m);
+            else if (SuiteSummaryService.CATEGORY_MISMATCH.equals(entry.category)) apisWithMismatches.add(m);
+        }
 
         // apisWhichFail: kept for backward compatibility, same as apisFailed
         List<Map<String, Object>> apisWhichFail = apisFailed;
@@ -0,0 +1,170 @@
+package com.analytics.orchestrator.catalog;
+
+import com.analytics.comparison.util.ComparisonProfile;
+import com.analytics.orchestrator.config.ApiDefinition;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All API specs, read once from every config/apis/*.yaml on the classpath. Each file declares its apiGroup;
+ * groups are looked up case-insensitively (plus the legacy aliases analytics and rating&reviews) and specs are
+ * indexed by apiId, so a new group is added by dropping in a YAML file. A spec's {@code comparison:} block is
+ * compiled into its {@link ComparisonProfile} here, so a bad block fails startup rather than a run.
+ */
+@Component
+public class ApiCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiCatalog.class);
+
+    static final String LOCATION = "classpath*:config/apis/*.yaml";
+
+    /** Request names that differ from the apiGroup declared in the YAML. */
+    private static final Map<String, String> ALIASES = Map.of(
+            "analytics", "productcontent",
+            "rating&reviews", "ratingreviews");
+
+    private final Map<String, Group> groups;
+
+    public ApiCatalog() throws IOException {
+        this(new PathMatchingResourcePatternResolver(), LOCATION);
+    }
+
+    ApiCatalog(ResourcePatternResolver resolver, String location) throws IOException {
+        ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+        Resource[] resources = resolver.getResources(location);
+        Arrays.sort(resources, Comparator.comparing(Resource::getFilename, Comparator.nullsFirst(Comparator.naturalOrder())));
+        Map<String, Group> loaded = new LinkedHashMap<>();
+        for (Resource resource : resources) {
+            ApiDefinition def;
+            try (InputStream in = resource.getInputStream()) {
+                def = yamlMapper.readValue(in, ApiDefinition.class);
+            }
+            if (def.getApiGroup() == null || def.getApiGroup().isBlank()) {
+                throw new IllegalStateException("No apiGroup in " + resource.getFilename());
+            }
+            Group group = new Group(def.getApiGroup(), def.getApis(), resource.getFilename());
+            Group previous = loaded.putIfAbsent(key(def.getApiGroup()), group);
+            if (previous != null) {
+                throw new IllegalStateException("API group '" + def.getApiGroup() + "' is declared in both "
+                        + previous.source + " and " + group.source);
+            }
+            log.info("[CATALOG] Loaded API group '{}' with {} APIs from {}", group.name, group.specs.size(), group.source);
+        }
+        this.groups = Collections.unmodifiableMap(loaded);
+    }
+
+    /**
+     * Specs of the group in YAML order; when apiIds is non-empty only those (unknown ids are ignored).
+     * The returned list is read-only.
+     */
+    public List<ApiDefinition.ApiSpec> resolve(String apiGroup, Collection<String> apiIds) {
+        Group group = group(apiGroup);
+        if (apiIds == null || apiIds.isEmpty()) return group.specs;
+        List<ApiDefinition.ApiSpec> selected = new ArrayList<>(apiIds.size());
+        for (String apiId : new LinkedHashSet<>(apiIds)) {
+            Integer position = group.positions.get(apiId);
+            if (position != null) selected.add(group.specs.get(position));
+        }
+        if (selected.size() > 1) selected.sort(Comparator.comparingInt(s -> group.positions.get(s.getApiId())));
+        return Collections.unmodifiableList(selected);
+    }
+
+    public ApiDefinition.ApiSpec find(String apiGroup, String apiId) {
+        return group(apiGroup).byId.get(apiId);
+    }
+
+    /** apiGroup names as declared in the YAML files. */
+    public List<String> groupNames() {
+        List<String> names = new ArrayList<>(groups.size());
+        for (Group g : groups.values()) names.add(g.name);
+        return names;
+    }
+
+    /** Every payload template referenced by a spec (template, createJobTemplate, queryTemplate). */
+    public Set<String> templateNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Group g : groups.values()) {
+            for (ApiDefinition.ApiSpec spec : g.specs) {
+                addIfSet(names, spec.getTemplate());
+                addIfSet(names, spec.getCreateJobTemplate());
+                addIfSet(names, spec.getQueryTemplate());
+            }
+        }
+        return names;
+    }
+
+    public int size() {
+        int n = 0;
+        for (Group g : groups.values()) n += g.specs.size();
+        return n;
+    }
+
+    private Group group(String apiGroup) {
+        Group group = apiGroup != null ? groups.get(key(apiGroup)) : null;
+        if (group == null) throw new IllegalArgumentException("Unknown API group: " + apiGroup);
+        return group;
+    }
+
+    private static String key(String apiGroup) {
+        String lower = apiGroup.trim().toLowerCase(Locale.ROOT);
+        return ALIASES.getOrDefault(lower, lower);
+    }
+
+    private static void addIfSet(Set<String> names, String name) {
+        if (name != null && !name.isBlank()) names.add(name);
+    }
+
+    private static void compileComparison(ApiDefinition.ApiSpec spec, String source) {
+        ApiDefinition.ComparisonSpec c = spec.getComparison();
+        if (c == null) return;
+        try {
+            spec.setComparisonProfile(ComparisonProfile.compile(c.getKeys(), c.getIgnore(), c.getTolerances(), c.getSampling()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid comparison block of '" + spec.getApiId() + "' in " + source + ": " + e.getMessage(), e);
+        }
+        log.info("[CATALOG] {}: {}", spec.getApiId(), spec.getComparisonProfile());
+    }
+
+    private static final class Group {
+        final String name;
+        final String source;
+        final List<ApiDefinition.ApiSpec> specs;
+        final Map<String, ApiDefinition.ApiSpec> byId = new HashMap<>();
+        final Map<String, Integer> positions = new HashMap<>();
+
+        Group(String name, List<ApiDefinition.ApiSpec> specs, String source) {
+            this.name = name;
+            this.source = source;
+            this.specs = specs != null ? Collections.unmodifiableList(new ArrayList<>(specs)) : List.of();
+            for (int i = 0; i < this.specs.size(); i++) {
+                ApiDefinition.ApiSpec spec = this.specs.get(i);
+                if (byId.putIfAbsent(spec.getApiId(), spec) != null) {
+                    throw new IllegalStateException("Duplicate apiId '" + spec.getApiId() + "' in " + source);
+                }
+                positions.put(spec.getApiId(), i);
+                compileComparison(spec, source);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.analytics.orchestrator.chunking;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The per-chunk (or per-shard) breakdown kept next to an aggregated result in its breakdown_json column:
+ * one entry per part, each with its label ("window" for a validation date chunk, "part" for a comparison
+ * date chunk or taxonomy shard) and that part's own counts and status.
+ */
+public final class ChunkBreakdown {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<List<Map<String, Object>>> TYPE = new TypeReference<>() {};
+
+    private ChunkBreakdown() {
+    }
+
+    public static String toJson(List<Map<String, Object>> breakdown) {
+        if (breakdown == null || breakdown.isEmpty()) return null;
+        try {
+            return objectMapper.writeValueAsString(breakdown);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Parsed breakdown, or null when there is none (single-request results) or it cannot be read. */
+    public static List<Map<String, Object>> parse(String json) {
+        if (json == null || json.isBlank()) return null;
+        try {
+            return objectMapper.readValue(json, TYPE);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.analytics.orchestrator.chunking;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/** One inclusive start_date..end_date slice of a suite window. */
+@Getter
+public final class DateChunk {
+
+    private final LocalDate start;
+    private final LocalDate end;
+
+    DateChunk(LocalDate start, LocalDate end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public String startDate() {
+        return start.toString();
+    }
+
+    public String endDate() {
+        return end.toString();
+    }
+
+    public int days() {
+        return (int) (end.toEpochDay() - start.toEpochDay()) + 1;
+    }
+
+    /** e.g. "2026-01-08..2026-01-14"; prefixes mismatch paths and names the chunk in the breakdown. */
+    public String label() {
+        return start.equals(end) ? startDate() : startDate() + ".." + endDate();
+    }
+
+    @Override
+    public String toString() {
+        return label();
+    }
+}
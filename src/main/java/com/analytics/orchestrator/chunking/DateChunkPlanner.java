@@ -0,0 +1,154 @@
+package com.analytics.orchestrator.chunking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Splits a long start_date..end_date window into consecutive day or week chunks so every day of the window is
+ * validated, instead of falling back to a single day when the full window is too large. Chunks of one API run
+ * in parallel on a pool shared by all suites; a chunk that has to be split again runs its sub-chunks inline.
+ */
+@Component
+public class DateChunkPlanner {
+
+    private static final Logger log = LoggerFactory.getLogger(DateChunkPlanner.class);
+
+    /** Set on chunk pool threads so nested splits do not wait on the pool they are running on. */
+    private static final ThreadLocal<Boolean> IN_CHUNK = ThreadLocal.withInitial(() -> false);
+
+    public enum Unit {
+        DAY(1), WEEK(7);
+
+        private final int days;
+
+        Unit(int days) {
+            this.days = days;
+        }
+    }
+
+    private volatile ExecutorService chunkPool;
+
+    @Value("${chunking.enabled:true}")
+    private boolean enabled = true;
+
+    /** Windows up to this many days (inclusive) are sent as one request. */
+    @Value("${chunking.max-days-per-request:7}")
+    private int maxDaysPerRequest = 7;
+
+    @Value("${chunking.unit:WEEK}")
+    private Unit unit = Unit.WEEK;
+
+    /** Upper bound on chunks per API; longer windows get wider chunks. */
+    @Value("${chunking.max-chunks:31}")
+    private int maxChunks = 31;
+
+    /** Chunks in flight across all suites. */
+    @Value("${chunking.parallelism:3}")
+    private int parallelism = 3;
+
+    public DateChunkPlanner() {
+    }
+
+    DateChunkPlanner(int maxDaysPerRequest, Unit unit, int maxChunks, int parallelism) {
+        this.maxDaysPerRequest = maxDaysPerRequest;
+        this.unit = unit;
+        this.maxChunks = maxChunks;
+        this.parallelism = parallelism;
+    }
+
+    /** Chunks for a window longer than max-days-per-request; null when it fits, chunking is off or a date is not ISO. */
+    public List<DateChunk> plan(String startDate, String endDate) {
+        LocalDate[] window = parse(startDate, endDate);
+        if (window == null || days(window) <= maxDaysPerRequest) return null;
+        return split(window, unit.days);
+    }
+
+    /** One-day chunks after the whole window came back too large; null for a single day. */
+    public List<DateChunk> planByDay(String startDate, String endDate) {
+        LocalDate[] window = parse(startDate, endDate);
+        if (window == null || days(window) <= 1) return null;
+        return split(window, 1);
+    }
+
+    /** Runs task for every chunk, in parallel unless already on a chunk thread; results are in chunk order. */
+    public <T> List<T> runAll(List<DateChunk> chunks, Function<DateChunk, T> task) {
+        if (chunks.size() == 1 || IN_CHUNK.get()) {
+            return chunks.stream().map(task).collect(Collectors.toList());
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(chunks.size());
+        for (DateChunk chunk : chunks) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                IN_CHUNK.set(true);
+                try {
+                    return task.apply(chunk);
+                } finally {
+                    IN_CHUNK.remove();
+                }
+            }, chunkPool()));
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    private LocalDate[] parse(String startDate, String endDate) {
+        if (!enabled || startDate == null || endDate == null) return null;
+        try {
+            LocalDate start = LocalDate.parse(startDate);
+            LocalDate end = LocalDate.parse(endDate);
+            return end.isBefore(start) ? null : new LocalDate[]{start, end};
+        } catch (DateTimeParseException e) {
+            log.debug("[CHUNK] Not chunking {}..{}: {}", startDate, endDate, e.getMessage());
+            return null;
+        }
+    }
+
+    private static int days(LocalDate[] window) {
+        return (int) (window[1].toEpochDay() - window[0].toEpochDay()) + 1;
+    }
+
+    private List<DateChunk> split(LocalDate[] window, int unitDays) {
+        int days = days(window);
+        int chunkDays = Math.max(unitDays, (days + maxChunks - 1) / Math.max(1, maxChunks));
+        List<DateChunk> chunks = new ArrayList<>();
+        for (LocalDate start = window[0]; !start.isAfter(window[1]); start = start.plusDays(chunkDays)) {
+            LocalDate end = start.plusDays(chunkDays - 1L);
+            chunks.add(new DateChunk(start, end.isAfter(window[1]) ? window[1] : end));
+        }
+        log.info("[CHUNK] {}..{}: {} day(s) in {} chunk(s) of up to {} day(s)", window[0], window[1], days, chunks.size(), chunkDays);
+        return chunks;
+    }
+
+    ExecutorService chunkPool() {
+        if (chunkPool == null) {
+            synchronized (this) {
+                if (chunkPool == null) {
+                    AtomicInteger n = new AtomicInteger();
+                    chunkPool = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+                        Thread t = new Thread(r, "date-chunk-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                }
+            }
+        }
+        return chunkPool;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (chunkPool != null) chunkPool.shutdownNow();
+    }
+}
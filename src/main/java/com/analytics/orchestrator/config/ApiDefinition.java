@@ -1,8 +1,11 @@
 package com.analytics.orchestrator.config;
 
+import com.analytics.comparison.util.ComparisonProfile;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 public class ApiDefinition {
@@ -41,5 +44,25 @@ public class ApiDefinition {
         private Boolean optionsMergeCells;
         /** For export APIs: options.yearAgoView (e.g. false for wc_xlsx) */
         private Boolean optionsYearAgoView;
+        /** Optional apiIds that must finish (successfully) before this API runs in a comparison suite */
+        private List<String> dependsOn;
+        /** Optional comparison settings: declared array keys, ignored fields, per-field tolerances, sampling */
+        private ComparisonSpec comparison;
+        /** {@link #comparison} compiled by ApiCatalog at load time; null when the API declares none */
+        @JsonIgnore
+        private ComparisonProfile comparisonProfile;
+    }
+
+    /** The {@code comparison:} block of an API; see {@link ComparisonProfile} for the path rules. */
+    @Data
+    public static class ComparisonSpec {
+        /** Key fields per array path, e.g. {@code "": [product_id, retailer]} or {@code data: [id]} */
+        private Map<String, List<String>> keys;
+        /** Fields left out of the comparison on both sides */
+        private List<String> ignore;
+        /** Per-field {absolute, relative} numeric tolerance */
+        private Map<String, ComparisonProfile.Tolerance> tolerances;
+        /** {rate, confidence}: compare only a hash-selected share of rows when the responses are compared out of core */
+        private ComparisonProfile.Sampling sampling;
     }
 }
@@ -1,24 +1,26 @@
 package com.analytics.orchestrator.config;
 
+import com.analytics.orchestrator.report.AllureReportService;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
 /**
- * Serves Allure report assets (CSS, JS, etc.) at /reports/**.
+ * Serves report assets (summary.json, attachments) at /reports/{executionId}/**.
  * Index is served by ReportController.
  */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private final AllureReportService allureReportService;
+
+    public WebConfig(AllureReportService allureReportService) {
+        this.allureReportService = allureReportService;
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        Path reportDir = Paths.get(System.getProperty("user.dir", "."))
-                .resolve("target").resolve("site").resolve("allure-maven-plugin");
-        String location = "file:" + reportDir.toAbsolutePath() + "/";
+        String location = "file:" + allureReportService.getReportsRoot().toAbsolutePath() + "/";
         registry.addResourceHandler("/reports/**")
                 .addResourceLocations(location)
                 .resourceChain(true);
@@ -9,7 +9,11 @@ import javax.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "execution_results")
+@Table(name = "execution_results",
+        indexes = {
+                @Index(name = "idx_execution_results_execution", columnList = "execution_id, executed_at"),
+                @Index(name = "idx_execution_results_executed_at", columnList = "executed_at")
+        })
 @Data
 @Builder
 @NoArgsConstructor
@@ -49,4 +53,8 @@ public class ExecutionResult {
 
     @Column(name = "executed_at", nullable = false)
     private Instant executedAt;
+
+    /** Set by retention once request/response payloads were moved to an archive file and cleared. */
+    @Column(name = "archived_at")
+    private Instant archivedAt;
 }
@@ -0,0 +1,60 @@
+package com.analytics.orchestrator.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Running per-suite aggregate maintained by SuiteSummaryService as each API result is saved, so suite GETs
+ * read one row instead of scanning test_report_detail / comparison_result. apis_json holds each API's
+ * category and its report row; version guards concurrent updates from several worker instances.
+ */
+@Entity
+@Table(name = "suite_summary")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuiteSummary {
+
+    @Id
+    @Column(name = "suite_id", nullable = false, length = 36)
+    private String suiteId;
+
+    @Column(name = "suite_type", nullable = false, length = 16)
+    private String suiteType;  // VALIDATION, COMPARISON
+
+    @Column(name = "suite_status", length = 32)
+    private String suiteStatus;
+
+    @Column(name = "completed_count")
+    private Integer completedCount;
+
+    @Column(name = "passed_count")
+    private Integer passedCount;
+
+    @Column(name = "mismatch_count")
+    private Integer mismatchCount;
+
+    @Column(name = "failed_count")
+    private Integer failedCount;
+
+    /** Comparison only: both DBX and BQ returned 0 rows. */
+    @Column(name = "empty_both_count")
+    private Integer emptyBothCount;
+
+    @Lob
+    @Column(name = "apis_json")
+    private String apisJson;
+
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+}
@@ -0,0 +1,82 @@
+package com.analytics.orchestrator.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * One API of a validation or comparison suite in the durable work queue. A worker leases the row
+ * (lease_owner / lease_expires_at) and renews the lease while it runs; an expired lease makes the task
+ * claimable again, so work survives restarts and can be shared by several instances.
+ */
+@Entity
+@Table(name = "suite_task", indexes = {
+        @Index(name = "idx_suite_task_suite", columnList = "suite_id"),
+        @Index(name = "idx_suite_task_claim", columnList = "status, lane, rank_ms")})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuiteTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "suite_id", nullable = false, length = 36)
+    private String suiteId;
+
+    @Column(name = "suite_type", nullable = false, length = 16)
+    private String suiteType;  // VALIDATION, COMPARISON
+
+    @Column(name = "api_id", nullable = false, length = 128)
+    private String apiId;
+
+    @Column(name = "status", nullable = false, length = 16)
+    private String status;  // PENDING, RUNNING, DONE, FAILED
+
+    /** 0 = interactive, 1 = bulk; lower lanes are claimed first. */
+    @Column(name = "lane")
+    private Integer lane;
+
+    /** Critical-path estimate (ms); higher is claimed first within a lane. */
+    @Column(name = "rank_ms")
+    private Long rankMs;
+
+    /** Comma-separated apiIds of the same suite that must be DONE before this task is claimable. */
+    @Column(name = "depends_on", length = 512)
+    private String dependsOn;
+
+    /** Suite request parameters (client, dates, apiGroup, ...) as JSON. */
+    @Column(name = "params_json", length = 2048)
+    private String paramsJson;
+
+    @Column(name = "attempts")
+    private Integer attempts;
+
+    @Column(name = "max_attempts")
+    private Integer maxAttempts;
+
+    @Column(name = "lease_owner", length = 128)
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private Instant leaseExpiresAt;
+
+    /** Retry backoff: not claimable before this time. */
+    @Column(name = "not_before")
+    private Instant notBefore;
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+}
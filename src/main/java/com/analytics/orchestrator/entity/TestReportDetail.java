@@ -6,12 +6,15 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 /**
  * Links each test to a suite. Stores testId, status, and validation matches.
  */
 @Entity
-@Table(name = "test_report_detail")
+@Table(name = "test_report_detail",
+        uniqueConstraints = @UniqueConstraint(name = "uk_test_report_detail_suite_api", columnNames = {"suite_id", "api_id"}),
+        indexes = @Index(name = "idx_test_report_detail_created", columnList = "created_at"))
 @Data
 @Builder
 @NoArgsConstructor
@@ -54,4 +57,12 @@ public class TestReportDetail {
 
     @Column(name = "row_count_status", length = 32)
     private String rowCountStatus;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    /** Per-chunk results (ChunkBreakdown JSON) when the API's date window was validated in chunks. */
+    @Lob
+    @Column(name = "breakdown_json")
+    private String breakdownJson;
 }
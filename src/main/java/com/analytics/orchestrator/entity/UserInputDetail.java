@@ -8,13 +8,14 @@ import lombok.NoArgsConstructor;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 /**
  * Suite-level input. suiteId is the unique UUID primary key for the TestNG suite.
  */
 @Entity
-@Table(name = "user_input_detail")
+@Table(name = "user_input_detail", indexes = @Index(name = "idx_user_input_detail_status", columnList = "suite_status"))
 @Data
 @Builder
 @NoArgsConstructor
@@ -0,0 +1,256 @@
+package com.analytics.orchestrator.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-suite progress events for the report pages (Server-Sent Events). Runners publish one "api" event per
+ * saved result and a "suite" event when the suite is finalised; each suite keeps a bounded replay buffer so a
+ * page opened mid-run (or reconnecting with Last-Event-ID) catches up without re-querying the whole suite.
+ * <p>
+ * Events are in-memory and per JVM: results written by a separate worker instance are not pushed to
+ * subscribers on the API instance, so the pages keep a slow snapshot refresh as a fallback.
+ */
+@Component
+public class SuiteEventBroker {
+
+    private static final Logger log = LoggerFactory.getLogger(SuiteEventBroker.class);
+
+    public static final String EVENT_API = "api";
+    public static final String EVENT_SUITE = "suite";
+
+    @Value("${events.max-suites:200}")
+    private int maxSuites = 200;
+
+    @Value("${events.max-events-per-suite:1000}")
+    private int maxEventsPerSuite = 1000;
+
+    @Value("${events.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs = 1_800_000;
+
+    @Value("${events.heartbeat-seconds:15}")
+    private long heartbeatSeconds = 15;
+
+    /** Access-ordered so the least recently touched suite is dropped first once maxSuites is exceeded. */
+    private final Map<String, SuiteStream> streams = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SuiteStream> eldest) {
+            if (size() <= maxSuites) return false;
+            eldest.getValue().closeAll();
+            return true;
+        }
+    };
+
+    private ScheduledExecutorService heartbeat;
+
+    public SuiteEventBroker() {
+    }
+
+    SuiteEventBroker(int maxSuites, int maxEventsPerSuite) {
+        this.maxSuites = maxSuites;
+        this.maxEventsPerSuite = maxEventsPerSuite;
+    }
+
+    @PostConstruct
+    void startHeartbeat() {
+        if (heartbeatSeconds <= 0) return;
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "suite-events-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (heartbeat != null) heartbeat.shutdownNow();
+        List<SuiteStream> all;
+        synchronized (streams) {
+            all = new ArrayList<>(streams.values());
+            streams.clear();
+        }
+        all.forEach(SuiteStream::closeAll);
+    }
+
+    /** Per-API progress: data is the same row shape the suite GET endpoint returns under "results". */
+    public void publishApiResult(String suiteId, Map<String, Object> data) {
+        publish(suiteId, EVENT_API, data, false);
+    }
+
+    /** Terminal event; open streams for the suite are completed after it is sent. */
+    public void publishSuiteFinished(String suiteId, String suiteStatus) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("suiteId", suiteId);
+        data.put("suiteStatus", suiteStatus);
+        publish(suiteId, EVENT_SUITE, data, true);
+    }
+
+    /**
+     * Opens a stream for the suite, replaying buffered events with id greater than lastEventId first.
+     * A suite that already finished gets its buffer replayed and the stream completed straight away;
+     * finishedStatus is the status from the DB and covers suites that finished before this JVM started.
+     */
+    public SseEmitter subscribe(String suiteId, Long lastEventId, String finishedStatus) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        stream(suiteId).attach(emitter, lastEventId != null ? lastEventId : 0L, finishedStatus);
+        return emitter;
+    }
+
+    /** Buffered events for the suite (oldest first); empty when nothing was published on this instance. */
+    public List<SuiteEvent> bufferedEvents(String suiteId) {
+        SuiteStream stream;
+        synchronized (streams) {
+            stream = streams.get(suiteId);
+        }
+        return stream == null ? List.of() : stream.snapshot();
+    }
+
+    int subscriberCount(String suiteId) {
+        SuiteStream stream;
+        synchronized (streams) {
+            stream = streams.get(suiteId);
+        }
+        return stream == null ? 0 : stream.subscriberCount();
+    }
+
+    private void publish(String suiteId, String type, Map<String, Object> data, boolean terminal) {
+        if (suiteId == null) return;
+        try {
+            stream(suiteId).publish(type, data, terminal);
+        } catch (Exception e) {
+            // Progress events are best-effort; never fail a result save because a dashboard went away
+            log.warn("[EVENTS] Could not publish {} event for suiteId={}: {}", type, suiteId, e.getMessage());
+        }
+    }
+
+    private SuiteStream stream(String suiteId) {
+        synchronized (streams) {
+            return streams.computeIfAbsent(suiteId, id -> new SuiteStream(id, maxEventsPerSuite));
+        }
+    }
+
+    private void sendHeartbeats() {
+        List<SuiteStream> all;
+        synchronized (streams) {
+            all = new ArrayList<>(streams.values());
+        }
+        all.forEach(SuiteStream::heartbeat);
+    }
+
+    /** One buffered event; id is increasing per suite and doubles as the SSE id. */
+    public static class SuiteEvent {
+        public final long id;
+        public final String type;
+        public final Map<String, Object> data;
+
+        SuiteEvent(long id, String type, Map<String, Object> data) {
+            this.id = id;
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    private static class SuiteStream {
+        private final String suiteId;
+        private final int maxEvents;
+        private final Deque<SuiteEvent> buffer = new ArrayDeque<>();
+        private final List<SseEmitter> emitters = new ArrayList<>();
+        private long lastId;
+        private boolean finished;
+
+        SuiteStream(String suiteId, int maxEvents) {
+            this.suiteId = suiteId;
+            this.maxEvents = Math.max(1, maxEvents);
+        }
+
+        synchronized void publish(String type, Map<String, Object> data, boolean terminal) {
+            // A re-run suite (retry, restart) starts streaming again after its earlier terminal event
+            if (!terminal) finished = false;
+            SuiteEvent event = new SuiteEvent(++lastId, type, data);
+            buffer.addLast(event);
+            while (buffer.size() > maxEvents) buffer.removeFirst();
+            emitters.removeIf(e -> !send(e, event));
+            if (terminal) {
+                finished = true;
+                emitters.forEach(SseEmitter::complete);
+                emitters.clear();
+            }
+        }
+
+        synchronized void attach(SseEmitter emitter, long afterId, String finishedStatus) {
+            for (SuiteEvent event : buffer) {
+                if (event.id > afterId && !send(emitter, event)) return;
+            }
+            if (!finished && finishedStatus != null) {
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("suiteId", suiteId);
+                data.put("suiteStatus", finishedStatus);
+                send(emitter, new SuiteEvent(lastId, EVENT_SUITE, data));
+            }
+            if (finished || finishedStatus != null) {
+                emitter.complete();
+                return;
+            }
+            emitters.add(emitter);
+            Runnable remove = () -> detach(emitter);
+            emitter.onCompletion(remove);
+            emitter.onTimeout(remove);
+            emitter.onError(err -> detach(emitter));
+        }
+
+        synchronized void detach(SseEmitter emitter) {
+            emitters.remove(emitter);
+        }
+
+        synchronized void heartbeat() {
+            emitters.removeIf(e -> {
+                try {
+                    e.send(SseEmitter.event().comment("keep-alive"));
+                    return false;
+                } catch (IOException | IllegalStateException ex) {
+                    return true;
+                }
+            });
+        }
+
+        synchronized List<SuiteEvent> snapshot() {
+            return new ArrayList<>(buffer);
+        }
+
+        synchronized int subscriberCount() {
+            return emitters.size();
+        }
+
+        synchronized void closeAll() {
+            emitters.forEach(SseEmitter::complete);
+            emitters.clear();
+        }
+
+        private boolean send(SseEmitter emitter, SuiteEvent event) {
+            try {
+                emitter.send(SseEmitter.event().id(String.valueOf(event.id)).name(event.type).data(event.data));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                log.debug("[EVENTS] Dropping subscriber for suiteId={}: {}", suiteId, e.getMessage());
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.analytics.orchestrator.queue;
+
+import com.analytics.orchestrator.entity.SuiteTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs on the API (non-worker) instances. Periodically re-queues tasks whose lease expired (failing them once
+ * max_attempts is used up), then finalises IN_PROGRESS suites in comparison_suite and user_input_detail whose
+ * queued tasks are all DONE or FAILED - dedicated workers (queue.finalize-suites=false) only write per-API
+ * results, and a worker dying right after the last task would otherwise leave the suite open.
+ */
+@Component
+@Profile("!worker")
+public class SuiteCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(SuiteCoordinator.class);
+
+    private final SuiteTaskQueue queue;
+    private final List<SuiteTaskHandler> handlers;
+
+    @Value("${queue.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${queue.coordinator-interval-ms:5000}")
+    private long intervalMs = 5000;
+
+    private ScheduledExecutorService ticker;
+
+    public SuiteCoordinator(SuiteTaskQueue queue, List<SuiteTaskHandler> handlers) {
+        this.queue = queue;
+        this.handlers = handlers;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "suite-coordinator");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(this::sweep, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    void sweep() {
+        try {
+            for (SuiteTask t : queue.requeueExpired()) {
+                for (SuiteTaskHandler handler : handlers) {
+                    if (handler.suiteType().equals(t.getSuiteType())) {
+                        handler.onTaskFailed(t, queue.readParams(t), t.getLastError());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[QUEUE] Coordinator re-queue of expired leases failed: {}", e.getMessage());
+        }
+        for (SuiteTaskHandler handler : handlers) {
+            try {
+                for (String suiteId : handler.findUnfinishedSuiteIds()) {
+                    // Suites started before the queue existed have no tasks and are left alone
+                    if (!queue.hasTasks(suiteId) || !queue.isSuiteFinished(suiteId)) continue;
+                    boolean anyFailed = queue.hasFailures(suiteId);
+                    log.info("[QUEUE] Coordinator finalising {} suiteId={} anyFailed={}", handler.suiteType(), suiteId, anyFailed);
+                    handler.onSuiteFinished(suiteId, anyFailed);
+                }
+            } catch (Exception e) {
+                log.warn("[QUEUE] Coordinator sweep for {} failed: {}", handler.suiteType(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) ticker.shutdownNow();
+    }
+}
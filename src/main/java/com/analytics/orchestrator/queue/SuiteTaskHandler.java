@@ -0,0 +1,28 @@
+package com.analytics.orchestrator.queue;
+
+import com.analytics.orchestrator.entity.SuiteTask;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Executes queued tasks of one suite type. Implementations must tolerate a task running more than once
+ * (lease expired mid-run, instance restarted) by overwriting rather than duplicating its results.
+ */
+public interface SuiteTaskHandler {
+
+    /** Value of suite_task.suite_type handled here. */
+    String suiteType();
+
+    /** Run one task; throwing makes the queue retry it until max_attempts. */
+    void runTask(SuiteTask task, Map<String, Object> params) throws Exception;
+
+    /** Task failed for good (attempts exhausted or a dependency failed). */
+    void onTaskFailed(SuiteTask task, Map<String, Object> params, String error);
+
+    /** No pending or running tasks remain for the suite. May be called more than once. */
+    void onSuiteFinished(String suiteId, boolean anyFailed);
+
+    /** Suite ids still marked IN_PROGRESS, for the coordinator's sweep. */
+    Collection<String> findUnfinishedSuiteIds();
+}
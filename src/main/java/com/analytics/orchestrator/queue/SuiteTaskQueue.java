@@ -0,0 +1,324 @@
+package com.analytics.orchestrator.queue;
+
+import com.analytics.orchestrator.entity.SuiteTask;
+import com.analytics.orchestrator.repository.SuiteTaskRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * DB-backed work queue of per-API suite tasks (table suite_task). Claiming is a conditional UPDATE, so any
+ * number of instances sharing the database can pull from it; a task whose lease is not renewed becomes
+ * claimable again and is retried up to max_attempts.
+ */
+@Service
+public class SuiteTaskQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(SuiteTaskQueue.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_FAILED = "FAILED";
+
+    public static final String TYPE_VALIDATION = "VALIDATION";
+    public static final String TYPE_COMPARISON = "COMPARISON";
+
+    private static final int MAX_ERROR_CHARS = 1000;
+
+    private static final String SKIP_LOCKED_SELECT =
+            "SELECT id, suite_id, depends_on FROM suite_task "
+                    + "WHERE (status = 'PENDING' AND (not_before IS NULL OR not_before <= ?)) "
+                    + "OR (status = 'RUNNING' AND lease_expires_at < ?) "
+                    + "ORDER BY lane, rank_ms DESC, id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private final SuiteTaskRepository taskRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private volatile Boolean skipLocked;
+
+    /** auto (SKIP LOCKED on MySQL, conditional update elsewhere), skip-locked, or conditional-update. */
+    @Value("${queue.claim-strategy:auto}")
+    private String claimStrategy = "auto";
+
+    @Value("${queue.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${queue.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds = 30;
+
+    public SuiteTaskQueue(SuiteTaskRepository taskRepository, JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager) {
+        this.taskRepository = taskRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /** A task to enqueue: apiId, critical-path rank and same-suite dependencies. */
+    public static class NewTask {
+        final String apiId;
+        final long rankMs;
+        final List<String> dependsOn;
+
+        public NewTask(String apiId, long rankMs, List<String> dependsOn) {
+            this.apiId = apiId;
+            this.rankMs = rankMs;
+            this.dependsOn = dependsOn != null ? dependsOn : List.of();
+        }
+    }
+
+    public List<SuiteTask> enqueue(String suiteId, String suiteType, int lane, Map<String, Object> params, List<NewTask> tasks) {
+        String paramsJson;
+        try {
+            paramsJson = objectMapper.writeValueAsString(params);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Suite params not serializable: " + e.getMessage(), e);
+        }
+        Instant now = Instant.now();
+        List<SuiteTask> rows = tasks.stream().map(t -> SuiteTask.builder()
+                .suiteId(suiteId)
+                .suiteType(suiteType)
+                .apiId(t.apiId)
+                .status(STATUS_PENDING)
+                .lane(lane)
+                .rankMs(t.rankMs)
+                .dependsOn(t.dependsOn.isEmpty() ? null : String.join(",", t.dependsOn))
+                .paramsJson(paramsJson)
+                .attempts(0)
+                .maxAttempts(maxAttempts)
+                .createdAt(now)
+                .updatedAt(now)
+                .build()).collect(Collectors.toList());
+        List<SuiteTask> saved = taskRepository.saveAll(rows);
+        log.info("[QUEUE] Enqueued {} {} task(s) for suiteId={} lane={}", saved.size(), suiteType, suiteId, lane);
+        return saved;
+    }
+
+    /**
+     * Claim up to {@code limit} runnable tasks for {@code owner}. Tasks whose dependencies are not DONE yet are
+     * left in place. On MySQL candidates are locked with SELECT ... FOR UPDATE SKIP LOCKED so concurrent workers
+     * never contend on the same rows; elsewhere (H2) a conditional UPDATE per row gives the same exclusivity.
+     */
+    public List<SuiteTask> claim(String owner, int limit, Duration lease) {
+        if (limit <= 0) return List.of();
+        return useSkipLocked() ? claimSkipLocked(owner, limit, lease) : claimConditional(owner, limit, lease);
+    }
+
+    private List<SuiteTask> claimConditional(String owner, int limit, Duration lease) {
+        Instant now = Instant.now();
+        List<SuiteTask> candidates = taskRepository.findClaimable(now, PageRequest.of(0, limit * 4));
+        Map<String, Map<String, String>> suiteStatuses = new HashMap<>();
+        List<SuiteTask> claimed = new ArrayList<>();
+        for (SuiteTask t : candidates) {
+            if (claimed.size() >= limit) break;
+            if (!dependenciesDone(t.getSuiteId(), t.getDependsOn(), suiteStatuses)) continue;
+            if (taskRepository.tryClaim(t.getId(), owner, now.plus(lease), now) == 1) {
+                taskRepository.findById(t.getId()).ifPresent(claimed::add);
+            }
+        }
+        return claimed;
+    }
+
+    private List<SuiteTask> claimSkipLocked(String owner, int limit, Duration lease) {
+        Instant now = Instant.now();
+        Timestamp ts = Timestamp.from(now);
+        List<Long> ids = transactionTemplate.execute(status -> {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(SKIP_LOCKED_SELECT, ts, ts, limit * 4);
+            Map<String, Map<String, String>> suiteStatuses = new HashMap<>();
+            List<Long> picked = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                if (picked.size() >= limit) break;
+                if (dependenciesDone((String) row.get("suite_id"), (String) row.get("depends_on"), suiteStatuses)) {
+                    picked.add(((Number) row.get("id")).longValue());
+                }
+            }
+            if (picked.isEmpty()) return picked;
+            String in = picked.stream().map(id -> "?").collect(Collectors.joining(","));
+            List<Object> args = new ArrayList<>(List.of(owner, Timestamp.from(now.plus(lease)), ts));
+            args.addAll(picked);
+            jdbcTemplate.update("UPDATE suite_task SET status = 'RUNNING', lease_owner = ?, lease_expires_at = ?, "
+                    + "attempts = attempts + 1, updated_at = ? WHERE id IN (" + in + ")", args.toArray());
+            return picked;
+        });
+        if (ids == null || ids.isEmpty()) return List.of();
+        Map<Long, SuiteTask> byId = taskRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(SuiteTask::getId, t -> t));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private boolean useSkipLocked() {
+        if ("skip-locked".equalsIgnoreCase(claimStrategy)) return true;
+        if ("conditional-update".equalsIgnoreCase(claimStrategy)) return false;
+        if (skipLocked == null) {
+            skipLocked = isMySQL();
+            log.info("[QUEUE] Claim strategy: {}", skipLocked ? "SELECT ... FOR UPDATE SKIP LOCKED" : "conditional update");
+        }
+        return skipLocked;
+    }
+
+    private boolean isMySQL() {
+        try {
+            DataSource ds = jdbcTemplate.getDataSource();
+            if (ds == null) return false;
+            try (java.sql.Connection conn = ds.getConnection()) {
+                return conn.getMetaData().getURL().contains("mysql");
+            }
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private boolean dependenciesDone(String suiteId, String dependsOn, Map<String, Map<String, String>> suiteStatuses) {
+        List<String> deps = splitDeps(dependsOn);
+        if (deps.isEmpty()) return true;
+        Map<String, String> statuses = suiteStatuses.computeIfAbsent(suiteId, id ->
+                taskRepository.findBySuiteIdOrderByIdAsc(id).stream()
+                        .collect(Collectors.toMap(SuiteTask::getApiId, SuiteTask::getStatus, (a, b) -> a)));
+        return deps.stream().allMatch(d -> !statuses.containsKey(d) || STATUS_DONE.equals(statuses.get(d)));
+    }
+
+    public void renew(Collection<Long> ids, String owner, Duration lease) {
+        if (ids.isEmpty()) return;
+        Instant now = Instant.now();
+        int renewed = taskRepository.renewLeases(ids, owner, now.plus(lease), now);
+        if (renewed < ids.size()) {
+            log.warn("[QUEUE] Renewed {}/{} lease(s) for {} - some were lost to another worker", renewed, ids.size(), owner);
+        }
+    }
+
+    public void release(Collection<Long> ids, String owner) {
+        if (ids.isEmpty()) return;
+        int released = taskRepository.releaseLeases(ids, owner, Instant.now());
+        log.info("[QUEUE] Released {} in-flight task(s) held by {}", released, owner);
+    }
+
+    public boolean complete(SuiteTask task, String owner) {
+        int updated = taskRepository.finish(task.getId(), owner, STATUS_DONE, null, null, Instant.now());
+        if (updated == 0) {
+            log.warn("[QUEUE] Lease lost before completing task id={} apiId={} - another worker owns it", task.getId(), task.getApiId());
+        }
+        return updated == 1;
+    }
+
+    /**
+     * Record a failed attempt. Returns the tasks that are now terminally FAILED: the task itself once attempts
+     * are exhausted, plus every pending task that (transitively) depends on it.
+     */
+    public List<SuiteTask> fail(SuiteTask task, String owner, String error) {
+        String err = truncate(error);
+        int attempts = task.getAttempts() != null ? task.getAttempts() : 1;
+        int max = task.getMaxAttempts() != null ? task.getMaxAttempts() : maxAttempts;
+        Instant now = Instant.now();
+        if (attempts < max) {
+            Instant notBefore = now.plusSeconds(retryBackoffSeconds * attempts);
+            taskRepository.finish(task.getId(), owner, STATUS_PENDING, err, notBefore, now);
+            log.info("[QUEUE] Task id={} apiId={} attempt {}/{} failed, retry after {} | {}",
+                    task.getId(), task.getApiId(), attempts, max, notBefore, err);
+            return List.of();
+        }
+        if (taskRepository.finish(task.getId(), owner, STATUS_FAILED, err, null, now) == 0) return List.of();
+        log.warn("[QUEUE] Task id={} apiId={} FAILED after {} attempt(s): {}", task.getId(), task.getApiId(), attempts, err);
+        task.setStatus(STATUS_FAILED);
+        task.setLastError(err);
+        List<SuiteTask> failed = new ArrayList<>();
+        failed.add(task);
+        skipDependents(task, failed);
+        return failed;
+    }
+
+    /**
+     * Hands tasks whose lease expired back to PENDING, or fails them once they have used max_attempts (the attempt
+     * was charged when they were claimed). Returns the tasks now terminally FAILED with their skipped dependents,
+     * as {@link #fail} does.
+     */
+    public List<SuiteTask> requeueExpired() {
+        Instant now = Instant.now();
+        List<SuiteTask> failed = new ArrayList<>();
+        for (SuiteTask t : taskRepository.findExpiredLeases(now)) {
+            int attempts = t.getAttempts() != null ? t.getAttempts() : 1;
+            int max = t.getMaxAttempts() != null ? t.getMaxAttempts() : maxAttempts;
+            boolean exhausted = attempts >= max;
+            String err = truncate("Lease of " + t.getLeaseOwner() + " expired" + (exhausted ? " after " + attempts + " attempt(s)" : ""));
+            if (taskRepository.expireLease(t.getId(), exhausted ? STATUS_FAILED : STATUS_PENDING, err, now) == 0) continue;
+            if (!exhausted) {
+                log.info("[QUEUE] Task id={} apiId={} attempt {}/{} lost its lease, re-queued | {}",
+                        t.getId(), t.getApiId(), attempts, max, err);
+                continue;
+            }
+            log.warn("[QUEUE] Task id={} apiId={} FAILED after {} attempt(s): {}", t.getId(), t.getApiId(), attempts, err);
+            t.setStatus(STATUS_FAILED);
+            t.setLastError(err);
+            failed.add(t);
+            skipDependents(t, failed);
+        }
+        return failed;
+    }
+
+    private void skipDependents(SuiteTask failedTask, List<SuiteTask> out) {
+        List<SuiteTask> suite = taskRepository.findBySuiteIdOrderByIdAsc(failedTask.getSuiteId());
+        Deque<String> failedApis = new ArrayDeque<>(List.of(failedTask.getApiId()));
+        while (!failedApis.isEmpty()) {
+            String failedApi = failedApis.poll();
+            for (SuiteTask t : suite) {
+                if (!STATUS_PENDING.equals(t.getStatus()) || !splitDeps(t.getDependsOn()).contains(failedApi)) continue;
+                t.setStatus(STATUS_FAILED);
+                t.setLastError("Skipped: dependency " + failedApi + " failed");
+                t.setUpdatedAt(Instant.now());
+                taskRepository.save(t);
+                out.add(t);
+                failedApis.add(t.getApiId());
+            }
+        }
+    }
+
+    public boolean hasTasks(String suiteId) {
+        return taskRepository.countBySuiteId(suiteId) > 0;
+    }
+
+    public boolean isSuiteFinished(String suiteId) {
+        return taskRepository.countBySuiteIdAndStatusIn(suiteId, List.of(STATUS_PENDING, STATUS_RUNNING)) == 0;
+    }
+
+    public boolean hasFailures(String suiteId) {
+        return taskRepository.countBySuiteIdAndStatusIn(suiteId, List.of(STATUS_FAILED)) > 0;
+    }
+
+    public long countUnfinished() {
+        return taskRepository.countByStatusIn(List.of(STATUS_PENDING, STATUS_RUNNING));
+    }
+
+    public Map<String, Object> readParams(SuiteTask task) {
+        if (task.getParamsJson() == null) return Map.of();
+        try {
+            return objectMapper.readValue(task.getParamsJson(), new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException("Corrupt params_json on task " + task.getId(), e);
+        }
+    }
+
+    private static List<String> splitDeps(String dependsOn) {
+        if (dependsOn == null || dependsOn.isBlank()) return List.of();
+        return Arrays.stream(dependsOn.split(",")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList());
+    }
+
+    private static String truncate(String s) {
+        if (s == null) return null;
+        return s.length() <= MAX_ERROR_CHARS ? s : s.substring(0, MAX_ERROR_CHARS) + "...";
+    }
+}
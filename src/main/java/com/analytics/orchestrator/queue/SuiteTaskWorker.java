@@ -0,0 +1,177 @@
+package com.analytics.orchestrator.queue;
+
+import com.analytics.orchestrator.entity.SuiteTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pulls suite tasks from {@link SuiteTaskQueue} and runs them on a local pool. Leases of in-flight tasks are
+ * renewed by a heartbeat; on startup, tasks left PENDING or with expired leases (instance died mid-suite)
+ * are simply claimed again. On graceful shutdown in-flight tasks are handed back without losing an attempt.
+ */
+@Component
+public class SuiteTaskWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(SuiteTaskWorker.class);
+
+    private final SuiteTaskQueue queue;
+    private final Map<String, SuiteTaskHandler> handlers = new HashMap<>();
+    private final Map<Long, SuiteTask> inFlight = new ConcurrentHashMap<>();
+    private final String owner;
+
+    @Value("${queue.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${queue.worker-threads:4}")
+    private int workerThreads = 4;
+
+    @Value("${queue.poll-interval-ms:1000}")
+    private long pollIntervalMs = 1000;
+
+    @Value("${queue.lease-seconds:120}")
+    private long leaseSeconds = 120;
+
+    /** false on dedicated workers: the coordinator (SuiteCoordinator) finalises suites instead. */
+    @Value("${queue.finalize-suites:true}")
+    private boolean finalizeSuites = true;
+
+    private ScheduledExecutorService ticker;
+    private ExecutorService pool;
+
+    public SuiteTaskWorker(SuiteTaskQueue queue, List<SuiteTaskHandler> handlerList) {
+        this.queue = queue;
+        for (SuiteTaskHandler h : handlerList) handlers.put(h.suiteType(), h);
+        this.owner = hostName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("[QUEUE] Worker disabled (queue.enabled=false)");
+            return;
+        }
+        AtomicInteger n = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(Math.max(1, workerThreads), r -> {
+            Thread t = new Thread(r, "suite-task-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ticker = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "suite-task-ticker");
+            t.setDaemon(true);
+            return t;
+        });
+        long heartbeatMs = Math.max(1000, leaseSeconds * 1000 / 3);
+        ticker.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        ticker.scheduleAtFixedRate(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        try {
+            log.info("[QUEUE] Worker {} started | threads={} lease={}s | {} unfinished task(s) to resume",
+                    owner, workerThreads, leaseSeconds, queue.countUnfinished());
+        } catch (Exception e) {
+            log.info("[QUEUE] Worker {} started | threads={} lease={}s", owner, workerThreads, leaseSeconds);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    void poll() {
+        try {
+            int free = workerThreads - inFlight.size();
+            for (SuiteTask task : queue.claim(owner, free, Duration.ofSeconds(leaseSeconds))) {
+                inFlight.put(task.getId(), task);
+                pool.execute(() -> run(task));
+            }
+        } catch (Exception e) {
+            log.warn("[QUEUE] Poll failed: {}", e.getMessage());
+        }
+    }
+
+    void heartbeat() {
+        try {
+            queue.renew(new ArrayList<>(inFlight.keySet()), owner, Duration.ofSeconds(leaseSeconds));
+        } catch (Exception e) {
+            log.warn("[QUEUE] Heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    void run(SuiteTask task) {
+        SuiteTaskHandler handler = handlers.get(task.getSuiteType());
+        try {
+            if (handler == null) {
+                failed(task, "No handler for suite type " + task.getSuiteType());
+                return;
+            }
+            if (task.getMaxAttempts() != null && task.getAttempts() != null && task.getAttempts() > task.getMaxAttempts()) {
+                // Reclaimed after its lease expired once too often
+                failed(task, "Lease expired after " + task.getMaxAttempts() + " attempt(s): " + task.getLastError());
+                return;
+            }
+            log.info("[QUEUE] Running {} task id={} suiteId={} apiId={} attempt={}",
+                    task.getSuiteType(), task.getId(), task.getSuiteId(), task.getApiId(), task.getAttempts());
+            try {
+                handler.runTask(task, queue.readParams(task));
+                queue.complete(task, owner);
+            } catch (Exception e) {
+                failed(task, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            }
+        } finally {
+            inFlight.remove(task.getId());
+        }
+        try {
+            if (finalizeSuites && handler != null && queue.isSuiteFinished(task.getSuiteId())) {
+                handler.onSuiteFinished(task.getSuiteId(), queue.hasFailures(task.getSuiteId()));
+            }
+        } catch (Exception e) {
+            log.error("[QUEUE] Finishing suiteId={} failed: {}", task.getSuiteId(), e.getMessage(), e);
+        }
+    }
+
+    private void failed(SuiteTask task, String error) {
+        for (SuiteTask t : queue.fail(task, owner, error)) {
+            SuiteTaskHandler h = handlers.get(t.getSuiteType());
+            if (h == null) continue;
+            try {
+                h.onTaskFailed(t, queue.readParams(t), t.getLastError());
+            } catch (Exception e) {
+                log.error("[QUEUE] onTaskFailed for task id={} failed: {}", t.getId(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker == null) return;
+        ticker.shutdownNow();
+        try {
+            queue.release(new ArrayList<>(inFlight.keySet()), owner);
+        } catch (Exception e) {
+            log.warn("[QUEUE] Could not release in-flight tasks (leases will expire): {}", e.getMessage());
+        }
+        pool.shutdownNow();
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown-host";
+        }
+    }
+}
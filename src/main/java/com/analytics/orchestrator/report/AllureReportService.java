@@ -2,63 +2,142 @@ package com.analytics.orchestrator.report;
 
 import com.analytics.orchestrator.entity.Execution;
 import com.analytics.orchestrator.entity.ExecutionResult;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 /**
- * Generates Allure report from test execution results.
+ * Generates the execution report in-process. Each execution gets its own directories, so concurrent executions
+ * never touch each other's files:
+ * <ul>
+ *   <li>target/allure-results/{executionId}: Allure result JSON and attachments, for {@code allure generate}</li>
+ *   <li>target/reports/{executionId}: index.html, summary.json and the attachments, served at /reports/{executionId}/</li>
+ * </ul>
+ * Result and summary JSON are streamed with a JsonGenerator, attachments are written on a small pool and
+ * linked (not copied) into the report. Only the newest {@code orchestrator.report.keep-executions} reports are kept.
  */
 @Service
 public class AllureReportService {
 
     private static final Logger log = LoggerFactory.getLogger(AllureReportService.class);
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final int MAX_ATTACHMENT_CHARS = 5000;
+    private static final Pattern EXECUTION_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
 
-    private Path projectBaseDir;
+    private final Path resultsRoot;
+    private final Path reportsRoot;
+
+    @Value("${orchestrator.report.keep-executions:50}")
+    private int keepExecutions = 50;
+
+    @Value("${orchestrator.report.attachment-threads:4}")
+    private int attachmentThreads = 4;
+
+    private ExecutorService attachmentPool;
 
     public AllureReportService() {
-        this.projectBaseDir = Paths.get(System.getProperty("user.dir", "."));
+        this(Paths.get(System.getProperty("user.dir", ".")).resolve("target"));
+    }
+
+    AllureReportService(Path targetDir) {
+        this.resultsRoot = targetDir.resolve("allure-results");
+        this.reportsRoot = targetDir.resolve("reports");
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger n = new AtomicInteger();
+        attachmentPool = Executors.newFixedThreadPool(Math.max(1, attachmentThreads), r -> {
+            Thread t = new Thread(r, "report-attachments-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (attachmentPool != null) attachmentPool.shutdownNow();
     }
 
     /**
-     * Write Allure results and generate HTML report. Returns path to report directory.
+     * Write Allure results and the HTML report for one execution. Returns the report directory. Re-generating an
+     * execution replaces only that execution's report.
      */
-    public Path generateReport(Execution execution, List<ExecutionResult> results) throws IOException, InterruptedException {
-        Path resultsDir = projectBaseDir.resolve("target").resolve("allure-results");
-        Path reportDir = projectBaseDir.resolve("target").resolve("site").resolve("allure-maven-plugin");
-
-        Files.createDirectories(resultsDir);
-        clearOldResults(resultsDir);
-        writeAllureResults(resultsDir, execution, results);
-        runAllureGenerate(resultsDir, reportDir, execution, results);
+    public Path generateReport(Execution execution, List<ExecutionResult> results) throws IOException {
+        long t0 = System.currentTimeMillis();
+        String executionId = execution.getExecutionId();
+        Path resultsDir = recreate(resultsRoot.resolve(requireValidId(executionId)));
+        Path reportDir = recreate(getReportDir(executionId));
+        Path attachmentsDir = Files.createDirectories(reportDir.resolve("attachments"));
+
+        List<ReportEntry> entries = writeAllureResults(resultsDir, attachmentsDir, execution, results);
+        writeSummaryJson(reportDir.resolve("summary.json"), execution, entries);
+        writeHtmlReport(reportDir.resolve("index.html"), execution, entries);
+        pruneOldReports();
+        log.info("Report for execution {} ({} result(s)) generated at {} in {}ms",
+                executionId, results.size(), reportDir, System.currentTimeMillis() - t0);
         return reportDir;
     }
 
-    /**
-     * Get the report directory path (for serving at /reports/ and zipping).
-     */
-    public Path getReportDir() {
-        return projectBaseDir.resolve("target").resolve("site").resolve("allure-maven-plugin");
+    public Path getReportsRoot() {
+        return reportsRoot;
+    }
+
+    /** Report directory of one execution (may not exist yet). */
+    public Path getReportDir(String executionId) {
+        return reportsRoot.resolve(requireValidId(executionId));
+    }
+
+    /** Execution id of the most recently generated report, or null when there is none. */
+    public String latestExecutionId() throws IOException {
+        List<Path> reports = listReports();
+        return reports.isEmpty() ? null : reports.get(0).getFileName().toString();
+    }
+
+    public static boolean isValidExecutionId(String executionId) {
+        return executionId != null && EXECUTION_ID.matcher(executionId).matches();
     }
 
     /**
-     * Create a zip of the report directory for email attachment.
+     * Streams the report directory into a temp zip (the caller deletes it). Returns null, and leaves no file, as
+     * soon as the zip grows past maxBytes, so an oversized report is never fully compressed or held in memory.
      */
-    public Path zipReport(Path reportDir) throws IOException {
-        Path zipPath = reportDir.getParent().resolve("allure-report-" + System.currentTimeMillis() + ".zip");
-        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipPath))) {
+    public Path zipReport(Path reportDir, int compressionLevel, long maxBytes) throws IOException {
+        Path zipPath = Files.createTempFile("allure-report-" + reportDir.getFileName() + "-", ".zip");
+        // The file stream is closed even when closing the zip fails on the exceeded budget
+        try (OutputStream file = Files.newOutputStream(zipPath);
+             ZipOutputStream zos = new ZipOutputStream(new BudgetedOutputStream(new BufferedOutputStream(file), maxBytes))) {
+            zos.setLevel(compressionLevel);
             Files.walkFileTree(reportDir, new SimpleFileVisitor<>() {
                 @Override
                 public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
@@ -69,125 +148,313 @@ public class AllureReportService {
                     return FileVisitResult.CONTINUE;
                 }
             });
+        } catch (BudgetExceededException e) {
+            Files.deleteIfExists(zipPath);
+            log.info("Report zip for {} exceeds {} bytes", reportDir.getFileName(), maxBytes);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(zipPath);
+            throw e;
         }
         return zipPath;
     }
 
-    private void writeAllureResults(Path resultsDir, Execution execution, List<ExecutionResult> results) throws IOException {
+    private List<ReportEntry> writeAllureResults(Path resultsDir, Path attachmentsDir, Execution execution,
+                                                 List<ExecutionResult> results) throws IOException {
+        List<ReportEntry> entries = new ArrayList<>(results.size());
+        List<Future<?>> attachmentWrites = new ArrayList<>();
         for (ExecutionResult r : results) {
-            String uuid = UUID.randomUUID().toString();
-            ObjectNode result = objectMapper.createObjectNode();
-            result.put("uuid", uuid);
-            result.put("name", r.getApiId() + " - " + r.getDataProviderLabel());
-            result.put("fullName", execution.getExecutionId() + ":" + r.getApiId() + ":" + r.getDataProviderLabel());
-            result.put("historyId", r.getApiId() + ":" + r.getDataProviderLabel());
-            result.put("status", "PASS".equals(r.getStatus()) ? "passed" : "failed");
-            result.put("start", r.getExecutedAt() != null ? r.getExecutedAt().toEpochMilli() : System.currentTimeMillis());
-            result.put("stop", r.getExecutedAt() != null ? r.getExecutedAt().toEpochMilli() + (r.getDurationMs() != null ? r.getDurationMs() : 0) : System.currentTimeMillis());
-
-            ArrayNode labels = result.putArray("labels");
-            labels.addObject().put("name", "suite").put("value", execution.getApiGroup());
-            labels.addObject().put("name", "story").put("value", r.getApiId());
-            labels.addObject().put("name", "tag").put("value", execution.getClient());
-
-            ArrayNode steps = result.putArray("steps");
-            ObjectNode step = steps.addObject();
-            step.put("name", "API Call " + r.getApiId());
-            step.put("status", "PASS".equals(r.getStatus()) ? "passed" : "failed");
-            step.put("start", r.getExecutedAt() != null ? r.getExecutedAt().toEpochMilli() : 0);
-            step.put("stop", r.getExecutedAt() != null ? r.getExecutedAt().toEpochMilli() + (r.getDurationMs() != null ? r.getDurationMs() : 0) : 0);
-            if (r.getErrorMessage() != null) {
-                step.set("statusDetails", objectMapper.createObjectNode().put("message", r.getErrorMessage()));
-            }
-
-            ArrayNode attachments = result.putArray("attachments");
+            ReportEntry e = new ReportEntry(r);
             if (r.getRequestPayload() != null && !r.getRequestPayload().isEmpty()) {
-                String attId = UUID.randomUUID().toString();
-                attachments.addObject().put("name", "Request").put("source", attId).put("type", "application/json");
-                Files.writeString(resultsDir.resolve(attId + "-attachment.txt"), truncate(r.getRequestPayload(), 5000));
+                e.requestAttachment = UUID.randomUUID().toString();
+                attachmentWrites.add(writeAttachment(resultsDir, attachmentsDir, e.requestAttachment, r.getRequestPayload()));
             }
             if (r.getResponsePayload() != null && !r.getResponsePayload().isEmpty()) {
-                String attId = UUID.randomUUID().toString();
-                attachments.addObject().put("name", "Response").put("source", attId).put("type", "application/json");
-                Files.writeString(resultsDir.resolve(attId + "-attachment.txt"), truncate(r.getResponsePayload(), 5000));
+                e.responseAttachment = UUID.randomUUID().toString();
+                attachmentWrites.add(writeAttachment(resultsDir, attachmentsDir, e.responseAttachment, r.getResponsePayload()));
+            }
+            writeResultJson(resultsDir, execution, e);
+            entries.add(e);
+        }
+        for (Future<?> f : attachmentWrites) {
+            try {
+                f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing report attachments", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause() instanceof UncheckedIOException ? ex.getCause().getCause() : ex.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
             }
-
-            Files.writeString(resultsDir.resolve(uuid + "-result.json"), objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(result));
         }
         log.info("Wrote {} Allure result(s) to {}", results.size(), resultsDir);
+        return entries;
+    }
+
+    /** Writes the Allure attachment and links it into the report's attachments directory. */
+    private Future<?> writeAttachment(Path resultsDir, Path attachmentsDir, String id, String payload) {
+        return attachmentPool.submit(() -> {
+            try {
+                Path source = resultsDir.resolve(id + "-attachment.json");
+                Files.writeString(source, truncate(payload, MAX_ATTACHMENT_CHARS), StandardCharsets.UTF_8);
+                Path target = attachmentsDir.resolve(id + ".json");
+                try {
+                    Files.createLink(target, source);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(source, target);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
-    private void runAllureGenerate(Path resultsDir, Path reportDir, Execution execution, List<ExecutionResult> results) throws IOException, InterruptedException {
-        ProcessBuilder pb = new ProcessBuilder("mvn", "allure:report", "-q");
-        pb.directory(projectBaseDir.toFile());
-        pb.redirectErrorStream(true);
+    private void writeResultJson(Path resultsDir, Execution execution, ReportEntry e) throws IOException {
+        String uuid = UUID.randomUUID().toString();
+        String status = e.passed() ? "passed" : "failed";
+        try (JsonGenerator g = jsonFactory.createGenerator(Files.newBufferedWriter(resultsDir.resolve(uuid + "-result.json")))) {
+            g.writeStartObject();
+            g.writeStringField("uuid", uuid);
+            g.writeStringField("name", e.apiId + " - " + e.label);
+            g.writeStringField("fullName", execution.getExecutionId() + ":" + e.apiId + ":" + e.label);
+            g.writeStringField("historyId", e.apiId + ":" + e.label);
+            g.writeStringField("status", status);
+            g.writeNumberField("start", e.start);
+            g.writeNumberField("stop", e.stop);
 
-        Process process = pb.start();
-        int exitCode = process.waitFor();
+            g.writeArrayFieldStart("labels");
+            writeLabel(g, "suite", execution.getApiGroup());
+            writeLabel(g, "story", e.apiId);
+            writeLabel(g, "tag", execution.getClient());
+            g.writeEndArray();
 
-        if (exitCode != 0) {
-            String output = new String(process.getInputStream().readAllBytes());
-            log.warn("Allure Maven plugin failed ({}), using fallback HTML report: {}", exitCode, output.length() > 100 ? output.substring(0, 100) + "..." : output);
-            createFallbackHtmlReport(reportDir, execution, results, "HTML report generated. For full Allure report run: mvn allure:report");
+            g.writeArrayFieldStart("steps");
+            g.writeStartObject();
+            g.writeStringField("name", "API Call " + e.apiId);
+            g.writeStringField("status", status);
+            g.writeNumberField("start", e.start);
+            g.writeNumberField("stop", e.stop);
+            if (e.error != null) {
+                g.writeObjectFieldStart("statusDetails");
+                g.writeStringField("message", e.error);
+                g.writeEndObject();
+            }
+            g.writeEndObject();
+            g.writeEndArray();
+
+            g.writeArrayFieldStart("attachments");
+            if (e.requestAttachment != null) writeAttachmentRef(g, "Request", e.requestAttachment);
+            if (e.responseAttachment != null) writeAttachmentRef(g, "Response", e.responseAttachment);
+            g.writeEndArray();
+            g.writeEndObject();
         }
-        log.info("Report generated at {}", reportDir);
     }
 
-    private void createFallbackHtmlReport(Path reportDir, Execution execution, List<ExecutionResult> results, String message) throws IOException {
-        int passed = execution.getPassedTests() != null ? execution.getPassedTests() : 0;
-        int failed = execution.getFailedTests() != null ? execution.getFailedTests() : 0;
+    private static void writeLabel(JsonGenerator g, String name, String value) throws IOException {
+        g.writeStartObject();
+        g.writeStringField("name", name);
+        g.writeStringField("value", value);
+        g.writeEndObject();
+    }
+
+    private static void writeAttachmentRef(JsonGenerator g, String name, String id) throws IOException {
+        g.writeStartObject();
+        g.writeStringField("name", name);
+        g.writeStringField("source", id + "-attachment.json");
+        g.writeStringField("type", "application/json");
+        g.writeEndObject();
+    }
+
+    private void writeSummaryJson(Path file, Execution execution, List<ReportEntry> entries) throws IOException {
+        try (JsonGenerator g = jsonFactory.createGenerator(Files.newBufferedWriter(file)).useDefaultPrettyPrinter()) {
+            g.writeStartObject();
+            g.writeStringField("executionId", execution.getExecutionId());
+            g.writeStringField("client", execution.getClient());
+            g.writeStringField("environment", execution.getEnvironment());
+            g.writeStringField("apiGroup", execution.getApiGroup());
+            g.writeStringField("status", execution.getStatus());
+            g.writeStringField("generatedAt", Instant.now().toString());
+            g.writeNumberField("total", entries.size());
+            g.writeNumberField("passed", entries.stream().filter(ReportEntry::passed).count());
+            g.writeNumberField("failed", entries.stream().filter(e -> !e.passed()).count());
+            g.writeArrayFieldStart("results");
+            for (ReportEntry e : entries) {
+                g.writeStartObject();
+                g.writeStringField("apiId", e.apiId);
+                g.writeStringField("label", e.label);
+                g.writeStringField("status", e.status);
+                if (e.httpStatus != null) g.writeNumberField("httpStatus", e.httpStatus);
+                if (e.durationMs != null) g.writeNumberField("durationMs", e.durationMs);
+                if (e.error != null) g.writeStringField("error", e.error);
+                if (e.requestAttachment != null) g.writeStringField("request", "attachments/" + e.requestAttachment + ".json");
+                if (e.responseAttachment != null) g.writeStringField("response", "attachments/" + e.responseAttachment + ".json");
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+    }
+
+    private void writeHtmlReport(Path file, Execution execution, List<ReportEntry> entries) throws IOException {
+        long passed = entries.stream().filter(ReportEntry::passed).count();
+        long failed = entries.size() - passed;
         String css = "* { box-sizing: border-box; } body { font-family: 'Segoe UI', system-ui, -apple-system, sans-serif; margin: 0; background: linear-gradient(135deg, #0f172a 0%, #1e293b 100%); min-height: 100vh; color: #e2e8f0; padding: 2rem; } " +
             ".container { max-width: 960px; margin: 0 auto; } " +
             "h1 { font-size: 1.75rem; font-weight: 700; margin: 0 0 1rem; background: linear-gradient(90deg, #38bdf8, #818cf8); -webkit-background-clip: text; -webkit-text-fill-color: transparent; } " +
             ".meta { display: flex; gap: 1.5rem; flex-wrap: wrap; margin-bottom: 1.5rem; font-size: 0.875rem; color: #94a3b8; } .meta span { padding: 0.25rem 0.5rem; background: rgba(255,255,255,0.05); border-radius: 6px; } " +
             ".badge { display: inline-block; padding: 0.25rem 0.6rem; border-radius: 9999px; font-size: 0.75rem; font-weight: 600; } " +
             ".badge-pass { background: rgba(34, 197, 94, 0.2); color: #4ade80; } .badge-fail { background: rgba(239, 68, 68, 0.2); color: #f87171; } " +
-            ".message { background: rgba(255,255,255,0.05); border-radius: 8px; padding: 1rem; margin-bottom: 1.5rem; font-size: 0.9rem; color: #cbd5e1; } " +
             "table { width: 100%; border-collapse: collapse; background: rgba(255,255,255,0.03); border-radius: 12px; overflow: hidden; } " +
             "th { font-size: 0.75rem; font-weight: 600; text-transform: uppercase; letter-spacing: 0.05em; color: #94a3b8; padding: 1rem 1.25rem; text-align: left; background: rgba(255,255,255,0.05); } " +
             "td { padding: 1rem 1.25rem; border-top: 1px solid rgba(255,255,255,0.06); } tr:hover { background: rgba(255,255,255,0.03); } " +
+            "a { color: #38bdf8; margin-right: 0.75rem; } .error { color: #f87171; font-size: 0.8rem; margin-top: 0.35rem; } " +
             ".duration { font-variant-numeric: tabular-nums; color: #64748b; }";
-        StringBuilder sb = new StringBuilder();
-        sb.append("<!DOCTYPE html><html><head><meta charset=\"UTF-8\"><title>Analytics API Test Report</title><style>").append(css).append("</style></head><body><div class=\"container\">");
-        sb.append("<h1>Analytics API Test Report</h1>");
-        sb.append("<div class=\"meta\">");
-        sb.append("<span>Execution: ").append(execution.getExecutionId()).append("</span>");
-        sb.append("<span>Client: ").append(execution.getClient()).append("</span>");
-        sb.append("<span>Passed: ").append(passed).append("</span>");
-        sb.append("<span>Failed: ").append(failed).append("</span>");
-        sb.append("</div>");
-        sb.append("<div class=\"message\">").append(escapeHtml(message)).append("</div>");
-        sb.append("<table><thead><tr><th>API</th><th>Label</th><th>Status</th><th>HTTP</th><th>Duration</th></tr></thead><tbody>");
-        for (ExecutionResult r : results) {
-            String badgeClass = "PASS".equals(r.getStatus()) ? "badge-pass" : "badge-fail";
-            sb.append("<tr><td>").append(escapeHtml(r.getApiId())).append("</td><td>").append(escapeHtml(r.getDataProviderLabel())).append("</td><td><span class=\"badge ").append(badgeClass).append("\">").append(r.getStatus()).append("</span></td><td>").append(r.getHttpStatus()).append("</td><td class=\"duration\">").append(r.getDurationMs()).append(" ms</td></tr>");
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("<!DOCTYPE html><html><head><meta charset=\"UTF-8\"><title>Analytics API Test Report</title><style>");
+            w.write(css);
+            w.write("</style></head><body><div class=\"container\"><h1>Analytics API Test Report</h1><div class=\"meta\">");
+            w.write("<span>Execution: " + escapeHtml(execution.getExecutionId()) + "</span>");
+            w.write("<span>Client: " + escapeHtml(execution.getClient()) + "</span>");
+            w.write("<span>Status: " + escapeHtml(execution.getStatus()) + "</span>");
+            w.write("<span>Passed: " + passed + "</span>");
+            w.write("<span>Failed: " + failed + "</span>");
+            w.write("<span><a href=\"summary.json\">summary.json</a></span>");
+            w.write("</div><table><thead><tr><th>API</th><th>Label</th><th>Status</th><th>HTTP</th><th>Duration</th><th>Payloads</th></tr></thead><tbody>");
+            for (ReportEntry e : entries) {
+                w.write("<tr><td>" + escapeHtml(e.apiId));
+                if (e.error != null) w.write("<div class=\"error\">" + escapeHtml(e.error) + "</div>");
+                w.write("</td><td>" + escapeHtml(e.label) + "</td><td><span class=\"badge "
+                        + (e.passed() ? "badge-pass" : "badge-fail") + "\">" + escapeHtml(e.status) + "</span></td><td>"
+                        + (e.httpStatus != null ? e.httpStatus : "") + "</td><td class=\"duration\">"
+                        + (e.durationMs != null ? e.durationMs + " ms" : "") + "</td><td>");
+                if (e.requestAttachment != null) w.write("<a href=\"attachments/" + e.requestAttachment + ".json\">request</a>");
+                if (e.responseAttachment != null) w.write("<a href=\"attachments/" + e.responseAttachment + ".json\">response</a>");
+                w.write("</td></tr>");
+            }
+            w.write("</tbody></table></div></body></html>");
         }
-        sb.append("</tbody></table></div></body></html>");
-        Files.createDirectories(reportDir);
-        Files.writeString(reportDir.resolve("index.html"), sb.toString());
     }
 
-    private String escapeHtml(String s) {
-        if (s == null) return "";
-        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    /** Keeps the newest keep-executions reports (and their Allure results). */
+    private synchronized void pruneOldReports() {
+        try {
+            List<Path> reports = listReports();
+            for (Path old : reports.subList(Math.min(keepExecutions, reports.size()), reports.size())) {
+                deleteRecursively(old);
+                deleteRecursively(resultsRoot.resolve(old.getFileName().toString()));
+            }
+        } catch (IOException e) {
+            log.warn("Failed to prune old reports in {}: {}", reportsRoot, e.getMessage());
+        }
+    }
+
+    /** Report directories that have an index.html, newest first. */
+    private List<Path> listReports() throws IOException {
+        if (!Files.isDirectory(reportsRoot)) return List.of();
+        try (Stream<Path> dirs = Files.list(reportsRoot)) {
+            return dirs.filter(d -> Files.isRegularFile(d.resolve("index.html")))
+                    .sorted(Comparator.comparingLong(AllureReportService::lastModifiedMillis).reversed())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long lastModifiedMillis(Path reportDir) {
+        try {
+            return Files.getLastModifiedTime(reportDir.resolve("index.html")).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static Path recreate(Path dir) throws IOException {
+        deleteRecursively(dir);
+        return Files.createDirectories(dir);
     }
 
-    private void clearOldResults(Path resultsDir) throws IOException {
-        if (Files.exists(resultsDir)) {
-            try (var stream = Files.list(resultsDir)) {
-                stream.forEach(f -> {
-                    try {
-                        Files.delete(f);
-                    } catch (IOException e) {
-                        log.warn("Failed to delete old result {}: {}", f, e.getMessage());
-                    }
-                });
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(p);
             }
         }
     }
 
+    private static String requireValidId(String executionId) {
+        if (!isValidExecutionId(executionId)) throw new IllegalArgumentException("Invalid execution id: " + executionId);
+        return executionId;
+    }
+
+    private String escapeHtml(String s) {
+        if (s == null) return "";
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
     private String truncate(String s, int maxLen) {
         if (s == null) return "";
         return s.length() <= maxLen ? s : s.substring(0, maxLen) + "\n...[truncated]";
     }
+
+    private static final class BudgetExceededException extends IOException {
+        BudgetExceededException() {
+            super("size budget exceeded");
+        }
+    }
+
+    /** Fails the write that would take the stream past maxBytes. */
+    private static final class BudgetedOutputStream extends FilterOutputStream {
+        private final long maxBytes;
+        private long written;
+
+        BudgetedOutputStream(OutputStream out, long maxBytes) {
+            super(out);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            count(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count(len);
+            out.write(b, off, len);
+        }
+
+        private void count(int len) throws IOException {
+            written += len;
+            if (written > maxBytes) throw new BudgetExceededException();
+        }
+    }
+
+    /** One execution result as shown in the report. */
+    private static final class ReportEntry {
+        final String apiId;
+        final String label;
+        final String status;
+        final Integer httpStatus;
+        final Long durationMs;
+        final String error;
+        final long start;
+        final long stop;
+        String requestAttachment;
+        String responseAttachment;
+
+        ReportEntry(ExecutionResult r) {
+            this.apiId = r.getApiId();
+            this.label = r.getDataProviderLabel();
+            this.status = r.getStatus();
+            this.httpStatus = r.getHttpStatus();
+            this.durationMs = r.getDurationMs();
+            this.error = r.getErrorMessage();
+            this.start = r.getExecutedAt() != null ? r.getExecutedAt().toEpochMilli() : System.currentTimeMillis();
+            this.stop = start + (durationMs != null ? durationMs : 0);
+        }
+
+        boolean passed() {
+            return "PASS".equals(status);
+        }
+    }
 }
@@ -1,85 +1,197 @@
 package com.analytics.orchestrator.report;
 
-import com.amazonaws.regions.Regions;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailService;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClientBuilder;
 import com.amazonaws.services.simpleemail.model.RawMessage;
 import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.mail.Message;
+import javax.mail.MessagingException;
 import javax.mail.Session;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Properties;
 
 /**
- * Sends Allure report via AWS SES. Uses IAM role (EC2/ECS) or ~/.aws/credentials when running locally.
+ * Sends execution reports via AWS SES. Uses IAM role (EC2/ECS) or ~/.aws/credentials when running locally;
+ * orchestrator.report.ses.endpoint points the client at another SES-compatible endpoint (tests use a local fake).
+ * <p>
+ * The zip is streamed to a temp file within a budget derived from the SES message limit, and the MIME message is
+ * written to a temp file, so neither is built up on the heap while the message is assembled. The send itself is not
+ * streamed: SDK v1 marshals SendRawEmail as a form request and base64-encodes RawMessage.Data into it on the heap,
+ * so each send holds about 4/3 of the message (up to ~14 MB at the 10 MB default of max-message-bytes). That limit is
+ * what bounds it. A report that does not fit is not attached; the email links to it at /reports/{executionId}/
+ * instead.
  */
 @Service
 public class ReportEmailService {
 
     private static final Logger log = LoggerFactory.getLogger(ReportEmailService.class);
 
-    private final AmazonSimpleEmailService sesClient;
+    /** Headers and text parts around the base64 attachment. */
+    private static final long MESSAGE_OVERHEAD_BYTES = 64 * 1024;
+
+    public enum Delivery { ATTACHMENT, LINK }
+
+    private final AllureReportService allureReportService;
+    private AmazonSimpleEmailService sesClient;
 
     @Value("${orchestrator.report.ses.from-email}")
     private String fromEmail;
 
     @Value("${orchestrator.report.subject:Analytics API Test Report}")
-    private String subjectPrefix;
+    private String subjectPrefix = "Analytics API Test Report";
+
+    @Value("${orchestrator.report.ses.region:us-east-1}")
+    private String region = "us-east-1";
+
+    @Value("${orchestrator.report.ses.endpoint:}")
+    private String endpoint = "";
+
+    @Value("${orchestrator.report.base-url:http://localhost:8080}")
+    private String reportBaseUrl = "http://localhost:8080";
+
+    /** SES rejects raw messages above 10 MB; base64 makes the attachment about 4/3 of the zip. */
+    @Value("${orchestrator.report.email.max-message-bytes:10485760}")
+    private long maxMessageBytes = 10 * 1024 * 1024;
+
+    /** Deflate level 0-9; reports are mostly JSON and compress well at the default. */
+    @Value("${orchestrator.report.email.compression-level:6}")
+    private int compressionLevel = 6;
+
+    @Autowired
+    public ReportEmailService(AllureReportService allureReportService) {
+        this.allureReportService = allureReportService;
+    }
 
-    public ReportEmailService() {
-        this.sesClient = AmazonSimpleEmailServiceClientBuilder.standard()
-                .withRegion(Regions.US_EAST_1)
-                .build();
+    ReportEmailService(AllureReportService allureReportService, AmazonSimpleEmailService sesClient, String fromEmail,
+                       long maxMessageBytes) {
+        this.allureReportService = allureReportService;
+        this.sesClient = sesClient;
+        this.fromEmail = fromEmail;
+        this.maxMessageBytes = maxMessageBytes;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (sesClient == null) sesClient = buildClient(endpoint, region);
+    }
+
+    static AmazonSimpleEmailService buildClient(String endpoint, String region) {
+        AmazonSimpleEmailServiceClientBuilder builder = AmazonSimpleEmailServiceClientBuilder.standard();
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region));
+        } else {
+            builder.withRegion(region);
+        }
+        return builder.build();
     }
 
     /**
-     * Send report zip to the given email address. Uses AWS SES (IAM or ~/.aws/credentials).
+     * Email the report in reportDir to the given address: attached as a zip when it fits, otherwise as a link.
+     * Throws when the email could not be sent at all.
      */
-    public void sendReport(String toEmail, java.nio.file.Path reportZipPath, String executionId, int passed, int failed) {
+    public Delivery sendReport(String toEmail, Path reportDir, String executionId, int passed, int failed) {
+        Path zip = null;
+        Path raw = null;
         try {
             String subject = subjectPrefix + " - " + executionId + " (Passed: " + passed + ", Failed: " + failed + ")";
-            String body = "Analytics API test execution completed.\n\nExecution ID: " + executionId
-                    + "\nPassed: " + passed + "\nFailed: " + failed
-                    + "\n\nPlease find the Allure report attached (zip). Extract and open index.html to view.";
+            String summary = "Analytics API test execution completed.\n\nExecution ID: " + executionId
+                    + "\nPassed: " + passed + "\nFailed: " + failed;
+            long zipBudget = Math.max(0, (maxMessageBytes - MESSAGE_OVERHEAD_BYTES) * 3 / 4 * 76 / 78);
+            zip = allureReportService.zipReport(reportDir, compressionLevel, zipBudget);
+            if (zip != null) {
+                raw = writeMessage(toEmail, subject, summary
+                        + "\n\nPlease find the report attached (zip). Extract and open index.html to view.", zip);
+            }
+            Delivery delivery = Delivery.ATTACHMENT;
+            if (raw == null || Files.size(raw) > maxMessageBytes) {
+                log.warn("Report for {} does not fit the {}-byte email limit; sending a link instead", executionId, maxMessageBytes);
+                deleteQuietly(raw);
+                raw = writeMessage(toEmail, subject, summary + "\n\nThe report is too large to attach. View it at "
+                        + reportUrl(executionId), null);
+                delivery = Delivery.LINK;
+            }
+            send(raw);
+            log.info("Report for {} sent to {} via AWS SES ({}, {} bytes)", executionId, toEmail, delivery, Files.size(raw));
+            return delivery;
+        } catch (Exception e) {
+            log.error("Failed to send report to {}: {}", toEmail, e.getMessage(), e);
+            throw new RuntimeException("Failed to send report email: " + e.getMessage());
+        } finally {
+            deleteQuietly(zip);
+            deleteQuietly(raw);
+        }
+    }
 
-            Session session = Session.getDefaultInstance(new Properties());
-            MimeMessage mimeMessage = new MimeMessage(session);
-            mimeMessage.setFrom(new InternetAddress(fromEmail));
-            mimeMessage.setRecipients(Message.RecipientType.TO, InternetAddress.parse(toEmail));
-            mimeMessage.setSubject(subject);
+    public String reportUrl(String executionId) {
+        return reportBaseUrl.replaceAll("/$", "") + "/reports/" + executionId + "/";
+    }
 
-            MimeMultipart multipart = new MimeMultipart();
-            MimeBodyPart bodyPart = new MimeBodyPart();
-            bodyPart.setText(body);
-            multipart.addBodyPart(bodyPart);
+    private Path writeMessage(String toEmail, String subject, String body, Path attachment) throws IOException, MessagingException {
+        Session session = Session.getDefaultInstance(new Properties());
+        MimeMessage mimeMessage = new MimeMessage(session);
+        mimeMessage.setFrom(new InternetAddress(fromEmail));
+        mimeMessage.setRecipients(Message.RecipientType.TO, InternetAddress.parse(toEmail));
+        mimeMessage.setSubject(subject);
 
+        MimeMultipart multipart = new MimeMultipart();
+        MimeBodyPart bodyPart = new MimeBodyPart();
+        bodyPart.setText(body);
+        multipart.addBodyPart(bodyPart);
+
+        if (attachment != null) {
             MimeBodyPart attachPart = new MimeBodyPart();
-            attachPart.attachFile(reportZipPath.toFile());
+            attachPart.attachFile(attachment.toFile(), "application/zip", null);
             attachPart.setFileName("allure-report.zip");
             multipart.addBodyPart(attachPart);
+        }
+        mimeMessage.setContent(multipart);
 
-            mimeMessage.setContent(multipart);
-
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Path raw = Files.createTempFile("report-email-", ".eml");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(raw))) {
             mimeMessage.writeTo(out);
-            byte[] raw = out.toByteArray();
+        } catch (IOException | MessagingException | RuntimeException e) {
+            deleteQuietly(raw);
+            throw e;
+        }
+        return raw;
+    }
 
-            SendRawEmailRequest request = new SendRawEmailRequest(new RawMessage(ByteBuffer.wrap(raw)));
-            sesClient.sendRawEmail(request);
-            log.info("Report sent to {} via AWS SES", toEmail);
-        } catch (Exception e) {
-            log.error("Failed to send report to {}: {}", toEmail, e.getMessage(), e);
-            throw new RuntimeException("Failed to send report email: " + e.getMessage());
+    /**
+     * The mapping saves a copy of the file in this class only; the SDK still base64-encodes the whole message into
+     * the request on the heap (see the class comment).
+     */
+    private void send(Path raw) throws IOException {
+        try (FileChannel channel = FileChannel.open(raw, StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            sesClient.sendRawEmail(new SendRawEmailRequest(new RawMessage(data)));
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete temp file {}: {}", file, e.getMessage());
         }
     }
 }
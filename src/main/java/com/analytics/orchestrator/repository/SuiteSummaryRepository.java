@@ -0,0 +1,7 @@
+package com.analytics.orchestrator.repository;
+
+import com.analytics.orchestrator.entity.SuiteSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SuiteSummaryRepository extends JpaRepository<SuiteSummary, String> {
+}
@@ -0,0 +1,76 @@
+package com.analytics.orchestrator.repository;
+
+import com.analytics.orchestrator.entity.SuiteTask;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface SuiteTaskRepository extends JpaRepository<SuiteTask, Long> {
+
+    List<SuiteTask> findBySuiteIdOrderByIdAsc(String suiteId);
+
+    long countBySuiteId(String suiteId);
+
+    long countBySuiteIdAndStatusIn(String suiteId, Collection<String> statuses);
+
+    long countByStatusIn(Collection<String> statuses);
+
+    /** Pending tasks past their backoff, plus running tasks whose lease expired (owner died). */
+    @Query("select t from SuiteTask t where (t.status = 'PENDING' and (t.notBefore is null or t.notBefore <= :now)) "
+            + "or (t.status = 'RUNNING' and t.leaseExpiresAt < :now) "
+            + "order by t.lane asc, t.rankMs desc, t.id asc")
+    List<SuiteTask> findClaimable(@Param("now") Instant now, Pageable page);
+
+    /** Conditional update: exactly one instance wins a given task even without row locks. */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update SuiteTask t set t.status = 'RUNNING', t.leaseOwner = :owner, t.leaseExpiresAt = :until, "
+            + "t.attempts = t.attempts + 1, t.updatedAt = :now "
+            + "where t.id = :id and ((t.status = 'PENDING' and (t.notBefore is null or t.notBefore <= :now)) "
+            + "or (t.status = 'RUNNING' and t.leaseExpiresAt < :now))")
+    int tryClaim(@Param("id") Long id, @Param("owner") String owner, @Param("until") Instant until, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update SuiteTask t set t.leaseExpiresAt = :until, t.updatedAt = :now "
+            + "where t.id in :ids and t.leaseOwner = :owner and t.status = 'RUNNING'")
+    int renewLeases(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+                    @Param("until") Instant until, @Param("now") Instant now);
+
+    /** Final or retry transition; only applies while the caller still holds the lease. */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update SuiteTask t set t.status = :status, t.lastError = :error, t.notBefore = :notBefore, "
+            + "t.leaseOwner = null, t.leaseExpiresAt = null, t.updatedAt = :now "
+            + "where t.id = :id and t.leaseOwner = :owner and t.status = 'RUNNING'")
+    int finish(@Param("id") Long id, @Param("owner") String owner, @Param("status") String status,
+               @Param("error") String error, @Param("notBefore") Instant notBefore, @Param("now") Instant now);
+
+    /** Running tasks whose lease expired: the owner died or lost its heartbeat. */
+    @Query("select t from SuiteTask t where t.status = 'RUNNING' and t.leaseExpiresAt < :now order by t.id asc")
+    List<SuiteTask> findExpiredLeases(@Param("now") Instant now);
+
+    /** Moves a stale lease to PENDING or FAILED; a no-op when a worker renewed or reclaimed the task meanwhile. */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update SuiteTask t set t.status = :status, t.lastError = :error, t.leaseOwner = null, "
+            + "t.leaseExpiresAt = null, t.updatedAt = :now "
+            + "where t.id = :id and t.status = 'RUNNING' and t.leaseExpiresAt < :now")
+    int expireLease(@Param("id") Long id, @Param("status") String status, @Param("error") String error,
+                    @Param("now") Instant now);
+
+    /** Hand tasks back on graceful shutdown without charging an attempt. */
+    @Transactional
+    @Modifying
+    @Query("update SuiteTask t set t.status = 'PENDING', t.leaseOwner = null, t.leaseExpiresAt = null, "
+            + "t.attempts = t.attempts - 1, t.updatedAt = :now "
+            + "where t.id in :ids and t.leaseOwner = :owner and t.status = 'RUNNING'")
+    int releaseLeases(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("now") Instant now);
+}
@@ -2,10 +2,17 @@ package com.analytics.orchestrator.repository;
 
 import com.analytics.orchestrator.entity.TestReportDetail;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface TestReportDetailRepository extends JpaRepository<TestReportDetail, Long> {
 
     List<TestReportDetail> findBySuiteIdOrderByIdAsc(String suiteId);
+
+    Optional<TestReportDetail> findBySuiteIdAndApiId(String suiteId, String apiId);
+
+    @Transactional
+    void deleteBySuiteIdAndApiId(String suiteId, String apiId);
 }
@@ -3,5 +3,9 @@ package com.analytics.orchestrator.repository;
 import com.analytics.orchestrator.entity.UserInputDetail;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 public interface UserInputDetailRepository extends JpaRepository<UserInputDetail, String> {
+
+    List<UserInputDetail> findBySuiteStatus(String suiteStatus);
 }
@@ -0,0 +1,91 @@
+package com.analytics.orchestrator.retention;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.Temporal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * One gzip JSON-lines file per table and retention run ({@code <dir>/<table>/<table>-<utc time>.jsonl.gz}), one
+ * row per line with lower-case column names. Each appended batch is flushed and synced to disk before the caller
+ * clears or deletes those rows, so a crash loses at most the gzip trailer, never archived data.
+ */
+class RetentionArchive implements Closeable {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    private final Path file;
+    private final FileOutputStream fileOut;
+    private final Writer writer;
+    private long rows;
+
+    private RetentionArchive(Path file) throws IOException {
+        this.file = file;
+        this.fileOut = new FileOutputStream(file.toFile());
+        this.writer = new OutputStreamWriter(new GZIPOutputStream(fileOut, 64 * 1024, true), StandardCharsets.UTF_8);
+    }
+
+    static RetentionArchive open(Path archiveDir, String table, Instant runAt) throws IOException {
+        Path dir = Files.createDirectories(archiveDir.resolve(table));
+        Path file = dir.resolve(table + "-" + FILE_TIME.format(runAt) + ".jsonl.gz");
+        for (int n = 1; Files.exists(file); n++) {
+            file = dir.resolve(table + "-" + FILE_TIME.format(runAt) + "-" + n + ".jsonl.gz");
+        }
+        return new RetentionArchive(file);
+    }
+
+    void append(List<Map<String, Object>> batch) throws IOException {
+        for (Map<String, Object> row : batch) {
+            writer.write(objectMapper.writeValueAsString(normalize(row)));
+            writer.write('\n');
+        }
+        writer.flush();
+        fileOut.getFD().sync();
+        rows += batch.size();
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /** H2 reports upper-case column labels, MySQL lower-case; timestamps are written as ISO-8601 instants. */
+    static Map<String, Object> normalize(Map<String, Object> row) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> e : row.entrySet()) {
+            Object v = e.getValue();
+            if (v instanceof Timestamp) {
+                v = ((Timestamp) v).toInstant().toString();
+            } else if (v instanceof Temporal) {
+                v = v.toString();  // MySQL Connector/J returns DATETIME as LocalDateTime
+            }
+            out.put(e.getKey().toLowerCase(Locale.ROOT), v);
+        }
+        return out;
+    }
+}
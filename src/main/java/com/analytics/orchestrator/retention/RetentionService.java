@@ -0,0 +1,320 @@
+package com.analytics.orchestrator.retention;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Retention for the payload-heavy result tables. Rows older than the table's retention period are copied to
+ * gzip archive files (see {@link RetentionArchive}) and then, in small id-keyed batches with a pause between
+ * them so no long lock is held:
+ * <ul>
+ *   <li>execution_results, comparison_result: request/response/mismatch bodies are cleared and archived_at is
+ *   set; status, counts and errors stay. A comparison row whose diff is still reused by a live row is kept
+ *   until that row is archived too, and archived rows lose their response hashes so they are not reused.</li>
+ *   <li>test_report_detail: rows are deleted, but only for suites that have a suite_summary row (the suite GET
+ *   is served from it).</li>
+ * </ul>
+ * Suite, execution and summary tables are never touched. {@link #dryRun()} reports what a run would process.
+ */
+@Service
+@Profile("!worker")
+public class RetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    public static final String ACTION_ARCHIVE_BODIES = "ARCHIVE_BODIES";
+    public static final String ACTION_DELETE_ROWS = "DELETE_ROWS";
+
+    /** Reads CLOBs as Strings while the result set is open; H2 CLOB handles are not valid afterwards. */
+    private static final ColumnMapRowMapper ROW_MAPPER = new ColumnMapRowMapper() {
+        @Override
+        protected Object getColumnValue(ResultSet rs, int index) throws SQLException {
+            Object value = super.getColumnValue(rs, index);
+            return value instanceof Clob ? rs.getString(index) : value;
+        }
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /** Scheduled runs; dry-run and POST /api/retention/run work either way. */
+    @Value("${retention.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${retention.initial-delay-minutes:10}")
+    private long initialDelayMinutes = 10;
+
+    @Value("${retention.interval-hours:24}")
+    private long intervalHours = 24;
+
+    @Value("${retention.archive-dir:./data/archive}")
+    private String archiveDir = "./data/archive";
+
+    @Value("${retention.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${retention.batch-pause-ms:200}")
+    private long batchPauseMs = 200;
+
+    /** Caps one run per table; a backlog is worked off over several runs. */
+    @Value("${retention.max-batches-per-table:200}")
+    private int maxBatchesPerTable = 200;
+
+    /** Retention period per table in days; 0 disables that table. */
+    @Value("${retention.execution-results.days:30}")
+    private int executionResultsDays = 30;
+
+    @Value("${retention.comparison-result.days:30}")
+    private int comparisonResultDays = 30;
+
+    @Value("${retention.test-report-detail.days:180}")
+    private int testReportDetailDays = 180;
+
+    private ScheduledExecutorService ticker;
+
+    public RetentionService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "retention");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(() -> {
+            try {
+                run();
+            } catch (Exception e) {
+                log.warn("[RETENTION] Scheduled run failed: {}", e.getMessage());
+            }
+        }, initialDelayMinutes, TimeUnit.HOURS.toMinutes(intervalHours), TimeUnit.MINUTES);
+        log.info("[RETENTION] Scheduled every {}h, archive dir {}", intervalHours, archiveDir);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) ticker.shutdownNow();
+    }
+
+    public String getArchiveDir() {
+        return archiveDir;
+    }
+
+    List<TablePolicy> policies() {
+        List<TablePolicy> policies = new ArrayList<>();
+        policies.add(new TablePolicy("execution_results", "executed_at", ACTION_ARCHIVE_BODIES, executionResultsDays,
+                List.of("id", "execution_id", "api_id", "data_provider_label", "status", "http_status", "executed_at",
+                        "request_payload", "response_payload"),
+                List.of("request_payload", "response_payload"),
+                List.of("request_payload", "response_payload"),
+                null));
+        policies.add(new TablePolicy("comparison_result", "created_at", ACTION_ARCHIVE_BODIES, comparisonResultDays,
+                List.of("id", "suite_id", "api_id", "job_id", "is_match", "mismatch_count", "test_response_hash",
+                        "prod_response_hash", "reused_from_result_id", "created_at",
+                        "mismatches_json", "test_response_json", "prod_response_json", "request_payload"),
+                List.of("mismatches_json", "test_response_json", "prod_response_json", "request_payload",
+                        "test_response_hash", "prod_response_hash"),
+                List.of("mismatches_json", "test_response_json", "prod_response_json", "request_payload"),
+                "NOT EXISTS (SELECT 1 FROM comparison_result n WHERE n.reused_from_result_id = t.id AND n.archived_at IS NULL)"));
+        policies.add(new TablePolicy("test_report_detail", "created_at", ACTION_DELETE_ROWS, testReportDetailDays,
+                List.of("id", "suite_id", "test_id", "test_class", "test_method", "api_id", "status", "matches",
+                        "job_id", "diff_count", "row_count_status", "message", "created_at"),
+                Collections.emptyList(),
+                List.of("message"),
+                "EXISTS (SELECT 1 FROM suite_summary s WHERE s.suite_id = t.suite_id)"));
+        return policies;
+    }
+
+    /** What a run would process now, per table. Counts the whole backlog, not just one run's batches. */
+    public List<TableReport> dryRun() {
+        Instant now = Instant.now();
+        List<TableReport> reports = new ArrayList<>();
+        for (TablePolicy p : policies()) {
+            TableReport report = baseReport(p, now);
+            if (p.days > 0) {
+                try {
+                    String bytes = p.sizeColumns.stream()
+                            .map(c -> "COALESCE(LENGTH(t." + c + "), 0)")
+                            .collect(Collectors.joining(" + "));
+                    jdbcTemplate.query("SELECT COUNT(*), SUM(" + bytes + ") FROM " + p.table + " t WHERE " + p.where(),
+                            rs -> {
+                                report.setEligibleRows(rs.getLong(1));
+                                report.setBodyBytes(rs.getLong(2));
+                            }, Timestamp.from(p.cutoff(now)));
+                } catch (Exception e) {
+                    report.setError(e.getMessage());
+                }
+            }
+            reports.add(report);
+        }
+        return reports;
+    }
+
+    /** Archives and purges every enabled table; null when another run is already in progress on this instance. */
+    public List<TableReport> run() {
+        if (!running.compareAndSet(false, true)) return null;
+        try {
+            Instant now = Instant.now();
+            List<TableReport> reports = new ArrayList<>();
+            for (TablePolicy p : policies()) {
+                TableReport report = baseReport(p, now);
+                if (p.days > 0) {
+                    report.setProcessedRows(0L);
+                    try {
+                        purge(p, now, report);
+                    } catch (Exception e) {
+                        log.warn("[RETENTION] {} stopped after {} row(s): {}", p.table, report.getProcessedRows(), e.getMessage());
+                        report.setError(e.getMessage());
+                    }
+                }
+                reports.add(report);
+                if (Thread.currentThread().isInterrupted()) break;
+            }
+            return reports;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void purge(TablePolicy p, Instant now, TableReport report) throws Exception {
+        Timestamp cutoff = Timestamp.from(p.cutoff(now));
+        String select = "SELECT " + p.archiveColumns.stream().map(c -> "t." + c).collect(Collectors.joining(", "))
+                + " FROM " + p.table + " t WHERE " + p.where() + " ORDER BY t.id LIMIT " + batchSize;
+        long processed = 0;
+        RetentionArchive archive = null;
+        try {
+            for (int batch = 0; batch < maxBatchesPerTable; batch++) {
+                List<Map<String, Object>> rows = jdbcTemplate.query(select, ROW_MAPPER, cutoff);
+                if (rows.isEmpty()) break;
+                if (archive == null) archive = RetentionArchive.open(Paths.get(archiveDir), p.table, now);
+                archive.append(rows);
+
+                List<Object> ids = rows.stream().map(r -> r.get("id")).collect(Collectors.toList());
+                String in = ids.stream().map(id -> "?").collect(Collectors.joining(", "));
+                if (ACTION_DELETE_ROWS.equals(p.action)) {
+                    processed += jdbcTemplate.update("DELETE FROM " + p.table + " WHERE id IN (" + in + ")", ids.toArray());
+                } else {
+                    List<Object> args = new ArrayList<>();
+                    args.add(Timestamp.from(now));
+                    args.addAll(ids);
+                    String clear = p.clearColumns.stream().map(c -> c + " = NULL, ").collect(Collectors.joining());
+                    processed += jdbcTemplate.update("UPDATE " + p.table + " SET " + clear + "archived_at = ? WHERE id IN (" + in
+                            + ") AND archived_at IS NULL", args.toArray());
+                }
+                report.setProcessedRows(processed);
+                if (rows.size() < batchSize) break;
+                Thread.sleep(batchPauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (archive != null) {
+                archive.close();
+                report.setArchiveFile(archive.getFile().toString());
+                log.info("[RETENTION] {}: {} {} row(s) older than {} days, archived to {}", p.table,
+                        ACTION_DELETE_ROWS.equals(p.action) ? "deleted" : "cleared bodies of", processed, p.days, archive.getFile());
+            }
+        }
+    }
+
+    private TableReport baseReport(TablePolicy p, Instant now) {
+        return TableReport.builder()
+                .table(p.table)
+                .action(p.action)
+                .retainDays(p.days)
+                .cutoff(p.days > 0 ? p.cutoff(now).toString() : null)
+                .build();
+    }
+
+    /** Which rows of a table age out, and what happens to them. */
+    static final class TablePolicy {
+        final String table;
+        final String ageColumn;
+        final String action;
+        final int days;
+        /** Columns written to the archive file; includes id. */
+        final List<String> archiveColumns;
+        /** ARCHIVE_BODIES: columns set to NULL. */
+        final List<String> clearColumns;
+        /** Columns summed for the dry-run byte estimate. */
+        final List<String> sizeColumns;
+        /** Extra condition on alias t, or null. */
+        final String condition;
+
+        TablePolicy(String table, String ageColumn, String action, int days, List<String> archiveColumns,
+                    List<String> clearColumns, List<String> sizeColumns, String condition) {
+            this.table = table;
+            this.ageColumn = ageColumn;
+            this.action = action;
+            this.days = days;
+            this.archiveColumns = archiveColumns;
+            this.clearColumns = clearColumns;
+            this.sizeColumns = sizeColumns;
+            this.condition = condition;
+        }
+
+        Instant cutoff(Instant now) {
+            return now.minus(Duration.ofDays(days));
+        }
+
+        /** Rows due for this policy; one parameter, the cutoff. */
+        String where() {
+            StringBuilder sb = new StringBuilder("t.").append(ageColumn).append(" < ?");
+            if (ACTION_ARCHIVE_BODIES.equals(action)) sb.append(" AND t.archived_at IS NULL");
+            if (condition != null) sb.append(" AND ").append(condition);
+            return sb.toString();
+        }
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TableReport {
+        private String table;
+        private String action;
+        private int retainDays;
+        /** Rows with an age column before this instant are due; null when the table is disabled. */
+        private String cutoff;
+        /** Dry run only. */
+        private Long eligibleRows;
+        /** Dry run only: summed length of the body columns that would be archived. */
+        private Long bodyBytes;
+        /** Run only. */
+        private Long processedRows;
+        private String archiveFile;
+        private String error;
+    }
+}
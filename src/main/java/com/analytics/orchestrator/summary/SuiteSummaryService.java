@@ -0,0 +1,273 @@
+package com.analytics.orchestrator.summary;
+
+import com.analytics.orchestrator.entity.SuiteSummary;
+import com.analytics.orchestrator.repository.SuiteSummaryRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Per-suite category counts and report rows, updated as each TestReportDetail / ComparisonResult is saved.
+ * Suite GETs read the summary (bounded LRU cache, then the suite_summary row) instead of loading every result
+ * row and re-categorising. Updates are serialised per suite in this JVM and use the row's @Version across
+ * instances; an update that still cannot be applied drops the summary, and reads fall back to the result
+ * tables. Suites started before summaries existed have none and always use that fallback.
+ */
+@Service
+public class SuiteSummaryService {
+
+    private static final Logger log = LoggerFactory.getLogger(SuiteSummaryService.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<LinkedHashMap<String, ApiEntry>> APIS_TYPE = new TypeReference<>() {};
+    private static final int MAX_UPDATE_ATTEMPTS = 3;
+    private static final int LOCK_STRIPES = 64;
+
+    public static final String CATEGORY_PASSED = "passed";
+    public static final String CATEGORY_MISMATCH = "mismatch";
+    public static final String CATEGORY_FAILED = "failed";
+    public static final String CATEGORY_EMPTY_BOTH = "emptyBoth";
+
+    private static final String STATUS_IN_PROGRESS = "IN_PROGRESS";
+
+    private final SuiteSummaryRepository repository;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    @Value("${summary.cache.max-suites:500}")
+    private int maxSuites = 500;
+
+    /** In-progress entries are re-read after this long so updates written by other instances show up. */
+    @Value("${summary.cache.ttl-ms:5000}")
+    private long ttlMs = 5000;
+
+    private final Map<String, Summary> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Summary> eldest) {
+            return size() > maxSuites;
+        }
+    };
+
+    public SuiteSummaryService(SuiteSummaryRepository repository) {
+        this.repository = repository;
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new Object();
+    }
+
+    /** Creates the empty summary for a new suite; without it the suite is served from the result tables. */
+    public void start(String suiteType, String suiteId) {
+        try {
+            synchronized (lock(suiteId)) {
+                Summary empty = new Summary(suiteId, suiteType, STATUS_IN_PROGRESS, new LinkedHashMap<>(), null);
+                SuiteSummary saved = repository.save(empty.toEntity());
+                cachePut(empty.withVersion(saved.getVersion()));
+            }
+        } catch (Exception e) {
+            log.warn("[SUMMARY] Could not create summary for suiteId={}: {}", suiteId, e.getMessage());
+        }
+    }
+
+    /** Sets (or replaces, for a re-run API) one API's category and report row. */
+    public void record(String suiteId, String apiId, String category, Map<String, Object> row) {
+        update(suiteId, s -> s.withApi(apiId, new ApiEntry(category, row)));
+    }
+
+    public void finish(String suiteId, String suiteStatus) {
+        update(suiteId, s -> s.withStatus(suiteStatus));
+    }
+
+    /** Current summary, or null when the suite has none (legacy suite, or dropped after a failed update). */
+    public Summary get(String suiteId) {
+        Summary cached = cacheGet(suiteId);
+        if (cached != null && (cached.isFinished() || System.currentTimeMillis() - cached.loadedAt < ttlMs)) {
+            return cached;
+        }
+        Summary loaded = load(suiteId);
+        if (loaded != null) cachePut(loaded);
+        return loaded;
+    }
+
+    public void evict(String suiteId) {
+        synchronized (cache) {
+            cache.remove(suiteId);
+        }
+    }
+
+    private void update(String suiteId, UnaryOperator<Summary> change) {
+        synchronized (lock(suiteId)) {
+            try {
+                for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+                    // First try trusts the cache; a version conflict means another instance wrote, so re-read
+                    Summary current = attempt == 1 ? cacheGet(suiteId) : null;
+                    if (current == null) current = load(suiteId);
+                    if (current == null) return;
+                    Summary next = change.apply(current);
+                    try {
+                        SuiteSummary saved = repository.save(next.toEntity());
+                        cachePut(next.withVersion(saved.getVersion()));
+                        return;
+                    } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+                        log.debug("[SUMMARY] Version conflict for suiteId={} attempt={}", suiteId, attempt);
+                        evict(suiteId);
+                    }
+                }
+                log.warn("[SUMMARY] Giving up on summary for suiteId={} after {} conflicts; reads fall back to result rows",
+                        suiteId, MAX_UPDATE_ATTEMPTS);
+            } catch (Exception e) {
+                log.warn("[SUMMARY] Summary update failed for suiteId={}: {}; reads fall back to result rows", suiteId, e.getMessage());
+            }
+            drop(suiteId);
+        }
+    }
+
+    /** A summary missing an update would report wrong counts forever; without one the GETs recompute. */
+    private void drop(String suiteId) {
+        evict(suiteId);
+        try {
+            repository.deleteById(suiteId);
+        } catch (Exception e) {
+            log.warn("[SUMMARY] Could not drop summary for suiteId={}: {}", suiteId, e.getMessage());
+        }
+    }
+
+    private Summary load(String suiteId) {
+        try {
+            return repository.findById(suiteId).map(Summary::fromEntity).orElse(null);
+        } catch (IllegalStateException e) {
+            log.warn("[SUMMARY] {}; using result rows", e.getMessage());
+            return null;
+        }
+    }
+
+    private Summary cacheGet(String suiteId) {
+        synchronized (cache) {
+            return cache.get(suiteId);
+        }
+    }
+
+    private void cachePut(Summary summary) {
+        synchronized (cache) {
+            cache.put(summary.suiteId, summary);
+        }
+    }
+
+    private Object lock(String suiteId) {
+        return locks[Math.floorMod(suiteId.hashCode(), LOCK_STRIPES)];
+    }
+
+    /** One API of a suite: its category and the row the suite GET returns for it. */
+    public static class ApiEntry {
+        public String category;
+        public Map<String, Object> row;
+
+        public ApiEntry() {
+        }
+
+        public ApiEntry(String category, Map<String, Object> row) {
+            this.category = category;
+            this.row = row;
+        }
+    }
+
+    /** Immutable snapshot; each update builds a new one, so cached instances can be shared with readers. */
+    public static class Summary {
+        private final String suiteId;
+        private final String suiteType;
+        private final String suiteStatus;
+        private final Map<String, ApiEntry> apis;
+        private final Long version;
+        private final long loadedAt = System.currentTimeMillis();
+
+        Summary(String suiteId, String suiteType, String suiteStatus, LinkedHashMap<String, ApiEntry> apis, Long version) {
+            this.suiteId = suiteId;
+            this.suiteType = suiteType;
+            this.suiteStatus = suiteStatus;
+            this.apis = Collections.unmodifiableMap(apis);
+            this.version = version;
+        }
+
+        public String getSuiteId() {
+            return suiteId;
+        }
+
+        public String getSuiteType() {
+            return suiteType;
+        }
+
+        public String getSuiteStatus() {
+            return suiteStatus;
+        }
+
+        public boolean isFinished() {
+            return !STATUS_IN_PROGRESS.equals(suiteStatus);
+        }
+
+        /** Completed APIs in completion order. */
+        public Map<String, ApiEntry> getApis() {
+            return apis;
+        }
+
+        public int count(String category) {
+            int n = 0;
+            for (ApiEntry e : apis.values()) {
+                if (category.equals(e.category)) n++;
+            }
+            return n;
+        }
+
+        Summary withApi(String apiId, ApiEntry entry) {
+            LinkedHashMap<String, ApiEntry> next = new LinkedHashMap<>(apis);
+            next.put(apiId, entry);
+            return new Summary(suiteId, suiteType, suiteStatus, next, version);
+        }
+
+        Summary withStatus(String status) {
+            return new Summary(suiteId, suiteType, status, new LinkedHashMap<>(apis), version);
+        }
+
+        Summary withVersion(Long v) {
+            return new Summary(suiteId, suiteType, suiteStatus, new LinkedHashMap<>(apis), v);
+        }
+
+        SuiteSummary toEntity() {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(apis);
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot serialize suite summary " + suiteId, e);
+            }
+            return SuiteSummary.builder()
+                    .suiteId(suiteId)
+                    .suiteType(suiteType)
+                    .suiteStatus(suiteStatus)
+                    .completedCount(apis.size())
+                    .passedCount(count(CATEGORY_PASSED))
+                    .mismatchCount(count(CATEGORY_MISMATCH))
+                    .failedCount(count(CATEGORY_FAILED))
+                    .emptyBothCount(count(CATEGORY_EMPTY_BOTH))
+                    .apisJson(json)
+                    .version(version)
+                    .updatedAt(Instant.now())
+                    .build();
+        }
+
+        static Summary fromEntity(SuiteSummary e) {
+            LinkedHashMap<String, ApiEntry> apis;
+            try {
+                apis = e.getApisJson() == null || e.getApisJson().isBlank() ? new LinkedHashMap<>()
+                        : objectMapper.readValue(e.getApisJson(), APIS_TYPE);
+            } catch (Exception ex) {
+                throw new IllegalStateException("Cannot read suite summary " + e.getSuiteId(), ex);
+            }
+            return new Summary(e.getSuiteId(), e.getSuiteType(), e.getSuiteStatus(), apis, e.getVersion());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.analytics.comparison;
+
+import com.analytics.comparison.entity.ComparisonSuite;
+import com.analytics.comparison.repository.ComparisonResultRepository;
+import com.analytics.comparison.repository.ComparisonSuiteRepository;
+import com.analytics.mock.MockAnalyticsBackend;
+import com.analytics.orchestrator.ConfigResolver;
+import com.analytics.orchestrator.config.ApiDefinition;
+import com.analytics.orchestrator.repository.SuiteTaskRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * queue.enabled=false: a suite runs in-process on {@link SuiteScheduler} (no suite_task rows) against
+ * {@link MockAnalyticsBackend}, and still saves one result per API and finishes the suite.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = "queue.enabled=false")
+@ActiveProfiles("test")
+public class AsyncComparisonRunnerTest extends AbstractTestNGSpringContextTests {
+
+    private static final MockAnalyticsBackend backend = startBackend();
+
+    @Autowired
+    private AsyncComparisonRunner runner;
+
+    @Autowired
+    private ConfigResolver configResolver;
+
+    @Autowired
+    private ComparisonSuiteRepository suiteRepository;
+
+    @Autowired
+    private ComparisonResultRepository resultRepository;
+
+    @Autowired
+    private SuiteTaskRepository taskRepository;
+
+    private static MockAnalyticsBackend startBackend() {
+        try {
+            return new MockAnalyticsBackend(MockAnalyticsBackend.Settings.builder()
+                    .rowsPerResponse(20)
+                    .latencyMedianMs(1L)
+                    .latencyP99Ms(5L)
+                    .errorRate(0)
+                    .diffRate(0)
+                    .build()).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void pointAtMockBackend(DynamicPropertyRegistry registry) {
+        registry.add("orchestrator.staging-base-url", backend::getBaseUrl);
+        registry.add("orchestrator.prod-base-url", backend::getBaseUrl);
+        registry.add("validation.api-base-url", backend::getBaseUrl);
+        registry.add("validation.json-comparison-poll-timeout-seconds", () -> "0");
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopBackend() {
+        backend.close();
+    }
+
+    @Test(description = "Without the durable queue the suite runs on the in-memory scheduler lanes")
+    public void queueDisabled_runsOnSuiteScheduler() throws Exception {
+        List<String> apis = configResolver.resolveApis("analytics", null).stream()
+                .map(ApiDefinition.ApiSpec::getApiId)
+                .limit(2)
+                .collect(Collectors.toList());
+        assertFalse(apis.isEmpty(), "analytics group should resolve APIs");
+        String suiteId = UUID.randomUUID().toString();
+        suiteRepository.save(ComparisonSuite.builder()
+                .suiteId(suiteId).client("scheduler-client").startDate("2026-02-01").endDate("2026-02-02")
+                .apiGroup("analytics").apis(String.join(",", apis)).suiteStatus("IN_PROGRESS")
+                .build());
+
+        runner.runAsync(suiteId, "scheduler-client", "2026-02-01", "2026-02-02", "analytics", apis,
+                SuiteScheduler.Lane.INTERACTIVE);
+
+        long deadline = System.currentTimeMillis() + 60_000;
+        String status = "IN_PROGRESS";
+        while ("IN_PROGRESS".equals(status) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+            status = suiteRepository.findById(suiteId).map(ComparisonSuite::getSuiteStatus).orElse(null);
+        }
+        assertEquals(status, "COMPLETED");
+        assertEquals(resultRepository.findBySuiteIdOrderByIdAsc(suiteId).size(), apis.size());
+        assertEquals(taskRepository.countBySuiteId(suiteId), 0L, "nothing may go through suite_task");
+    }
+}
@@ -0,0 +1,131 @@
+package com.analytics.comparison;
+
+import com.analytics.mock.MockAnalyticsBackend;
+import com.analytics.orchestrator.ConfigResolver;
+import com.analytics.orchestrator.config.ApiDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Throughput benchmark for DBX-vs-BQ comparison suites against {@link MockAnalyticsBackend}.
+ * Reports suites/minute and p50/p99 latency per API. Not part of testng.xml; run with
+ * {@code mvn test -Dtest=ComparisonThroughputBenchmark} and tune via system properties
+ * (benchmark.suites, benchmark.concurrency, benchmark.apis, benchmark.rows, benchmark.latencyMedianMs,
+ * benchmark.latencyP99Ms, benchmark.errorRate, benchmark.diffRate).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+public class ComparisonThroughputBenchmark extends AbstractTestNGSpringContextTests {
+
+    private static final Logger log = LoggerFactory.getLogger(ComparisonThroughputBenchmark.class);
+
+    private static final MockAnalyticsBackend backend = startBackend();
+
+    @Autowired
+    private TestVsProdComparisonService comparisonService;
+
+    @Autowired
+    private ConfigResolver configResolver;
+
+    private static MockAnalyticsBackend startBackend() {
+        try {
+            return new MockAnalyticsBackend(MockAnalyticsBackend.Settings.builder()
+                    .rowsPerResponse(Integer.getInteger("benchmark.rows", 200))
+                    .latencyMedianMs(Long.getLong("benchmark.latencyMedianMs", 20L))
+                    .latencyP99Ms(Long.getLong("benchmark.latencyP99Ms", 150L))
+                    .errorRate(Double.parseDouble(System.getProperty("benchmark.errorRate", "0")))
+                    .diffRate(Double.parseDouble(System.getProperty("benchmark.diffRate", "0.02")))
+                    .build()).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void pointAtMockBackend(DynamicPropertyRegistry registry) {
+        registry.add("orchestrator.staging-base-url", backend::getBaseUrl);
+        registry.add("orchestrator.prod-base-url", backend::getBaseUrl);
+        registry.add("validation.api-base-url", backend::getBaseUrl);
+        registry.add("validation.xqg-poll-interval-seconds", () -> "1");
+        registry.add("validation.json-comparison-poll-timeout-seconds", () -> "2");
+        registry.add("validation.reuse-previous-results", () -> "false");
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopBackend() {
+        backend.close();
+    }
+
+    @Test(groups = "benchmark", description = "Comparison suites per minute and p99 per-API latency against the mock backend")
+    public void comparisonThroughput() throws Exception {
+        int suites = Integer.getInteger("benchmark.suites", 20);
+        int concurrency = Integer.getInteger("benchmark.concurrency", 4);
+        int apisPerSuite = Integer.getInteger("benchmark.apis", 5);
+
+        List<String> apis = configResolver.resolveApis("analytics", null).stream()
+                .map(ApiDefinition.ApiSpec::getApiId)
+                .limit(apisPerSuite)
+                .collect(Collectors.toList());
+        assertFalse(apis.isEmpty(), "analytics group should resolve APIs");
+
+        Map<String, List<Long>> latencies = new ConcurrentHashMap<>();
+        List<TestVsProdComparisonService.ApiComparisonResult> all = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int s = 0; s < suites; s++) {
+                futures.add(pool.submit(() -> {
+                    for (String apiId : apis) {
+                        long t0 = System.nanoTime();
+                        all.addAll(comparisonService.runComparison("benchmark-client", "2026-02-01", "2026-02-07",
+                                "analytics", List.of(apiId)));
+                        latencies.computeIfAbsent(apiId, k -> Collections.synchronizedList(new ArrayList<>()))
+                                .add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        double elapsedMin = (System.nanoTime() - start) / 60_000_000_000.0;
+
+        log.info("[BENCHMARK] {} suites x {} APIs | concurrency={} | {} suites/min | backend requests: query={} create-job={} config={}",
+                suites, apis.size(), concurrency, String.format("%.1f", suites / elapsedMin),
+                backend.getRequestCount("query"), backend.getRequestCount("create-job"), backend.getRequestCount("config"));
+        for (String apiId : apis) {
+            List<Long> sorted = new ArrayList<>(latencies.getOrDefault(apiId, List.of()));
+            Collections.sort(sorted);
+            log.info("[BENCHMARK] {} | n={} p50={}ms p99={}ms max={}ms", apiId, sorted.size(),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1));
+        }
+
+        long errors = all.stream().filter(r -> r.getError() != null).count();
+        long mismatched = all.stream().filter(r -> !r.isMatch()).count();
+        log.info("[BENCHMARK] results={} errors={} mismatched={}", all.size(), errors, mismatched);
+        assertEquals(all.size(), suites * apis.size(), "one result per API per suite");
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) return 0;
+        int idx = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(idx, sorted.size() - 1)));
+    }
+}
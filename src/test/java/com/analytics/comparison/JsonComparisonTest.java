@@ -1,13 +1,20 @@
 package com.analytics.comparison;
 
+import com.analytics.comparison.entity.ComparisonResult;
+import com.analytics.comparison.repository.ComparisonResultRepository;
+import com.analytics.comparison.util.ComparisonProfile;
 import com.analytics.comparison.util.JsonComparisonUtils;
 import com.analytics.comparison.util.JsonDiff;
 import com.analytics.comparison.util.UniversalJsonComparator;
 import org.testng.annotations.Test;
 
 import java.io.InputStream;
+import java.lang.reflect.Proxy;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static org.testng.Assert.*;
@@ -173,6 +180,338 @@ public class JsonComparisonTest {
         assertTrue(result.getMissingInFirst().get(0).contains("R2") && result.getMissingInFirst().get(0).contains("2"));
     }
 
+    @Test(description = "Duplicate rows without a unique key - an inserted row is one missing record, not a positional cascade")
+    public void duplicateRowsWithoutKey_matchedAsMultiset() throws Exception {
+        String json1 = "[{\"brand\":\"A\",\"v\":1},{\"brand\":\"A\",\"v\":1},{\"brand\":\"B\",\"v\":2},{\"brand\":\"D\",\"v\":4.5}]";
+        String json2 = "[{\"brand\":\"Z\",\"v\":9},{\"brand\":\"A\",\"v\":1},{\"brand\":\"B\",\"v\":2},{\"brand\":\"A\",\"v\":1},{\"brand\":\"D\",\"v\":4.0}]";
+        UniversalJsonComparator.JsonComparisonResult result = UniversalJsonComparator.compareStructured(json1, json2, 1e-3);
+        assertEquals(result.getMissingInFirst(), List.of("[index=0]"));
+        assertTrue(result.getMissingInSecond().isEmpty());
+        assertEquals(result.toFlatDiffs().size(), 2, "only the inserted row and the changed value: " + result.toFlatDiffs());
+        assertEquals(result.getFieldDifferences().size(), 1);
+        assertEquals(result.toFlatDiffs().get(1).getPath(), "[3].v");
+    }
+
+    @Test(description = "Byte-identical responses - fingerprint fast path returns match without diffing")
+    public void compareViaService_identicalBodies_shortCircuitsOnFingerprint() {
+        TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null, null, null, null, 500);
+        TestVsProdComparisonService.ApiComparisonResult result = service.compareTwoJsonResponses(TEST_JSON_1, PROD_JSON_1);
+        assertTrue(result.isMatch());
+        assertEquals(result.getMismatchCount(), Integer.valueOf(0));
+        assertEquals(result.getTestRowCount(), Integer.valueOf(2));
+        assertEquals(result.getProdRowCount(), Integer.valueOf(2));
+        assertNotNull(result.getTestResponseHash());
+        assertEquals(result.getTestResponseHash(), result.getProdResponseHash());
+
+        TestVsProdComparisonService.ApiComparisonResult diff = service.compareTwoJsonResponses(TEST_JSON_1, PROD_JSON_MISMATCH);
+        assertFalse(diff.isMatch());
+        assertNotEquals(diff.getTestResponseHash(), diff.getProdResponseHash());
+        assertEquals(diff.getProdResponseHash(), JsonComparisonUtils.fingerprint(PROD_JSON_MISMATCH));
+        assertNull(result.getMismatchPatterns());
+        assertEquals(diff.getMismatchPatterns().size(), 1);
+        assertEquals(diff.getMismatchPatterns().get(0).getCount(), (long) diff.getMismatchCount());
+        assertTrue(diff.getMismatchPatterns().get(0).getPattern().contains("=*]"), diff.getMismatchPatterns().get(0).getPattern());
+    }
+
+    @Test(description = "Canonical hash - key order and number formatting do not matter, values do")
+    public void canonicalHash_ignoresKeyOrderAndNumberFormat() throws Exception {
+        com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+        String a = "{\"data\":[{\"brand\":\"BrandA\",\"count\":100,\"score\":0.5}]}";
+        String b = "{\"data\":[{\"score\":0.50,\"count\":1.0E2,\"brand\":\"BrandA\"}]}";
+        String c = "{\"data\":[{\"brand\":\"BrandA\",\"count\":\"100\",\"score\":0.5}]}";
+        assertEquals(JsonComparisonUtils.canonicalHash(mapper.readTree(a)), JsonComparisonUtils.canonicalHash(mapper.readTree(b)));
+        assertNotEquals(JsonComparisonUtils.canonicalHash(mapper.readTree(a)), JsonComparisonUtils.canonicalHash(mapper.readTree(c)));
+        assertEquals(JsonComparisonUtils.countRows(mapper.readTree(a)), JsonComparisonUtils.countRows(a));
+
+        TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null, null, null, null, 500);
+        TestVsProdComparisonService.ApiComparisonResult result = service.compareTwoJsonResponses(a, b);
+        assertTrue(result.isMatch(), "Reordered keys / reformatted numbers should match: " + result.getMismatches());
+        assertEquals(result.getTestRowCount(), Integer.valueOf(1));
+        assertEquals(result.getProdRowCount(), Integer.valueOf(1));
+    }
+
+    @Test(description = "CSV export bodies - compared row by row instead of failing as non-JSON")
+    public void compareViaService_csvExport_comparedByKey() {
+        String dbx = "Retailer,Brand,Avg Price\nR1,BrandA,1.50\nR2,BrandB,2.00\n";
+        String bq = "Retailer,Brand,Avg Price\nR2,BrandB,2.50\nR1,BrandA,1.5000001\n";
+        TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null, null, null, null, 500);
+        TestVsProdComparisonService.ApiComparisonResult result = service.compareTwoJsonResponses(dbx, bq);
+        assertFalse(result.isMatch());
+        assertEquals(result.getTestRowCount(), Integer.valueOf(2));
+        assertEquals(result.getProdRowCount(), Integer.valueOf(2));
+        assertEquals(result.getMismatchCount(), Integer.valueOf(1));
+        assertEquals(result.getMismatches().get(0).get("path"), "[Retailer,Brand=R2|BrandB].Avg Price");
+    }
+
+    @Test(description = "Large responses on disk - streamed from their files with the same outcome as from Strings")
+    public void compareLargeResponses_fromFiles_sameAsStrings() throws Exception {
+        String dbx = "[{\"id\":1,\"v\":10},{\"id\":2,\"v\":20},{\"id\":3,\"v\":30}]";
+        String bq = "[{\"id\":3,\"v\":30},{\"id\":1,\"v\":11},{\"id\":2,\"v\":20}]";
+        String dbxCsv = "Retailer,Avg Price\nR1,1.50\nR2,2.00\n";
+        String bqCsv = "Retailer,Avg Price\nR2,2.50\nR1,1.50\n";
+        TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null, null, null, null, 500);
+        Path dir = Files.createTempDirectory("compare-files");
+        try {
+            TestVsProdComparisonService.ApiComparisonResult json = service.compareLargeResponses(
+                    write(dir, "dbx.json", dbx), write(dir, "bq.json", bq), 0.01, null, 0);
+            TestVsProdComparisonService.ApiComparisonResult fromStrings = service.compareLargeResponses(dbx, bq, 0.01);
+            assertFalse(json.isMatch());
+            assertEquals(json.getMismatches(), fromStrings.getMismatches());
+            assertEquals(json.getTestRowCount(), Integer.valueOf(3));
+            assertEquals(json.getTestResponseHash(), JsonComparisonUtils.fingerprint(dbx));
+
+            TestVsProdComparisonService.ApiComparisonResult csv = service.compareLargeResponses(
+                    write(dir, "dbx.csv", dbxCsv), write(dir, "bq.csv", bqCsv), 0.01, null, 0);
+            assertEquals(csv.getMismatchCount(), Integer.valueOf(1));
+            assertEquals(csv.getMismatches().get(0).get("path"), "[Retailer=R2].Avg Price");
+            assertEquals(csv.getProdRowCount(), Integer.valueOf(2));
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+                for (Path f : (Iterable<Path>) files::iterator) Files.delete(f);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static Path write(Path dir, String name, String body) throws java.io.IOException {
+        return Files.writeString(dir.resolve(name), body);
+    }
+
+    /** 200 keyed rows per side, every one with a different "v": 200 mismatches without a budget. */
+    private static String keyedRows(int offset) {
+        StringBuilder sb = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":\"r").append(i).append("\",\"v\":").append(i + offset).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    /** 100 rows per side, each present twice (so no field is a key), every value differing from the other side. */
+    private static String duplicatedRows(int offset) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"g\":").append(i / 2).append(",\"v\":").append(i / 2 + offset).append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private static void assertStoppedAt(TestVsProdComparisonService.ApiComparisonResult r, int budget) {
+        assertFalse(r.isMatch());
+        assertTrue(r.isStoppedEarly(), "budget of " + budget + " reached - must be flagged");
+        assertEquals(r.getMismatchCount(), Integer.valueOf(budget), "comparison must stop at the budget");
+    }
+
+    @Test(description = "Fail fast out of core: the streamed join stops at maxMismatches")
+    public void failFast_outOfCoreJson_stopsAtBudget() {
+        TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null, null, null, null, 500);
+        String dbx = keyedRows(0);
+        String bq = keyedRows(1000);
+        assertStoppedAt(service.compareLargeResponses(dbx, bq, 0.01, null, 5), 5);
+
+        TestVsProdComparisonService.ApiComparisonResult full = service.compareLargeResponses(dbx, bq, 0.01, null, 0);
+        assertFalse(full.isStoppedEarly());
+        assertEquals(full.getMismatchCount(), Integer.valueOf(200));
+    }
+
+    @Test(description = "Fail fast on CSV exports, in memory and out of core")
+    public void failFast_csv_stopsAtBudget() {
+        StringBuilder dbx = new StringBuilder("Retailer,Avg Price\n");
+        StringBuilder bq = new StringBuilder("Retailer,Avg Price\n");
+        for (int i = 0; i < 200; i++) {
+            dbx.append('R').append(i).append(',').append(i).append(".50\n");
+            bq.append('R').append(i).append(',').append(i * 2 + 1).append(".50\n");
+        }
+        TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null, null, null, null, 500);
+        assertStoppedAt(service.compareTwoJsonResponses(dbx.toString(), bq.toString(), 0.01, "csv", null, 4), 4);
+        assertStoppedAt(service.compareLargeResponses(dbx.toString(), bq.toString(), 0.01, null, 4), 4);
+        assertEquals(service.compareTwoJsonResponses(dbx.toString(), bq.toString(), 0.01, "csv", null, 0)
+                .getMismatchCount(), Integer.valueOf(200));
+    }
+
+    @Test(description = "Fail fast on arrays without a unique key: the multiset walk stops at maxMismatches")
+    public void failFast_multiset_stopsAtBudget() throws Exception {
+        String dbx = duplicatedRows(0);
+        String bq = duplicatedRows(1000);
+        UniversalJsonComparator.JsonComparisonResult full = UniversalJsonComparator.compareStructured(dbx, bq, 0.01);
+        assertEquals(full.toFlatDiffs().size(), 100);
+        assertTrue(full.toFlatDiffs().get(0).getPath().startsWith("["), "multiset paths are by index: " + full.toFlatDiffs().get(0));
+
+        TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null, null, null, null, 500);
+        assertStoppedAt(service.compareTwoJsonResponses(dbx, bq, 0.01, "multiset", null, 3), 3);
+    }
+
+    @Test(description = "Queued comparison task: the maxMismatches param reaches the comparison and stoppedEarly is saved")
+    public void failFast_queuedTaskParam_reachesComparison() {
+        List<Integer> budgets = new java.util.ArrayList<>();
+        TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null, null, null, null, 500) {
+            @Override
+            public List<ApiComparisonResult> runComparison(String client, String startDate, String endDate,
+                                                           String apiGroup, List<String> apis, int maxMismatches,
+                                                           String suiteId) {
+                budgets.add(maxMismatches);
+                ApiComparisonResult r = compareTwoJsonResponses(keyedRows(0), keyedRows(1000), 0.01, apis.get(0), null, maxMismatches);
+                r.setApiId(apis.get(0));
+                return List.of(r);
+            }
+        };
+        List<ComparisonResult> saved = new java.util.ArrayList<>();
+        ComparisonResultRepository repository = (ComparisonResultRepository) Proxy.newProxyInstance(
+                ComparisonResultRepository.class.getClassLoader(), new Class<?>[]{ComparisonResultRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("save")) {
+                        saved.add((ComparisonResult) args[0]);
+                        return args[0];
+                    }
+                    return Optional.empty();
+                });
+        com.analytics.orchestrator.summary.SuiteSummaryService summaries = new com.analytics.orchestrator.summary.SuiteSummaryService(null) {
+            @Override
+            public void record(String suiteId, String apiId, String category, java.util.Map<String, Object> row) {
+            }
+        };
+        AsyncComparisonRunner runner = new AsyncComparisonRunner(service, null, repository, null, null,
+                new ApiDurationStats(null), null, new com.analytics.orchestrator.events.SuiteEventBroker(), summaries);
+
+        com.analytics.orchestrator.entity.SuiteTask task = com.analytics.orchestrator.entity.SuiteTask.builder()
+                .id(1L).suiteId("suite-1").apiId("pricing").attempts(1).build();
+        // Params come back from suite_task.params_json, where the budget is a JSON number
+        runner.runTask(task, new java.util.HashMap<>(java.util.Map.of("client", "c", "apiGroup", "g", "maxMismatches", 6)));
+
+        assertEquals(budgets, List.of(6));
+        assertEquals(saved.size(), 1);
+        assertEquals(saved.get(0).getStoppedEarly(), Boolean.TRUE);
+        assertEquals(saved.get(0).getMismatchCount(), Integer.valueOf(6));
+    }
+
+    @Test(description = "POST /api/compare-json with maxMismatches stops early and says so")
+    public void failFast_compareJsonEndpoint_stopsAtBudget() {
+        TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null, null, null, null, 500);
+        ComparisonController controller = new ComparisonController(service, null, null, null, null, null, null);
+        ComparisonController.CompareJsonRequest request = new ComparisonController.CompareJsonRequest();
+        request.setTestJson(keyedRows(0));
+        request.setProdJson(keyedRows(1000));
+        request.setMaxMismatches(2);
+
+        org.springframework.http.ResponseEntity<?> response = controller.compareJson(request);
+        assertEquals(response.getStatusCodeValue(), 200);
+        java.util.Map<?, ?> body = (java.util.Map<?, ?>) response.getBody();
+        assertEquals(body.get("stoppedEarly"), Boolean.TRUE);
+        assertEquals(body.get("mismatchCount"), 2);
+        assertEquals(body.get("match"), Boolean.FALSE);
+
+        request.setMaxMismatches(null);
+        java.util.Map<?, ?> full = (java.util.Map<?, ?>) controller.compareJson(request).getBody();
+        assertEquals(full.get("stoppedEarly"), Boolean.FALSE);
+        assertEquals(full.get("mismatchCount"), 200);
+    }
+
+    @Test(description = "A stored diff is reused only under the profile it was computed with")
+    public void findReusableResult_profileChange_forcesFreshComparison() {
+        ComparisonProfile before = ComparisonProfile.compile(java.util.Map.of("data", List.of("id")), List.of("updated_at"), null);
+        ComparisonProfile after = ComparisonProfile.compile(java.util.Map.of("data", List.of("id")), List.of("updated_at"),
+                java.util.Map.of("price", new ComparisonProfile.Tolerance(0.5, null)));
+        assertEquals(before.fingerprint(), ComparisonProfile.compile(java.util.Map.of("data", List.of("id")),
+                List.of("updated_at"), null).fingerprint());
+        assertNotEquals(before.fingerprint(), after.fingerprint());
+
+        ComparisonResult prior = ComparisonResult.builder()
+                .id(7L).apiId("pricing").match(false).mismatchCount(3)
+                .testResponseHash("dbx").prodResponseHash("bq")
+                .profileFingerprint(before.fingerprint())
+                .build();
+        ComparisonResultRepository repository = (ComparisonResultRepository) Proxy.newProxyInstance(
+                ComparisonResultRepository.class.getClassLoader(), new Class<?>[]{ComparisonResultRepository.class},
+                (proxy, method, args) -> method.getName().startsWith("findFirstByApiId") ? Optional.of(prior) : Optional.empty());
+        TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null, repository, null, null, 500);
+
+        TestVsProdComparisonService.ApiComparisonResult reused =
+                service.findReusableResult("pricing", "dbx", "bq", null, before.fingerprint(), null);
+        assertNotNull(reused);
+        assertEquals(reused.getReusedFromResultId(), Long.valueOf(7L));
+        assertEquals(reused.getMismatchCount(), Integer.valueOf(3));
+
+        assertNull(service.findReusableResult("pricing", "dbx", "bq", null, after.fingerprint(), null),
+                "tolerance added since the stored diff - must compare afresh");
+        prior.setProfileFingerprint(null);
+        assertNull(service.findReusableResult("pricing", "dbx", "bq", null, before.fingerprint(), null),
+                "row from before profile fingerprints - profile unknown");
+    }
+
+    @Test(description = "A re-run queued task with unchanged responses keeps its diff instead of reusing (and erasing) its own row")
+    public void reuse_rerunTask_keepsOwnResult() {
+        // suiteFilter=false bypasses the query's suite exclusion, leaving saveResult's guard as the only defence
+        for (boolean suiteFilter : new boolean[]{true, false}) {
+            java.util.Map<Long, ComparisonResult> rows = new java.util.LinkedHashMap<>();
+            ComparisonResultRepository repository = (ComparisonResultRepository) Proxy.newProxyInstance(
+                    ComparisonResultRepository.class.getClassLoader(), new Class<?>[]{ComparisonResultRepository.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "save":
+                                ComparisonResult row = (ComparisonResult) args[0];
+                                if (row.getId() == null) row.setId((long) rows.size() + 1);
+                                rows.put(row.getId(), row);
+                                return row;
+                            case "findById":
+                                return Optional.ofNullable(rows.get(args[0]));
+                            case "findBySuiteIdAndApiId":
+                                return rows.values().stream().filter(r -> r.getSuiteId().equals(args[0])
+                                        && r.getApiId().equals(args[1])).findFirst();
+                            default:
+                                if (!method.getName().startsWith("findFirstByApiId")) return Optional.empty();
+                                String excludedSuite = args.length > 3 ? (String) args[3] : null;
+                                return rows.values().stream()
+                                        .filter(r -> r.getApiId().equals(args[0]) && r.getError() == null
+                                                && args[1].equals(r.getTestResponseHash()) && args[2].equals(r.getProdResponseHash())
+                                                && !r.getSuiteId().equals(excludedSuite))
+                                        .reduce((first, last) -> last);
+                        }
+                    });
+            TestVsProdComparisonService service = new TestVsProdComparisonService(null, null, null, null, null, null,
+                    repository, null, null, 500) {
+                @Override
+                public List<ApiComparisonResult> runComparison(String client, String startDate, String endDate,
+                                                               String apiGroup, List<String> apis, int maxMismatches,
+                                                               String suiteId) {
+                    ApiComparisonResult r = findReusableResult(apis.get(0), "dbx", "bq", null, null,
+                            suiteFilter ? suiteId : null);
+                    if (r == null) r = compareTwoJsonResponses(keyedRows(0), keyedRows(1000), 0.01, apis.get(0), null, 0);
+                    r.setApiId(apis.get(0));
+                    r.setTestResponseHash("dbx");
+                    r.setProdResponseHash("bq");
+                    r.setTestJson(keyedRows(0));
+                    r.setProdJson(keyedRows(1000));
+                    return List.of(r);
+                }
+            };
+            com.analytics.orchestrator.summary.SuiteSummaryService summaries = new com.analytics.orchestrator.summary.SuiteSummaryService(null) {
+                @Override
+                public void record(String suiteId, String apiId, String category, java.util.Map<String, Object> row) {
+                }
+            };
+            AsyncComparisonRunner runner = new AsyncComparisonRunner(service, null, repository, null, null,
+                    new ApiDurationStats(null), null, new com.analytics.orchestrator.events.SuiteEventBroker(), summaries);
+
+            com.analytics.orchestrator.entity.SuiteTask task = com.analytics.orchestrator.entity.SuiteTask.builder()
+                    .id(1L).suiteId("suite-1").apiId("pricing").attempts(1).build();
+            java.util.Map<String, Object> params = new java.util.HashMap<>(java.util.Map.of("client", "c", "apiGroup", "g"));
+            runner.runTask(task, params);
+            // Lease expired after the save: the queue hands the same task out again
+            task.setAttempts(2);
+            runner.runTask(task, params);
+
+            assertEquals(rows.size(), 1, "the re-run must overwrite its row");
+            ComparisonResult row = rows.get(1L);
+            assertNull(row.getReusedFromResultId(), "row links to itself");
+            assertEquals(row.getMismatchCount(), Integer.valueOf(200));
+            assertNotNull(row.getMismatchesJson());
+            assertNotNull(row.getTestResponseJson());
+            assertNotNull(row.getProdResponseJson());
+            assertNotNull(row.getMismatchPatternsJson());
+        }
+    }
+
     /**
      * Inline implementation for standalone test (no Spring).
      * Same logic as TestVsProdComparisonService.compareTwoJsonResponses.
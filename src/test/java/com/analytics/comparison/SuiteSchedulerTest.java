@@ -0,0 +1,112 @@
+package com.analytics.comparison;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class SuiteSchedulerTest {
+
+    private SuiteScheduler scheduler;
+
+    @BeforeMethod
+    public void setUp() {
+        scheduler = new SuiteScheduler(1);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test(description = "Independent nodes run longest-expected first")
+    public void longestFirst() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = blockWorker();
+        scheduler.submit("s1", SuiteScheduler.Lane.BULK, List.of(
+                node("fast", 100, List.of(), order),
+                node("slowExport", 5000, List.of(), order),
+                node("medium", 1000, List.of(), order)));
+        gate.countDown();
+        awaitSize(order, 3);
+        assertEquals(order, List.of("slowExport", "medium", "fast"));
+    }
+
+    @Test(description = "Critical path: a short node with a long dependent chain goes before a longer leaf")
+    public void criticalPathAndDependencies() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = blockWorker();
+        CompletableFuture<Void> done = scheduler.submit("s1", SuiteScheduler.Lane.BULK, List.of(
+                node("leaf", 3000, List.of(), order),
+                node("createJob", 500, List.of(), order),
+                node("query", 4000, List.of("createJob"), order)));
+        gate.countDown();
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(order, List.of("createJob", "query", "leaf"));
+    }
+
+    @Test(description = "Interactive lane jumps ahead of queued bulk work")
+    public void interactiveLaneFirst() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = blockWorker();
+        scheduler.submit("nightly", SuiteScheduler.Lane.BULK, List.of(
+                node("bulkA", 9000, List.of(), order),
+                node("bulkB", 8000, List.of(), order)));
+        scheduler.submit("single", SuiteScheduler.Lane.INTERACTIVE, List.of(node("oneApi", 10, List.of(), order)));
+        gate.countDown();
+        awaitSize(order, 3);
+        assertEquals(order.get(0), "oneApi");
+    }
+
+    @Test(description = "Dependents of a failed node are skipped and the suite still completes")
+    public void failedDependencySkipsDependents() throws Exception {
+        List<String> skipped = Collections.synchronizedList(new ArrayList<>());
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        scheduler.submit("s1", SuiteScheduler.Lane.BULK, List.of(
+                new SuiteScheduler.Node("createJob", 10, List.of(), () -> { throw new IllegalStateException("boom"); }, null),
+                new SuiteScheduler.Node("query", 10, List.of("createJob"), () -> ran.add("query"), skipped::add),
+                new SuiteScheduler.Node("other", 10, List.of(), () -> ran.add("other"), null)))
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(ran, List.of("other"));
+        assertEquals(skipped, List.of("createJob"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void cycleRejected() {
+        scheduler.submit("s1", SuiteScheduler.Lane.BULK, List.of(
+                new SuiteScheduler.Node("a", 1, List.of("b"), () -> { }, null),
+                new SuiteScheduler.Node("b", 1, List.of("a"), () -> { }, null)));
+    }
+
+    /** Occupies the single worker so later submissions queue up and are ordered by priority. */
+    private CountDownLatch blockWorker() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        scheduler.submit("blocker", SuiteScheduler.Lane.INTERACTIVE, List.of(new SuiteScheduler.Node("blocker", 0, List.of(), () -> {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, null)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return gate;
+    }
+
+    private static SuiteScheduler.Node node(String id, long expectedMs, List<String> deps, List<String> order) {
+        return new SuiteScheduler.Node(id, expectedMs, deps, () -> order.add(id), null);
+    }
+
+    private static void awaitSize(List<String> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(list.size(), size);
+    }
+}
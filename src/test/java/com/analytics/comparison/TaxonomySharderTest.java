@@ -0,0 +1,96 @@
+package com.analytics.comparison;
+
+import com.analytics.orchestrator.TaxonomyFieldMappingRegistry;
+import com.analytics.orchestrator.config.ApiDefinition;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class TaxonomySharderTest {
+
+    @Test(description = "Shards are cut from the largest injected list, sized from the learned chars per value")
+    public void planUsesLearnedSize() {
+        TaxonomySharder sharder = new TaxonomySharder(new TaxonomyFieldMappingRegistry(), 100_000, 50, 25);
+        ApiDefinition.ApiSpec spec = spec("productBasics");
+        Map<String, List<String>> taxonomy = Map.of(
+                "retailers", values("r", 3),
+                "brands", values("b", 120),
+                "sub_brands", values("s", 40),
+                "unmapped", values("u", 500));
+
+        assertNull(sharder.plan(spec, taxonomy), "no history yet");
+        sharder.record("productBasics", 120, 120 * 4_000L);
+
+        TaxonomySharder.ShardPlan plan = sharder.plan(spec, taxonomy);
+        assertNotNull(plan);
+        assertEquals(plan.getDimension(), "brands");
+        assertEquals(plan.size(), 5);
+        assertEquals(plan.getShards().get(0), values("b", 25));
+        assertEquals(plan.getShards().get(4).size(), 20);
+        Map<String, List<String>> shard = plan.taxonomyFor(taxonomy, 1);
+        assertEquals(shard.get("brands").get(0), "b25");
+        assertEquals(shard.get("retailers"), taxonomy.get("retailers"));
+    }
+
+    @Test(description = "An API that fits is not sharded; after a failure it falls back to the default shard size")
+    public void smallResponsesStayWhole() {
+        TaxonomySharder sharder = new TaxonomySharder(new TaxonomyFieldMappingRegistry(), 100_000, 4, 25);
+        ApiDefinition.ApiSpec spec = spec("productBasics");
+        Map<String, List<String>> taxonomy = Map.of("brands", values("b", 200));
+
+        sharder.record("productBasics", 200, 50_000);
+        assertNull(sharder.plan(spec, taxonomy));
+
+        TaxonomySharder.ShardPlan plan = sharder.planAfterFailure(spec, taxonomy);
+        assertEquals(plan.size(), 4, "capped at max-shards");
+        assertNull(sharder.planAfterFailure(spec("unknownTemplate"), taxonomy), "template injects nothing");
+    }
+
+    @Test(description = "Merged result: all shards must match, counts add up, mismatch paths carry their shard")
+    public void mergeCombinesShards() {
+        TaxonomySharder.ShardPlan plan = new TaxonomySharder.ShardPlan("brands", List.of(List.of("a"), List.of("b")));
+        TestVsProdComparisonService.ApiComparisonResult first = TestVsProdComparisonService.ApiComparisonResult.builder()
+                .apiId("productBasics").jobId("job-1").testUrl("http://t/q").prodUrl("http://t/q").requestPayload("{}")
+                .match(true).testRowCount(3).prodRowCount(3).mismatchCount(0).mismatches(List.of())
+                .testJson("[1,2,3]").prodJson("[1,2,3]").build();
+        TestVsProdComparisonService.ApiComparisonResult second = TestVsProdComparisonService.ApiComparisonResult.builder()
+                .apiId("productBasics").jobId("job-2").match(false).testRowCount(2).prodRowCount(1).mismatchCount(2)
+                .mismatches(List.of(Map.of("path", "[0].sales", "test", "1", "prod", "2"),
+                        Map.of("path", "_rowCount", "test", "2", "prod", "1")))
+                .testJson("[4,5]").prodJson("[4]").build();
+
+        TestVsProdComparisonService.ApiComparisonResult merged = TaxonomySharder.merge("productBasics", plan.labels(), List.of(first, second), 1);
+        assertFalse(merged.isMatch());
+        assertEquals(merged.getJobId(), "job-1");
+        assertEquals(merged.getTestRowCount(), Integer.valueOf(5));
+        assertEquals(merged.getProdRowCount(), Integer.valueOf(4));
+        assertEquals(merged.getMismatchCount(), Integer.valueOf(2));
+        assertEquals(merged.getMismatches().size(), 1, "capped");
+        assertEquals(merged.getMismatches().get(0).get("path"), "[brands shard 2/2] [0].sales");
+        assertEquals(merged.getTestJson(), "[[1,2,3],[4,5]]");
+        assertEquals(merged.getProdJson(), "[[1,2,3],[4]]");
+        assertNull(merged.getError());
+        assertNotNull(merged.getTestResponseHash());
+        assertEquals(merged.getBreakdown().size(), 2);
+        assertEquals(merged.getBreakdown().get(1).get("part"), "brands shard 2/2");
+        assertEquals(merged.getBreakdown().get(1).get("mismatchCount"), 2);
+        assertEquals(merged.getBreakdown().get(0).get("match"), true);
+    }
+
+    private static ApiDefinition.ApiSpec spec(String template) {
+        ApiDefinition.ApiSpec spec = new ApiDefinition.ApiSpec();
+        spec.setApiId(template);
+        spec.setTemplate(template);
+        return spec;
+    }
+
+    private static List<String> values(String prefix, int n) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < n; i++) values.add(prefix + i);
+        return values;
+    }
+}
@@ -0,0 +1,69 @@
+package com.analytics.comparison.util;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class ComparisonPlannerTest {
+
+    private static String doc(String... records) {
+        return "{\"data\":[" + String.join(",", records) + "]}";
+    }
+
+    private static String record(String sku, int store, double price, String retailers) {
+        return "{\"sku\":\"" + sku + "\",\"store\":" + store + ",\"price\":" + price + ",\"retailers\":" + retailers + "}";
+    }
+
+    @Test(description = "Nested array keys are planned once; the same schema reuses the cached plan with identical diffs")
+    public void planIsCachedPerSchema() throws Exception {
+        String test = doc(record("A", 1, 10.0, "[{\"id\":\"R1\",\"rank\":1},{\"id\":\"R2\",\"rank\":2}]"),
+                record("B", 1, 10.0, "[{\"id\":\"R2\",\"rank\":3}]"));
+        String prod = doc(record("B", 1, 10.0, "[{\"id\":\"R2\",\"rank\":4}]"),
+                record("A", 1, 12.0, "[{\"id\":\"R2\",\"rank\":2},{\"id\":\"R1\",\"rank\":1}]"));
+        ComparisonPlanner planner = new ComparisonPlanner(10);
+
+        UniversalJsonComparator.JsonComparisonResult planned = new UniversalJsonComparator.JsonComparisonResult();
+        ComparisonPlan plan = planner.compare("api", test, prod, 0.0, null, planned);
+
+        assertEquals(plan.keysFor("data"), List.of("sku"));
+        assertEquals(plan.keysFor("data.retailers"), List.of("id"));
+        assertEquals(plan.fieldsFor("data"), List.of("price", "retailers", "sku", "store"));
+        assertEquals(paths(planned), paths(UniversalJsonComparator.compareStructured(test, prod, 0.0)));
+        assertEquals(paths(planned), List.of("data[sku=A].price|12.0|10.0", "data[sku=B].retailers[id=R2].rank|4|3"));
+
+        UniversalJsonComparator.JsonComparisonResult again = new UniversalJsonComparator.JsonComparisonResult();
+        assertSame(planner.compare("api", prod, test, 0.0, null, again), plan);
+        assertEquals(planner.getHits(), 1L);
+        assertEquals(planner.getMisses(), 1L);
+        assertEquals(planner.size(), 1);
+    }
+
+    @Test(description = "A cached key that repeats in a later response falls back to discovery for that array")
+    public void stalePlanFallsBackToDiscovery() throws Exception {
+        ComparisonPlanner planner = new ComparisonPlanner(10);
+        planner.compare("api", doc(record("A", 1, 1.0, "[]"), record("B", 1, 1.0, "[]")),
+                doc(record("A", 1, 1.0, "[]"), record("B", 1, 1.0, "[]")), 0.0, null,
+                new UniversalJsonComparator.JsonComparisonResult());
+
+        // Same schema, but sku alone no longer identifies a record
+        String test = doc(record("A", 1, 1.0, "[]"), record("A", 2, 1.0, "[]"));
+        String prod = doc(record("A", 2, 3.0, "[]"), record("A", 1, 3.0, "[]"));
+        UniversalJsonComparator.JsonComparisonResult result = new UniversalJsonComparator.JsonComparisonResult();
+        ComparisonPlan plan = planner.compare("api", test, prod, 0.0, null, result);
+
+        assertEquals(plan.keysFor("data"), List.of("sku"), "the cached plan was reused");
+        assertEquals(paths(result), List.of("data[store=1].price|3.0|1.0", "data[store=2].price|3.0|1.0"));
+        assertEquals(paths(result), paths(UniversalJsonComparator.compareStructured(test, prod, 0.0)));
+    }
+
+    private static List<String> paths(UniversalJsonComparator.JsonComparisonResult r) {
+        List<String> paths = new ArrayList<>();
+        for (JsonDiff d : r.toFlatDiffs()) paths.add(d.getPath() + "|" + d.getProd() + "|" + d.getTest());
+        Collections.sort(paths);
+        return paths;
+    }
+}
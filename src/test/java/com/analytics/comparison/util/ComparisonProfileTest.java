@@ -0,0 +1,71 @@
+package com.analytics.comparison.util;
+
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class ComparisonProfileTest {
+
+    private static final String TEST = "{\"generated_at\":\"10:00\",\"data\":["
+            + "{\"sku\":\"A\",\"store\":1,\"price\":10.00,\"units\":100,\"meta\":{\"updated_at\":\"x\"}},"
+            + "{\"sku\":\"A\",\"store\":2,\"price\":20.00,\"units\":200,\"meta\":{\"updated_at\":\"x\"}}]}";
+    private static final String PROD = "{\"generated_at\":\"10:05\",\"data\":["
+            + "{\"sku\":\"A\",\"store\":2,\"price\":20.04,\"units\":201,\"meta\":{\"updated_at\":\"y\"}},"
+            + "{\"sku\":\"A\",\"store\":1,\"price\":10.30,\"units\":100,\"meta\":{\"updated_at\":\"y\"}}]}";
+
+    private static ComparisonProfile profile() {
+        return ComparisonProfile.compile(
+                Map.of("data", List.of("sku", "store")),
+                List.of("generated_at", "data.meta.updated_at"),
+                Map.of("price", new ComparisonProfile.Tolerance(0.05, null),
+                        "data.units", new ComparisonProfile.Tolerance(null, 0.01)));
+    }
+
+    @Test(description = "Declared keys, ignored fields and per-field tolerances drive the in-memory comparison")
+    public void profileAppliesInMemory() throws Exception {
+        UniversalJsonComparator.JsonComparisonResult result = new UniversalJsonComparator.JsonComparisonResult();
+        UniversalJsonComparator.compare(TEST, PROD, 0.0, profile(), result);
+
+        // units 200 vs 201 is within 1%; price 20.00 vs 20.04 within 0.05, 10.00 vs 10.30 is not
+        assertEquals(paths(result), List.of("data[sku,store=A|1].price|10.3|10.0"));
+
+        UniversalJsonComparator.JsonComparisonResult plain = new UniversalJsonComparator.JsonComparisonResult();
+        UniversalJsonComparator.compare(TEST, PROD, 0.0, plain);
+        assertTrue(plain.toFlatDiffs().size() > 3, "without a profile the volatile fields differ: " + paths(plain));
+    }
+
+    @Test(description = "The out-of-core join uses the declared row key and hashes rows without ignored fields")
+    public void profileAppliesOutOfCore() throws Exception {
+        UniversalJsonComparator.JsonComparisonResult streamed = new UniversalJsonComparator.JsonComparisonResult();
+        ExternalJsonArrayComparator.Summary summary = new ExternalJsonArrayComparator(0.0, 10, 1 << 20, 10)
+                .compare(new StringReader(TEST), new StringReader(PROD), profile(), streamed);
+
+        assertEquals(summary.getKeyFields(), List.of("sku", "store"));
+        assertEquals(paths(streamed), List.of("data[sku,store=A|1].price|10.3|10.0"));
+    }
+
+    @Test(description = "A declared key that repeats pairs the duplicates in document order")
+    public void duplicateDeclaredKeys() throws Exception {
+        ComparisonProfile byRetailer = ComparisonProfile.compile(Map.of("", List.of("retailer")), null, null);
+        UniversalJsonComparator.JsonComparisonResult result = new UniversalJsonComparator.JsonComparisonResult();
+        UniversalJsonComparator.compare("[{\"retailer\":\"R\",\"v\":1},{\"retailer\":\"R\",\"v\":2}]",
+                "[{\"retailer\":\"R\",\"v\":1},{\"retailer\":\"R\",\"v\":3}]", 0.0, byRetailer, result);
+
+        assertEquals(paths(result), List.of("[retailer=R#2].v|3|2"));
+        assertThrows(IllegalArgumentException.class,
+                () -> ComparisonProfile.compile(Map.of("data", List.of()), null, null));
+    }
+
+    private static List<String> paths(UniversalJsonComparator.JsonComparisonResult r) {
+        List<String> paths = new ArrayList<>();
+        for (JsonDiff d : r.toFlatDiffs()) paths.add(d.getPath() + "|" + d.getProd() + "|" + d.getTest());
+        Collections.sort(paths);
+        return paths;
+    }
+}
@@ -0,0 +1,126 @@
+package com.analytics.comparison.util;
+
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Streaming CSV comparison: header key discovery, quoted fields, float tolerance and spill-to-disk merge join.
+ */
+public class CsvStreamComparatorTest {
+
+    private static final String HEADER = "Retailer,Product ID,\"Product Title\",Avg Price,Units\n";
+
+    @Test(description = "Same rows in different order with float noise - match, key from header")
+    public void reorderedRowsWithinTolerance_shouldMatch() throws Exception {
+        String dbx = HEADER
+                + "Kroger-US,P1,\"Cookies, Choc\",3.49,10\n"
+                + "Target-US,P2,\"Say \"\"hi\"\"\",2.00,5\n";
+        String bq = HEADER
+                + "Target-US,P2,\"Say \"\"hi\"\"\",2.0000001,5\n"
+                + "Kroger-US,P1,\"Cookies, Choc\",3.4900002,10\n";
+        UniversalJsonComparator.JsonComparisonResult result = new UniversalJsonComparator.JsonComparisonResult();
+        CsvStreamComparator.Summary summary = new CsvStreamComparator(0.01, 1000, 1 << 20)
+                .compare(new StringReader(dbx), new StringReader(bq), result);
+        assertEquals(summary.getKeyColumns(), List.of("Retailer", "Product ID", "Product Title"));
+        assertEquals(summary.getFirstRowCount(), 2L);
+        assertEquals(summary.getSecondRowCount(), 2L);
+        assertTrue(result.toFlatDiffs().isEmpty(), "Expected no diffs: " + result.toFlatDiffs());
+    }
+
+    @Test(description = "Missing rows and value diffs are reported like the JSON comparator")
+    public void missingRowsAndFieldDiffs_reported() throws Exception {
+        String dbx = HEADER + "R1,P1,T1,1.50,10\nR1,P2,T2,2.50,3\n";
+        String bq = HEADER + "R1,P1,T1,1.50,11\nR1,P3,T3,9.99,1\n";
+        UniversalJsonComparator.JsonComparisonResult result = new UniversalJsonComparator.JsonComparisonResult();
+        new CsvStreamComparator(0.01, 1000, 1 << 20).compare(new StringReader(dbx), new StringReader(bq), result);
+        assertEquals(result.getMissingInFirst(), List.of("[Retailer,Product ID,Product Title=R1|P3|T3]"));
+        assertEquals(result.getMissingInSecond(), List.of("[Retailer,Product ID,Product Title=R1|P2|T2]"));
+        List<JsonDiff> diffs = result.toFlatDiffs();
+        JsonDiff unitsDiff = diffs.get(diffs.size() - 1);
+        assertEquals(unitsDiff.getPath(), "[Retailer,Product ID,Product Title=R1|P1|T1].Units");
+        assertEquals(unitsDiff.getProd(), "11");
+        assertEquals(unitsDiff.getTest(), "10");
+    }
+
+    @Test(description = "Inputs larger than the in-memory limit spill runs and still merge-join correctly")
+    public void largeInputs_spillAndMatch() throws Exception {
+        StringBuilder dbx = new StringBuilder("sku,store,qty\n");
+        StringBuilder bq = new StringBuilder("sku,store,qty\n");
+        int n = 5000;
+        for (int i = 0; i < n; i++) dbx.append("S").append(i).append(",st").append(i % 7).append(',').append(i).append('\n');
+        Random rnd = new Random(1);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = order[i]; order[i] = order[j]; order[j] = t;
+        }
+        for (int i : order) {
+            int qty = i == 1234 ? 999999 : i;
+            bq.append("S").append(i).append(",st").append(i % 7).append(',').append(qty).append('\n');
+        }
+
+        CappedDiffSink sink = new CappedDiffSink(10);
+        CsvStreamComparator.Summary summary = new CsvStreamComparator(0.01, 300, 1 << 20)
+                .compare(new StringReader(dbx.toString()), new StringReader(bq.toString()), sink);
+        assertTrue(summary.getSpilledRuns() > 2, "Expected spilled runs, got " + summary.getSpilledRuns());
+        assertEquals(summary.getFirstRowCount(), (long) n);
+        assertEquals(summary.getSecondRowCount(), (long) n);
+        assertEquals(sink.getTotal(), 1L);
+        assertEquals(summary.getKeyColumns(), List.of("sku", "store"));
+        assertEquals(sink.getDiffs().get(0).getPath(), "[sku,store=S1234|st2].qty");
+    }
+
+    @Test(description = "A mismatch budget stops the CSV merge join once reached")
+    public void mismatchBudget_stopsMergeJoin() throws Exception {
+        StringBuilder dbx = new StringBuilder("sku,qty\n");
+        StringBuilder bq = new StringBuilder("sku,qty\n");
+        for (int i = 0; i < 1000; i++) {
+            dbx.append("S").append(i).append(',').append(i).append('\n');
+            bq.append("S").append(999 - i).append(',').append(5000 + 999 - i).append('\n');
+        }
+
+        CappedDiffSink capped = new CappedDiffSink(10, 7);
+        new CsvStreamComparator(0.01, 100, 1 << 20)
+                .compare(new StringReader(dbx.toString()), new StringReader(bq.toString()), capped);
+        assertTrue(capped.isFull());
+        assertEquals(capped.getTotal(), 7L, "the join must stop at the budget");
+
+        CappedDiffSink unbounded = new CappedDiffSink(10);
+        new CsvStreamComparator(0.01, 100, 1 << 20)
+                .compare(new StringReader(dbx.toString()), new StringReader(bq.toString()), unbounded);
+        assertFalse(unbounded.isFull());
+        assertEquals(unbounded.getTotal(), 1000L);
+    }
+
+    @Test(description = "A sampled CSV comparison joins the selected keys only but counts and aggregates every row")
+    public void sampling_keepsRowCountsAndAggregates() throws Exception {
+        StringBuilder dbx = new StringBuilder("sku,qty\n");
+        StringBuilder bq = new StringBuilder("sku,qty\n");
+        int n = 2000;
+        for (int i = 0; i < n; i++) {
+            dbx.append("S").append(i).append(',').append(i).append('\n');
+            if (i != 7) bq.append("S").append(i).append(',').append(i).append('\n');
+        }
+        ComparisonProfile profile = ComparisonProfile.compile(null, null, null, new ComparisonProfile.Sampling(0.25, 0.99));
+
+        CappedDiffSink sink = new CappedDiffSink(100);
+        CsvStreamComparator.Summary summary = new CsvStreamComparator(0.01, 300, 1 << 20)
+                .compare(new StringReader(dbx.toString()), new StringReader(bq.toString()), profile, sink);
+
+        SampleSummary sample = summary.getSample();
+        assertEquals(summary.getFirstRowCount(), (long) n);
+        assertEquals(summary.getSecondRowCount(), n - 1L);
+        assertTrue(sample.getSampledRows() > 400 && sample.getSampledRows() < 600, sample.toString());
+        assertEquals(sample.getConfidence(), 0.99);
+        assertEquals(sample.getMismatchedRows(), profile.getSampling().selects("S7") ? 1L : 0L);
+        assertEquals(sample.getTestAggregates().get(0).getCount(), (long) n);
+        assertEquals(sample.getProdAggregates().get(0).getCount(), n - 1L);
+        assertTrue(sink.getDiffs().stream().anyMatch(d -> d.getPath().equals("_aggregate.qty.count")), sink.getDiffs().toString());
+    }
+}
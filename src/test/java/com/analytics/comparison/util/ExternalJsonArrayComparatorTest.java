@@ -0,0 +1,206 @@
+package com.analytics.comparison.util;
+
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Out-of-core array join must report the same differences as the in-memory comparator.
+ */
+public class ExternalJsonArrayComparatorTest {
+
+    @Test(description = "Wrapped data array, shuffled order, spilled runs - same diffs as UniversalJsonComparator")
+    public void spilledMergeJoin_matchesInMemoryComparator() throws Exception {
+        Random rnd = new Random(11);
+        StringBuilder a = new StringBuilder("{\"meta\":{\"v\":1},\"data\":[");
+        StringBuilder b = new StringBuilder("{\"data\":[");
+        int n = 3000;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = order[i]; order[i] = order[j]; order[j] = t;
+        }
+        for (int i = 0; i < n; i++) {
+            if (i > 0) a.append(',');
+            a.append("{\"product_id\":\"p").append(i).append("\",\"retailer\":\"R").append(i % 5)
+                    .append("\",\"price\":").append(1.0 + i).append('}');
+        }
+        boolean firstB = true;
+        for (int i : order) {
+            if (i == 17) continue;                     // missing in second
+            if (!firstB) b.append(',');
+            firstB = false;
+            double price = i == 42 ? 999.0 : 1.0 + i * 1.0001;  // within tolerance except 42
+            b.append("{\"retailer\":\"R").append(i % 5).append("\",\"product_id\":\"p").append(i)
+                    .append("\",\"price\":").append(price).append('}');
+        }
+        b.append(",{\"product_id\":\"extra\",\"retailer\":\"R0\",\"price\":1}],\"meta\":{\"v\":2}}");
+        a.append("]}");
+
+        UniversalJsonComparator.JsonComparisonResult streamed = new UniversalJsonComparator.JsonComparisonResult();
+        ExternalJsonArrayComparator.Summary summary = new ExternalJsonArrayComparator(0.01, 250, 1 << 20, 500)
+                .compare(new StringReader(a.toString()), new StringReader(b.toString()), streamed);
+        UniversalJsonComparator.JsonComparisonResult inMemory =
+                UniversalJsonComparator.compareStructured(a.toString(), b.toString(), 0.01);
+
+        assertTrue(summary.getSpilledRuns() > 2, "Expected spilled runs, got " + summary.getSpilledRuns());
+        assertEquals(summary.getFirstRowCount(), (long) n);
+        assertEquals(summary.getSecondRowCount(), (long) n);
+        assertEquals(summary.getKeyFields(), List.of("product_id"));
+        assertEquals(streamed.getMissingInFirst(), inMemory.getMissingInFirst());
+        assertEquals(streamed.getMissingInSecond(), inMemory.getMissingInSecond());
+        assertEquals(sortedPaths(streamed), sortedPaths(inMemory));
+        assertEquals(streamed.toFlatDiffs().size(), 4, streamed.toFlatDiffs().toString());
+    }
+
+    @Test(description = "Rows in identical hash-tree buckets are skipped; the diffs are those of a full join")
+    public void hashTreeSkipsIdenticalBuckets() throws Exception {
+        StringBuilder a = new StringBuilder("[");
+        StringBuilder b = new StringBuilder("[");
+        int n = 5000;
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                a.append(',');
+                b.append(',');
+            }
+            a.append("{\"id\":\"r").append(i).append("\",\"v\":").append(i).append('}');
+            b.append("{\"v\":").append(i == 4321 ? i + 1 : i).append(",\"id\":\"r").append(i).append("\"}");
+        }
+        a.append(']');
+        b.append(']');
+
+        UniversalJsonComparator.JsonComparisonResult withTree = new UniversalJsonComparator.JsonComparisonResult();
+        ExternalJsonArrayComparator.Summary summary = new ExternalJsonArrayComparator(0.0, 1000, 1 << 20, 100, 1024, 64)
+                .compare(new StringReader(a.toString()), new StringReader(b.toString()), withTree);
+        UniversalJsonComparator.JsonComparisonResult full = new UniversalJsonComparator.JsonComparisonResult();
+        ExternalJsonArrayComparator.Summary fullSummary = new ExternalJsonArrayComparator(0.0, 1000, 1 << 20, 100, 0, 64)
+                .compare(new StringReader(a.toString()), new StringReader(b.toString()), full);
+
+        assertEquals(sortedPaths(withTree), List.of("[id=r4321].v|4322|4321"));
+        assertEquals(sortedPaths(full), sortedPaths(withTree));
+        assertEquals(summary.getFirstTree().getBucketCount(), 128);
+        assertEquals(MerkleTree.diff(summary.getFirstTree(), summary.getSecondTree()).size(), 1);
+        assertTrue(summary.getSkippedRows() > 2L * n - 200, "skipped " + summary.getSkippedRows());
+        assertNull(fullSummary.getFirstTree());
+        assertEquals(fullSummary.getSkippedRows(), 0L);
+    }
+
+    @Test(description = "A mismatch budget stops the spilled merge join once reached")
+    public void mismatchBudget_stopsMergeJoin() throws Exception {
+        StringBuilder a = new StringBuilder("{\"data\":[");
+        StringBuilder b = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) { a.append(','); b.append(','); }
+            a.append("{\"id\":\"r").append(i).append("\",\"v\":").append(i).append('}');
+            b.append("{\"id\":\"r").append(499 - i).append("\",\"v\":").append(1000 + 499 - i).append('}');
+        }
+        a.append("]}");
+        b.append("]}");
+
+        CappedDiffSink capped = new CappedDiffSink(100, 5);
+        ExternalJsonArrayComparator.Summary summary = new ExternalJsonArrayComparator(0.01, 50, 1 << 20, 100)
+                .compare(new StringReader(a.toString()), new StringReader(b.toString()), capped);
+        assertTrue(summary.getSpilledRuns() > 2, "Expected spilled runs, got " + summary.getSpilledRuns());
+        assertTrue(capped.isFull());
+        assertEquals(capped.getTotal(), 5L, "the join must stop at the budget");
+
+        CappedDiffSink unbounded = new CappedDiffSink(100);
+        new ExternalJsonArrayComparator(0.01, 50, 1 << 20, 100)
+                .compare(new StringReader(a.toString()), new StringReader(b.toString()), unbounded);
+        assertFalse(unbounded.isFull());
+        assertEquals(unbounded.getTotal(), 500L);
+    }
+
+    @Test(description = "Root arrays without a unique key are compared by position")
+    public void rootArrayWithoutKey_comparedByIndex() throws Exception {
+        String a = "[{\"v\":1.5},{\"v\":2.5}]";
+        String b = "[{\"v\":1.5},{\"v\":3.5}]";
+        UniversalJsonComparator.JsonComparisonResult streamed = new UniversalJsonComparator.JsonComparisonResult();
+        new ExternalJsonArrayComparator(0.01, 10, 1 << 20, 10).compare(new StringReader(a), new StringReader(b), streamed);
+        assertEquals(sortedPaths(streamed), sortedPaths(UniversalJsonComparator.compareStructured(a, b, 0.01)));
+    }
+
+    @Test(description = "Rows whose declared key is null are compared positionally among themselves, not dropped")
+    public void keylessRows_comparedNotDropped() throws Exception {
+        ComparisonProfile profile = ComparisonProfile.compile(java.util.Map.of("data", List.of("id")), null, null, null);
+        String a = "{\"data\":[{\"id\":null,\"v\":1},{\"id\":null,\"v\":2},{\"id\":\"k\",\"v\":3}]}";
+        String b = "{\"data\":[{\"id\":null,\"v\":1},{\"id\":null,\"v\":5},{\"id\":null,\"v\":6},{\"id\":\"k\",\"v\":3}]}";
+        CappedDiffSink sink = new CappedDiffSink(100);
+        ExternalJsonArrayComparator.Summary summary = new ExternalJsonArrayComparator(0.01, 10, 1 << 20, 10)
+                .compare(new StringReader(a), new StringReader(b), profile, sink);
+
+        assertEquals(summary.getKeylessRows(), 5L);
+        assertEquals(sink.getTotal(), 2L);
+        List<String> paths = new java.util.ArrayList<>();
+        for (JsonDiff d : sink.getDiffs()) paths.add(d.getPath());
+        assertTrue(paths.contains("data[id=(no key)#2].v"), paths.toString());
+        assertTrue(paths.stream().anyMatch(p -> p.contains("(no key)#3")), paths.toString());
+
+        // Every row keyless on both sides, values differing: a mismatch, not an empty (matching) join
+        CappedDiffSink allKeyless = new CappedDiffSink(100);
+        new ExternalJsonArrayComparator(0.01, 10, 1 << 20, 10).compare(
+                new StringReader("{\"data\":[{\"id\":null,\"v\":1}]}"),
+                new StringReader("{\"data\":[{\"id\":null,\"v\":2}]}"), profile, allKeyless);
+        assertEquals(allKeyless.getTotal(), 1L);
+    }
+
+    @Test(description = "Sampling compares only hash-selected keys, aggregates every row and bounds the mismatch rate")
+    public void sampling_comparesSelectedKeysAndAggregatesAllRows() throws Exception {
+        StringBuilder a = new StringBuilder("{\"data\":[");
+        StringBuilder b = new StringBuilder("{\"data\":[");
+        int n = 4000;
+        ComparisonProfile profile = ComparisonProfile.compile(java.util.Map.of("data", List.of("product_id")), null, null,
+                new ComparisonProfile.Sampling(0.1, null));
+        long selected = 0;
+        long selectedDiffering = 0;
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                a.append(',');
+                b.append(',');
+            }
+            a.append("{\"product_id\":\"p").append(i).append("\",\"units\":").append(i).append(",\"price\":10.0}");
+            b.append("{\"product_id\":\"p").append(i).append("\",\"units\":").append(i).append(",\"price\":")
+                    .append(i % 10 == 0 ? "20.0" : "10.0").append('}');
+            if (profile.getSampling().selects("p" + i)) {
+                selected++;
+                if (i % 10 == 0) selectedDiffering++;
+            }
+        }
+        a.append("]}");
+        b.append("]}");
+
+        CappedDiffSink sink = new CappedDiffSink(10_000);
+        ExternalJsonArrayComparator.Summary summary = new ExternalJsonArrayComparator(0.01, 1000, 1 << 20, 100)
+                .compare(new StringReader(a.toString()), new StringReader(b.toString()), profile, sink);
+
+        SampleSummary sample = summary.getSample();
+        assertEquals(summary.getFirstRowCount(), (long) n);
+        assertNull(summary.getFirstTree(), "no hash trees when sampling");
+        assertTrue(selected > 300 && selected < 500, "selected " + selected);
+        assertEquals(sample.getSampledRows(), selected);
+        assertEquals(sample.getMismatchedRows(), selectedDiffering);
+        assertTrue(sample.getMismatchRateLower() <= 0.1 && 0.1 <= sample.getMismatchRateUpper(), sample.toString());
+        assertEquals(sample.getAggregateMismatches(), 2L, "price sum and max");
+        assertEquals(sink.getTotal(), selectedDiffering + 2);
+        assertTrue(sink.getDiffs().stream().anyMatch(d -> d.getPath().equals("data._aggregate.price.sum")
+                && d.getProd().equals("44000.0") && d.getTest().equals("40000.0")), sink.getDiffs().toString());
+        assertEquals(sample.getTestAggregates().get(0).getColumn(), "units");
+        assertEquals(sample.getTestAggregates().get(0).getCount(), (long) n);
+
+        double[] bounds = SampleSummary.wilson(5, 100, 0.95);
+        assertEquals(bounds[0], 0.0216, 1e-3);
+        assertEquals(bounds[1], 0.1118, 1e-3);
+    }
+
+    private static List<String> sortedPaths(UniversalJsonComparator.JsonComparisonResult r) {
+        List<String> paths = new java.util.ArrayList<>();
+        for (JsonDiff d : r.toFlatDiffs()) paths.add(d.getPath() + "|" + d.getProd() + "|" + d.getTest());
+        java.util.Collections.sort(paths);
+        return paths;
+    }
+}
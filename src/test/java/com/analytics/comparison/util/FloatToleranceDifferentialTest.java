@@ -0,0 +1,175 @@
+package com.analytics.comparison.util;
+
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.*;
+
+/**
+ * Differential test: the regex-free / typed scalar comparison in UniversalJsonComparator must give exactly
+ * the same answer as the original regex + String implementation (kept here as the reference).
+ */
+public class FloatToleranceDifferentialTest {
+
+    private static final double TOLERANCE = 0.01;
+
+    private static final Pattern LEGACY_FLOAT_PATTERN = Pattern.compile("^-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?$");
+    private static final Pattern LEGACY_ID_RETAILER_PRODUCT = Pattern.compile("^(.+?-[A-Z]{2})(-?)(.+)$", Pattern.CASE_INSENSITIVE);
+
+    private static final String[] FIXED_TOKENS = {
+            null, "", " ", "null", "NULL", "0", "0.0", ".0", "1", "1.0", "-0", "-0.0", "00", "007", "7",
+            "1e5", "1E5", "1.0E10", "1.0E-5", "1e+5", "1e", "1.", "-", "--1", "+1", " 12 ", "12", "12.0",
+            "0.95", "0.9500001", "0.8699999", "0.87", "100", "101", "NaN", "Infinity", "-Infinity",
+            "9007199254740993", "9007199254740992", "123456789012345", "123456789012346", "1234567890123456",
+            "Walgreens-USprod6020383", "Walgreens-US-prod6020383", "Kroger-US0002113618087", "Kroger-US-0002113618087",
+            "Kroger-US-", "Kroger-US--", "a-bc", "a-bcd", "-US1", "x-US\nprod", "Target-us-123", "é-US1", "true", "false",
+            "BrandA", "brand a", "[1, 2]", "{a=1}"
+    };
+
+    @Test(description = "String pairs: new valuesEqualWithFloatTolerance == legacy regex implementation")
+    public void stringPairs_matchLegacy() {
+        List<String> corpus = buildStringCorpus(new Random(42), 400);
+        for (String a : corpus) {
+            for (String b : sample(corpus, new Random(a == null ? 0 : a.hashCode()), 60)) {
+                assertEquals(UniversalJsonComparator.valuesEqualWithFloatTolerance(a, b, TOLERANCE),
+                        legacyValuesEqual(a, b, TOLERANCE),
+                        "Mismatch for '" + a + "' vs '" + b + "'");
+            }
+        }
+    }
+
+    @Test(description = "Typed Jackson numbers: scalarsEqualWithFloatTolerance == legacy on String.valueOf")
+    public void typedNumbers_matchLegacyOnStringForm() {
+        Random rnd = new Random(7);
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            double base = (rnd.nextDouble() - 0.5) * Math.pow(10, rnd.nextInt(12) - 4);
+            values.add(base);
+            values.add(base * (1 + (rnd.nextDouble() - 0.5) * 0.04));
+            values.add((double) Math.round(base));
+            values.add((int) Math.round(base));
+            values.add(Math.round(base) + (long) Integer.MAX_VALUE);
+        }
+        values.add(0);
+        values.add(0.0);
+        values.add(-0.0);
+        values.add(1e-11);
+        values.add(2e-11);
+        values.add(Double.NaN);
+        values.add(Double.POSITIVE_INFINITY);
+        values.add(Long.MAX_VALUE);
+        values.add(Long.MAX_VALUE - 1);
+        values.add(new BigInteger("123456789012345678901234567890"));
+        values.add(new BigInteger("123456789012345678901234567891"));
+        values.add(null);
+        values.add("12");
+        values.add(Boolean.TRUE);
+
+        for (Object a : values) {
+            for (Object b : sample(values, new Random(Objects.hashCode(a)), 80)) {
+                assertEquals(UniversalJsonComparator.scalarsEqualWithFloatTolerance(a, b, TOLERANCE),
+                        legacyValuesEqual(String.valueOf(a), String.valueOf(b), TOLERANCE),
+                        "Mismatch for " + a + " vs " + b);
+            }
+        }
+    }
+
+    @Test(description = "Hand-written key normalization == legacy ID_RETAILER_PRODUCT regex, cold and cached")
+    public void keyNormalization_matchesLegacy() {
+        List<String> corpus = buildStringCorpus(new Random(3), 400);
+        for (int pass = 0; pass < 2; pass++) {
+            for (String s : corpus) {
+                assertEquals(UniversalJsonComparator.normalizeKeyValueForMatching(s, ""), legacyNormalize(s),
+                        "Mismatch for '" + s + "' (pass " + pass + ")");
+            }
+        }
+        String first = UniversalJsonComparator.normalizeKeyValueForMatching("Kroger-US0002113618087", "");
+        assertSame(UniversalJsonComparator.normalizeKeyValueForMatching(new String("Kroger-US0002113618087"), ""), first,
+                "repeated key values are served from the cache");
+    }
+
+    private static List<String> buildStringCorpus(Random rnd, int randomCount) {
+        List<String> corpus = new ArrayList<>();
+        for (String t : FIXED_TOKENS) corpus.add(t);
+        String alphabet = "0123456789.-eE+ abUS-prodXyZ\n";
+        for (int i = 0; i < randomCount; i++) {
+            int kind = rnd.nextInt(4);
+            if (kind == 0) {
+                corpus.add(String.valueOf((rnd.nextDouble() - 0.5) * Math.pow(10, rnd.nextInt(10) - 3)));
+            } else if (kind == 1) {
+                corpus.add(String.valueOf(rnd.nextInt(2000) - 1000));
+            } else {
+                StringBuilder sb = new StringBuilder();
+                int len = 1 + rnd.nextInt(12);
+                for (int j = 0; j < len; j++) sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+                corpus.add(sb.toString());
+            }
+        }
+        return corpus;
+    }
+
+    private static <T> List<T> sample(List<T> values, Random rnd, int n) {
+        List<T> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) out.add(values.get(rnd.nextInt(values.size())));
+        out.add(values.get(0));
+        return out;
+    }
+
+    // ---- Reference implementation (pre-change UniversalJsonComparator) ----
+
+    private static boolean legacyIsNumeric(String s) {
+        if (s == null || s.isBlank()) return false;
+        return LEGACY_FLOAT_PATTERN.matcher(s.trim()).matches();
+    }
+
+    private static boolean legacyValuesEqual(String val1, String val2, double tolerance) {
+        if (Objects.equals(val1, val2)) return true;
+        String n1 = val1 == null ? "null" : val1.trim();
+        String n2 = val2 == null ? "null" : val2.trim();
+
+        if (("null".equalsIgnoreCase(n1) && "0.0".equals(n2)) || ("null".equalsIgnoreCase(n2) && "0.0".equals(n1))) return true;
+        if (("0".equals(n1) && "0.0".equals(n2)) || ("0".equals(n2) && "0.0".equals(n1))) return true;
+        if (("0".equals(n1) && "null".equalsIgnoreCase(n2)) || ("0".equals(n2) && "null".equalsIgnoreCase(n1))) return true;
+        if ((".0".equals(n1) && "0.0".equals(n2)) || (".0".equals(n2) && "0.0".equals(n1))) return true;
+        if (("null".equalsIgnoreCase(n1) && "1".equals(n2)) || ("1".equals(n1) && "null".equalsIgnoreCase(n2))) return true;
+
+        if (legacyIsNumeric(n1) && legacyIsNumeric(n2)) {
+            try {
+                double d1 = Double.parseDouble(n1);
+                double d2 = Double.parseDouble(n2);
+                boolean isInt1 = d1 == Math.floor(d1) && !Double.isInfinite(d1);
+                boolean isInt2 = d2 == Math.floor(d2) && !Double.isInfinite(d2);
+                if (isInt1 && isInt2) {
+                    return d1 == d2;
+                }
+                double absDiff = Math.abs(d1 - d2);
+                double maxAbs = Math.max(Math.abs(d1), Math.abs(d2));
+                if (maxAbs < 1e-10) {
+                    return absDiff < 1e-6;
+                }
+                return absDiff / maxAbs <= tolerance;
+            } catch (NumberFormatException ignored) {
+                return false;
+            }
+        }
+        return legacyNormalize(n1).equals(legacyNormalize(n2));
+    }
+
+    private static String legacyNormalize(String val) {
+        if (val == null || val.isBlank()) return val;
+        String s = val.trim();
+        if (s.length() < 4) return s;
+        Matcher m = LEGACY_ID_RETAILER_PRODUCT.matcher(s);
+        if (m.matches()) {
+            return m.group(1) + "-" + m.group(3);
+        }
+        return s;
+    }
+}
@@ -0,0 +1,58 @@
+package com.analytics.comparison.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class MerkleTreeTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test(description = "Row order and number format do not change the root; a changed row flags only its bucket")
+    public void diffLocalisesChangedRow() throws Exception {
+        MerkleTree a = new MerkleTree(64);
+        MerkleTree b = new MerkleTree(64);
+        for (int i = 0; i < 500; i++) {
+            a.add("p" + i, JsonComparisonUtils.canonicalHash64(objectMapper.readTree(
+                    "{\"product_id\":\"p" + i + "\",\"price\":" + i + "}")));
+        }
+        for (int i = 499; i >= 0; i--) {
+            String price = i == 123 ? "999" : i + ".0";
+            b.add("p" + i, JsonComparisonUtils.canonicalHash64(objectMapper.readTree(
+                    "{\"price\":" + price + ",\"product_id\":\"p" + i + "\"}")));
+        }
+
+        assertNotEquals(a.root(), b.root());
+        assertEquals(MerkleTree.diff(a, b), List.of(a.bucketOf("p123")));
+
+        MerkleTree folded = a.fold(8);
+        assertEquals(folded.getBucketCount(), 8);
+        assertEquals(folded.getRowCount(), 500L);
+        assertEquals(MerkleTree.diff(folded, b), List.of(a.bucketOf("p123") & 7), "trees of different size fold to the smaller");
+    }
+
+    @Test(description = "Stored JSON round-trips; bucket count is sized from the row count")
+    public void jsonRoundTripAndSizing() {
+        MerkleTree t = new MerkleTree(16);
+        t.setKeyFields(List.of("retailer", "product_id"));
+        for (int i = 0; i < 100; i++) t.add("k" + i, i * 31L);
+
+        MerkleTree parsed = MerkleTree.parse(t.toJson());
+        assertNotNull(parsed);
+        assertEquals(parsed.root(), t.root());
+        assertEquals(parsed.getRowCount(), 100L);
+        assertEquals(parsed.getKeyFields(), List.of("retailer", "product_id"));
+        assertTrue(MerkleTree.diff(parsed, t).isEmpty());
+        assertNull(MerkleTree.parse("{\"buckets\":3}"));
+
+        parsed.setKeyFields(List.of("product_id"));
+        assertEquals(MerkleTree.diff(parsed, t).size(), 16, "different keys cannot be matched bucket by bucket");
+
+        assertEquals(MerkleTree.bucketCountFor(1_000_000, 256, 1024), 1024);
+        assertEquals(MerkleTree.bucketCountFor(3000, 256, 1024), 16);
+        assertEquals(MerkleTree.bucketCountFor(0, 256, 1024), 1);
+    }
+}
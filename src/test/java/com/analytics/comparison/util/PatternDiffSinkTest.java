@@ -0,0 +1,122 @@
+package com.analytics.comparison.util;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class PatternDiffSinkTest {
+
+    @Test(description = "Keyed rows collapse to one pattern per column with delta stats and a bounded sample")
+    public void rowsCollapseToPatterns() throws Exception {
+        List<Map<String, Object>> test = new ArrayList<>();
+        List<Map<String, Object>> prod = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            test.add(row("P" + i, 10.0 + i, i % 2 == 0 ? 3 : 4));
+            if (i >= 3) prod.add(row("P" + i, 8.0 + i, 3));
+        }
+
+        PatternDiffSink sink = new PatternDiffSink(10, 50, 4);
+        UniversalJsonComparator.compare(test, prod, 0.0, sink);
+
+        assertEquals(sink.getTotal(), 3 + 197 + 99L);
+        assertEquals(sink.getDiffs().size(), 10, "verbatim diffs stay capped");
+        List<MismatchPattern> patterns = sink.getPatterns();
+        assertEquals(patterns.size(), 3, patterns.toString());
+
+        MismatchPattern sales = patterns.get(0);
+        assertEquals(sales.getPattern(), "[product_id=*].sales");
+        assertEquals(sales.getKind(), PatternDiffSink.KIND_FIELD);
+        assertEquals(sales.getCount(), 197L);
+        assertEquals(sales.getNumericCount(), 197L);
+        assertEquals(sales.getMinDelta(), 2.0, 1e-9);
+        assertEquals(sales.getMaxDelta(), 2.0, 1e-9);
+        assertEquals(sales.getMeanDelta(), 2.0, 1e-9);
+        assertEquals(sales.getExamples().size(), 4);
+        assertTrue(sales.getExamples().get(0).get("path").matches("\\[product_id=P\\d+]\\.sales"));
+
+        assertEquals(patterns.get(1).getPattern(), "[product_id=*].units");
+        assertEquals(patterns.get(1).getCount(), 99L);
+        assertEquals(patterns.get(2).getKind(), PatternDiffSink.KIND_MISSING_IN_SECOND);
+        assertEquals(patterns.get(2).getPattern(), "[product_id=*]");
+        assertEquals(patterns.get(2).getCount(), 3L);
+        assertNull(patterns.get(2).getMeanDelta());
+    }
+
+    @Test(description = "Index and key segments are normalised; patterns beyond the limit go to _other")
+    public void normalisesAndBoundsPatterns() {
+        assertEquals(PatternDiffSink.normalize("data[retailer,store_id=r1|7].rows[12].price"), "data[retailer,store_id=*].rows[*].price");
+        assertEquals(PatternDiffSink.normalize("total"), "total");
+
+        PatternDiffSink sink = new PatternDiffSink(0, 2, 1);
+        for (int i = 0; i < 5; i++) {
+            sink.addFieldDiff("[" + i + "].a", "1", "2");
+            sink.addFieldDiff("[" + i + "].b", "x", "y");
+            sink.addFieldDiff("[" + i + "].c" + i, "1", "1.5");
+        }
+        List<MismatchPattern> patterns = sink.getPatterns();
+        assertEquals(patterns.size(), 3);
+        assertEquals(patterns.get(0).getPattern(), "[*].a");
+        assertEquals(patterns.get(1).getPattern(), "[*].b");
+        assertEquals(patterns.get(1).getNumericCount(), 0L);
+        assertEquals(patterns.get(2).getPattern(), PatternDiffSink.OTHER_PATTERN);
+        assertEquals(patterns.get(2).getCount(), 5L);
+        assertTrue(sink.getDiffs().isEmpty());
+    }
+
+    @Test(description = "A mismatch budget stops the comparison once reached")
+    public void budgetStopsComparison() throws Exception {
+        List<Map<String, Object>> test = new ArrayList<>();
+        List<Map<String, Object>> prod = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            test.add(row("P" + i, 10.0, 3));
+            prod.add(row("P" + i, 20.0, 4));
+        }
+
+        PatternDiffSink sink = new PatternDiffSink(10, 50, 4, 5);
+        UniversalJsonComparator.compare(test, prod, 0.0, sink);
+        assertTrue(sink.isFull());
+        assertEquals(sink.getTotal(), 5L);
+        assertEquals(sink.getDiffs().size(), 5);
+
+        PatternDiffSink unbounded = new PatternDiffSink(10, 50, 4);
+        UniversalJsonComparator.compare(test, prod, 0.0, unbounded);
+        assertFalse(unbounded.isFull());
+        assertEquals(unbounded.getTotal(), 200L);
+    }
+
+    @Test(description = "Merged parts add counts, weight the mean by numeric count and keep the sample bounded")
+    public void mergeCombinesParts() {
+        PatternDiffSink first = new PatternDiffSink(0, 10, 3);
+        for (int i = 0; i < 30; i++) first.addFieldDiff("[id=" + i + "].sales", "0", "1");
+        PatternDiffSink second = new PatternDiffSink(0, 10, 3);
+        for (int i = 0; i < 10; i++) second.addFieldDiff("[id=" + i + "].sales", "0", "5");
+        second.addMissingInFirst("", "id", "99");
+
+        List<MismatchPattern> merged = PatternDiffSink.merge(List.of(first.getPatterns(), second.getPatterns()));
+        assertEquals(merged.size(), 2);
+        MismatchPattern sales = merged.get(0);
+        assertEquals(sales.getCount(), 40L);
+        assertEquals(sales.getMinDelta(), 1.0, 1e-9);
+        assertEquals(sales.getMaxDelta(), 5.0, 1e-9);
+        assertEquals(sales.getMeanDelta(), 2.0, 1e-9);
+        assertEquals(sales.getExamples().size(), 3);
+        assertEquals(merged.get(1).getKind(), PatternDiffSink.KIND_MISSING_IN_FIRST);
+
+        List<List<MismatchPattern>> none = new ArrayList<>();
+        none.add(null);
+        assertNull(PatternDiffSink.merge(none));
+    }
+
+    private static Map<String, Object> row(String id, double sales, int units) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("product_id", id);
+        m.put("sales", sales);
+        m.put("units", units);
+        return m;
+    }
+}
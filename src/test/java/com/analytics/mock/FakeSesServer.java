@@ -0,0 +1,107 @@
+package com.analytics.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Local stand-in for the SES query API (SendRawEmail only), for orchestrator.report.ses.endpoint in tests.
+ * Accepted raw MIME messages are kept in memory; like SES, messages above {@link #setMaxMessageBytes} are
+ * rejected with an InvalidParameterValue error.
+ */
+public class FakeSesServer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(FakeSesServer.class);
+
+    private final HttpServer server;
+    private final List<byte[]> messages = new ArrayList<>();
+    private volatile long maxMessageBytes = 10 * 1024 * 1024;
+
+    public FakeSesServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 16);
+        server.createContext("/", this::handle);
+    }
+
+    public FakeSesServer start() {
+        server.start();
+        log.info("[MOCK] Fake SES listening on {}", getEndpoint());
+        return this;
+    }
+
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void setMaxMessageBytes(long maxMessageBytes) {
+        this.maxMessageBytes = maxMessageBytes;
+    }
+
+    /** Raw MIME messages accepted so far, oldest first. */
+    public synchronized List<byte[]> getMessages() {
+        return new ArrayList<>(messages);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        String requestId = UUID.randomUUID().toString();
+        if (!"SendRawEmail".equals(params.get("Action"))) {
+            respond(exchange, 400, error("InvalidAction", "Unsupported action " + params.get("Action"), requestId));
+            return;
+        }
+        byte[] raw = Base64.getDecoder().decode(params.getOrDefault("RawMessage.Data", ""));
+        if (raw.length > maxMessageBytes) {
+            respond(exchange, 400, error("InvalidParameterValue",
+                    "Message length is more than " + maxMessageBytes + " bytes long: '" + raw.length + "'.", requestId));
+            return;
+        }
+        synchronized (this) {
+            messages.add(raw);
+        }
+        respond(exchange, 200, "<SendRawEmailResponse xmlns=\"http://ses.amazonaws.com/doc/2010-12-01/\">"
+                + "<SendRawEmailResult><MessageId>" + UUID.randomUUID() + "</MessageId></SendRawEmailResult>"
+                + "<ResponseMetadata><RequestId>" + requestId + "</RequestId></ResponseMetadata></SendRawEmailResponse>");
+    }
+
+    private static String error(String code, String message, String requestId) {
+        return "<ErrorResponse xmlns=\"http://ses.amazonaws.com/doc/2010-12-01/\"><Error><Type>Sender</Type><Code>" + code
+                + "</Code><Message>" + message + "</Message></Error><RequestId>" + requestId + "</RequestId></ErrorResponse>";
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/xml");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
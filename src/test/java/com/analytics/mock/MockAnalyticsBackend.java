@@ -0,0 +1,249 @@
+package com.analytics.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Builder;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeddable stand-in for the analytics backend and Query Genie, so comparison / validation runs can be
+ * exercised and benchmarked without test.ef.uk.com. Serves:
+ * <ul>
+ *   <li>POST /analytics/query/{api} - synthetic rows; x-bqdbx-config: BQ_ONLY gets injected diffs</li>
+ *   <li>POST /analytics/exports/create-job/ - returns a job id</li>
+ *   <li>GET /rpax/user/config - taxonomy config (retailers, brands, categories)</li>
+ *   <li>GET /api/alerts/validation/detail/{id} and /alert-validation-detail/{id} - Query Genie record</li>
+ * </ul>
+ * Response size, latency (log-normal from median/p99), error rate and diff rate come from {@link Settings}.
+ * Rows are deterministic per (api, payload), so DBX and BQ differ only by the injected diffs.
+ * <p>
+ * Standalone: {@code java com.analytics.mock.MockAnalyticsBackend [port]}.
+ */
+public class MockAnalyticsBackend implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(MockAnalyticsBackend.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String HEADER_BQDBX_CONFIG = "x-bqdbx-config";
+    private static final double Z_99 = 2.326;
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final Map<String, List<Map<String, Object>>> rowCache = new ConcurrentHashMap<>();
+
+    public MockAnalyticsBackend(Settings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", settings.getPort()), 256);
+        this.executor = Executors.newFixedThreadPool(settings.getThreads());
+        server.setExecutor(executor);
+        server.createContext("/analytics/query/", this::handleQuery);
+        server.createContext("/analytics/exports/create-job", this::handleCreateJob);
+        server.createContext("/rpax/user/config", this::handleUserConfig);
+        server.createContext("/api/alerts/validation/detail/", this::handleValidationDetail);
+        server.createContext("/alert-validation-detail/", this::handleValidationDetail);
+    }
+
+    public MockAnalyticsBackend start() {
+        server.start();
+        log.info("[MOCK] Analytics backend listening on {}", getBaseUrl());
+        return this;
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Requests served per endpoint kind (query, create-job, config, validation-detail). */
+    public long getRequestCount(String kind) {
+        AtomicLong c = requestCounts.get(kind);
+        return c != null ? c.get() : 0;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleQuery(HttpExchange ex) throws IOException {
+        count("query");
+        String body = readBody(ex);
+        simulateLatency();
+        if (shouldFail()) {
+            send(ex, 500, "{\"error\":\"injected failure\"}");
+            return;
+        }
+        String api = ex.getRequestURI().getPath().substring("/analytics/query/".length());
+        String variant = ex.getRequestHeaders().getFirst(HEADER_BQDBX_CONFIG);
+        List<Map<String, Object>> rows = rowCache.computeIfAbsent(api + "|" + body.hashCode(),
+                k -> generateRows(api, body.hashCode()));
+        List<Map<String, Object>> out = "BQ_ONLY".equals(variant) ? injectDiffs(rows, api) : rows;
+        send(ex, 200, objectMapper.writeValueAsString(out));
+    }
+
+    private void handleCreateJob(HttpExchange ex) throws IOException {
+        count("create-job");
+        readBody(ex);
+        simulateLatency();
+        if (shouldFail()) {
+            send(ex, 500, "{\"error\":\"injected failure\"}");
+            return;
+        }
+        send(ex, 200, objectMapper.writeValueAsString(Map.of("success", true, "jobId", UUID.randomUUID().toString())));
+    }
+
+    private void handleUserConfig(HttpExchange ex) throws IOException {
+        count("config");
+        Map<String, Object> retailers = new LinkedHashMap<>();
+        for (int i = 0; i < settings.getRetailers(); i++) retailers.put(retailer(i), Map.of());
+        List<Map<String, Object>> brands = new ArrayList<>();
+        for (int i = 0; i < settings.getBrands(); i++) brands.add(Map.of("name", "Brand" + i, "mybrand", true));
+        List<String> categories = new ArrayList<>();
+        for (int i = 0; i < 5; i++) categories.add("Category" + i);
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("retailers", retailers);
+        config.put("brands", brands);
+        config.put("manufacturers", List.of("Mock Manufacturer"));
+        config.put("taxonomy", Map.of("filters", Map.of("category", categories, "sub_category", List.of("Sub0", "Sub1"))));
+        send(ex, 200, objectMapper.writeValueAsString(Map.of("config", config)));
+    }
+
+    private void handleValidationDetail(HttpExchange ex) throws IOException {
+        count("validation-detail");
+        String path = ex.getRequestURI().getPath();
+        String id = path.substring(path.lastIndexOf('/') + 1);
+        send(ex, 200, objectMapper.writeValueAsString(Map.of("data",
+                Map.of("id", id, "response_validation", Map.of("status", "COMPLETED")))));
+    }
+
+    private List<Map<String, Object>> generateRows(String api, int seed) {
+        Random rnd = new Random(31L * api.hashCode() + seed);
+        List<Map<String, Object>> rows = new ArrayList<>(settings.getRowsPerResponse());
+        for (int i = 0; i < settings.getRowsPerResponse(); i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("retailer", retailer(i % Math.max(1, settings.getRetailers())));
+            row.put("product_id", "P" + i);
+            row.put("brand", "Brand" + (i % Math.max(1, settings.getBrands())));
+            row.put("count", rnd.nextInt(10_000));
+            row.put("availability_pct", Math.round(rnd.nextDouble() * 10_000) / 100.0);
+            row.put("avg_price", Math.round(rnd.nextDouble() * 100_000) / 100.0);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /** BQ leg: each row independently gets a changed metric (diffRate) or is dropped (missingRowRate). */
+    private List<Map<String, Object>> injectDiffs(List<Map<String, Object>> rows, String api) {
+        if (settings.getDiffRate() <= 0 && settings.getMissingRowRate() <= 0) return rows;
+        Random rnd = new Random(api.hashCode());
+        List<Map<String, Object>> out = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            double r = rnd.nextDouble();
+            if (r < settings.getMissingRowRate()) continue;
+            if (r < settings.getMissingRowRate() + settings.getDiffRate()) {
+                Map<String, Object> changed = new LinkedHashMap<>(row);
+                changed.put("count", ((Integer) row.get("count")) + 1 + rnd.nextInt(100));
+                out.add(changed);
+            } else {
+                out.add(row);
+            }
+        }
+        return out;
+    }
+
+    private static String retailer(int i) {
+        return "Retailer" + i + "-US";
+    }
+
+    /** Log-normal latency with the configured median and p99. */
+    private void simulateLatency() {
+        long median = settings.getLatencyMedianMs();
+        if (median <= 0) return;
+        double sigma = Math.log((double) Math.max(settings.getLatencyP99Ms(), median) / median) / Z_99;
+        double ms = median * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+        try {
+            Thread.sleep((long) ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean shouldFail() {
+        return settings.getErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < settings.getErrorRate();
+    }
+
+    private void count(String kind) {
+        requestCounts.computeIfAbsent(kind, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static String readBody(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** Knobs for the synthetic backend. */
+    @Getter
+    @Builder
+    public static class Settings {
+        /** 0 = random free port. */
+        @Builder.Default
+        private int port = 0;
+        @Builder.Default
+        private int threads = 32;
+        @Builder.Default
+        private int rowsPerResponse = 200;
+        @Builder.Default
+        private int retailers = 5;
+        @Builder.Default
+        private int brands = 20;
+        @Builder.Default
+        private long latencyMedianMs = 20;
+        @Builder.Default
+        private long latencyP99Ms = 150;
+        /** Fraction of query/create-job requests answered with HTTP 500. */
+        @Builder.Default
+        private double errorRate = 0.0;
+        /** Fraction of BQ rows with a changed metric value. */
+        @Builder.Default
+        private double diffRate = 0.0;
+        /** Fraction of BQ rows left out. */
+        @Builder.Default
+        private double missingRowRate = 0.0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9090;
+        MockAnalyticsBackend backend = new MockAnalyticsBackend(Settings.builder()
+                .port(port)
+                .diffRate(0.01)
+                .build()).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(backend::close));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,162 @@
+package com.analytics.orchestrator;
+
+import com.analytics.orchestrator.chunking.DateChunkPlanner;
+import com.analytics.orchestrator.config.ApiDefinition;
+import com.analytics.orchestrator.entity.SuiteTask;
+import com.analytics.orchestrator.entity.TestReportDetail;
+import com.analytics.orchestrator.events.SuiteEventBroker;
+import com.analytics.orchestrator.queue.SuiteTaskQueue;
+import com.analytics.orchestrator.repository.TestReportDetailRepository;
+import com.analytics.orchestrator.summary.SuiteSummaryService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.testng.Assert.*;
+
+/**
+ * Queued validation tasks: a transient analytics API failure is thrown so the queue retries it, a 4xx is
+ * persisted as FAIL, and once the suite's validation.timeout-minutes deadline has passed nothing is retried.
+ */
+public class AsyncValidationRunnerTest {
+
+    private static final String SUITE = "suite-1";
+
+    private final List<TestReportDetail> saved = new ArrayList<>();
+    private final ApiDefinition.ApiSpec spec = new ApiDefinition.ApiSpec();
+    private Integer httpStatus;
+    private AsyncValidationRunner runner;
+
+    @BeforeMethod
+    public void setUp() {
+        saved.clear();
+        spec.setApiId("pricing");
+        spec.setEndpoint("/pricing");
+        spec.setDataProvider("dateRanges");
+        ConfigResolver configResolver = new ConfigResolver(null) {
+            @Override
+            public List<ApiDefinition.ApiSpec> resolveApis(String apiGroup, List<String> specificApis) {
+                return List.of(spec);
+            }
+        };
+        DataProviderRegistry dataProviders = new DataProviderRegistry() {
+            @Override
+            public List<Map<String, Object>> getData(String dataProviderName, String apiId,
+                                                     Map<String, Object> baseParams, Map<String, List<String>> taxonomy) {
+                return List.of();
+            }
+        };
+        PayloadGenerator payloads = new PayloadGenerator(null) {
+            @Override
+            public String generate(String templateName, Map<String, Object> params, Map<String, List<String>> taxonomy) {
+                return "{}";
+            }
+        };
+        TestExecutor executor = new TestExecutor() {
+            @Override
+            public ApiExecutionResult execute(String baseUrl, String endpoint, Map<String, String> headers, String body) {
+                return ApiExecutionResult.builder().status("FAIL").httpStatus(httpStatus)
+                        .errorMessage(httpStatus == null ? "Connection refused" : "HTTP " + httpStatus).build();
+            }
+        };
+        TestReportDetailRepository details = (TestReportDetailRepository) Proxy.newProxyInstance(
+                TestReportDetailRepository.class.getClassLoader(), new Class<?>[]{TestReportDetailRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("save")) {
+                        saved.add((TestReportDetail) args[0]);
+                        return args[0];
+                    }
+                    return method.getName().startsWith("find") ? Optional.empty() : null;
+                });
+        SuiteSummaryService summaries = new SuiteSummaryService(null) {
+            @Override
+            public void record(String suiteId, String apiId, String category, Map<String, Object> row) {
+            }
+        };
+        ValidationService service = new ValidationService(configResolver, null, null, dataProviders, payloads, executor,
+                null, details, null, new SuiteEventBroker(), summaries, new DateChunkPlanner()) {
+            @Override
+            public SuiteContext getSuiteContext(String suiteId, String client, String environment, String startDate,
+                                                String endDate, String baseUrlOverride, String configUserEmail) {
+                Map<String, Object> baseParams = new HashMap<>();
+                baseParams.put("start_date", "2026-01-10");
+                baseParams.put("end_date", "2026-01-12");
+                return new SuiteContext("http://analytics", baseParams, Map.of());
+            }
+        };
+        runner = new AsyncValidationRunner(service, configResolver, null, details);
+    }
+
+    @Test(description = "Connection errors and 5xx are thrown so the queue retries the task; nothing is persisted yet")
+    public void transientFailure_isRetriedByQueue() {
+        for (Integer status : new Integer[]{null, 503, 429}) {
+            httpStatus = status;
+            try {
+                runner.runTask(task(1), params(System.currentTimeMillis() + 60_000));
+                fail("expected the task to fail for HTTP " + status);
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().startsWith("pricing: "), e.getMessage());
+            }
+        }
+        assertTrue(saved.isEmpty(), "a retryable failure must not leave a FAIL row behind");
+    }
+
+    @Test(description = "A 4xx will not get better on retry: persisted as FAIL and the task completes")
+    public void clientError_isPersistedNotRetried() {
+        httpStatus = 400;
+        runner.runTask(task(1), params(System.currentTimeMillis() + 60_000));
+        assertEquals(saved.size(), 1);
+        assertEquals(saved.get(0).getStatus(), "FAIL");
+        assertEquals(saved.get(0).getMessage(), "pricing: HTTP 400");
+    }
+
+    @Test(description = "Past the suite deadline a transient failure is recorded instead of retried")
+    public void pastDeadline_noMoreRetries() {
+        httpStatus = 503;
+        runner.runTask(task(2), params(System.currentTimeMillis() - 1));
+        assertEquals(saved.size(), 1);
+        assertEquals(saved.get(0).getStatus(), "FAIL");
+    }
+
+    @Test(description = "The deadline is fixed at submission and travels with the queued tasks")
+    public void enqueue_storesDeadline() throws Exception {
+        List<Map<String, Object>> enqueued = new ArrayList<>();
+        SuiteTaskQueue queue = new SuiteTaskQueue(null, null, null) {
+            @Override
+            public List<SuiteTask> enqueue(String suiteId, String suiteType, int lane, Map<String, Object> params,
+                                           List<NewTask> tasks) {
+                enqueued.add(params);
+                return List.of();
+            }
+        };
+        java.lang.reflect.Field f = AsyncValidationRunner.class.getDeclaredField("taskQueue");
+        f.setAccessible(true);
+        f.set(runner, queue);
+
+        long before = System.currentTimeMillis();
+        runner.enqueue(SUITE, "client", "staging", "group", null, null, List.of("pricing"), null, null);
+        assertEquals(enqueued.size(), 1);
+        Number deadline = (Number) enqueued.get(0).get("deadlineMs");
+        assertNotNull(deadline);
+        assertTrue(deadline.longValue() >= before);
+    }
+
+    private static SuiteTask task(int attempt) {
+        return SuiteTask.builder().id(1L).suiteId(SUITE).suiteType(SuiteTaskQueue.TYPE_VALIDATION)
+                .apiId("pricing").attempts(attempt).maxAttempts(3).build();
+    }
+
+    private static Map<String, Object> params(long deadlineMs) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("client", "client");
+        params.put("apiGroup", "group");
+        params.put("deadlineMs", deadlineMs);
+        return params;
+    }
+}
@@ -0,0 +1,84 @@
+package com.analytics.orchestrator;
+
+import com.analytics.orchestrator.entity.TestReportDetail;
+import com.analytics.orchestrator.repository.TestReportDetailRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = "queue.enabled=false")
+@ActiveProfiles("test")
+public class DbMigrationRunnerTest extends AbstractTestNGSpringContextTests {
+
+    @Autowired
+    private DbMigrationRunner migrationRunner;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    @Autowired
+    private TestReportDetailRepository detailRepository;
+
+    @Test(description = "Every migration is recorded once; a second run changes nothing")
+    public void migrationsAreRecordedAndRepeatable() {
+        List<Integer> before = jdbcTemplate.queryForList(
+                "SELECT version FROM " + DbMigrationRunner.VERSION_TABLE + " ORDER BY version", Integer.class);
+        assertTrue(before.containsAll(List.of(1, 2)), "applied: " + before);
+
+        migrationRunner.runMigrations();
+        List<Integer> after = jdbcTemplate.queryForList(
+                "SELECT version FROM " + DbMigrationRunner.VERSION_TABLE + " ORDER BY version", Integer.class);
+        assertEquals(after, before);
+    }
+
+    @Test(description = "Hibernate starts after the migrations, so ddl-auto=validate sees the migrated schema")
+    public void entityManagerFactoryDependsOnMigrations() {
+        String[] dependsOn = beanFactory.getBeanDefinition("entityManagerFactory").getDependsOn();
+        assertNotNull(dependsOn);
+        assertTrue(Arrays.asList(dependsOn).contains("dbMigrationRunner"), Arrays.toString(dependsOn));
+    }
+
+    @Test(description = "On a fresh DB, migrations deferred until Hibernate created the tables are all recorded")
+    public void deferredMigrationsRecordedAfterHibernate() {
+        List<Integer> versions = jdbcTemplate.queryForList(
+                "SELECT version FROM " + DbMigrationRunner.VERSION_TABLE + " ORDER BY version", Integer.class);
+        assertTrue(versions.size() >= 8, "applied: " + versions);
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(versions.get(i), Integer.valueOf(i + 1), "applied: " + versions);
+        }
+    }
+
+    @Test(description = "test_report_detail accepts one row per (suite_id, api_id)")
+    public void suiteApiIsUnique() {
+        String suiteId = UUID.randomUUID().toString();
+        detailRepository.save(detail(suiteId));
+        try {
+            assertThrows(DataIntegrityViolationException.class, () -> detailRepository.saveAndFlush(detail(suiteId)));
+        } finally {
+            detailRepository.deleteBySuiteIdAndApiId(suiteId, "productBasics");
+        }
+    }
+
+    private static TestReportDetail detail(String suiteId) {
+        return TestReportDetail.builder()
+                .suiteId(suiteId)
+                .testId(UUID.randomUUID().toString())
+                .apiId("productBasics")
+                .status("PASS")
+                .build();
+    }
+}
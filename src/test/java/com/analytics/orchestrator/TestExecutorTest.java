@@ -0,0 +1,89 @@
+package com.analytics.orchestrator;
+
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/**
+ * {@link TestExecutor#executeToFile} against a local HTTP server: small bodies come back in memory, large ones
+ * only on disk.
+ */
+public class TestExecutorTest {
+
+    private static final String SMALL = "[{\"id\":1}]";
+    private static final String LARGE = "id,value\n" + "1,2\n".repeat(10_000);
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/small", ex -> send(ex, 200, SMALL));
+        server.createContext("/large", ex -> send(ex, 200, LARGE));
+        server.createContext("/error", ex -> send(ex, 503, "{\"error\":\"down\"}"));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() {
+        if (server != null) server.stop(0);
+    }
+
+    private static void send(com.sun.net.httpserver.HttpExchange ex, int status, String body) throws IOException {
+        ex.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> headers() {
+        return Map.of("Content-Type", "application/json", "Host", "ignored");
+    }
+
+    @Test(description = "Body within the limit - returned as the payload, no file left behind")
+    public void executeToFile_smallBody_inMemory() {
+        TestExecutor.ApiExecutionResult r = new TestExecutor().executeToFile(baseUrl, "/small", headers(), "{}", 1024);
+        assertEquals(r.getStatus(), "PASS");
+        assertEquals(r.getResponsePayload(), SMALL);
+        assertNull(r.getResponseFile());
+        assertEquals(r.getResponseLength(), Long.valueOf(SMALL.length()));
+    }
+
+    @Test(description = "Body above the limit - left on disk for the caller, never read into the payload")
+    public void executeToFile_largeBody_onDisk() throws IOException {
+        TestExecutor.ApiExecutionResult r = new TestExecutor().executeToFile(baseUrl, "/large", headers(), "{}", 1024);
+        try {
+            assertEquals(r.getStatus(), "PASS");
+            assertNull(r.getResponsePayload());
+            assertNotNull(r.getResponseFile());
+            assertEquals(r.getResponseLength(), Long.valueOf(LARGE.length()));
+            assertEquals(Files.readString(r.getResponseFile()), LARGE);
+        } finally {
+            TestExecutor.deleteQuietly(r.getResponseFile());
+        }
+        assertFalse(Files.exists(r.getResponseFile()));
+    }
+
+    @Test(description = "HTTP error - FAIL with the status, body kept like any other")
+    public void executeToFile_httpError_fails() {
+        TestExecutor.ApiExecutionResult r = new TestExecutor().executeToFile(baseUrl, "/error", headers(), "{}", 1024);
+        assertEquals(r.getStatus(), "FAIL");
+        assertEquals(r.getHttpStatus(), Integer.valueOf(503));
+        assertEquals(r.getErrorMessage(), "HTTP 503");
+        assertEquals(r.getResponsePayload(), "{\"error\":\"down\"}");
+    }
+}
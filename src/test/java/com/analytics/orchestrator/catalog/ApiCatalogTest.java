@@ -0,0 +1,97 @@
+package com.analytics.orchestrator.catalog;
+
+import com.analytics.comparison.util.ComparisonProfile;
+import com.analytics.orchestrator.PayloadGenerator;
+import com.analytics.orchestrator.TaxonomyFieldMappingRegistry;
+import com.analytics.orchestrator.config.ApiDefinition;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+public class ApiCatalogTest {
+
+    @Test(description = "Every config/apis YAML is discovered and groups resolve case-insensitively and by alias")
+    public void groupsAreDiscovered() throws Exception {
+        ApiCatalog catalog = new ApiCatalog();
+
+        assertTrue(catalog.groupNames().containsAll(List.of("productContent", "multiLocation2.0", "search", "pricing",
+                "promotion", "ratingReviews", "export", "settings")), catalog.groupNames().toString());
+        assertSame(catalog.resolve("analytics", null), catalog.resolve("productContent", null));
+        assertSame(catalog.resolve("rating&reviews", null), catalog.resolve("RATINGREVIEWS", null));
+        assertEquals(catalog.resolve("multiLocation2.0", List.of()).size(), catalog.resolve("multilocation2.0", null).size());
+        assertThrows(IllegalArgumentException.class, () -> catalog.resolve("nope", null));
+    }
+
+    @Test(description = "A subset keeps YAML order, drops unknown ids and cannot be modified")
+    public void subsetKeepsYamlOrder() throws Exception {
+        ApiCatalog catalog = new ApiCatalog();
+        List<String> all = ids(catalog.resolve("analytics", null));
+        String first = all.get(0);
+        String third = all.get(2);
+
+        List<ApiDefinition.ApiSpec> subset = catalog.resolve("analytics", List.of(third, "unknownApi", first, third));
+        assertEquals(ids(subset), List.of(first, third));
+        assertSame(catalog.find("analytics", third), subset.get(1));
+        assertThrows(UnsupportedOperationException.class, () -> subset.remove(0));
+    }
+
+    @Test(description = "Every template the catalog names exists and parses")
+    public void allTemplatesPreload() throws Exception {
+        ApiCatalog catalog = new ApiCatalog();
+        PayloadGenerator generator = new PayloadGenerator(new TaxonomyFieldMappingRegistry());
+
+        assertEquals(generator.preload(catalog.templateNames()), catalog.templateNames().size());
+        assertTrue(catalog.templateNames().size() > 50, "templates: " + catalog.templateNames().size());
+    }
+
+    @Test(description = "Two files declaring the same apiGroup fail loading")
+    public void duplicateGroupIsRejected() throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        Files.writeString(dir.resolve("a-apis.yaml"), "apiGroup: pricing\napis:\n  - apiId: one\n");
+        Files.writeString(dir.resolve("b-apis.yaml"), "apiGroup: Pricing\napis:\n  - apiId: two\n");
+
+        IllegalStateException e = expectThrows(IllegalStateException.class,
+                () -> new ApiCatalog(new PathMatchingResourcePatternResolver(), "file:" + dir + "/*.yaml"));
+        assertTrue(e.getMessage().contains("a-apis.yaml") && e.getMessage().contains("b-apis.yaml"), e.getMessage());
+    }
+
+    @Test(description = "A comparison block is compiled at load; an invalid one fails loading")
+    public void comparisonBlockIsCompiled() throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        Files.writeString(dir.resolve("a-apis.yaml"), "apiGroup: pricing\napis:\n"
+                + "  - apiId: one\n"
+                + "    comparison:\n"
+                + "      keys:\n"
+                + "        \"\": [retailer, product_id]\n"
+                + "      ignore: [updated_at]\n"
+                + "      tolerances:\n"
+                + "        price: {absolute: 0.05}\n"
+                + "      sampling: {rate: 0.01}\n"
+                + "  - apiId: two\n");
+        ApiCatalog catalog = new ApiCatalog(new PathMatchingResourcePatternResolver(), "file:" + dir + "/*.yaml");
+
+        ComparisonProfile profile = catalog.find("pricing", "one").getComparisonProfile();
+        assertEquals(profile.keysFor(""), List.of("retailer", "product_id"));
+        assertTrue(profile.isIgnored("updated_at", "updated_at"));
+        assertEquals(profile.toleranceFor("price", "price").getAbsolute(), 0.05);
+        assertEquals(profile.getSampling().getRate(), 0.01);
+        assertEquals(profile.getSampling().getConfidence(), 0.95);
+        assertNull(catalog.find("pricing", "two").getComparisonProfile());
+
+        Files.writeString(dir.resolve("a-apis.yaml"), "apiGroup: pricing\napis:\n"
+                + "  - apiId: one\n    comparison:\n      tolerances:\n        price: {}\n");
+        IllegalStateException e = expectThrows(IllegalStateException.class,
+                () -> new ApiCatalog(new PathMatchingResourcePatternResolver(), "file:" + dir + "/*.yaml"));
+        assertTrue(e.getMessage().contains("'one'") && e.getMessage().contains("price"), e.getMessage());
+    }
+
+    private static List<String> ids(List<ApiDefinition.ApiSpec> specs) {
+        return specs.stream().map(ApiDefinition.ApiSpec::getApiId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,61 @@
+package com.analytics.orchestrator.chunking;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+public class DateChunkPlannerTest {
+
+    @Test(description = "A month is cut into consecutive weeks; a window within max-days-per-request is left whole")
+    public void monthSplitsIntoWeeks() {
+        DateChunkPlanner planner = new DateChunkPlanner(7, DateChunkPlanner.Unit.WEEK, 31, 2);
+
+        List<DateChunk> chunks = planner.plan("2026-01-01", "2026-01-31");
+        assertEquals(labels(chunks), List.of("2026-01-01..2026-01-07", "2026-01-08..2026-01-14",
+                "2026-01-15..2026-01-21", "2026-01-22..2026-01-28", "2026-01-29..2026-01-31"));
+        assertEquals(chunks.stream().mapToInt(DateChunk::days).sum(), 31);
+
+        assertNull(planner.plan("2026-01-01", "2026-01-07"));
+        assertNull(planner.plan("2026-01-31", "2026-01-01"), "reversed window");
+        assertNull(planner.plan("2026-02-31", "2026-03-31"), "not an ISO date");
+    }
+
+    @Test(description = "Daily chunks after a too-large window, widened to stay within max-chunks")
+    public void byDayRespectsMaxChunks() {
+        DateChunkPlanner planner = new DateChunkPlanner(7, DateChunkPlanner.Unit.DAY, 10, 2);
+
+        assertEquals(planner.planByDay("2026-01-01", "2026-01-03").size(), 3);
+        assertEquals(planner.planByDay("2026-01-01", "2026-01-03").get(1).label(), "2026-01-02");
+        assertNull(planner.planByDay("2026-01-05", "2026-01-05"), "single day");
+
+        List<DateChunk> year = planner.plan("2026-01-01", "2026-12-31");
+        assertEquals(year.size(), 10);
+        assertEquals(year.get(0).days(), 37);
+        assertEquals(year.get(9).endDate(), "2026-12-31");
+    }
+
+    @Test(description = "Chunks run in parallel, results keep chunk order and nested splits run inline")
+    public void runAllKeepsOrder() {
+        DateChunkPlanner planner = new DateChunkPlanner(7, DateChunkPlanner.Unit.DAY, 31, 1);
+        try {
+            List<DateChunk> chunks = planner.plan("2026-01-01", "2026-01-10");
+            // A pool of one thread would deadlock if the nested runAll waited on it
+            List<String> results = planner.runAll(chunks, c -> c.label() + ":"
+                    + planner.runAll(planner.planByDay("2026-01-01", "2026-01-02"), DateChunk::label).size()
+                    + ":" + Thread.currentThread().getName().startsWith("date-chunk-"));
+
+            assertEquals(results.size(), 10);
+            assertEquals(results.get(0), "2026-01-01:2:true");
+            assertEquals(results.get(9), "2026-01-10:2:true");
+        } finally {
+            planner.shutdown();
+        }
+    }
+
+    private static List<String> labels(List<DateChunk> chunks) {
+        return chunks.stream().map(DateChunk::label).collect(Collectors.toList());
+    }
+}
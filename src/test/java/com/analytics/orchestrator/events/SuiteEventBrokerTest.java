@@ -0,0 +1,73 @@
+package com.analytics.orchestrator.events;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class SuiteEventBrokerTest {
+
+    @Test(description = "Replay buffer keeps only the newest events per suite, ids keep increasing")
+    public void bufferIsBounded() {
+        SuiteEventBroker broker = new SuiteEventBroker(10, 3);
+        for (int i = 1; i <= 5; i++) {
+            broker.publishApiResult("s1", Map.of("apiId", "api" + i));
+        }
+        List<SuiteEventBroker.SuiteEvent> events = broker.bufferedEvents("s1");
+        assertEquals(events.size(), 3);
+        assertEquals(events.get(0).id, 3L);
+        assertEquals(events.get(2).id, 5L);
+        assertEquals(events.get(2).data.get("apiId"), "api5");
+        assertTrue(broker.bufferedEvents("other").isEmpty());
+    }
+
+    @Test(description = "Subscribers stay attached until the suite event, then the stream closes")
+    public void suiteEventClosesSubscribers() {
+        SuiteEventBroker broker = new SuiteEventBroker(10, 100);
+        broker.publishApiResult("s1", Map.of("apiId", "a"));
+        broker.subscribe("s1", null, null);
+        broker.subscribe("s1", 1L, null);
+        assertEquals(broker.subscriberCount("s1"), 2);
+
+        broker.publishSuiteFinished("s1", "COMPLETED");
+        assertEquals(broker.subscriberCount("s1"), 0);
+        List<SuiteEventBroker.SuiteEvent> events = broker.bufferedEvents("s1");
+        assertEquals(events.get(events.size() - 1).type, SuiteEventBroker.EVENT_SUITE);
+        assertEquals(events.get(events.size() - 1).data.get("suiteStatus"), "COMPLETED");
+    }
+
+    @Test(description = "Late subscriber to a finished suite (in memory or per DB status) is not kept open")
+    public void finishedSuiteIsNotSubscribed() {
+        SuiteEventBroker broker = new SuiteEventBroker(10, 100);
+        broker.publishApiResult("s1", Map.of("apiId", "a"));
+        broker.publishSuiteFinished("s1", "FAILED");
+        broker.subscribe("s1", null, null);
+        assertEquals(broker.subscriberCount("s1"), 0);
+
+        broker.subscribe("restarted", null, "COMPLETED");
+        assertEquals(broker.subscriberCount("restarted"), 0);
+    }
+
+    @Test(description = "A new api event after the terminal one reopens the suite (re-run)")
+    public void rerunReopensSuite() {
+        SuiteEventBroker broker = new SuiteEventBroker(10, 100);
+        broker.publishSuiteFinished("s1", "COMPLETED");
+        broker.publishApiResult("s1", Map.of("apiId", "a"));
+        broker.subscribe("s1", null, null);
+        assertEquals(broker.subscriberCount("s1"), 1);
+    }
+
+    @Test(description = "Least recently used suites are dropped once max-suites is exceeded")
+    public void suitesAreEvicted() {
+        SuiteEventBroker broker = new SuiteEventBroker(2, 100);
+        broker.publishApiResult("s1", Map.of("apiId", "a"));
+        broker.publishApiResult("s2", Map.of("apiId", "a"));
+        broker.publishApiResult("s1", Map.of("apiId", "b"));
+        broker.publishApiResult("s3", Map.of("apiId", "a"));
+        assertEquals(broker.bufferedEvents("s1").size(), 2);
+        assertTrue(broker.bufferedEvents("s2").isEmpty());
+        assertEquals(broker.bufferedEvents("s3").size(), 1);
+    }
+}
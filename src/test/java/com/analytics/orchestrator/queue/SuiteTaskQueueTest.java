@@ -0,0 +1,158 @@
+package com.analytics.orchestrator.queue;
+
+import com.analytics.orchestrator.entity.SuiteTask;
+import com.analytics.orchestrator.repository.SuiteTaskRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+/**
+ * Queue semantics against H2. The local worker is disabled so the test drives claiming itself.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {"queue.enabled=false", "queue.max-attempts=2", "queue.retry-backoff-seconds=0"})
+@ActiveProfiles("test")
+public class SuiteTaskQueueTest extends AbstractTestNGSpringContextTests {
+
+    @Autowired
+    private SuiteTaskQueue queue;
+
+    @Autowired
+    private SuiteTaskRepository taskRepository;
+
+    private String suiteId;
+
+    @BeforeMethod
+    public void cleanQueue() {
+        taskRepository.deleteAll();
+        suiteId = UUID.randomUUID().toString();
+    }
+
+    @Test(groups = "queue", description = "Each task is claimed by exactly one owner, interactive lane and higher rank first")
+    public void claimIsExclusiveAndOrdered() {
+        queue.enqueue(suiteId, SuiteTaskQueue.TYPE_COMPARISON, 1, Map.of("client", "c"), List.of(
+                new SuiteTaskQueue.NewTask("small", 100, null),
+                new SuiteTaskQueue.NewTask("big", 9000, null)));
+        queue.enqueue(UUID.randomUUID().toString(), SuiteTaskQueue.TYPE_COMPARISON, 0, Map.of(), List.of(
+                new SuiteTaskQueue.NewTask("interactive", 1, null)));
+
+        List<SuiteTask> first = queue.claim("a", 2, Duration.ofMinutes(1));
+        List<SuiteTask> second = queue.claim("b", 5, Duration.ofMinutes(1));
+
+        assertEquals(first.get(0).getApiId(), "interactive");
+        assertEquals(first.get(1).getApiId(), "big");
+        assertEquals(second.size(), 1);
+        assertEquals(second.get(0).getApiId(), "small");
+        assertEquals(second.get(0).getLeaseOwner(), "b");
+        assertTrue(queue.claim("c", 5, Duration.ofMinutes(1)).isEmpty());
+    }
+
+    @Test(groups = "queue", description = "An expired lease is reclaimed by another worker; the old owner can no longer complete it")
+    public void expiredLeaseIsReclaimed() throws Exception {
+        queue.enqueue(suiteId, SuiteTaskQueue.TYPE_VALIDATION, 1, Map.of(), List.of(new SuiteTaskQueue.NewTask("api", 0, null)));
+        SuiteTask crashed = queue.claim("dead-instance", 1, Duration.ofMillis(1)).get(0);
+        Thread.sleep(20);
+
+        SuiteTask resumed = queue.claim("new-instance", 1, Duration.ofMinutes(1)).get(0);
+        assertEquals(resumed.getId(), crashed.getId());
+        assertEquals(resumed.getAttempts(), Integer.valueOf(2));
+        assertFalse(queue.complete(crashed, "dead-instance"));
+        assertTrue(queue.complete(resumed, "new-instance"));
+        assertTrue(queue.isSuiteFinished(suiteId));
+    }
+
+    @Test(groups = "queue", description = "Failures retry until max-attempts, then fail the task and skip its dependents")
+    public void retriesThenSkipsDependents() {
+        queue.enqueue(suiteId, SuiteTaskQueue.TYPE_COMPARISON, 1, Map.of(), List.of(
+                new SuiteTaskQueue.NewTask("createJob", 10, null),
+                new SuiteTaskQueue.NewTask("query", 5, List.of("createJob"))));
+
+        List<SuiteTask> claimed = queue.claim("w", 5, Duration.ofMinutes(1));
+        assertEquals(claimed.size(), 1, "query must wait for createJob");
+        assertTrue(queue.fail(claimed.get(0), "w", "HTTP 502").isEmpty(), "first failure is retried");
+
+        SuiteTask retry = queue.claim("w", 5, Duration.ofMinutes(1)).get(0);
+        assertEquals(retry.getApiId(), "createJob");
+        List<SuiteTask> failed = queue.fail(retry, "w", "HTTP 502");
+        assertEquals(failed.size(), 2);
+        assertEquals(failed.get(1).getApiId(), "query");
+        assertTrue(queue.isSuiteFinished(suiteId));
+        assertTrue(queue.hasFailures(suiteId));
+    }
+
+    @Test(groups = "queue", description = "Released tasks go back to PENDING without using up an attempt")
+    public void releaseOnShutdown() {
+        queue.enqueue(suiteId, SuiteTaskQueue.TYPE_COMPARISON, 1, Map.of(), List.of(new SuiteTaskQueue.NewTask("api", 0, null)));
+        SuiteTask t = queue.claim("w", 1, Duration.ofMinutes(1)).get(0);
+        queue.release(List.of(t.getId()), "w");
+
+        SuiteTask again = queue.claim("w2", 1, Duration.ofMinutes(1)).get(0);
+        assertEquals(again.getAttempts(), Integer.valueOf(1));
+    }
+
+    @Test(groups = "queue", description = "The coordinator sweep re-queues a task whose lease expired, then fails it at max-attempts")
+    public void sweepRequeuesStaleLeaseUntilMaxAttempts() throws Exception {
+        queue.enqueue(suiteId, SuiteTaskQueue.TYPE_VALIDATION, 1, Map.of("apiGroup", "g"), List.of(
+                new SuiteTaskQueue.NewTask("api", 0, null)));
+        List<String> failedApis = new ArrayList<>();
+        List<Boolean> finished = new ArrayList<>();
+        SuiteCoordinator coordinator = new SuiteCoordinator(queue, List.of(new SuiteTaskHandler() {
+            @Override
+            public String suiteType() {
+                return SuiteTaskQueue.TYPE_VALIDATION;
+            }
+
+            @Override
+            public void runTask(SuiteTask task, Map<String, Object> params) {
+            }
+
+            @Override
+            public void onTaskFailed(SuiteTask task, Map<String, Object> params, String error) {
+                failedApis.add(task.getApiId());
+            }
+
+            @Override
+            public void onSuiteFinished(String id, boolean anyFailed) {
+                finished.add(anyFailed);
+            }
+
+            @Override
+            public Collection<String> findUnfinishedSuiteIds() {
+                return List.of(suiteId);
+            }
+        }));
+
+        queue.claim("dead-instance", 1, Duration.ofMillis(1));
+        Thread.sleep(20);
+        coordinator.sweep();
+        SuiteTask requeued = taskRepository.findBySuiteIdOrderByIdAsc(suiteId).get(0);
+        assertEquals(requeued.getStatus(), SuiteTaskQueue.STATUS_PENDING);
+        assertNull(requeued.getLeaseOwner());
+        assertEquals(requeued.getAttempts(), Integer.valueOf(1));
+        assertTrue(failedApis.isEmpty());
+        assertTrue(finished.isEmpty(), "suite still has a pending task");
+
+        SuiteTask second = queue.claim("another-dead-instance", 1, Duration.ofMillis(1)).get(0);
+        assertEquals(second.getAttempts(), Integer.valueOf(2));
+        Thread.sleep(20);
+        coordinator.sweep();
+        SuiteTask exhausted = taskRepository.findBySuiteIdOrderByIdAsc(suiteId).get(0);
+        assertEquals(exhausted.getStatus(), SuiteTaskQueue.STATUS_FAILED);
+        assertTrue(exhausted.getLastError().contains("after 2 attempt(s)"), exhausted.getLastError());
+        assertEquals(failedApis, List.of("api"));
+        assertEquals(finished, List.of(true));
+        assertTrue(queue.claim("w", 5, Duration.ofMinutes(1)).isEmpty());
+    }
+}
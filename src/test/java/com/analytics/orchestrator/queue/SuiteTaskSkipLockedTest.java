@@ -0,0 +1,86 @@
+package com.analytics.orchestrator.queue;
+
+import com.analytics.orchestrator.entity.SuiteTask;
+import com.analytics.orchestrator.repository.SuiteTaskRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * The SELECT ... FOR UPDATE SKIP LOCKED claim (the MySQL path, forced on H2) with two workers claiming at once.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {"queue.enabled=false", "queue.claim-strategy=skip-locked"})
+@ActiveProfiles("test")
+public class SuiteTaskSkipLockedTest extends AbstractTestNGSpringContextTests {
+
+    private static final int TASKS = 40;
+
+    @Autowired
+    private SuiteTaskQueue queue;
+
+    @Autowired
+    private SuiteTaskRepository taskRepository;
+
+    @Test(groups = "queue", description = "Two concurrent claimers: every task is claimed exactly once")
+    public void concurrentClaimersEachTaskOnce() throws Exception {
+        taskRepository.deleteAll();
+        String suiteId = UUID.randomUUID().toString();
+        List<SuiteTaskQueue.NewTask> tasks = new ArrayList<>();
+        for (int i = 0; i < TASKS; i++) tasks.add(new SuiteTaskQueue.NewTask("api-" + i, i, null));
+        queue.enqueue(suiteId, SuiteTaskQueue.TYPE_COMPARISON, 1, Map.of(), tasks);
+
+        List<Long> claimedIds = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> claimers = new ArrayList<>();
+            for (String owner : List.of("worker-a", "worker-b")) {
+                claimers.add(pool.submit(() -> {
+                    start.await();
+                    int n = 0;
+                    List<SuiteTask> batch;
+                    while (!(batch = queue.claim(owner, 3, Duration.ofMinutes(1))).isEmpty()) {
+                        for (SuiteTask t : batch) {
+                            assertEquals(t.getLeaseOwner(), owner);
+                            claimedIds.add(t.getId());
+                        }
+                        n += batch.size();
+                    }
+                    return n;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> f : claimers) total += f.get(60, TimeUnit.SECONDS);
+            assertEquals(total, TASKS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Set<Long> distinct = new HashSet<>(claimedIds);
+        assertEquals(distinct.size(), TASKS, "a task was handed to both claimers");
+        for (SuiteTask t : taskRepository.findBySuiteIdOrderByIdAsc(suiteId)) {
+            assertEquals(t.getStatus(), SuiteTaskQueue.STATUS_RUNNING);
+            assertEquals(t.getAttempts(), Integer.valueOf(1), "claimed more than once: " + t.getApiId());
+        }
+    }
+}
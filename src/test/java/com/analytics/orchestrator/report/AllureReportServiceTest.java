@@ -0,0 +1,140 @@
+package com.analytics.orchestrator.report;
+
+import com.analytics.orchestrator.entity.Execution;
+import com.analytics.orchestrator.entity.ExecutionResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+public class AllureReportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Path targetDir;
+    private AllureReportService service;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        targetDir = Files.createTempDirectory("report-test");
+        service = new AllureReportService(targetDir);
+        service.init();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test(description = "Report, summary, Allure results and attachments land in the execution's own directories")
+    public void reportIsWrittenPerExecution() throws Exception {
+        Path reportDir = service.generateReport(execution("exec-1"), List.of(
+                result("productBasics", "PASS", "{\"q\":1}", "{\"rows\":[]}", null),
+                result("priceAlerts", "FAIL", "{\"q\":2}", null, "HTTP 500 <boom>")));
+
+        assertEquals(reportDir, targetDir.resolve("reports").resolve("exec-1"));
+        String html = Files.readString(reportDir.resolve("index.html"));
+        assertTrue(html.contains("productBasics"));
+        assertTrue(html.contains("HTTP 500 &lt;boom&gt;"));
+
+        JsonNode summary = objectMapper.readTree(reportDir.resolve("summary.json").toFile());
+        assertEquals(summary.get("total").asInt(), 2);
+        assertEquals(summary.get("failed").asInt(), 1);
+        String request = summary.get("results").get(0).get("request").asText();
+        assertEquals(Files.readString(reportDir.resolve(request)), "{\"q\":1}");
+        assertFalse(summary.get("results").get(1).has("response"));
+
+        Path resultsDir = targetDir.resolve("allure-results").resolve("exec-1");
+        try (var files = Files.list(resultsDir)) {
+            List<Path> all = new ArrayList<>();
+            files.forEach(all::add);
+            assertEquals(all.stream().filter(f -> f.toString().endsWith("-result.json")).count(), 2L);
+            assertEquals(all.stream().filter(f -> f.toString().endsWith("-attachment.json")).count(), 3L);
+            Path resultJson = all.stream().filter(f -> f.toString().endsWith("-result.json")).findFirst().get();
+            JsonNode result = objectMapper.readTree(resultJson.toFile());
+            assertTrue(result.get("attachments").size() > 0);
+            String source = result.get("attachments").get(0).get("source").asText();
+            assertTrue(Files.exists(resultsDir.resolve(source)), source);
+        }
+        assertEquals(service.latestExecutionId(), "exec-1");
+    }
+
+    @Test(description = "Concurrent executions do not clobber each other's reports")
+    public void concurrentExecutionsAreIsolated() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Path>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String id = "exec-" + i;
+            int n = i + 1;
+            futures.add(pool.submit(() -> {
+                List<ExecutionResult> results = new ArrayList<>();
+                for (int j = 0; j < n; j++) results.add(result("api" + j, "PASS", "{}", "{\"n\":" + j + "}", null));
+                return service.generateReport(execution(id), results);
+            }));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            Path dir = futures.get(i).get();
+            JsonNode summary = objectMapper.readTree(dir.resolve("summary.json").toFile());
+            assertEquals(summary.get("executionId").asText(), "exec-" + i);
+            assertEquals(summary.get("total").asInt(), i + 1);
+        }
+        pool.shutdown();
+    }
+
+    @Test(description = "The zip is streamed within its byte budget; an oversized one is abandoned and removed")
+    public void zipRespectsBudget() throws Exception {
+        Path reportDir = service.generateReport(execution("exec-zip"), List.of(
+                result("productBasics", "PASS", "{\"q\":1}", "{\"rows\":[]}", null)));
+
+        Path zip = service.zipReport(reportDir, 9, 1_000_000);
+        assertNotNull(zip);
+        assertTrue(Files.size(zip) <= 1_000_000);
+        Files.delete(zip);
+
+        assertNull(service.zipReport(reportDir, 9, 100));
+    }
+
+    @Test(description = "Execution ids that could escape the reports directory are rejected")
+    public void invalidExecutionIdIsRejected() {
+        assertFalse(AllureReportService.isValidExecutionId("../etc"));
+        assertTrue(AllureReportService.isValidExecutionId("3f2c9a1e-0b7d-4c1e-9f00-123456789abc"));
+        assertThrows(IllegalArgumentException.class, () -> service.getReportDir("a/b"));
+    }
+
+    private static Execution execution(String id) {
+        return Execution.builder()
+                .executionId(id)
+                .client("usdemoaccount")
+                .environment("prod")
+                .apiGroup("analytics")
+                .status("COMPLETED")
+                .startedAt(Instant.now())
+                .build();
+    }
+
+    private static ExecutionResult result(String apiId, String status, String request, String response, String error) {
+        return ExecutionResult.builder()
+                .executionId("x")
+                .apiId(apiId)
+                .dataProviderLabel("default")
+                .status(status)
+                .httpStatus("PASS".equals(status) ? 200 : 500)
+                .requestPayload(request)
+                .responsePayload(response)
+                .errorMessage(error)
+                .durationMs(42L)
+                .executedAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,149 @@
+package com.analytics.orchestrator.report;
+
+import com.analytics.mock.FakeSesServer;
+import com.analytics.orchestrator.entity.Execution;
+import com.analytics.orchestrator.entity.ExecutionResult;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.mail.Multipart;
+import javax.mail.Part;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.testng.Assert.*;
+
+public class ReportEmailServiceTest {
+
+    private FakeSesServer ses;
+    private AllureReportService reports;
+
+    @BeforeClass
+    public void startSes() throws Exception {
+        // The SDK signs requests even for a custom endpoint; the fake ignores the signature
+        System.setProperty("aws.accessKeyId", "test");
+        System.setProperty("aws.secretKey", "test");
+        ses = new FakeSesServer().start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopSes() {
+        ses.close();
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        reports = new AllureReportService(Files.createTempDirectory("email-test"));
+        reports.init();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        reports.shutdown();
+    }
+
+    @Test(description = "A report within the size budget is attached as a zip")
+    public void smallReportIsAttached() throws Exception {
+        Path reportDir = reports.generateReport(execution("exec-small"), results(3, 200));
+        ReportEmailService service = service(10 * 1024 * 1024);
+
+        int before = ses.getMessages().size();
+        assertEquals(service.sendReport("qa@example.com", reportDir, "exec-small", 3, 0), ReportEmailService.Delivery.ATTACHMENT);
+        List<byte[]> sent = ses.getMessages();
+        assertEquals(sent.size(), before + 1);
+
+        Part zip = attachment(sent.get(sent.size() - 1));
+        assertNotNull(zip, "zip attachment");
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(zip.getInputStream())) {
+            for (ZipEntry e; (e = in.getNextEntry()) != null; ) entries.add(e.getName());
+        }
+        assertTrue(entries.contains("index.html"), entries.toString());
+        assertTrue(entries.contains("summary.json"), entries.toString());
+    }
+
+    @Test(description = "A report over the budget is sent as a link, without building the full zip")
+    public void largeReportFallsBackToLink() throws Exception {
+        Path reportDir = reports.generateReport(execution("exec-big"), results(40, 4000));
+        ReportEmailService service = service(100_000);
+
+        assertEquals(service.sendReport("qa@example.com", reportDir, "exec-big", 40, 0), ReportEmailService.Delivery.LINK);
+        byte[] raw = ses.getMessages().get(ses.getMessages().size() - 1);
+        assertNull(attachment(raw));
+        assertTrue(new String(raw).contains("/reports/exec-big/"));
+        assertTrue(raw.length < 100_000);
+    }
+
+    @Test(description = "An SES rejection is reported to the caller instead of being swallowed")
+    public void sesErrorIsRaised() throws Exception {
+        Path reportDir = reports.generateReport(execution("exec-rejected"), results(3, 200));
+        ses.setMaxMessageBytes(100);
+        try {
+            assertThrows(RuntimeException.class,
+                    () -> service(10 * 1024 * 1024).sendReport("qa@example.com", reportDir, "exec-rejected", 3, 0));
+        } finally {
+            ses.setMaxMessageBytes(10 * 1024 * 1024);
+        }
+    }
+
+    private ReportEmailService service(long maxMessageBytes) {
+        return new ReportEmailService(reports, ReportEmailService.buildClient(ses.getEndpoint(), "us-east-1"),
+                "reports@example.com", maxMessageBytes);
+    }
+
+    private static Part attachment(byte[] raw) throws Exception {
+        MimeMessage message = new MimeMessage(Session.getDefaultInstance(new Properties()), new ByteArrayInputStream(raw));
+        Multipart multipart = (Multipart) message.getContent();
+        for (int i = 0; i < multipart.getCount(); i++) {
+            Part part = multipart.getBodyPart(i);
+            if ("allure-report.zip".equals(part.getFileName())) return part;
+        }
+        return null;
+    }
+
+    private static Execution execution(String id) {
+        return Execution.builder()
+                .executionId(id)
+                .client("usdemoaccount")
+                .environment("prod")
+                .apiGroup("analytics")
+                .status("COMPLETED")
+                .startedAt(Instant.now())
+                .build();
+    }
+
+    /** Responses are random digits, so the zip cannot shrink them much. */
+    private static List<ExecutionResult> results(int count, int responseChars) {
+        Random random = new Random(42);
+        List<ExecutionResult> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder response = new StringBuilder();
+            while (response.length() < responseChars) response.append(random.nextInt(1_000_000));
+            results.add(ExecutionResult.builder()
+                    .executionId("x")
+                    .apiId("api" + i)
+                    .dataProviderLabel("default")
+                    .status("PASS")
+                    .httpStatus(200)
+                    .requestPayload("{\"i\":" + i + "}")
+                    .responsePayload(response.toString())
+                    .durationMs(10L)
+                    .executedAt(Instant.now())
+                    .build());
+        }
+        return results;
+    }
+}
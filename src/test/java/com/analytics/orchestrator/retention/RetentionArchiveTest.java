@@ -0,0 +1,79 @@
+package com.analytics.orchestrator.retention;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.*;
+
+public class RetentionArchiveTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test(description = "Batches land as gzip JSON lines with lower-case keys and ISO timestamps")
+    public void batchesAreReadable() throws Exception {
+        Path dir = Files.createTempDirectory("retention");
+        Instant runAt = Instant.parse("2026-01-02T03:04:05Z");
+        Path file;
+        try (RetentionArchive archive = RetentionArchive.open(dir, "comparison_result", runAt)) {
+            archive.append(List.of(row(1L, "a"), row(2L, "b")));
+            archive.append(List.of(row(3L, null)));
+            assertEquals(archive.getRows(), 3L);
+            file = archive.getFile();
+        }
+        assertEquals(file.getParent(), dir.resolve("comparison_result"));
+        assertTrue(file.getFileName().toString().startsWith("comparison_result-20260102-030405"));
+
+        List<Map<?, ?>> lines = read(file);
+        assertEquals(lines.size(), 3);
+        assertEquals(lines.get(0).get("id"), 1);
+        assertEquals(lines.get(1).get("mismatches_json"), "b");
+        assertEquals(lines.get(0).get("created_at"), "2025-12-01T00:00:00Z");
+        assertTrue(lines.get(2).containsKey("mismatches_json"));
+        assertNull(lines.get(2).get("mismatches_json"));
+    }
+
+    @Test(description = "A second run in the same millisecond gets its own file")
+    public void filesAreNotOverwritten() throws Exception {
+        Path dir = Files.createTempDirectory("retention");
+        Instant runAt = Instant.now();
+        Path first;
+        try (RetentionArchive a = RetentionArchive.open(dir, "execution_results", runAt)) {
+            a.append(List.of(row(1L, "x")));
+            first = a.getFile();
+        }
+        try (RetentionArchive b = RetentionArchive.open(dir, "execution_results", runAt)) {
+            assertNotEquals(b.getFile(), first);
+        }
+        assertEquals(read(first).size(), 1);
+    }
+
+    private static Map<String, Object> row(long id, String body) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("ID", id);
+        row.put("MISMATCHES_JSON", body);
+        row.put("CREATED_AT", Timestamp.from(Instant.parse("2025-12-01T00:00:00Z")));
+        return row;
+    }
+
+    private static List<Map<?, ?>> read(Path file) throws Exception {
+        List<Map<?, ?>> rows = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            for (String line; (line = r.readLine()) != null; ) rows.add(objectMapper.readValue(line, Map.class));
+        }
+        return rows;
+    }
+}
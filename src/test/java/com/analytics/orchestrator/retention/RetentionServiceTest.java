@@ -0,0 +1,142 @@
+package com.analytics.orchestrator.retention;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Retention against H2: dry-run counts, the id-batched purge (batch size 2, so every table takes several batches)
+ * and the per-table guards.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {"queue.enabled=false", "retention.batch-size=2", "retention.batch-pause-ms=0",
+                "retention.archive-dir=${java.io.tmpdir}/retention-service-test"})
+@ActiveProfiles("test")
+public class RetentionServiceTest extends AbstractTestNGSpringContextTests {
+
+    private static final Instant OLD = Instant.now().minus(Duration.ofDays(400));
+    private static final Instant NEW = Instant.now();
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeMethod
+    public void cleanTables() {
+        for (String table : List.of("execution_results", "comparison_result", "test_report_detail", "suite_summary")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test(groups = "retention", description = "execution_results: bodies of every old row NULLed across several id batches, new rows untouched")
+    public void executionResults_bodiesClearedInBatches() throws Exception {
+        for (int i = 0; i < 5; i++) executionResult("old-" + i, OLD);
+        executionResult("new", NEW);
+
+        Map<String, RetentionService.TableReport> dryRun = byTable(retentionService.dryRun());
+        assertEquals(dryRun.get("execution_results").getEligibleRows(), Long.valueOf(5));
+        assertEquals(dryRun.get("execution_results").getBodyBytes(), Long.valueOf(5 * ("req".length() + "resp".length())));
+
+        RetentionService.TableReport run = byTable(retentionService.run()).get("execution_results");
+        assertEquals(run.getProcessedRows(), dryRun.get("execution_results").getEligibleRows());
+        assertEquals(archivedLines(run), 5);
+        assertEquals(count("execution_results", "archived_at IS NOT NULL AND request_payload IS NULL AND response_payload IS NULL"), 5);
+        assertEquals(count("execution_results", "api_id = 'new' AND archived_at IS NULL AND response_payload = 'resp'"), 1);
+        assertEquals(byTable(retentionService.dryRun()).get("execution_results").getEligibleRows(), Long.valueOf(0));
+    }
+
+    @Test(groups = "retention", description = "comparison_result: a diff still reused by a live row keeps its bodies and hashes")
+    public void comparisonResult_reusedDiffIsKept() {
+        long reused = comparisonResult("reused", OLD, null);
+        comparisonResult("live", NEW, reused);
+        comparisonResult("stale-1", OLD, null);
+        comparisonResult("stale-2", OLD, null);
+        comparisonResult("stale-3", OLD, null);
+
+        Map<String, RetentionService.TableReport> dryRun = byTable(retentionService.dryRun());
+        assertEquals(dryRun.get("comparison_result").getEligibleRows(), Long.valueOf(3));
+
+        RetentionService.TableReport run = byTable(retentionService.run()).get("comparison_result");
+        assertEquals(run.getProcessedRows(), dryRun.get("comparison_result").getEligibleRows());
+        assertEquals(count("comparison_result", "api_id LIKE 'stale-%' AND archived_at IS NOT NULL "
+                + "AND mismatches_json IS NULL AND test_response_json IS NULL AND test_response_hash IS NULL"), 3);
+        assertEquals(count("comparison_result", "api_id = 'reused' AND archived_at IS NULL "
+                + "AND mismatches_json IS NOT NULL AND test_response_hash IS NOT NULL"), 1);
+    }
+
+    @Test(groups = "retention", description = "test_report_detail: old rows deleted only for suites with a suite_summary")
+    public void testReportDetail_deletedOnlyWithSummary() throws Exception {
+        jdbcTemplate.update("INSERT INTO suite_summary (suite_id, suite_type, suite_status) VALUES (?, ?, ?)",
+                "suite-with-summary", "VALIDATION", "COMPLETED");
+        for (int i = 0; i < 3; i++) testReportDetail("suite-with-summary", "old-" + i, OLD);
+        testReportDetail("suite-with-summary", "new", NEW);
+        testReportDetail("suite-without-summary", "old", OLD);
+
+        Map<String, RetentionService.TableReport> dryRun = byTable(retentionService.dryRun());
+        assertEquals(dryRun.get("test_report_detail").getEligibleRows(), Long.valueOf(3));
+
+        RetentionService.TableReport run = byTable(retentionService.run()).get("test_report_detail");
+        assertEquals(run.getProcessedRows(), dryRun.get("test_report_detail").getEligibleRows());
+        assertEquals(archivedLines(run), 3);
+        assertEquals(count("test_report_detail", "suite_id = 'suite-with-summary'"), 1);
+        assertEquals(count("test_report_detail", "suite_id = 'suite-without-summary'"), 1);
+    }
+
+    private void executionResult(String apiId, Instant executedAt) {
+        jdbcTemplate.update("INSERT INTO execution_results (execution_id, api_id, status, request_payload, response_payload, executed_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", "exec-1", apiId, "PASS", "req", "resp", Timestamp.from(executedAt));
+    }
+
+    private long comparisonResult(String apiId, Instant createdAt, Long reusedFrom) {
+        jdbcTemplate.update("INSERT INTO comparison_result (suite_id, api_id, mismatches_json, test_response_json, "
+                        + "prod_response_json, test_response_hash, prod_response_hash, reused_from_result_id, created_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                "suite-1", apiId, "[]", "{}", "{}", "hash-t", "hash-p", reusedFrom, Timestamp.from(createdAt));
+        return jdbcTemplate.queryForObject("SELECT id FROM comparison_result WHERE api_id = ?", Long.class, apiId);
+    }
+
+    private void testReportDetail(String suiteId, String apiId, Instant createdAt) {
+        jdbcTemplate.update("INSERT INTO test_report_detail (suite_id, test_id, api_id, status, message, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", suiteId, apiId, apiId, "PASS", "ok", Timestamp.from(createdAt));
+    }
+
+    private int count(String table, String where) {
+        Integer n = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE " + where, Integer.class);
+        return n != null ? n : 0;
+    }
+
+    private static Map<String, RetentionService.TableReport> byTable(List<RetentionService.TableReport> reports) {
+        assertNotNull(reports);
+        return reports.stream().collect(Collectors.toMap(RetentionService.TableReport::getTable, Function.identity()));
+    }
+
+    private static int archivedLines(RetentionService.TableReport report) throws Exception {
+        assertNotNull(report.getArchiveFile());
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(Paths.get(report.getArchiveFile()))), StandardCharsets.UTF_8))) {
+            return (int) r.lines().count();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.analytics.orchestrator.summary;
+
+import com.analytics.orchestrator.entity.SuiteSummary;
+import com.analytics.orchestrator.repository.SuiteSummaryRepository;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class SuiteSummaryServiceTest {
+
+    /** suite_summary rows keyed by suite id, with @Version semantics like the JPA repository. */
+    private Map<String, SuiteSummary> table;
+    private SuiteSummaryRepository repository;
+    private SuiteSummaryService service;
+
+    @BeforeMethod
+    public void setUp() {
+        table = new ConcurrentHashMap<>();
+        repository = (SuiteSummaryRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{SuiteSummaryRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findById":
+                            return Optional.ofNullable(copy(table.get((String) args[0])));
+                        case "save":
+                            return save((SuiteSummary) args[0]);
+                        case "deleteById":
+                            table.remove((String) args[0]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        service = new SuiteSummaryService(repository);
+    }
+
+    private synchronized SuiteSummary save(SuiteSummary s) {
+        SuiteSummary existing = table.get(s.getSuiteId());
+        long current = existing == null ? -1 : existing.getVersion();
+        long expected = s.getVersion() == null ? -1 : s.getVersion();
+        if (current != expected) throw new ObjectOptimisticLockingFailureException(SuiteSummary.class, s.getSuiteId());
+        SuiteSummary stored = copy(s);
+        stored.setVersion(expected + 1);
+        table.put(s.getSuiteId(), stored);
+        return copy(stored);
+    }
+
+    private static SuiteSummary copy(SuiteSummary s) {
+        return s == null ? null : new SuiteSummary(s.getSuiteId(), s.getSuiteType(), s.getSuiteStatus(),
+                s.getCompletedCount(), s.getPassedCount(), s.getMismatchCount(), s.getFailedCount(),
+                s.getEmptyBothCount(), s.getApisJson(), s.getVersion(), s.getUpdatedAt());
+    }
+
+    @Test(description = "Counts follow each recorded result; a re-run API replaces its earlier category")
+    public void countsAreMaintained() {
+        service.start("COMPARISON", "s1");
+        service.record("s1", "a", SuiteSummaryService.CATEGORY_PASSED, Map.of("apiId", "a"));
+        service.record("s1", "b", SuiteSummaryService.CATEGORY_FAILED, Map.of("apiId", "b"));
+        service.record("s1", "b", SuiteSummaryService.CATEGORY_MISMATCH, Map.of("apiId", "b", "diffCount", 3));
+        service.finish("s1", "COMPLETED");
+
+        SuiteSummaryService.Summary summary = service.get("s1");
+        assertEquals(summary.getSuiteStatus(), "COMPLETED");
+        assertEquals(summary.count(SuiteSummaryService.CATEGORY_PASSED), 1);
+        assertEquals(summary.count(SuiteSummaryService.CATEGORY_MISMATCH), 1);
+        assertEquals(summary.count(SuiteSummaryService.CATEGORY_FAILED), 0);
+        assertEquals(summary.getApis().get("b").row.get("diffCount"), 3);
+
+        SuiteSummary row = table.get("s1");
+        assertEquals(row.getCompletedCount(), Integer.valueOf(2));
+        assertEquals(row.getMismatchCount(), Integer.valueOf(1));
+        assertEquals(row.getFailedCount(), Integer.valueOf(0));
+    }
+
+    @Test(description = "Suites without a summary row are left alone and read as null")
+    public void legacySuiteHasNoSummary() {
+        service.record("old", "a", SuiteSummaryService.CATEGORY_PASSED, Map.of("apiId", "a"));
+        assertNull(service.get("old"));
+        assertFalse(table.containsKey("old"));
+    }
+
+    @Test(description = "A write from another instance is picked up on the version conflict instead of being lost")
+    public void otherInstanceUpdateIsMerged() {
+        service.start("VALIDATION", "s1");
+        SuiteSummaryService other = new SuiteSummaryService(repository);
+        other.record("s1", "x", SuiteSummaryService.CATEGORY_FAILED, Map.of("apiName", "x"));
+
+        // This instance's cache still holds version 0; the save conflicts, re-reads and retries
+        service.record("s1", "y", SuiteSummaryService.CATEGORY_PASSED, Map.of("apiName", "y"));
+        SuiteSummary row = table.get("s1");
+        assertEquals(row.getCompletedCount(), Integer.valueOf(2));
+        assertEquals(row.getFailedCount(), Integer.valueOf(1));
+        assertEquals(row.getPassedCount(), Integer.valueOf(1));
+    }
+
+    @Test(description = "Concurrent records for one suite all land in the summary")
+    public void concurrentRecordsAreAtomic() throws Exception {
+        service.start("COMPARISON", "s1");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 200; i++) {
+            String api = "api" + i;
+            String category = i % 2 == 0 ? SuiteSummaryService.CATEGORY_PASSED : SuiteSummaryService.CATEGORY_MISMATCH;
+            pool.submit(() -> service.record("s1", api, category, Map.of("apiId", api)));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        SuiteSummaryService.Summary summary = service.get("s1");
+        assertEquals(summary.getApis().size(), 200);
+        assertEquals(summary.count(SuiteSummaryService.CATEGORY_PASSED), 100);
+        assertEquals(table.get("s1").getMismatchCount(), Integer.valueOf(100));
+    }
+}